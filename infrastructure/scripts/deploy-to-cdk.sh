@@ -31,9 +31,9 @@ then
 
 if [[ $COMPILE = "true" ]]
 then
-  echo "Creating the Shadow Jar"
+  echo "Creating the deployment package with its CDS archive"
   cd ../software
-  gradle shadowJar
+  gradle lambdaZip -Pcds
   fi
 
 if [[ $BOOTSTRAP = "true" ]]
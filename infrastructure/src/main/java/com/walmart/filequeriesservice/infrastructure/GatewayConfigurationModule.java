@@ -27,4 +27,8 @@ public class GatewayConfigurationModule {
 
     @Value("${gateway.uploadFilePath}")
     private String uploadFilePath;
+
+    // A table update can only create one GSI, so ReclaimIndex is only added once TimeRangeNameIndex is active.
+    @Value("${ddb.reclaimIndex:false}")
+    private boolean reclaimIndex;
 }
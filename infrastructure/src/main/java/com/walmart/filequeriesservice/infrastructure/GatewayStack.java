@@ -3,8 +3,15 @@ package com.walmart.filequeriesservice.infrastructure;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.walmart.filequeriesservice.util.EnvironmentKeys;
 import software.amazon.awscdk.*;
-import software.amazon.awscdk.services.apigateway.LambdaRestApi;
+import software.amazon.awscdk.services.apigateway.LambdaIntegration;
+import software.amazon.awscdk.services.apigateway.ProxyResourceOptions;
+import software.amazon.awscdk.services.apigateway.Resource;
 import software.amazon.awscdk.services.apigateway.RestApi;
+import software.amazon.awscdk.services.cloudwatch.Dashboard;
+import software.amazon.awscdk.services.cloudwatch.GraphWidget;
+import software.amazon.awscdk.services.cloudwatch.IWidget;
+import software.amazon.awscdk.services.cloudwatch.LogQueryWidget;
+import software.amazon.awscdk.services.cloudwatch.MetricOptions;
 import software.amazon.awscdk.services.dynamodb.*;
 import software.amazon.awscdk.services.events.Rule;
 import software.amazon.awscdk.services.events.Schedule;
@@ -15,8 +22,13 @@ import software.amazon.awscdk.services.lambda.Runtime;
 import software.amazon.awscdk.services.s3.Bucket;
 import software.constructs.Construct;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.singletonList;
 
@@ -24,8 +36,15 @@ public class GatewayStack extends Stack {
 
     private final GatewayConfigurationModule configurationModule;
     private static final String LAMBDA_ID_FORMAT = "%sLambda";
-    private static final String RELATIVE_JAR_LOCATION = "../software/build/libs/software-1.0-all.jar";
+    // The shaded jar under lib/ and, when built with -Pcds, the CDS archive. See the software module's lambdaZip task.
+    private static final String RELATIVE_ZIP_LOCATION = "../software/build/distributions/software-lambda.zip";
+    // Class loading from the CDS archive if the package has one (auto ignores a missing archive), and the C1 compiler
+    // only, which warms up faster on short-lived functions.
+    private static final String JAVA_TOOL_OPTIONS = "-Xshare:auto -XX:SharedArchiveFile=/var/task/app.jsa " +
+            "-XX:+TieredCompilation -XX:TieredStopAtLevel=1";
     private static final String LAMBDA_HANDLER_FORMAT = "com.walmart.service.StreamLambdaHandler";
+    // The on-demand price of a GB-second of x86 Lambda compute, in USD.
+    private static final String PRICE_PER_GB_SECOND = "0.0000166667";
 
     /**
      * Creates a Lambda com.walmart.service.function using the format:
@@ -33,22 +52,82 @@ public class GatewayStack extends Stack {
      * id: ${functionName}Lambda
      * handler: ${functionName}.handleRequest
      * @param functionName  Name of the function being created.
+     * @param routeGroup    The group of routes the function serves, with its memory size, timeout and concurrency.
      * @return              A Lambda function.
      */
-    public Function createFunction(final String functionName, final Bucket bucket,
+    public Function createFunction(final String functionName, final RouteGroup routeGroup, final Bucket bucket,
                                    final Table table) {
 
         return Function.Builder.create(this, String.format(LAMBDA_ID_FORMAT, functionName))
                 .functionName(functionName)
-                .runtime(Runtime.JAVA_8)
-                .code(Code.fromAsset(RELATIVE_JAR_LOCATION))
+                // The jar still targets Java 8, 11 is the newest Java runtime this CDK version knows.
+                .runtime(Runtime.JAVA_11)
+                .code(Code.fromAsset(RELATIVE_ZIP_LOCATION))
                 .handler(LAMBDA_HANDLER_FORMAT)
-                .memorySize(1024)
-                .timeout(Duration.seconds(60))
+                .memorySize(routeGroup.getMemorySize())
+                .timeout(Duration.seconds(routeGroup.getTimeoutSeconds()))
+                .reservedConcurrentExecutions(routeGroup.getReservedConcurrency())
                 .build()
                 .addEnvironment(EnvironmentKeys.BUCKET_NAME, bucket.getBucketName())
                 .addEnvironment(EnvironmentKeys.SERVICE_ENVIRONMENT, configurationModule.getServiceEnvironment())
-                .addEnvironment(EnvironmentKeys.TABLE_NAME, Objects.requireNonNull(table.getTableName()));
+                .addEnvironment(EnvironmentKeys.TABLE_NAME, Objects.requireNonNull(table.getTableName()))
+                .addEnvironment(EnvironmentKeys.ROUTE_GROUP, routeGroup.name())
+                .addEnvironment(EnvironmentKeys.JAVA_TOOL_OPTIONS, JAVA_TOOL_OPTIONS)
+                // Without ReclaimIndex each function only reclaims its own soft deletes.
+                .addEnvironment(EnvironmentKeys.RECLAIM_FEED, configurationModule.isReclaimIndex() ? "index" : "local");
+    }
+
+    /**
+     * Compares the route groups' functions: their cold starts from the init durations in the REPORT log lines, their
+     * cost from the billed GB-seconds, and their durations and throttles.
+     */
+    public Dashboard createDashboard(final Map<RouteGroup, Function> functions) {
+        final List<String> logGroupNames = functions.values().stream()
+                .map(function -> function.getLogGroup().getLogGroupName())
+                .collect(Collectors.toList());
+        final List<IWidget> durations = new ArrayList<>();
+        final List<IWidget> throttles = new ArrayList<>();
+        functions.forEach((routeGroup, function) -> {
+            durations.add(GraphWidget.Builder.create()
+                                  .title(routeGroup.getFunctionName() + " duration")
+                                  .left(Arrays.asList(function.metricDuration(MetricOptions.builder().statistic("p50").build()),
+                                                      function.metricDuration(MetricOptions.builder().statistic("p99").build())))
+                                  .width(6)
+                                  .build());
+            throttles.add(GraphWidget.Builder.create()
+                                  .title(routeGroup.getFunctionName() + " invocations")
+                                  .left(Arrays.asList(function.metricInvocations(), function.metricThrottles()))
+                                  .width(6)
+                                  .build());
+        });
+
+        final Dashboard dashboard = Dashboard.Builder.create(this, "RouteGroupsDashboard")
+                .dashboardName("FileQueries-RouteGroups")
+                .build();
+        dashboard.addWidgets(LogQueryWidget.Builder.create()
+                                     .title("Cold starts per route group")
+                                     .logGroupNames(logGroupNames)
+                                     .queryLines(Arrays.asList(
+                                             "filter @type = \"REPORT\" and ispresent(@initDuration)",
+                                             "stats count() as coldStarts, avg(@initDuration) as avgInitMs, " +
+                                                     "pct(@initDuration, 99) as p99InitMs, max(@initDuration) as maxInitMs by @log"))
+                                     .width(12)
+                                     .build(),
+                             LogQueryWidget.Builder.create()
+                                     .title("Cost per route group (USD)")
+                                     .logGroupNames(logGroupNames)
+                                     .queryLines(Arrays.asList(
+                                             "filter @type = \"REPORT\"",
+                                             "stats count() as invocations, " +
+                                                     "sum(@billedDuration / 1000 * @memorySize / 1024 / 1024 / 1024) as gbSeconds, " +
+                                                     "sum(@billedDuration / 1000 * @memorySize / 1024 / 1024 / 1024) * " +
+                                                     PRICE_PER_GB_SECOND + " as computeCost, " +
+                                                     "avg(@maxMemoryUsed / 1024 / 1024) as avgMaxMemoryMb by @log"))
+                                     .width(12)
+                                     .build());
+        dashboard.addWidgets(durations.toArray(new IWidget[0]));
+        dashboard.addWidgets(throttles.toArray(new IWidget[0]));
+        return dashboard;
     }
 
     public Table createTable() {
@@ -58,6 +137,8 @@ public class GatewayStack extends Stack {
                                       .name(TableAttributes.FILE_ID_KEY)
                                       .type(AttributeType.STRING)
                                       .build())
+                // Soft deleted files that were never reclaimed.
+                .timeToLiveAttribute(TableAttributes.EXPIRES_AT_KEY)
                 .build();
         queriesTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
                                                      .indexName(TableAttributes.USER_ID_INDEX_KEY)
@@ -79,6 +160,21 @@ public class GatewayStack extends Stack {
                                                                       .build())
                                                      .projectionType(ProjectionType.KEYS_ONLY)
                                                      .build());
+        // A projection can't be changed in place, so the file name is projected by a new index instead.
+        queriesTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                                                     .indexName(TableAttributes.TIME_RANGE_NAME_INDEX_KEY)
+                                                     .partitionKey(Attribute.builder()
+                                                                           .name(TableAttributes.USER_ID_KEY)
+                                                                           .type(AttributeType.STRING)
+                                                                           .build())
+                                                     .sortKey(Attribute.builder()
+                                                                      .name(TableAttributes.CREATION_DATE_KEY)
+                                                                      .type(AttributeType.STRING)
+                                                                      .build())
+                                                     // Lets ListFiles filter a date range by name prefix.
+                                                     .nonKeyAttributes(Arrays.asList(TableAttributes.FILE_NAME_KEY))
+                                                     .projectionType(ProjectionType.INCLUDE)
+                                                     .build());
         queriesTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
                                                      .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
                                                      .partitionKey(Attribute.builder()
@@ -92,6 +188,25 @@ public class GatewayStack extends Stack {
                                                      .nonKeyAttributes(Arrays.asList(TableAttributes.CREATION_DATE_KEY))
                                                      .projectionType(ProjectionType.INCLUDE)
                                                      .build());
+        // Sparse, only soft deleted files that still have to be reclaimed have a ReclaimQueue. It's created by a later
+        // deploy than TimeRangeNameIndex, with ddb.reclaimIndex=true, since a table update can only create one GSI.
+        if (!configurationModule.isReclaimIndex()) {
+            return queriesTable;
+        }
+        queriesTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                                                     .indexName(TableAttributes.RECLAIM_INDEX_KEY)
+                                                     .partitionKey(Attribute.builder()
+                                                                           .name(TableAttributes.RECLAIM_QUEUE_KEY)
+                                                                           .type(AttributeType.STRING)
+                                                                           .build())
+                                                     .sortKey(Attribute.builder()
+                                                                      .name(TableAttributes.DELETED_AT_KEY)
+                                                                      .type(AttributeType.STRING)
+                                                                      .build())
+                                                     .nonKeyAttributes(Arrays.asList(TableAttributes.OWNER_ID_KEY,
+                                                                                     TableAttributes.FILE_NAME_KEY))
+                                                     .projectionType(ProjectionType.INCLUDE)
+                                                     .build());
         return queriesTable;
     }
 
@@ -104,22 +219,41 @@ public class GatewayStack extends Stack {
                 .build();
         final Table queriesTable = createTable();
 
-        final Function functionHandler = createFunction("FunctionHandler", bucket, queriesTable);
-        queriesTable.grantReadWriteData(functionHandler.getRole());
+        final Map<RouteGroup, Function> functions = new EnumMap<>(RouteGroup.class);
+        for (final RouteGroup routeGroup : RouteGroup.values()) {
+            final Function function = createFunction(routeGroup.getFunctionName() + "Handler", routeGroup, bucket, queriesTable);
+            queriesTable.grantReadWriteData(function.getRole());
+            functions.put(routeGroup, function);
+        }
 
-        final RestApi api = LambdaRestApi.Builder.create(this, "FileQueries-API")
+        final RestApi api = RestApi.Builder.create(this, "FileQueries-API")
                 .restApiName("File Queries Service")
                 .description("Service that lets users upload, download, and list files.")
-                .proxy(true)
-                .handler(functionHandler)
                 .binaryMediaTypes(singletonList("multipart/form-data"))
                 .build();
+        // Each path prefix is proxied to the function of its group, e.g. /getFile/{proxy+} to the Get function.
+        functions.forEach((routeGroup, function) -> {
+            final LambdaIntegration integration = new LambdaIntegration(function);
+            for (final String pathPrefix : routeGroup.getPathPrefixes()) {
+                final Resource prefixResource = api.getRoot().addResource(pathPrefix);
+                prefixResource.addProxy(ProxyResourceOptions.builder()
+                                                .defaultIntegration(integration)
+                                                .anyMethod(true)
+                                                .build());
+                // {proxy+} needs at least one more segment, so e.g. /metrics itself has to be routed on its own.
+                if (RouteGroup.isBareRoute(pathPrefix)) {
+                    prefixResource.addMethod("ANY", integration);
+                }
+            }
+        });
 
         final Rule functionWarmerRule = Rule.Builder.create(this, "FunctionWarmer")
                 .schedule(Schedule.rate(Duration.minutes(1)))
                 .build();
 
-        functionWarmerRule.addTarget(LambdaFunction.Builder.create(functionHandler).build());
+        // Keeps every function warm, and runs the background work on the Delete function.
+        functions.values().forEach(function -> functionWarmerRule.addTarget(LambdaFunction.Builder.create(function).build()));
 
+        createDashboard(functions);
     }
 }
@@ -0,0 +1,49 @@
+package com.walmart.filequeriesservice.infrastructure;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The groups of routes that are deployed as their own Lambda functions. Each function only loads the controllers of
+ * its group, see the software module's RouteGroup, which has to have the same names.
+ */
+@Getter
+public enum RouteGroup {
+    // Downloads stream objects from S3 and resize images, 1769 MB is the size that gets a full vCPU.
+    GET("Get", 1769, 30, 50, "getFile", "getFiles", "files"),
+    LIST("List", 1024, 30, 20, "listFiles", "searchFiles", "stats", "metrics"),
+    // Uploads buffer multipart parts and compute image derivatives.
+    UPLOAD("Upload", 2048, 60, 20, "uploadFile"),
+    // Also runs the reclaimer and the delete jobs, which run for up to a minute.
+    DELETE("Delete", 1024, 60, 10, "deleteFile", "deleteFiles", "deleteJobs");
+
+    // The prefixes that are also routes on their own, e.g. GET /metrics, not only the first segment of longer paths.
+    private static final Set<String> BARE_ROUTES = Collections.singleton("metrics");
+
+    private final String functionName;
+    private final int memorySize;
+    private final int timeoutSeconds;
+    private final int reservedConcurrency;
+    // The first segments of the paths this group serves.
+    private final List<String> pathPrefixes;
+
+    RouteGroup(final String functionName,
+               final int memorySize,
+               final int timeoutSeconds,
+               final int reservedConcurrency,
+               final String... pathPrefixes) {
+        this.functionName = functionName;
+        this.memorySize = memorySize;
+        this.timeoutSeconds = timeoutSeconds;
+        this.reservedConcurrency = reservedConcurrency;
+        this.pathPrefixes = Arrays.asList(pathPrefixes);
+    }
+
+    public static boolean isBareRoute(final String pathPrefix) {
+        return BARE_ROUTES.contains(pathPrefix);
+    }
+}
@@ -3,8 +3,11 @@ package com.walmart.filequeriesservice.infrastructure;
 // These values have a corresponding class in the software module. Keep them consistent.
 public class TableAttributes {
     public static final String FILE_NAME_INDEX_KEY = "FileNameIndex";
+    // Keys only. Replaced by TimeRangeNameIndex, and dropped once no deployed version queries it anymore.
     public static final String TIME_RANGE_INDEX_KEY = "TimeRangeIndex";
+    public static final String TIME_RANGE_NAME_INDEX_KEY = "TimeRangeNameIndex";
     public static final String USER_ID_INDEX_KEY = "UserIdIndex";
+    public static final String RECLAIM_INDEX_KEY = "ReclaimIndex";
 
     // This is a unique id for a file. Used as the partition key in the table.
     public static final String FILE_ID_KEY = "FileUUID";
@@ -17,4 +20,90 @@ public class TableAttributes {
 
     // The date in which the item was created, uses the ISO-8601 format.
     public static final String CREATION_DATE_KEY = "CreatedAt";
+
+    // Size of the file in bytes. Files uploaded before sizes were stored don't have it.
+    public static final String FILE_SIZE_KEY = "FileSize";
+
+    // MIME type the file was uploaded with, e.g. image/png.
+    public static final String CONTENT_TYPE_KEY = "ContentType";
+
+    // Base64 encoded SHA-256 of the file's content, computed while it is uploaded. Served as the file's ETag.
+    public static final String CHECKSUM_KEY = "Checksum";
+
+    // Name pointers are items keyed by NAME#<UserID>#<FileName> that refer to the file with that name.
+    public static final String NAME_POINTER_PREFIX = "NAME#";
+
+    // ID of the file a name pointer refers to.
+    public static final String TARGET_FILE_ID_KEY = "TargetFileUUID";
+
+    // Owner of the file a name pointer refers to. Pointers have no UserID, which keeps them out of every index.
+    public static final String OWNER_ID_KEY = "OwnerID";
+
+    // Per-user statistics live in an item keyed by STATS#<UserID>. Like name pointers, it has no UserID.
+    public static final String STATS_PREFIX = "STATS#";
+
+    // Number of files the user has.
+    public static final String FILE_COUNT_KEY = "FileCount";
+
+    // Number of files created per month, e.g. H_2022-05.
+    public static final String MONTH_HISTOGRAM_PREFIX = "H_";
+
+    // Number of files whose name starts with a given one or two characters, e.g. P1_i and P2_in.
+    public static final String ONE_CHARACTER_PREFIX = "P1_";
+    public static final String TWO_CHARACTER_PREFIX = "P2_";
+
+    // Total size in bytes of the user's files, and per file type, e.g. B_pdf.
+    public static final String TOTAL_BYTES_KEY = "TotalBytes";
+    public static final String TYPE_BYTES_PREFIX = "B_";
+
+    // Number of uploads and deletes of the user so far, used to tell whether the user's manifest is up to date.
+    public static final String CHANGE_COUNT_KEY = "ChangeCount";
+
+    // When a soft deleted file was deleted, uses the ISO-8601 format. Its UserID is removed at the same time, which
+    // takes it out of every other index and hides it from lookups until it's reclaimed.
+    public static final String DELETED_AT_KEY = "DeletedAt";
+
+    // Partition key of ReclaimIndex, only set on soft deleted files that still have to be reclaimed. One of a few
+    // shards (PENDING#0, PENDING#1, ...) picked by file ID, so no single partition of the index gets every delete.
+    public static final String RECLAIM_QUEUE_KEY = "ReclaimQueue";
+
+    // TTL of soft deleted files in epoch seconds, in case they're never reclaimed.
+    public static final String EXPIRES_AT_KEY = "ExpiresAt";
+
+    // Prefix of the delete jobs' partition keys, followed by the job's ID. Jobs have an OwnerID and a CreatedAt.
+    public static final String JOB_PREFIX = "JOB#";
+    // Partition key of the item listing the unfinished delete jobs in its JobIDs set.
+    public static final String ACTIVE_JOBS_ID = "JOBS#ACTIVE";
+    public static final String JOB_IDS_KEY = "JobIDs";
+    public static final String JOB_STATUS_KEY = "JobStatus";
+    // The filter of a delete job, with the same meaning as in a ListFilesRequest.
+    public static final String JOB_NAME_PREFIX_KEY = "JobNameBeginsWith";
+    public static final String JOB_CREATED_AFTER_KEY = "JobCreatedAfter";
+    public static final String JOB_CREATED_BEFORE_KEY = "JobCreatedBefore";
+    // Where a delete job continues from, a batch listing next token.
+    public static final String JOB_CURSOR_KEY = "JobCursor";
+    public static final String DELETED_COUNT_KEY = "DeletedCount";
+    public static final String FAILED_COUNT_KEY = "FailedCount";
+    // Time spent running a delete job in milliseconds, for its throughput.
+    public static final String ACTIVE_MILLIS_KEY = "ActiveMillis";
+    public static final String UPDATED_AT_KEY = "UpdatedAt";
+    // The instance running a delete job and until when (epoch milliseconds). Another instance may take over after that.
+    public static final String LEASE_OWNER_KEY = "LeaseOwner";
+    public static final String LEASE_EXPIRES_AT_KEY = "LeaseExpiresAt";
+
+    // Prefix of the idempotency keys' partition keys, followed by the route, the user ID and the client's key.
+    // They expire through ExpiresAt.
+    public static final String IDEMPOTENCY_PREFIX = "IDEMPOTENCY#";
+    public static final String IDEMPOTENCY_STATUS_KEY = "IdempotencyStatus";
+    // Hash of the request that claimed an idempotency key, a reuse of the key for another request is rejected.
+    public static final String REQUEST_HASH_KEY = "RequestHash";
+    // The HTTP status and JSON body of the first response to an idempotency key.
+    public static final String RESPONSE_STATUS_KEY = "ResponseStatus";
+    public static final String RESPONSE_BODY_KEY = "ResponseBody";
+
+    // The version of a user's search index lives in an item keyed by SEARCH#<UserID>, along with the S3 key of the
+    // index. Like the statistics item, it has no UserID.
+    public static final String SEARCH_INDEX_PREFIX = "SEARCH#";
+    public static final String INDEX_VERSION_KEY = "IndexVersion";
+    public static final String INDEX_OBJECT_KEY = "IndexObjectKey";
 }
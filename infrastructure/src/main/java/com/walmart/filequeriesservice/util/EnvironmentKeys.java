@@ -4,6 +4,9 @@ public final class EnvironmentKeys {
     public static final String BUCKET_NAME = "BUCKET_NAME";
     public static final String TABLE_NAME = "TABLE_NAME";
     public static final String SERVICE_ENVIRONMENT = "SERVICE_ENVIRONMENT";
+    public static final String ROUTE_GROUP = "ROUTE_GROUP";
+    public static final String JAVA_TOOL_OPTIONS = "JAVA_TOOL_OPTIONS";
+    public static final String RECLAIM_FEED = "RECLAIM_FEED";
     public static final String TIME_RANGE_INDEX = "TimeRangeIndex";
     public static final String FILE_NAME_INDEX = "FileNameIndex";
 }
@@ -0,0 +1,436 @@
+package com.walmart.service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory stand-in for DynamoDB and S3, served over HTTP on the local endpoint the service's clients use in the
+ * local environment. The AWS SDK's marshalling, signing and HTTP client are part of what the benchmark measures, so
+ * the clients are left as they are and only their endpoint is faked.
+ * <p>
+ * It keeps items and objects, but only models what the benchmarked routes need: condition and update expressions are
+ * ignored, and queries return the items of the users named in their expression values.
+ */
+final class AwsStandIn implements AutoCloseable {
+
+    // The stand-in's threads are left out of the benchmark's allocation counters.
+    static final String THREAD_PREFIX = "aws-stand-in-";
+    private static final DateTimeFormatter LAST_MODIFIED = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final Pattern XML_KEY = Pattern.compile("<Key>(.*?)</Key>");
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // DynamoDB items by their partition key, in DynamoDB's JSON format.
+    private final Map<String, ObjectNode> items = new ConcurrentHashMap<>();
+    // S3 objects by bucket/key.
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private static final class StoredObject {
+        private final byte[] content;
+        private final String contentType;
+        private final String eTag;
+        private final Instant lastModified = Instant.now();
+
+        private StoredObject(final byte[] content, final String contentType) {
+            this.content = content;
+            this.contentType = contentType == null ? "binary/octet-stream" : contentType;
+            this.eTag = "\"" + md5Hex(content) + "\"";
+        }
+    }
+
+    AwsStandIn(final int port) throws IOException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(8, runnable -> {
+            final Thread thread = new Thread(runnable, THREAD_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            if (target != null) {
+                dynamoDb(exchange, target.substring(target.indexOf('.') + 1));
+            } else {
+                s3(exchange);
+            }
+        } catch (final RuntimeException e) {
+            send(exchange, 500, "text/plain", e.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void dynamoDb(final HttpExchange exchange, final String operation) throws IOException {
+        final JsonNode request = mapper.readTree(readAll(exchange.getRequestBody()));
+        final ObjectNode response = mapper.createObjectNode();
+        switch (operation) {
+            case "GetItem": {
+                final ObjectNode item = items.get(partitionKey(request.get("Key")));
+                if (item != null) {
+                    response.set("Item", item);
+                }
+                break;
+            }
+            case "PutItem":
+                put(request.get("Item"));
+                break;
+            case "UpdateItem": {
+                final ObjectNode item = items.computeIfAbsent(partitionKey(request.get("Key")),
+                                                              key -> request.get("Key").deepCopy());
+                response.set("Attributes", item);
+                break;
+            }
+            case "DeleteItem": {
+                final ObjectNode item = items.remove(partitionKey(request.get("Key")));
+                if (item != null && "ALL_OLD".equals(request.path("ReturnValues").asText())) {
+                    response.set("Attributes", item);
+                }
+                break;
+            }
+            case "TransactWriteItems":
+                for (final JsonNode transactItem : request.get("TransactItems")) {
+                    if (transactItem.has("Put")) {
+                        put(transactItem.get("Put").get("Item"));
+                    } else if (transactItem.has("Delete")) {
+                        items.remove(partitionKey(transactItem.get("Delete").get("Key")));
+                    } else if (transactItem.has("Update")) {
+                        final JsonNode key = transactItem.get("Update").get("Key");
+                        items.computeIfAbsent(partitionKey(key), id -> key.deepCopy());
+                    }
+                }
+                break;
+            case "BatchGetItem": {
+                final ObjectNode responses = response.putObject("Responses");
+                request.get("RequestItems").fields().forEachRemaining(table -> {
+                    final ArrayNode found = responses.putArray(table.getKey());
+                    for (final JsonNode key : table.getValue().get("Keys")) {
+                        final ObjectNode item = items.get(partitionKey(key));
+                        if (item != null) {
+                            found.add(item);
+                        }
+                    }
+                });
+                response.putObject("UnprocessedKeys");
+                break;
+            }
+            case "BatchWriteItem":
+                request.get("RequestItems").fields().forEachRemaining(table -> {
+                    for (final JsonNode write : table.getValue()) {
+                        if (write.has("PutRequest")) {
+                            put(write.get("PutRequest").get("Item"));
+                        } else {
+                            items.remove(partitionKey(write.get("DeleteRequest").get("Key")));
+                        }
+                    }
+                });
+                response.putObject("UnprocessedItems");
+                break;
+            case "Query":
+                query(request, response);
+                break;
+            case "Scan":
+                response.putArray("Items");
+                response.put("Count", 0);
+                response.put("ScannedCount", 0);
+                break;
+            default:
+                final ObjectNode error = mapper.createObjectNode();
+                error.put("__type", "com.amazon.coral.service#UnknownOperationException");
+                error.put("message", "The stand-in doesn't support " + operation);
+                send(exchange, 400, "application/x-amz-json-1.0", mapper.writeValueAsBytes(error));
+                return;
+        }
+        send(exchange, 200, "application/x-amz-json-1.0", mapper.writeValueAsBytes(response));
+    }
+
+    /**
+     * Returns the items whose UserID (or FileUUID, without an index) is one of the expression's values, in the order
+     * of the index's sort key.
+     */
+    private void query(final JsonNode request, final ObjectNode response) {
+        final Set<String> values = new HashSet<>();
+        request.path("ExpressionAttributeValues").forEach(value -> {
+            if (value.has("S")) {
+                values.add(value.get("S").asText());
+            }
+        });
+        final String index = request.path("IndexName").asText(null);
+        final String partitionAttribute = index == null ? "FileUUID" : "UserID";
+        final String sortAttribute = "FileNameIndex".equals(index) ? "FileName" : "CreatedAt";
+        Comparator<ObjectNode> order = Comparator.comparing(item -> item.path(sortAttribute).path("S").asText(""));
+        if (!request.path("ScanIndexForward").asBoolean(true)) {
+            order = order.reversed();
+        }
+        final List<ObjectNode> matches = items.values().stream()
+                .filter(item -> values.contains(item.path(partitionAttribute).path("S").asText(null)))
+                .sorted(order)
+                .limit(request.path("Limit").asInt(Integer.MAX_VALUE))
+                .collect(Collectors.toList());
+        if (!"COUNT".equals(request.path("Select").asText())) {
+            response.putArray("Items").addAll(matches);
+        }
+        response.put("Count", matches.size());
+        response.put("ScannedCount", matches.size());
+    }
+
+    private void put(final JsonNode item) {
+        items.put(partitionKey(item), (ObjectNode) item.deepCopy());
+    }
+
+    private static String partitionKey(final JsonNode itemOrKey) {
+        return itemOrKey.get("FileUUID").get("S").asText();
+    }
+
+    private void s3(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getRawPath();
+        final String query = exchange.getRequestURI().getRawQuery() == null ? "" : exchange.getRequestURI().getRawQuery();
+        final int keyStart = path.indexOf('/', 1);
+        final String bucket = keyStart < 0 ? path.substring(1) : path.substring(1, keyStart);
+        final String key = keyStart < 0 ? "" : decode(path.substring(keyStart + 1));
+        final String objectId = bucket + "/" + key;
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT": {
+                final byte[] content = readBody(exchange);
+                if (query.contains("partNumber=")) {
+                    uploads.computeIfAbsent(parameter(query, "uploadId"), id -> new ConcurrentSkipListMap<>())
+                            .put(Integer.parseInt(parameter(query, "partNumber")), content);
+                    exchange.getResponseHeaders().set("ETag", "\"" + md5Hex(content) + "\"");
+                } else {
+                    final StoredObject object = new StoredObject(content, exchange.getRequestHeaders().getFirst("Content-Type"));
+                    objects.put(objectId, object);
+                    exchange.getResponseHeaders().set("ETag", object.eTag);
+                }
+                send(exchange, 200, null, new byte[0]);
+                break;
+            }
+            case "GET":
+                if (key.isEmpty()) {
+                    send(exchange, 200, "application/xml", xml("<ListBucketResult><Name>" + bucket +
+                            "</Name><KeyCount>0</KeyCount><IsTruncated>false</IsTruncated></ListBucketResult>"));
+                } else {
+                    getObject(exchange, objectId);
+                }
+                break;
+            case "HEAD": {
+                final StoredObject object = objects.get(objectId);
+                if (object == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    objectHeaders(exchange, object);
+                    exchange.getResponseHeaders().set("Content-Length", Integer.toString(object.content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                break;
+            }
+            case "DELETE":
+                if (query.contains("uploadId=")) {
+                    uploads.remove(parameter(query, "uploadId"));
+                } else {
+                    objects.remove(objectId);
+                }
+                exchange.sendResponseHeaders(204, -1);
+                break;
+            case "POST":
+                post(exchange, query, bucket, key, objectId);
+                break;
+            default:
+                send(exchange, 405, null, new byte[0]);
+        }
+    }
+
+    private void post(final HttpExchange exchange,
+                      final String query,
+                      final String bucket,
+                      final String key,
+                      final String objectId) throws IOException {
+        final byte[] body = readAll(exchange.getRequestBody());
+        if (query.startsWith("delete")) {
+            final Matcher keys = XML_KEY.matcher(new String(body, StandardCharsets.UTF_8));
+            while (keys.find()) {
+                objects.remove(bucket + "/" + keys.group(1));
+            }
+            send(exchange, 200, "application/xml", xml("<DeleteResult></DeleteResult>"));
+        } else if (query.startsWith("uploads")) {
+            final String uploadId = UUID.randomUUID().toString();
+            uploads.put(uploadId, new ConcurrentSkipListMap<>());
+            send(exchange, 200, "application/xml", xml("<InitiateMultipartUploadResult><Bucket>" + bucket +
+                    "</Bucket><Key>" + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>"));
+        } else if (query.contains("uploadId=")) {
+            final SortedMap<Integer, byte[]> parts = uploads.remove(parameter(query, "uploadId"));
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (final byte[] part : parts.values()) {
+                content.write(part);
+            }
+            final StoredObject object = new StoredObject(content.toByteArray(), null);
+            objects.put(objectId, object);
+            send(exchange, 200, "application/xml", xml("<CompleteMultipartUploadResult><Bucket>" + bucket +
+                    "</Bucket><Key>" + key + "</Key><ETag>" + object.eTag + "</ETag></CompleteMultipartUploadResult>"));
+        } else {
+            send(exchange, 405, null, new byte[0]);
+        }
+    }
+
+    private void getObject(final HttpExchange exchange, final String objectId) throws IOException {
+        final StoredObject object = objects.get(objectId);
+        if (object == null) {
+            send(exchange, 404, "application/xml", xml("<Error><Code>NoSuchKey</Code><Message>The specified key does " +
+                    "not exist.</Message><RequestId>stand-in</RequestId></Error>"));
+            return;
+        }
+        objectHeaders(exchange, object);
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null || !range.startsWith("bytes=")) {
+            send(exchange, 200, null, object.content);
+            return;
+        }
+        final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        final int last = object.content.length - 1;
+        final int start = Integer.parseInt(bounds[0]);
+        final int end = bounds[1].isEmpty() ? last : Math.min(last, Integer.parseInt(bounds[1]));
+        final byte[] slice = new byte[Math.max(0, end - start + 1)];
+        System.arraycopy(object.content, start, slice, 0, slice.length);
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.content.length);
+        send(exchange, 206, null, slice);
+    }
+
+    private static void objectHeaders(final HttpExchange exchange, final StoredObject object) {
+        exchange.getResponseHeaders().set("ETag", object.eTag);
+        exchange.getResponseHeaders().set("Content-Type", object.contentType);
+        exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED.format(object.lastModified));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+    }
+
+    /**
+     * Reads a request body, decoding the aws-chunked encoding the SDK signs streamed uploads with over HTTP.
+     */
+    private static byte[] readBody(final HttpExchange exchange) throws IOException {
+        final byte[] body = readAll(exchange.getRequestBody());
+        final String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+            return body;
+        }
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < body.length) {
+            int lineEnd = position;
+            while (body[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            final String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            final int size = Integer.parseInt(header.split(";")[0], 16);
+            if (size == 0) {
+                break;
+            }
+            content.write(body, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return content.toByteArray();
+    }
+
+    private static byte[] readAll(final InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static void send(final HttpExchange exchange,
+                             final int status,
+                             final String contentType,
+                             final byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.getResponseHeaders().set("x-amz-request-id", "stand-in");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static byte[] xml(final String document) {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + document).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String parameter(final String query, final String name) {
+        for (final String pair : query.split("&")) {
+            final int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return decode(pair.substring(separator + 1));
+            }
+        }
+        return null;
+    }
+
+    private static String decode(final String value) {
+        try {
+            // Only percent-encoding is used in paths, a '+' is a plus.
+            return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String md5Hex(final byte[] content) {
+        try {
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
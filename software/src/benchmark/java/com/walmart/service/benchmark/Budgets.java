@@ -0,0 +1,77 @@
+package com.walmart.service.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The p99 latency and allocation budgets of the routes, kept in a properties file as {@code <route>.p99Micros} and
+ * {@code <route>.bytesPerRequest}. Routes without a budget aren't checked.
+ */
+final class Budgets {
+
+    // Recorded budgets leave room for noise, latency more so since it depends on the machine.
+    private static final double LATENCY_HEADROOM = 2.0;
+    private static final double ALLOCATION_HEADROOM = 1.2;
+    private static final String HEADER = "# Budgets of the handler benchmark, see the handlerBenchmark task in build.gradle.\n" +
+            "# Recorded with -PrecordBudgets, which sets them to the measured p99 latency x" + LATENCY_HEADROOM +
+            " and bytes per request x" + ALLOCATION_HEADROOM + ".\n" +
+            "# Routes without a budget are measured and reported, but not checked.\n";
+    private final Properties budgets = new Properties();
+
+    static Budgets load(final Path file) throws IOException {
+        final Budgets loaded = new Budgets();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                loaded.budgets.load(reader);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return A description of every budget the results go over, and of every unexpected status.
+     */
+    List<String> violations(final List<RouteResult> results) {
+        final List<String> violations = new ArrayList<>();
+        for (final RouteResult result : results) {
+            if (result.getUnexpectedStatuses() > 0) {
+                violations.add(String.format("%s returned %d unexpected statuses, the last was %d", result.getRoute(),
+                                             result.getUnexpectedStatuses(), result.getLastUnexpectedStatus()));
+            }
+            final String p99Micros = budgets.getProperty(result.getRoute() + ".p99Micros");
+            if (p99Micros != null && result.getP99Micros() > Long.parseLong(p99Micros)) {
+                violations.add(String.format("%s took %d us at p99, over its budget of %s us", result.getRoute(),
+                                             result.getP99Micros(), p99Micros));
+            }
+            final String bytesPerRequest = budgets.getProperty(result.getRoute() + ".bytesPerRequest");
+            if (bytesPerRequest != null && result.getBytesPerRequest() > Long.parseLong(bytesPerRequest)) {
+                violations.add(String.format("%s allocated %d bytes per request, over its budget of %s bytes",
+                                             result.getRoute(), result.getBytesPerRequest(), bytesPerRequest));
+            }
+            if (p99Micros == null && bytesPerRequest == null) {
+                System.err.println("No budget recorded for " + result.getRoute());
+            }
+        }
+        return violations;
+    }
+
+    static void record(final Path file, final List<RouteResult> results) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            for (final RouteResult result : results) {
+                writer.write(String.format("%s.p99Micros=%d%n", result.getRoute(),
+                                           (long) Math.ceil(result.getP99Micros() * LATENCY_HEADROOM)));
+                writer.write(String.format("%s.bytesPerRequest=%d%n", result.getRoute(),
+                                           (long) Math.ceil(result.getBytesPerRequest() * ALLOCATION_HEADROOM)));
+            }
+        }
+    }
+}
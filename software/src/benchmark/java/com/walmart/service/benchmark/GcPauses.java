@@ -0,0 +1,43 @@
+package com.walmart.service.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the duration of every garbage collection while the benchmark runs.
+ */
+final class GcPauses {
+
+    private final List<Long> pauseMillis = new CopyOnWriteArrayList<>();
+
+    GcPauses() {
+        final NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                pauseMillis.add(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                                        .getGcInfo()
+                                        .getDuration());
+            }
+        };
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+        }
+    }
+
+    void reset() {
+        pauseMillis.clear();
+    }
+
+    /**
+     * @return The durations of the collections since the last reset.
+     */
+    List<Long> pauses() {
+        return pauseMillis;
+    }
+}
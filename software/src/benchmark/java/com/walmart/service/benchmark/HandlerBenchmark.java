@@ -0,0 +1,227 @@
+package com.walmart.service.benchmark;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmart.service.StreamLambdaHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Calls {@link StreamLambdaHandler#handleRequest} in a loop with synthetic API Gateway proxy events for each route,
+ * against the in-memory {@link AwsStandIn}. Per route it measures the latency percentiles, the bytes allocated per
+ * request and the GC pauses, and fails when a route goes over its budget, see {@link Budgets}.
+ * <p>
+ * Arguments: the budgets file, the report file and whether to record the results as the new budgets. The number of
+ * iterations is set with the benchmark.warmup and benchmark.iterations system properties.
+ */
+public final class HandlerBenchmark {
+
+    private static final String USER_ID = "bench";
+    private static final String FILE_NAME = "bench.pdf";
+    private static final String BOUNDARY = "bench-boundary";
+    private static final byte[] PDF = "%PDF-1.4\n% handler benchmark\n%%EOF\n".getBytes(StandardCharsets.US_ASCII);
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StreamLambdaHandler handler;
+    private final MockLambdaContext lambdaContext = new MockLambdaContext();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final GcPauses gcPauses = new GcPauses();
+
+    /**
+     * Builds the event of an iteration. Anything it does, such as uploading the file a delete removes, isn't measured.
+     */
+    @FunctionalInterface
+    private interface EventFactory {
+        AwsProxyRequestBuilder create(int iteration) throws IOException;
+    }
+
+    private static final class Route {
+        private final String name;
+        private final int expectedStatus;
+        private final EventFactory events;
+
+        private Route(final String name, final int expectedStatus, final EventFactory events) {
+            this.name = name;
+            this.expectedStatus = expectedStatus;
+            this.events = events;
+        }
+    }
+
+    private HandlerBenchmark(final StreamLambdaHandler handler) {
+        this.handler = handler;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Path budgetsFile = Paths.get(args[0]);
+        final Path reportFile = Paths.get(args[1]);
+        final boolean record = Boolean.parseBoolean(args[2]);
+        final int warmup = Integer.getInteger("benchmark.warmup", 200);
+        final int iterations = Integer.getInteger("benchmark.iterations", 1000);
+
+        final List<RouteResult> results = new ArrayList<>();
+        try (AwsStandIn ignored = new AwsStandIn(URI.create(System.getenv("LOCALSTACK_ENDPOINT")).getPort())) {
+            final HandlerBenchmark benchmark = new HandlerBenchmark(new StreamLambdaHandler());
+            for (final Route route : benchmark.routes()) {
+                results.add(benchmark.measure(route, warmup, iterations));
+            }
+        }
+
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+            writer.println(RouteResult.CSV_HEADER);
+            results.forEach(result -> writer.println(result.toCsv()));
+        }
+        // The service logs to stdout, the summary goes to stderr.
+        System.err.println(RouteResult.CSV_HEADER);
+        results.forEach(result -> System.err.println(result.toCsv()));
+
+        final List<String> violations = Budgets.load(budgetsFile).violations(results);
+        if (record && violations.stream().noneMatch(violation -> violation.contains("unexpected statuses"))) {
+            Budgets.record(budgetsFile, results);
+            System.err.println("Recorded the budgets in " + budgetsFile);
+            System.exit(0);
+        }
+        violations.forEach(violation -> System.err.println("Over budget: " + violation));
+        // The AWS clients' and the service's threads would keep the JVM alive.
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    private List<Route> routes() throws IOException {
+        final String fileId = upload(FILE_NAME);
+        return Arrays.asList(
+                new Route("getFileByName", 200,
+                          iteration -> new AwsProxyRequestBuilder("/getFile/" + USER_ID + "/" + FILE_NAME, "GET")),
+                new Route("getFileById", 200,
+                          iteration -> new AwsProxyRequestBuilder("/getFile/" + fileId, "GET")),
+                new Route("headFileByName", 200,
+                          iteration -> new AwsProxyRequestBuilder("/getFile/" + USER_ID + "/" + FILE_NAME, "HEAD")),
+                new Route("listFiles", 200,
+                          iteration -> new AwsProxyRequestBuilder("/listFiles/" + USER_ID, "POST").json().body("{}")),
+                new Route("uploadFile", 200,
+                          iteration -> uploadEvent("bench-upload.pdf")),
+                new Route("deleteFile", 200,
+                          iteration -> new AwsProxyRequestBuilder("/deleteFile/" + USER_ID + "/" +
+                                                                          upload("bench-delete-" + iteration + ".pdf"), "DELETE")));
+    }
+
+    private RouteResult measure(final Route route, final int warmup, final int iterations) throws IOException {
+        for (int iteration = 0; iteration < warmup; iteration++) {
+            invoke(route.events.create(iteration).buildStream());
+        }
+
+        // The io pool's threads exist by now, the stand-in's allocations aren't the handler's.
+        final long[] threadIds = handlerThreadIds();
+        final long measurementBytes = measurementOverhead(threadIds);
+        final long[] latencyNanos = new long[iterations];
+        long allocatedBytes = 0;
+        int unexpectedStatuses = 0;
+        int lastUnexpectedStatus = 0;
+        gcPauses.reset();
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            final InputStream event = route.events.create(warmup + iteration).buildStream();
+            final long bytesBefore = allocatedBytes(threadIds);
+            final long start = System.nanoTime();
+            final ByteArrayOutputStream output = invoke(event);
+            latencyNanos[iteration] = System.nanoTime() - start;
+            allocatedBytes += allocatedBytes(threadIds) - bytesBefore - measurementBytes;
+
+            final int status = mapper.readTree(output.toByteArray()).path("statusCode").asInt();
+            if (status != route.expectedStatus) {
+                unexpectedStatuses++;
+                lastUnexpectedStatus = status;
+            }
+        }
+
+        final List<Long> pauses = new ArrayList<>(gcPauses.pauses());
+        Arrays.sort(latencyNanos);
+        return new RouteResult(route.name, iterations, unexpectedStatuses, lastUnexpectedStatus,
+                               percentileMicros(latencyNanos, 50), percentileMicros(latencyNanos, 90),
+                               percentileMicros(latencyNanos, 99), latencyNanos[iterations - 1] / 1000,
+                               Math.max(0, allocatedBytes / iterations), pauses.size(),
+                               pauses.stream().mapToLong(Long::longValue).sum(),
+                               pauses.isEmpty() ? 0 : Collections.max(pauses));
+    }
+
+    private ByteArrayOutputStream invoke(final InputStream event) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(event, output, lambdaContext);
+        return output;
+    }
+
+    /**
+     * Uploads a file through the handler, as the seed of the read routes and before every delete.
+     *
+     * @return The file's ID.
+     */
+    private String upload(final String fileName) throws IOException {
+        final JsonNode response = mapper.readTree(invoke(uploadEvent(fileName).buildStream()).toByteArray());
+        final JsonNode files = mapper.readTree(response.path("body").asText()).path("successfulFiles");
+        if (files.size() == 0) {
+            throw new IllegalStateException("Was unable to upload " + fileName + ": " + response);
+        }
+        return files.get(0).path("fileUUID").asText();
+    }
+
+    private static AwsProxyRequestBuilder uploadEvent(final String fileName) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final String partHeader = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"data\"; filename=\"" + fileName + "\"\r\n" +
+                "Content-Type: application/pdf\r\n\r\n";
+        body.write(partHeader.getBytes(StandardCharsets.US_ASCII), 0, partHeader.length());
+        body.write(PDF, 0, PDF.length);
+        final byte[] end = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        body.write(end, 0, end.length);
+        return new AwsProxyRequestBuilder("/uploadFile/" + USER_ID, "POST")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .binaryBody(new ByteArrayInputStream(body.toByteArray()));
+    }
+
+    private long[] handlerThreadIds() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> !thread.getName().startsWith(AwsStandIn.THREAD_PREFIX))
+                .mapToLong(Thread::getId)
+                .toArray();
+    }
+
+    private long allocatedBytes(final long[] threadIds) {
+        long total = 0;
+        for (final long bytes : threads.getThreadAllocatedBytes(threadIds)) {
+            // -1 for threads that ended since.
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * @return What reading the allocation counters allocates itself, which is subtracted from every measurement.
+     */
+    private long measurementOverhead(final long[] threadIds) {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            final long before = allocatedBytes(threadIds);
+            overhead = Math.min(overhead, allocatedBytes(threadIds) - before);
+        }
+        return overhead;
+    }
+
+    private static long percentileMicros(final long[] sortedNanos, final int percentile) {
+        final int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000;
+    }
+}
@@ -0,0 +1,36 @@
+package com.walmart.service.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * What one route's measured invocations cost.
+ */
+@Getter
+@AllArgsConstructor
+final class RouteResult {
+
+    static final String CSV_HEADER = "route,iterations,unexpectedStatuses,p50Micros,p90Micros,p99Micros,maxMicros," +
+            "bytesPerRequest,gcCount,gcTotalMillis,gcMaxPauseMillis";
+
+    private final String route;
+    private final int iterations;
+    // Invocations that didn't return the route's expected status, with the last such status.
+    private final int unexpectedStatuses;
+    private final int lastUnexpectedStatus;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+    private final long bytesPerRequest;
+    private final int gcCount;
+    private final long gcTotalMillis;
+    private final long gcMaxPauseMillis;
+
+    String toCsv() {
+        return String.join(",", route, Integer.toString(iterations), Integer.toString(unexpectedStatuses),
+                           Long.toString(p50Micros), Long.toString(p90Micros), Long.toString(p99Micros),
+                           Long.toString(maxMicros), Long.toString(bytesPerRequest), Integer.toString(gcCount),
+                           Long.toString(gcTotalMillis), Long.toString(gcMaxPauseMillis));
+    }
+}
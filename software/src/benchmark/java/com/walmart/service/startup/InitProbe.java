@@ -0,0 +1,35 @@
+package com.walmart.service.startup;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.walmart.service.StreamLambdaHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Run in a fresh JVM by {@link StartupBenchmark}. Prints how long after the JVM started the handler was initialized,
+ * as the Lambda init phase would, and how long the first request took. The request is to a path no route serves, so
+ * that it measures the dispatch of the Spring container and of the functional router alike, without AWS calls.
+ */
+public final class InitProbe {
+
+    static final String MARKER = "STARTUP";
+
+    private InitProbe() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final StreamLambdaHandler handler = new StreamLambdaHandler();
+        final long initMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        final long start = System.nanoTime();
+        handler.handleRequest(new AwsProxyRequestBuilder("/startupProbe", "GET").buildStream(),
+                              new ByteArrayOutputStream(), new MockLambdaContext());
+        final long firstRequestMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println(MARKER + " " + initMillis + " " + firstRequestMillis);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.walmart.service.startup;
+
+import com.walmart.service.routing.FunctionalRouter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Starts {@link InitProbe} in cold JVMs, without and with the CDS archive, and with the functional router, and appends
+ * the init times to a CSV file so that they can be compared from build to build.
+ * <p>
+ * Arguments: the classpath of the probe, the archive, the history file, the number of runs per mode and the version.
+ */
+public final class StartupBenchmark {
+
+    // The options GatewayStack sets, apart from the archive.
+    private static final List<String> JVM_OPTIONS = Arrays.asList("-XX:+TieredCompilation", "-XX:TieredStopAtLevel=1");
+    private static final String HEADER = "timestamp,version,mode,runs,jarBytes,initP50Millis,initP90Millis,firstRequestP50Millis";
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final String classpath = args[0];
+        final File archive = new File(args[1]);
+        final File history = new File(args[2]);
+        final int runs = Integer.parseInt(args[3]);
+        final String version = args[4];
+        final long jarBytes = new File(classpath.split(File.pathSeparator)[0]).length();
+        final String timestamp = Instant.now().toString();
+
+        final List<String> rows = new ArrayList<>();
+        rows.add(measure("noArchive", Collections.<String>emptyList(), null, classpath, runs, timestamp, version, jarBytes));
+        rows.add(measure("functionalRouter", Collections.<String>emptyList(), FunctionalRouter.NAME, classpath, runs,
+                         timestamp, version, jarBytes));
+        if (archive.isFile()) {
+            rows.add(measure("archive", Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getPath()),
+                             null, classpath, runs, timestamp, version, jarBytes));
+        } else {
+            System.out.println("No CDS archive at " + archive + ", only measuring without it");
+        }
+
+        final boolean newFile = !history.isFile();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(history, true))) {
+            if (newFile) {
+                writer.println(HEADER);
+            }
+            rows.forEach(writer::println);
+        }
+        System.out.println(HEADER);
+        rows.forEach(System.out::println);
+    }
+
+    /**
+     * @param router Nullable, the LAMBDA_ROUTER of the probes.
+     */
+    private static String measure(final String mode,
+                                  final List<String> archiveOptions,
+                                  final String router,
+                                  final String classpath,
+                                  final int runs,
+                                  final String timestamp,
+                                  final String version,
+                                  final long jarBytes) throws IOException, InterruptedException {
+        final List<Long> initMillis = new ArrayList<>();
+        final List<Long> firstRequestMillis = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            final long[] result = probe(archiveOptions, router, classpath);
+            initMillis.add(result[0]);
+            firstRequestMillis.add(result[1]);
+        }
+        return String.join(",", timestamp, version, mode, Integer.toString(runs), Long.toString(jarBytes),
+                           Long.toString(percentile(initMillis, 50)), Long.toString(percentile(initMillis, 90)),
+                           Long.toString(percentile(firstRequestMillis, 50)));
+    }
+
+    private static long[] probe(final List<String> archiveOptions, final String router, final String classpath)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(JVM_OPTIONS);
+        command.addAll(archiveOptions);
+        command.addAll(Arrays.asList("-cp", classpath, InitProbe.class.getName()));
+        final ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (router != null) {
+            processBuilder.environment().put(FunctionalRouter.ENVIRONMENT_KEY, router);
+        }
+        final Process process = processBuilder.start();
+
+        long[] result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(InitProbe.MARKER + " ")) {
+                    final String[] parts = line.split(" ");
+                    result = new long[]{Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("The init probe failed: " + command);
+        }
+        return result;
+    }
+
+    private static long percentile(final List<Long> values, final int percentile) {
+        final List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
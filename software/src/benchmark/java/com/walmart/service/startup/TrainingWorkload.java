@@ -0,0 +1,74 @@
+package com.walmart.service.startup;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.walmart.service.StreamLambdaHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sends a round of requests to every route through {@link StreamLambdaHandler}, so that the classes a function loads
+ * while serving them end up in the CDS archive (see the cdsClassList task). The AWS calls fail, the requests only
+ * have to get far enough to load their classes.
+ */
+public final class TrainingWorkload {
+
+    private static final String USER_ID = "training";
+    private static final String BOUNDARY = "training-boundary";
+    private static final int ROUNDS = 2;
+
+    private TrainingWorkload() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final StreamLambdaHandler handler = new StreamLambdaHandler();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (final AwsProxyRequestBuilder request : requests()) {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                handler.handleRequest(request.buildStream(), output, new MockLambdaContext());
+            }
+        }
+        System.out.println("Finished the training workload");
+        // Daemon threads and the AWS clients' connection pools would keep the JVM alive.
+        System.exit(0);
+    }
+
+    static List<AwsProxyRequestBuilder> requests() {
+        return Arrays.asList(
+                new AwsProxyRequestBuilder("/", "GET"),
+                new AwsProxyRequestBuilder("/metrics", "GET"),
+                multipart("/uploadFile/" + USER_ID),
+                multipart("/uploadFile/" + USER_ID + "/stream"),
+                new AwsProxyRequestBuilder("/getFile/" + USER_ID + "/training.txt", "GET"),
+                new AwsProxyRequestBuilder("/getFile/" + USER_ID + "/training.txt", "HEAD"),
+                new AwsProxyRequestBuilder("/getFile/training-id", "GET"),
+                json("/getFiles/" + USER_ID, "POST"),
+                json("/files/" + USER_ID + "/metadata", "POST"),
+                json("/listFiles/" + USER_ID, "POST"),
+                json("/listFiles/" + USER_ID + "/batch", "POST"),
+                new AwsProxyRequestBuilder("/searchFiles/" + USER_ID, "GET").queryString("q", "training"),
+                new AwsProxyRequestBuilder("/stats/" + USER_ID, "GET"),
+                new AwsProxyRequestBuilder("/deleteFile/" + USER_ID + "/training-id", "DELETE"),
+                json("/deleteFiles/" + USER_ID, "POST"),
+                json("/deleteJobs/" + USER_ID, "POST"),
+                new AwsProxyRequestBuilder("/deleteJobs/" + USER_ID + "/training-job", "GET"));
+    }
+
+    private static AwsProxyRequestBuilder json(final String path, final String method) {
+        return new AwsProxyRequestBuilder(path, method).json().body("{}");
+    }
+
+    private static AwsProxyRequestBuilder multipart(final String path) {
+        final String body = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"data\"; filename=\"training.txt\"\r\n" +
+                "Content-Type: text/plain\r\n\r\n" +
+                "training\r\n" +
+                "--" + BOUNDARY + "--\r\n";
+        return new AwsProxyRequestBuilder(path, "POST")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .body(body);
+    }
+}
@@ -1,17 +1,37 @@
 package com.walmart.service;
 
+import com.walmart.service.function.UploadFile;
+import com.walmart.service.resilience.ResilienceInterceptor;
+import com.walmart.service.routing.FunctionalRouter;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroupExcludeFilter;
+import com.walmart.service.startup.FirstSdkCallInterceptor;
+import com.walmart.service.startup.RouteInterceptor;
+import com.walmart.service.tracing.TracingInterceptor;
+import io.opentelemetry.context.Context;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.SpringApplication;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.web.multipart.commons.CommonsMultipartResolver;
 import org.springframework.web.servlet.HandlerAdapter;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketExceptionCostFunction;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketRetryCondition;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -20,6 +40,10 @@ import software.amazon.awssdk.services.s3.S3Configuration;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootApplication
 // Using @Import instead of @ComponentScan speeds up cold starts
@@ -42,6 +66,30 @@ public class LambdaApplication {
         return new RequestMappingHandlerAdapter();
     }
 
+    /*
+     * Functions that serve a single route group start lazily, this keeps the group's controllers eager. The MVC
+     * infrastructure isn't used by the functional router, and can't be created without a servlet context.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter routeGroupExcludeFilter(final Environment environment) {
+        return new RouteGroupExcludeFilter(RouteGroup.active(environment),
+                                           !environment.acceptsProfiles(Profiles.of(FunctionalRouter.PROFILE)));
+    }
+
+    /*
+     * Names the route of every request, for the cold start record of its first request (see ColdStart).
+     */
+    @Bean
+    public WebMvcConfigurer routeInterceptorConfigurer() {
+        return new WebMvcConfigurer() {
+
+            @Override
+            public void addInterceptors(final InterceptorRegistry registry) {
+                registry.addInterceptor(new RouteInterceptor());
+            }
+        };
+    }
+
     /*
      * optimization - avoids creating default exception resolvers; not required as the serverless container handles
      * all exceptions
@@ -62,9 +110,49 @@ public class LambdaApplication {
         };
     }
 
+    /*
+     * Standard retries with jittered backoff and a retry budget, client side rate limits and circuit breakers. The
+     * SDK version in use has no adaptive retry mode, the rate limits of the ResilienceInterceptor's token buckets
+     * take its place.
+     * Shared by the AWS clients below, which also trace their calls and time their first call of each operation for
+     * the cold start record.
+     */
+    @Bean
+    @Autowired
+    public ClientOverrideConfiguration clientOverrideConfiguration(final LambdaConfigurationModule configurationModule,
+                                                                   final ResilienceInterceptor resilienceInterceptor,
+                                                                   final TracingInterceptor tracingInterceptor) {
+        final Duration maxBackoff = Duration.ofMillis(configurationModule.getRetryMaxBackoffMillis());
+        final RetryPolicy retryPolicy = RetryPolicy.builder(RetryMode.STANDARD)
+                .numRetries(configurationModule.getRetryMaxRetries())
+                .backoffStrategy(FullJitterBackoffStrategy.builder()
+                                         .baseDelay(Duration.ofMillis(configurationModule.getRetryBaseDelayMillis()))
+                                         .maxBackoffTime(maxBackoff)
+                                         .build())
+                .throttlingBackoffStrategy(FullJitterBackoffStrategy.builder()
+                                                   .baseDelay(Duration.ofMillis(configurationModule.getRetryThrottlingBaseDelayMillis()))
+                                                   .maxBackoffTime(maxBackoff)
+                                                   .build())
+                .retryCapacityCondition(TokenBucketRetryCondition.builder()
+                                                .tokenBucketSize(configurationModule.getRetryBudget())
+                                                .exceptionCostFunction(TokenBucketExceptionCostFunction.builder()
+                                                                               .throttlingExceptionCost(5)
+                                                                               .defaultExceptionCost(5)
+                                                                               .build())
+                                                .build())
+                .build();
+        return ClientOverrideConfiguration.builder()
+                .retryPolicy(retryPolicy)
+                .addExecutionInterceptor(tracingInterceptor)
+                .addExecutionInterceptor(resilienceInterceptor)
+                .addExecutionInterceptor(new FirstSdkCallInterceptor())
+                .build();
+    }
+
     @Bean
     @Autowired
-    public S3Client getS3Client(final LambdaConfigurationModule configurationModule) {
+    public S3Client getS3Client(final LambdaConfigurationModule configurationModule,
+                                final ClientOverrideConfiguration clientOverrideConfiguration) {
         if (configurationModule.getServiceEnvironment().equals("local")) {
             return S3Client.builder()
                     .endpointOverride(URI.create(configurationModule.getLocalstackEndpoint()))
@@ -72,33 +160,68 @@ public class LambdaApplication {
                     .serviceConfiguration(S3Configuration.builder()
                                                   .pathStyleAccessEnabled(true)
                                                   .build())
+                    .overrideConfiguration(clientOverrideConfiguration)
                     .build();
         } else {
-            return S3Client.create();
+            return S3Client.builder()
+                    .overrideConfiguration(clientOverrideConfiguration)
+                    .build();
         }
     }
 
     @Bean
     @Autowired
-    public DynamoDbClient getDynamoDbClient(final LambdaConfigurationModule configurationModule) {
+    public DynamoDbClient getDynamoDbClient(final LambdaConfigurationModule configurationModule,
+                                            final ClientOverrideConfiguration clientOverrideConfiguration) {
         if (configurationModule.getServiceEnvironment().equals("local")) {
             return DynamoDbClient.builder()
                     .endpointOverride(URI.create(configurationModule.getLocalstackEndpoint()))
                     .region(Region.US_EAST_1)
+                    .overrideConfiguration(clientOverrideConfiguration)
                     .build();
         } else {
-            return DynamoDbClient.create();
+            return DynamoDbClient.builder()
+                    .overrideConfiguration(clientOverrideConfiguration)
+                    .build();
         }
     }
 
+    /*
+     * Shared pool for AWS calls that are made in parallel (e.g. prefetching S3 objects). The threads are daemons so
+     * they never keep the JVM alive. Tasks run in the trace context they were submitted from, so their AWS calls are
+     * traced as part of the request.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @Autowired
+    public ExecutorService ioExecutor(final LambdaConfigurationModule configurationModule) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Context.taskWrapping(Executors.newFixedThreadPool(configurationModule.getIoThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
     @Bean
     public CommonsMultipartResolver multipartResolver() {
-        final CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver();
+        final CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver() {
+            @Override
+            public boolean isMultipart(final HttpServletRequest request) {
+                // Streaming uploads read their parts themselves, as the body arrives.
+                return !UploadFile.isStreamingUpload(request) && super.isMultipart(request);
+            }
+        };
         multipartResolver.setMaxUploadSize(-1);
         return multipartResolver;
     }
 
+    /*
+     * Runs the service as a long-lived server, where requests compete for the server's threads and are limited by
+     * ConcurrencyLimiter. A Lambda only ever has one request in flight.
+     */
     public static void main(String[] args) {
-        SpringApplication.run(LambdaApplication.class, args);
+        new SpringApplicationBuilder(LambdaApplication.class)
+                .properties("limiting.enabled=true")
+                .run(args);
     }
 }
@@ -4,6 +4,8 @@ import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @Getter
 public class LambdaConfigurationModule {
@@ -16,6 +18,227 @@ public class LambdaConfigurationModule {
     @Value("${service.environment}")
     private String serviceEnvironment;
 
+    // The longest edge (in pixels) of every image derivative that can be requested through GetFile.
+    @Value("${images.derivativeSizes:128,512}")
+    private List<Integer> derivativeSizes;
+
+    // When false, derivatives are only created the first time they are requested.
+    @Value("${images.generateOnUpload:false}")
+    private boolean generateDerivativesOnUpload;
+
+    // Size of the thread pool used to make AWS calls in parallel.
+    @Value("${service.ioThreads:16}")
+    private int ioThreads;
+
+    // How many S3 objects are fetched ahead of the entry being written when streaming a ZIP bundle.
+    @Value("${zip.prefetchWindow:4}")
+    private int zipPrefetchWindow;
+
+    // The maximum number of file IDs that can be looked up in one bulk metadata request.
+    @Value("${metadata.maxFileIds:5000}")
+    private int metadataMaxFileIds;
+
+    // Retries made by the AWS clients on top of the first attempt, throttles included.
+    @Value("${aws.retry.maxRetries:5}")
+    private int retryMaxRetries;
+
+    @Value("${aws.retry.baseDelayMillis:50}")
+    private long retryBaseDelayMillis;
+
+    // Throttles back off from a larger base delay than other retryable errors.
+    @Value("${aws.retry.throttlingBaseDelayMillis:250}")
+    private long retryThrottlingBaseDelayMillis;
+
+    @Value("${aws.retry.maxBackoffMillis:5000}")
+    private long retryMaxBackoffMillis;
+
+    // Capacity shared by the retries of a client. Every retry costs 5, so retries stop once most calls fail.
+    @Value("${aws.retry.budget:500}")
+    private int retryBudget;
+
+    // Client side rate limits, per table and index for DynamoDB and per bucket and user prefix for S3. 0 = unlimited.
+    @Value("${aws.rateLimit.dynamoDbPerSecond:0}")
+    private double dynamoDbPermitsPerSecond;
+
+    @Value("${aws.rateLimit.s3PerSecond:0}")
+    private double s3PermitsPerSecond;
+
+    // Rates for specific limiter keys, e.g. dynamodb:table/FileNameIndex=50,s3:bucket/userId=100
+    @Value("${aws.rateLimit.overrides:}")
+    private String rateLimitOverrides;
+
+    @Value("${aws.rateLimit.burstSeconds:1}")
+    private double rateLimitBurstSeconds;
+
+    // How long a call waits on the rate limiter before it's rejected.
+    @Value("${aws.rateLimit.maxWaitMillis:1000}")
+    private long rateLimitMaxWaitMillis;
+
+    // Consecutive throttles or server errors that open a service's circuit breaker. 0 disables the breakers.
+    @Value("${aws.circuit.failureThreshold:20}")
+    private int circuitFailureThreshold;
+
+    @Value("${aws.circuit.openMillis:5000}")
+    private long circuitOpenMillis;
+
+    // Users whose index entries are spread over several GSI partitions, with their shard count, e.g. user=8,other=4
+    @Value("${ddb.userShards:}")
+    private String userShards;
+
+    // Cost of a DDB round trip for the ListFiles planner, in index entries read.
+    @Value("${planner.roundTripCost:100}")
+    private long plannerRoundTripCost;
+
+    // How long the per-user statistics used by the planner are cached.
+    @Value("${planner.statsCacheSeconds:60}")
+    private long statsCacheSeconds;
+
+    // The maximum number of name prefixes or date ranges in one batch listing request.
+    @Value("${listing.maxBranches:10}")
+    private int listingMaxBranches;
+
+    // Total estimated size of the search indexes kept in memory.
+    @Value("${search.cacheBytes:67108864}")
+    private long searchCacheBytes;
+
+    // How long a search index is used before it's reloaded from S3, to pick up the changes of other instances.
+    @Value("${search.cacheSeconds:300}")
+    private long searchCacheSeconds;
+
+    // The maximum number of hits returned by one search.
+    @Value("${search.maxResults:100}")
+    private int searchMaxResults;
+
+    // Whether users with enough files are listed from a manifest in S3, see com.walmart.service.manifest.ManifestStore.
+    @Value("${manifest.enabled:true}")
+    private boolean manifestEnabled;
+
+    // The number of files a user needs before a manifest is kept for them.
+    @Value("${manifest.minFiles:1000}")
+    private long manifestMinFiles;
+
+    // The number of deltas after which they're merged into a new manifest.
+    @Value("${manifest.maxDeltas:32}")
+    private int manifestMaxDeltas;
+
+    // Total estimated size of the manifests kept in memory.
+    @Value("${manifest.cacheBytes:134217728}")
+    private long manifestCacheBytes;
+
+    // The largest S3 object that's shared by concurrent GetFile requests, see com.walmart.service.coalescing.FileFetches.
+    @Value("${coalescing.maxObjectBytes:8388608}")
+    private long coalescingMaxObjectBytes;
+
+    // Total size of the S3 objects buffered for concurrent GetFile requests at once.
+    @Value("${coalescing.maxBufferedBytes:67108864}")
+    private long coalescingMaxBufferedBytes;
+
+    // The largest S3 object kept by com.walmart.service.cache.ObjectCache.
+    @Value("${cache.maxObjectBytes:1048576}")
+    private long cacheMaxObjectBytes;
+
+    // Total size of the objects cached in direct buffers.
+    @Value("${cache.memoryBytes:67108864}")
+    private long cacheMemoryBytes;
+
+    // Total size of the objects cached on disk, 0 to only cache in memory.
+    @Value("${cache.diskBytes:268435456}")
+    private long cacheDiskBytes;
+
+    // Where the disk tier is kept. Lambda only allows writing to /tmp.
+    @Value("${cache.directory:/tmp/object-cache}")
+    private String cacheDirectory;
+
+    // The buffer of a streamed upload, and the size of its parts when it's sent to S3 as a multipart upload (5 MiB at least).
+    @Value("${upload.partBytes:8388608}")
+    private int uploadPartBytes;
+
+    // Whether deletes only tombstone files and leave their removal to com.walmart.service.reclaim.Reclaimer.
+    @Value("${delete.soft:false}")
+    private boolean deleteSoft;
+
+    // Where the reclaimer finds tombstones: "index" for ReclaimIndex, "local" for this instance's deletes only.
+    @Value("${reclaim.feed:index}")
+    private String reclaimFeed;
+
+    // The number of tombstones reclaimed per batch.
+    @Value("${reclaim.batchSize:100}")
+    private int reclaimBatchSize;
+
+    // How long one reclaim runs at most, so that it ends well before the Lambda times out.
+    @Value("${reclaim.maxMillis:20000}")
+    private long reclaimMaxMillis;
+
+    // How long a tombstoned item is kept when it isn't reclaimed, after which DDB expires it.
+    @Value("${reclaim.ttlSeconds:604800}")
+    private long reclaimTtlSeconds;
+
+    // The number of files a delete job lists and deletes per batch, see com.walmart.service.jobs.DeleteJobRunner.
+    @Value("${deleteJobs.batchSize:100}")
+    private int deleteJobsBatchSize;
+
+    // The deletes a delete job has in flight at once. Runs on the IO threads, so it should stay well below service.ioThreads.
+    @Value("${deleteJobs.concurrency:4}")
+    private int deleteJobsConcurrency;
+
+    // How long a delete job runs per request or warmer call before it checkpoints and stops.
+    @Value("${deleteJobs.sliceMillis:15000}")
+    private long deleteJobsSliceMillis;
+
+    // How long the response to an Idempotency-Key is kept for retries.
+    @Value("${idempotency.ttlSeconds:86400}")
+    private long idempotencyTtlSeconds;
+
+    // How long a request holds its Idempotency-Key before a retry may take over, longer than the Lambda timeout.
+    @Value("${idempotency.claimSeconds:120}")
+    private long idempotencyClaimSeconds;
+
+    // How long a retry waits for the request that holds its Idempotency-Key before it gets a 409.
+    @Value("${idempotency.waitMillis:10000}")
+    private long idempotencyWaitMillis;
+
+    // Where spans go: none, log (one line per span) or otlp. A SpanExporter bean takes precedence.
+    @Value("${tracing.exporter:none}")
+    private String tracingExporter;
+
+    // The share of requests that are traced, unless their traceparent header decided already.
+    @Value("${tracing.sampleRatio:0.1}")
+    private double tracingSampleRatio;
+
+    // The OTLP/HTTP endpoint of the collector, the ADOT Lambda layer's by default.
+    @Value("${tracing.otlpEndpoint:http://localhost:4318/v1/traces}")
+    private String tracingOtlpEndpoint;
+
+    // How long the end of a request waits for its spans to be exported, the function is frozen after it returns.
+    @Value("${tracing.flushTimeoutMillis:1000}")
+    private long tracingFlushTimeoutMillis;
+
+    // Limits the requests in flight, only turned on when the service runs as a server, see LambdaApplication#main.
+    @Value("${limiting.enabled:false}")
+    private boolean limitingEnabled;
+
+    // The concurrency limit of every route group before it adapts to the latency of the group's requests.
+    @Value("${limiting.initialLimit:20}")
+    private int limitingInitialLimit;
+
+    @Value("${limiting.minLimit:4}")
+    private int limitingMinLimit;
+
+    @Value("${limiting.maxLimit:200}")
+    private int limitingMaxLimit;
+
+    // The requests in flight across all route groups, at most the server's threads.
+    @Value("${limiting.maxInflight:200}")
+    private int limitingMaxInflight;
+
+    // The share of each limit that uploads and other bulk requests may use, the rest is left to the cheap ones.
+    @Value("${limiting.bulkShare:0.5}")
+    private double limitingBulkShare;
+
+    // The Retry-After of shed requests.
+    @Value("${limiting.retryAfterSeconds:1}")
+    private long limitingRetryAfterSeconds;
+
     private final String localstackEndpoint;
     public LambdaConfigurationModule(@Value("${service.localstack.endpointKey}") final String localstackKey) {
         final String localstackEnv = System.getenv(localstackKey);
@@ -6,24 +6,55 @@ import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
 import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.walmart.service.routing.FunctionalRouter;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.startup.ColdStart;
 
 import java.io.*;
 
 
 public class StreamLambdaHandler implements RequestStreamHandler {
+    // Only one of them is set, the router when LAMBDA_ROUTER=functional and the Spring container otherwise.
     private static final SpringBootLambdaContainerHandler<AwsProxyRequest, AwsProxyResponse> handler;
+    private static final FunctionalRouter router;
     static {
+        ColdStart.handlerInitStarted();
         try {
-            handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(LambdaApplication.class);
+            // A function deployed for one route group only creates what that group needs, see RouteGroupExcludeFilter.
+            final String routeGroup = System.getenv(RouteGroup.ENVIRONMENT_KEY);
+            final String[] profiles = routeGroup == null || routeGroup.isEmpty()
+                    ? new String[0]
+                    : new String[]{ RouteGroup.valueOf(routeGroup).profile() };
+            if (FunctionalRouter.NAME.equals(System.getenv(FunctionalRouter.ENVIRONMENT_KEY))) {
+                handler = null;
+                router = FunctionalRouter.start(profiles);
+            } else {
+                if (profiles.length > 0) {
+                    System.setProperty("spring.main.lazy-initialization", "true");
+                }
+                handler = SpringBootLambdaContainerHandler.getAwsProxyHandler(LambdaApplication.class, profiles);
+                router = null;
+            }
         } catch (ContainerInitializationException e) {
             // if we fail here. We re-throw the exception to force another cold start
             e.printStackTrace();
             throw new RuntimeException("Could not initialize Spring Boot application", e);
         }
+        ColdStart.handlerInitEnded();
     }
 
     @Override
     public void handleRequest(final InputStream input, final OutputStream output, final Context context) throws IOException {
-        handler.proxyStream(input, output, context);
+        final long start = System.nanoTime();
+        try {
+            if (router != null) {
+                router.handle(input, output, context);
+            } else {
+                handler.proxyStream(input, output, context);
+            }
+        } finally {
+            // Writes the container's cold start record after the first invocation, see ColdStart.
+            ColdStart.invocationEnded(System.nanoTime() - start);
+        }
     }
 }
\ No newline at end of file
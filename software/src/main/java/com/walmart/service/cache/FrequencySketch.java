@@ -0,0 +1,67 @@
+package com.walmart.service.cache;
+
+/**
+ * Estimates how often keys were seen recently with a count-min sketch of small counters. Every counter is halved
+ * after a fixed number of increments, so the estimates follow what's popular now instead of growing forever.
+ * Not thread safe.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f };
+    private final int[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width The number of counters per row, rounded up to a power of two. Should be around the number of keys
+     *              that are tracked.
+     */
+    FrequencySketch(final int width) {
+        final int size = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        this.counters = new int[DEPTH][size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    void increment(final Object key) {
+        final int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            final int index = index(hash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(final Object key) {
+        final int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(final int hash, final int row) {
+        int mixed = (hash ^ SEEDS[row]) * 0x9e3779b1;
+        mixed ^= mixed >>> 16;
+        return mixed & mask;
+    }
+
+    private void reset() {
+        for (final int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+}
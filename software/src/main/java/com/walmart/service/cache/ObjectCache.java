@@ -0,0 +1,374 @@
+package com.walmart.service.cache;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps small, frequently read S3 objects on the instance, so GetFile doesn't fetch them again on every request.
+ * There are two tiers, each with its own byte budget:
+ * <ul>
+ *     <li>Memory: the contents in direct (off-heap) buffers, evicting the least recently used object. A new object
+ *     only takes the place of the objects it would evict if it was read more often recently (TinyLFU admission).</li>
+ *     <li>Disk: files under {@code cache.directory} (Lambda's /tmp), holding what was evicted from or not admitted to
+ *     memory. Hits are sent with {@link FileChannel#transferTo}, and are moved back to memory once they're popular
+ *     enough.</li>
+ * </ul>
+ * Every object is cached with the checksum of the version that was read, and is only served for that checksum, so
+ * overwritten files are never served stale.
+ */
+@Component
+public class ObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectCache.class);
+    private final Metrics metrics;
+    private final long maxObjectBytes;
+    private final long memoryBudget;
+    private final Path directory;
+    private final FrequencySketch sketch;
+    // Both in access order, so the least recently used object is evicted first.
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBudget;
+    private long memoryBytes;
+    private long diskBytes;
+
+    @Autowired
+    public ObjectCache(final Metrics metrics, final LambdaConfigurationModule configurationModule) {
+        this(metrics, configurationModule.getCacheMaxObjectBytes(), configurationModule.getCacheMemoryBytes(),
+             configurationModule.getCacheDiskBytes(), Paths.get(configurationModule.getCacheDirectory()));
+    }
+
+    ObjectCache(final Metrics metrics,
+                final long maxObjectBytes,
+                final long memoryBudget,
+                final long diskBudget,
+                final Path directory) {
+        this.metrics = metrics;
+        this.maxObjectBytes = maxObjectBytes;
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        this.directory = directory;
+        // Sized for the number of the smallest objects that fit in both tiers, assuming 4 KiB each.
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1, (memoryBudget + diskBudget) / 4096)));
+        if (diskBudget > 0) {
+            prepareDirectory();
+        }
+        metrics.gauge("cache.memory.bytes", this::getMemoryBytes);
+        metrics.gauge("cache.disk.bytes", this::getDiskBytes);
+    }
+
+    /**
+     * The index of the disk tier is only kept in memory, so anything left by a previous run is removed.
+     */
+    private void prepareDirectory() {
+        try {
+            Files.createDirectories(directory);
+            try (final Stream<Path> files = Files.list(directory)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (final IOException e) {
+            logger.warn("Unable to use the directory = {} for the object cache, only memory will be used", directory, e);
+            diskBudget = 0;
+        }
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * @return Whether an object of this size can be cached.
+     */
+    public boolean isAdmissible(final long size) {
+        return size <= maxObjectBytes && (memoryBudget > 0 || diskBudget > 0);
+    }
+
+    /**
+     * @return Whether some version of the object is cached, e.g. to skip prefetching it.
+     */
+    public synchronized boolean mightContain(final String key) {
+        return memory.containsKey(key) || disk.containsKey(key);
+    }
+
+    /**
+     * Writes the object to the channel if this version of it is cached. Cached versions with another checksum are
+     * dropped.
+     *
+     * @return False on a miss, in which case nothing was written.
+     */
+    public boolean write(final String key, final String checksum, final WritableByteChannel channel) throws IOException {
+        final MemoryEntry memoryEntry;
+        DiskEntry diskEntry = null;
+        Path staleFile = null;
+        synchronized (this) {
+            sketch.increment(key);
+            memoryEntry = removeIfStale(key, checksum);
+            if (memoryEntry == null) {
+                diskEntry = disk.get(key);
+                if (diskEntry != null && !diskEntry.checksum.equals(checksum)) {
+                    removeFromDisk(key);
+                    staleFile = diskEntry.path;
+                    diskEntry = null;
+                }
+            }
+        }
+        if (staleFile != null) {
+            deleteFiles(Collections.singletonList(staleFile));
+        }
+
+        if (memoryEntry != null) {
+            final ByteBuffer content = memoryEntry.content.duplicate();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            metrics.increment("cache.memory.hits");
+            return true;
+        }
+        if (diskEntry != null && transfer(diskEntry, channel)) {
+            metrics.increment("cache.disk.hits");
+            promote(key, diskEntry);
+            return true;
+        }
+        metrics.increment("cache.misses");
+        return false;
+    }
+
+    private MemoryEntry removeIfStale(final String key, final String checksum) {
+        final MemoryEntry entry = memory.get(key);
+        if (entry == null || entry.checksum.equals(checksum)) {
+            return entry;
+        }
+        memory.remove(key);
+        memoryBytes -= entry.content.capacity();
+        return null;
+    }
+
+    /**
+     * @return False if the file was evicted before it could be opened.
+     */
+    private static boolean transfer(final DiskEntry entry, final WritableByteChannel channel) throws IOException {
+        final FileChannel file;
+        try {
+            file = FileChannel.open(entry.path, StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            return false;
+        }
+        // An evicted file that's already open can still be read to the end.
+        try (final FileChannel in = file) {
+            long position = 0;
+            while (position < entry.size) {
+                final long transferred = in.transferTo(position, entry.size - position, channel);
+                if (transferred == 0 && position >= in.size()) {
+                    throw new IOException(String.format("The cached object = %s was truncated", entry.path));
+                }
+                position += transferred;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Caches a version of an object that was just read from S3. It goes to memory if it's admitted there, and to
+     * disk otherwise.
+     */
+    public void put(final String key, final String checksum, final byte[] content) {
+        if (!isAdmissible(content.length)) {
+            return;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content).flip();
+        final List<Path> staleFiles = new ArrayList<>();
+        final List<Map.Entry<String, MemoryEntry>> demoted;
+        synchronized (this) {
+            final MemoryEntry previous = memory.remove(key);
+            if (previous != null) {
+                memoryBytes -= previous.content.capacity();
+            }
+            final DiskEntry previousOnDisk = removeFromDisk(key);
+            if (previousOnDisk != null) {
+                staleFiles.add(previousOnDisk.path);
+            }
+            demoted = admitToMemory(key, new MemoryEntry(checksum, buffer));
+        }
+        deleteFiles(staleFiles);
+        demoted.forEach(entry -> writeToDisk(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Moves an object from disk to memory if it was read more often recently than the objects it would evict.
+     */
+    private void promote(final String key, final DiskEntry entry) {
+        final ByteBuffer buffer;
+        synchronized (this) {
+            if (memoryBudget < entry.size || !wouldAdmit(key, entry.size)) {
+                return;
+            }
+        }
+        try (final FileChannel in = FileChannel.open(entry.path, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocateDirect((int) entry.size);
+            while (buffer.hasRemaining() && in.read(buffer) != -1) {
+                // Keep reading until the buffer is full.
+            }
+            buffer.flip();
+        } catch (final IOException e) {
+            // Evicted in the meantime, it stays where it was.
+            return;
+        }
+
+        final List<Map.Entry<String, MemoryEntry>> demoted;
+        synchronized (this) {
+            if (disk.get(key) != entry || memory.containsKey(key)) {
+                return;
+            }
+            final MemoryEntry promoted = new MemoryEntry(entry.checksum, buffer);
+            demoted = admitToMemory(key, promoted);
+            if (demoted.size() == 1 && demoted.get(0).getValue() == promoted) {
+                return;
+            }
+            removeFromDisk(key);
+        }
+        deleteFiles(Collections.singletonList(entry.path));
+        demoted.forEach(demotedEntry -> writeToDisk(demotedEntry.getKey(), demotedEntry.getValue()));
+    }
+
+    /**
+     * @return Whether an object of this size would be admitted to memory now.
+     */
+    private boolean wouldAdmit(final String key, final long size) {
+        final int frequency = sketch.frequency(key);
+        long bytes = memoryBytes;
+        for (final Map.Entry<String, MemoryEntry> eldest : memory.entrySet()) {
+            if (bytes + size <= memoryBudget) {
+                break;
+            }
+            if (sketch.frequency(eldest.getKey()) >= frequency) {
+                return false;
+            }
+            bytes -= eldest.getValue().content.capacity();
+        }
+        return bytes + size <= memoryBudget;
+    }
+
+    /**
+     * Adds the object to memory if it's admitted, evicting the least recently used objects to make room.
+     *
+     * @return The evicted objects, or the object itself if it wasn't admitted. They're meant for the disk tier.
+     */
+    private List<Map.Entry<String, MemoryEntry>> admitToMemory(final String key, final MemoryEntry entry) {
+        final long size = entry.content.capacity();
+        if (memoryBudget < size || !wouldAdmit(key, size)) {
+            metrics.increment("cache.memory.rejections");
+            return Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(key, entry));
+        }
+        final List<Map.Entry<String, MemoryEntry>> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, MemoryEntry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes + size > memoryBudget) {
+            final Map.Entry<String, MemoryEntry> victim = eldest.next();
+            eldest.remove();
+            memoryBytes -= victim.getValue().content.capacity();
+            evicted.add(new AbstractMap.SimpleImmutableEntry<>(victim.getKey(), victim.getValue()));
+        }
+        memory.put(key, entry);
+        memoryBytes += size;
+        metrics.add("cache.memory.evictions", evicted.size());
+        return evicted;
+    }
+
+    private void writeToDisk(final String key, final MemoryEntry entry) {
+        final long size = entry.content.capacity();
+        if (diskBudget < size) {
+            return;
+        }
+        final Path path;
+        try {
+            path = Files.createTempFile(directory, "object-", ".bin");
+            try (final FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                final ByteBuffer content = entry.content.duplicate();
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+            }
+        } catch (final IOException e) {
+            logger.warn("Unable to write the object = {} to the disk cache", key, e);
+            return;
+        }
+
+        final List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            final DiskEntry previous = removeFromDisk(key);
+            if (previous != null) {
+                evicted.add(previous.path);
+            }
+            final Iterator<Map.Entry<String, DiskEntry>> eldest = disk.entrySet().iterator();
+            while (diskBytes + size > diskBudget) {
+                final DiskEntry victim = eldest.next().getValue();
+                eldest.remove();
+                diskBytes -= victim.size;
+                evicted.add(victim.path);
+                metrics.increment("cache.disk.evictions");
+            }
+            // Memory may have a newer version by now, which is served first.
+            disk.put(key, new DiskEntry(entry.checksum, path, size));
+            diskBytes += size;
+        }
+        deleteFiles(evicted);
+    }
+
+    private DiskEntry removeFromDisk(final String key) {
+        final DiskEntry entry = disk.remove(key);
+        if (entry != null) {
+            diskBytes -= entry.size;
+        }
+        return entry;
+    }
+
+    private static void deleteFiles(final List<Path> files) {
+        for (final Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (final IOException e) {
+                logger.warn("Unable to delete the cached object = {}", file, e);
+            }
+        }
+    }
+
+    private static class MemoryEntry {
+        private final String checksum;
+        private final ByteBuffer content;
+
+        private MemoryEntry(final String checksum, final ByteBuffer content) {
+            this.checksum = checksum;
+            this.content = content;
+        }
+    }
+
+    private static class DiskEntry {
+        private final String checksum;
+        private final Path path;
+        private final long size;
+
+        private DiskEntry(final String checksum, final Path path, final long size) {
+            this.checksum = checksum;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
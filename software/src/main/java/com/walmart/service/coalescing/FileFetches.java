@@ -0,0 +1,180 @@
+package com.walmart.service.coalescing;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.File;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.S3Util;
+import com.walmart.service.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads files for GetFile, coalescing the concurrent reads of the same file (e.g. a popular shared link). Callers that
+ * arrive while a file's metadata is being read from the DDB share that read, and callers that arrive while its S3
+ * object is being fetched share the body through a buffer of the object's size.
+ * <p>
+ * Only objects up to {@code coalescing.maxObjectBytes} are shared, and at most {@code coalescing.maxBufferedBytes}
+ * are buffered at once. Larger objects, and objects fetched while the buffers are full, are streamed straight from
+ * S3 to each caller.
+ */
+@Component
+public class FileFetches {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileFetches.class);
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final ExecutorService ioExecutor;
+    private final Metrics metrics;
+    private final String tableName;
+    private final String bucketName;
+    private final long maxObjectBytes;
+    private final long maxBufferedBytes;
+    private final SingleFlight<String, File> fileReads;
+    // S3 objects currently being fetched, keyed by their S3 key. Completed with null when an object isn't shared.
+    private final Map<String, CompletableFuture<SharedBody>> objectFetches = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    @Autowired
+    public FileFetches(final DynamoDbClient dynamoDbClient,
+                       final S3Client s3Client,
+                       final ExecutorService ioExecutor,
+                       final Metrics metrics,
+                       final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.s3Client = s3Client;
+        this.ioExecutor = ioExecutor;
+        this.metrics = metrics;
+        this.tableName = configurationModule.getTableName();
+        this.bucketName = configurationModule.getBucketName();
+        this.maxObjectBytes = Math.min(Integer.MAX_VALUE, configurationModule.getCoalescingMaxObjectBytes());
+        this.maxBufferedBytes = configurationModule.getCoalescingMaxBufferedBytes();
+        this.fileReads = new SingleFlight<>(metrics, "coalescing.files");
+        metrics.gauge("coalescing.s3.bufferedBytes", bufferedBytes::get);
+    }
+
+    /**
+     * Same as {@link DynamoDBUtil#getFileFromDDB(String, String, DynamoDbClient)}.
+     */
+    public File getFile(final String fileId) {
+        return readFile("ID#" + fileId, () -> DynamoDBUtil.getFileFromDDB(fileId, tableName, dynamoDbClient));
+    }
+
+    /**
+     * Same as {@link DynamoDBUtil#getFileFromDDB(List, String, String, DynamoDbClient)}.
+     */
+    public File getFile(final List<String> userIndexKeys, final String fileName) {
+        final String key = "NAME#" + S3Util.getFileKey(userIndexKeys.get(userIndexKeys.size() - 1), fileName);
+        return readFile(key, () -> DynamoDBUtil.getFileFromDDB(userIndexKeys, fileName, tableName, dynamoDbClient));
+    }
+
+    private File readFile(final String key, final SingleFlight.Load<File> load) {
+        try {
+            return fileReads.execute(key, load);
+        } catch (final IOException e) {
+            // Only thrown when interrupted, the DDB calls themselves don't throw checked exceptions.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link S3Util#getS3File}. The first caller fetches the object, and the callers that arrive while it's
+     * being read get their own stream over the shared copy.
+     */
+    public ResponseInputStream<GetObjectResponse> getS3File(final String fileName, final String userId) {
+        final String key = S3Util.getFileKey(userId, fileName);
+        final CompletableFuture<SharedBody> fetch = new CompletableFuture<>();
+        final CompletableFuture<SharedBody> existingFetch = objectFetches.putIfAbsent(key, fetch);
+        if (existingFetch == null) {
+            return fetch(key, fileName, userId, fetch);
+        }
+
+        final SharedBody body = await(existingFetch);
+        final ResponseInputStream<GetObjectResponse> shared = body == null ? null : body.open();
+        if (shared == null) {
+            return S3Util.getS3File(fileName, userId, bucketName, s3Client);
+        }
+        metrics.increment("coalescing.s3.coalesced");
+        return shared;
+    }
+
+    private ResponseInputStream<GetObjectResponse> fetch(final String key,
+                                                         final String fileName,
+                                                         final String userId,
+                                                         final CompletableFuture<SharedBody> fetch) {
+        final ResponseInputStream<GetObjectResponse> object;
+        try {
+            object = S3Util.getS3File(fileName, userId, bucketName, s3Client);
+        } catch (final RuntimeException e) {
+            // The waiting callers make their own call, the failure may be this caller's (e.g. it was cancelled).
+            fetch.complete(null);
+            objectFetches.remove(key, fetch);
+            throw e;
+        }
+
+        final Long contentLength = object.response().contentLength();
+        if (contentLength == null || contentLength > maxObjectBytes || !reserve(contentLength)) {
+            metrics.increment("coalescing.s3.unshared");
+            fetch.complete(null);
+            objectFetches.remove(key, fetch);
+            return object;
+        }
+
+        final SharedBody body = new SharedBody(object.response(), contentLength.intValue(),
+                                               () -> bufferedBytes.addAndGet(-contentLength));
+        final ResponseInputStream<GetObjectResponse> own = body.open();
+        fetch.complete(body);
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    body.fill(object);
+                } finally {
+                    objectFetches.remove(key, fetch);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            logger.warn("Unable to share the S3 object = {}, reading it on the calling thread", key, e);
+            body.fill(object);
+            objectFetches.remove(key, fetch);
+        }
+        return own;
+    }
+
+    private boolean reserve(final long length) {
+        long current;
+        do {
+            current = bufferedBytes.get();
+            if (current + length > maxBufferedBytes) {
+                return false;
+            }
+        } while (!bufferedBytes.compareAndSet(current, current + length));
+        return true;
+    }
+
+    private static SharedBody await(final CompletableFuture<SharedBody> fetch) {
+        try {
+            return fetch.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted while waiting on an S3 object", e));
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.walmart.service.coalescing;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The body of an S3 object that's read once and streamed to several responses. The object is copied into a buffer of
+ * its exact size, and every reader follows the copy as it's filled, so readers that arrive early don't wait for the
+ * whole object. The buffer is released once it's filled and every reader was closed.
+ */
+class SharedBody {
+
+    private final GetObjectResponse response;
+    private final byte[] buffer;
+    private final Runnable onRelease;
+    // The fill, plus one per open reader.
+    private final AtomicInteger references = new AtomicInteger(1);
+    private int filled;
+    private boolean complete;
+    private IOException failure;
+
+    /**
+     * @param onRelease Called once, when the buffer isn't used anymore.
+     */
+    SharedBody(final GetObjectResponse response, final int length, final Runnable onRelease) {
+        this.response = response;
+        this.buffer = new byte[length];
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * Copies the object into the buffer, waking up the readers after every read. Closes the object.
+     */
+    void fill(final InputStream object) {
+        try (final InputStream in = object) {
+            int length;
+            while (filled < buffer.length && (length = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                synchronized (this) {
+                    filled += length;
+                    notifyAll();
+                }
+            }
+            if (filled < buffer.length) {
+                throw new IOException(String.format("The S3 object ended after %d of %d bytes", filled, buffer.length));
+            }
+        } catch (final IOException | RuntimeException e) {
+            synchronized (this) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        } finally {
+            synchronized (this) {
+                complete = true;
+                notifyAll();
+            }
+            release();
+        }
+    }
+
+    /**
+     * @return A stream over the whole object, or null if the buffer was already released.
+     */
+    ResponseInputStream<GetObjectResponse> open() {
+        int current;
+        do {
+            current = references.get();
+            if (current == 0) {
+                return null;
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        final Reader reader = new Reader();
+        return new ResponseInputStream<>(response, AbortableInputStream.create(reader, reader));
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            onRelease.run();
+        }
+    }
+
+    /**
+     * Waits until there's something to read at the position.
+     *
+     * @return The number of bytes filled so far, equal to the position at the end of the object.
+     */
+    private synchronized int awaitFilled(final int position) throws IOException {
+        while (filled <= position && !complete) {
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting on a shared S3 object");
+            }
+        }
+        if (filled <= position && failure != null) {
+            throw new IOException("Unable to read a shared S3 object", failure);
+        }
+        return filled;
+    }
+
+    private class Reader extends InputStream implements Abortable {
+
+        private int position;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (closed) {
+                throw new IOException("The stream is closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            final int available = awaitFilled(position);
+            if (available <= position) {
+                return -1;
+            }
+            final int count = Math.min(length, available - position);
+            System.arraycopy(buffer, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            synchronized (SharedBody.this) {
+                return filled - position;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+
+        @Override
+        public void abort() {
+            close();
+        }
+    }
+}
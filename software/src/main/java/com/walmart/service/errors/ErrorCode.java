@@ -6,7 +6,9 @@ import lombok.Getter;
 public enum ErrorCode {
     INTERNAL_SERVER_ERROR("Unexpected error when processing request", 500),
     MISSING_REQUIRED_HEADER("Missing Required Header", 400),
-    MALFORMED_FILE_NAME("File Name Is Malformed", 400)
+    MALFORMED_FILE_NAME("File Name Is Malformed", 400),
+    UNSUPPORTED_DERIVATIVE_SIZE("Requested Image Size Is Not Supported", 400),
+    MALFORMED_USER_ID("User ID Is Malformed", 400)
     ;
 
     private final String errorCode;
@@ -1,8 +1,21 @@
 package com.walmart.service.function;
 
 import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.idempotency.IdempotencyStore;
+import com.walmart.service.images.ImageDerivatives;
+import com.walmart.service.manifest.ManifestStore;
 import com.walmart.service.models.*;
+import com.walmart.service.reclaim.IndexTombstoneFeed;
+import com.walmart.service.reclaim.Reclaimer;
+import com.walmart.service.reclaim.Tombstone;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.search.SearchIndexStore;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.stats.UserStatsStore;
 import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.RequestUtils;
+import com.walmart.service.util.S3Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,49 +29,193 @@ import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Context;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 @RestController
 @EnableWebMvc
+@RouteGroups(RouteGroup.DELETE)
 public class DeleteFiles {
 
     private final Logger logger = LoggerFactory.getLogger(DeleteFiles.class);
+    // A delete retries its transaction this many times at most when the file is uploaded again concurrently.
+    private static final int NAME_RELEASE_ATTEMPTS = 3;
     private final DynamoDbClient dynamoDbClient;
     private final S3Client s3Client;
     private final String tableName;
     private final String bucketName;
+    private final ImageDerivatives imageDerivatives;
+    private final UserShards userShards;
+    private final SearchIndexStore searchIndexStore;
+    private final ManifestStore manifestStore;
+    private final UserStatsStore userStatsStore;
+    private final Reclaimer reclaimer;
+    private final IdempotencyStore idempotencyStore;
+    private final boolean softDelete;
+    private final long reclaimTtlSeconds;
 
     @Autowired
     public DeleteFiles(final DynamoDbClient dynamoDbClient,
                        final S3Client s3Client,
+                       final ImageDerivatives imageDerivatives,
+                       final UserShards userShards,
+                       final SearchIndexStore searchIndexStore,
+                       final ManifestStore manifestStore,
+                       final UserStatsStore userStatsStore,
+                       final Reclaimer reclaimer,
+                       final IdempotencyStore idempotencyStore,
                        final LambdaConfigurationModule configurationModule) {
         this.dynamoDbClient = dynamoDbClient;
         this.s3Client = s3Client;
+        this.imageDerivatives = imageDerivatives;
+        this.userShards = userShards;
+        this.searchIndexStore = searchIndexStore;
+        this.manifestStore = manifestStore;
+        this.userStatsStore = userStatsStore;
+        this.reclaimer = reclaimer;
+        this.idempotencyStore = idempotencyStore;
+        this.softDelete = configurationModule.isDeleteSoft();
+        this.reclaimTtlSeconds = configurationModule.getReclaimTtlSeconds();
         this.tableName = configurationModule.getTableName();
         this.bucketName = configurationModule.getBucketName();
     }
 
+    private void deleteDerivatives(final String userId, final String fileName) {
+        try {
+            if (FileType.isImage(RequestUtils.getFileType(fileName))) {
+                imageDerivatives.deleteAll(userId, fileName);
+            }
+        } catch (final Exception e) {
+            logger.warn("Was unable to delete the derivatives of the file = {}/{}", userId, fileName, e);
+        }
+    }
+
+    private TransactWriteItem deleteItem(final String fileId) {
+        return TransactWriteItem.builder()
+                .delete(Delete.builder()
+                                .tableName(tableName)
+                                .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build()))
+                                .build())
+                .build();
+    }
+
+    /**
+     * Tombstones the file's item: its UserID is swapped for DeletedAt, ReclaimQueue and a TTL, which hides it from
+     * every lookup and listing and puts it in ReclaimIndex. Fails if the file was already deleted.
+     */
+    private TransactWriteItem tombstoneItem(final String userId, final String fileId, final String deletedAt) {
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":deletedAt", AttributeValue.builder().s(deletedAt).build());
+        values.put(":expiresAt", AttributeValue.builder()
+                .n(Long.toString(Instant.parse(deletedAt).getEpochSecond() + reclaimTtlSeconds))
+                .build());
+        values.put(":ownerId", AttributeValue.builder().s(userId).build());
+        values.put(":queue", AttributeValue.builder().s(IndexTombstoneFeed.queueOf(fileId)).build());
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                                .tableName(tableName)
+                                .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build()))
+                                .updateExpression(String.format("SET %s = :deletedAt, %s = :expiresAt, %s = :ownerId, %s = :queue REMOVE %s",
+                                                                TableAttributes.DELETED_AT_KEY,
+                                                                TableAttributes.EXPIRES_AT_KEY,
+                                                                TableAttributes.OWNER_ID_KEY,
+                                                                TableAttributes.RECLAIM_QUEUE_KEY,
+                                                                TableAttributes.USER_ID_KEY))
+                                .conditionExpression(String.format("attribute_exists(%s)", TableAttributes.USER_ID_KEY))
+                                .expressionAttributeValues(values)
+                                .build())
+                .build();
+    }
+
+    /**
+     * Writes the file's item (a delete or a tombstone), and deletes its name pointer in the same transaction if the
+     * pointer refers to this file. Once the transaction succeeded, the file is also removed from the user's statistics.
+     * Files uploaded before name pointers existed may not have one.
+     */
+    private void deleteDDBEntry(final String userId, final String fileName, final String fileId,
+                                final TransactWriteItem fileWrite) {
+        final AttributeValue fileIdValue = AttributeValue.builder().s(fileId).build();
+        for (int attempt = 1; ; attempt++) {
+            final List<TransactWriteItem> writes = new ArrayList<>();
+            writes.add(fileWrite);
+            final File pointedFile = DynamoDBUtil.getNamePointerFromDDB(userId, fileName, tableName, dynamoDbClient);
+            Update statsUpdate = null;
+            if (fileId.equals(pointedFile.getFileUUID())) {
+                writes.add(TransactWriteItem.builder()
+                                   .delete(Delete.builder()
+                                                   .tableName(tableName)
+                                                   .key(DynamoDBUtil.getNamePointerKey(userId, fileName))
+                                                   .conditionExpression(String.format("%s = :fileId", TableAttributes.TARGET_FILE_ID_KEY))
+                                                   .expressionAttributeValues(Collections.singletonMap(":fileId", fileIdValue))
+                                                   .build())
+                                   .build());
+                // Only files with a name pointer were counted in the statistics.
+                statsUpdate = UserStatsStore.recordDelete(tableName, userId, fileName, pointedFile.getCreationDate(),
+                                                          pointedFile.getFileSize());
+            }
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(writes).build());
+            } catch (final TransactionCanceledException e) {
+                if (attempt == NAME_RELEASE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("The name pointer of the file = {}/{} changed during the delete, retrying", userId, fileName);
+                DynamoDBUtil.sleepWithJitter(attempt);
+                continue;
+            }
+            userStatsStore.record(userId, statsUpdate);
+            return;
+        }
+    }
+
     /**
-     * Deletes a file from S3 and DDB.
+     * Deletes a file (and any image derivatives of it) from S3 and DDB, and removes it from the search index and
+     * the manifest. With {@code delete.soft} the file is only tombstoned, and its S3 objects and item are removed
+     * later by the {@link Reclaimer}.
      *
      * @param userId   The owner of the file.
      * @param fileName The name of the file.
      * @param fileId   The unique ID of the file.
      */
     public void deleteFile(final String userId, final String fileName, final String fileId) {
+        deleteStoredFile(userId, fileName, fileId);
+        forget(userId, Collections.singletonList(fileId));
+    }
+
+    /**
+     * Removes deleted files from the search index and the manifest of their owner, with one write each.
+     *
+     * @param fileIds The IDs of the files, all owned by the user.
+     */
+    public void forget(final String userId, final List<String> fileIds) {
+        searchIndexStore.update(userId, Collections.<String, String>emptyMap(), fileIds);
+        manifestStore.record(userId, Collections.<File>emptyList(), fileIds);
+    }
+
+    /**
+     * Same as {@link #deleteFile}, but leaves the search index and the manifest to the caller, so that a batch of
+     * deletes can update them once (see {@link #forget}).
+     */
+    public void deleteStoredFile(final String userId, final String fileName, final String fileId) {
         logger.info("Attempting to delete the file with fileId = {}", fileId);
-        final DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                .bucket(bucketName)
-                .key(String.format("%s/%s", userId, fileName))
-                .build();
-        s3Client.deleteObject(deleteObjectRequest);
-        final DeleteItemRequest deleteItemRequest = DeleteItemRequest.builder()
-                .tableName(tableName)
-                .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build()))
-                .build();
-        dynamoDbClient.deleteItem(deleteItemRequest);
+        if (softDelete) {
+            final String deletedAt = Instant.now().toString();
+            deleteDDBEntry(userId, fileName, fileId, tombstoneItem(userId, fileId, deletedAt));
+            reclaimer.record(new Tombstone(fileId, userId, fileName, deletedAt));
+        } else {
+            final DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(S3Util.getFileKey(userId, fileName))
+                    .build();
+            s3Client.deleteObject(deleteObjectRequest);
+            deleteDerivatives(userId, fileName);
+            deleteDDBEntry(userId, fileName, fileId, deleteItem(fileId));
+        }
         logger.info("Successfully deleted the file with fileId = {} from storage.", fileId);
     }
 
@@ -72,15 +229,24 @@ public class DeleteFiles {
     public File deleteFileByName(final String userId,
                                  final String fileName,
                                  final HttpServletResponse context) {
+        final File fileInfo = deleteStoredFileByName(userId, fileName, context);
+        forget(userId, Collections.singletonList(fileInfo.getFileUUID()));
+        return fileInfo;
+    }
+
+    private File deleteStoredFileByName(final String userId,
+                                        final String fileName,
+                                        final HttpServletResponse context) {
         logger.info("Attempting to retrieve the file with file name = {} and user ID = {}", fileName, userId);
 
         try {
-            final File fileInfo = DynamoDBUtil.getFileFromDDB(userId, fileName, tableName, dynamoDbClient);
+            final File fileInfo = DynamoDBUtil.getFileFromDDB(userShards.indexKeysOf(userId, fileName), fileName,
+                                                              tableName, dynamoDbClient);
             if (fileInfo.getFileUUID() == null) {
                 throw new NoSuchElementException();
             }
             logger.info("Was able to find the file with File ID = {}", fileInfo.getFileUUID());
-            deleteFile(userId, fileName, fileInfo.getFileUUID());
+            deleteStoredFile(userId, fileName, fileInfo.getFileUUID());
             return fileInfo;
         } catch (final NoSuchElementException e) {
             logger.error("Unable to delete file with name = {} and user ID = {} since it doesn't exist", fileName, userId);
@@ -96,13 +262,26 @@ public class DeleteFiles {
     /**
      * Deletes a file based on the file UUID.
      *
-     * @param fileId  The file UUID we're looking to delete.
-     * @param context Used to .
+     * @param fileId         The file UUID we're looking to delete.
+     * @param idempotencyKey Nullable. A retry with the same key gets the first response, see {@link IdempotencyStore}.
+     * @param context        Used to .
      */
     @RequestMapping(path = "/deleteFile/{userId}/{fileId}", method = RequestMethod.DELETE)
     public File deleteFileById(@PathVariable("userId") final String userId,
                                @PathVariable("fileId") final String fileId,
+                               @RequestHeader(required = false, name = Header.IDEMPOTENCY_KEY) final String idempotencyKey,
                                @Context HttpServletResponse context) {
+        return idempotencyStore.execute("deleteFile", userId, idempotencyKey, () -> fileId, File.class, context,
+                                        () -> deleteFileById(userId, fileId, context));
+    }
+
+    private File deleteFileById(final String userId, final String fileId, final HttpServletResponse context) {
+        final File fileInfo = deleteStoredFileById(userId, fileId, context);
+        forget(userId, Collections.singletonList(fileId));
+        return fileInfo;
+    }
+
+    private File deleteStoredFileById(final String userId, final String fileId, final HttpServletResponse context) {
         logger.info("Attempting to delete the file with file ID = {}", fileId);
         try {
             final File fileInfo = DynamoDBUtil.getFileFromDDB(fileId, tableName, dynamoDbClient);
@@ -111,7 +290,7 @@ public class DeleteFiles {
                 throw new RuntimeException(String.format("User does not have access to the file Id = %s", fileId));
             }
             logger.info("Was able to find the file with File ID = {}", fileInfo.getFileUUID());
-            deleteFile(fileInfo.getOwnerID(), fileInfo.getFileName(), fileId);
+            deleteStoredFile(fileInfo.getOwnerID(), fileInfo.getFileName(), fileId);
             return fileInfo;
         } catch (final NoSuchKeyException e) {
             logger.error("Unable to delete file with ID = {} and user ID = {} since it doesn't exist", fileId, userId);
@@ -131,29 +310,42 @@ public class DeleteFiles {
      *
      * @param userId             The userId of the user making this request.
      * @param deleteFilesRequest A class detailing which files should be deleted.
+     * @param idempotencyKey     Nullable. A retry with the same key gets the first response.
      * @param context            Context used to determine if any errors were thrown when deleting files.
      */
     @RequestMapping(path = "/deleteFiles/{userId}", method = RequestMethod.POST)
     public MultipleFilesResponse deleteMultipleFiles(@PathVariable("userId") final String userId,
                                                      @RequestBody final DeleteFilesRequest deleteFilesRequest,
+                                                     @RequestHeader(required = false, name = Header.IDEMPOTENCY_KEY) final String idempotencyKey,
                                                      @Context HttpServletResponse context) {
+        return idempotencyStore.execute("deleteFiles", userId, idempotencyKey, () -> deleteFilesRequest,
+                                        MultipleFilesResponse.class, context,
+                                        () -> deleteMultipleFiles(userId, deleteFilesRequest, context));
+    }
+
+    private MultipleFilesResponse deleteMultipleFiles(final String userId,
+                                                      final DeleteFilesRequest deleteFilesRequest,
+                                                      final HttpServletResponse context) {
         logger.info("Attempting to delete the files = {}", deleteFilesRequest);
         final ArrayList<File> successfulDeletes = new ArrayList<>();
         final ArrayList<Pair> failedDeletes = new ArrayList<>();
         for (final String fileId : deleteFilesRequest.getFileIds()) {
             try {
-                successfulDeletes.add(deleteFileById(userId, fileId, context));
+                successfulDeletes.add(deleteStoredFileById(userId, fileId, context));
             } catch (final Exception e) {
                 failedDeletes.add(new Pair(fileId, context.getStatus()));
             }
         }
         for (final String fileName : deleteFilesRequest.getFileNames()) {
             try {
-                successfulDeletes.add(deleteFileByName(userId, fileName, context));
+                successfulDeletes.add(deleteStoredFileByName(userId, fileName, context));
             } catch (final Exception e) {
                 failedDeletes.add(new Pair(fileName, context.getStatus()));
             }
         }
+        final List<String> deletedIds = new ArrayList<>();
+        successfulDeletes.forEach(file -> deletedIds.add(file.getFileUUID()));
+        forget(userId, deletedIds);
         context.setStatus(HttpServletResponse.SC_OK);
         return new MultipleFilesResponse(successfulDeletes, failedDeletes);
     }
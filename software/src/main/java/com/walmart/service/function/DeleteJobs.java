@@ -0,0 +1,85 @@
+package com.walmart.service.function;
+
+import com.walmart.service.idempotency.IdempotencyStore;
+import com.walmart.service.jobs.DeleteJobRunner;
+import com.walmart.service.jobs.DeleteJobStore;
+import com.walmart.service.models.DeleteJob;
+import com.walmart.service.models.Header;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
+
+@RestController
+@EnableWebMvc
+@RouteGroups(RouteGroup.DELETE)
+public class DeleteJobs {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeleteJobs.class);
+    private final DeleteJobStore deleteJobStore;
+    private final DeleteJobRunner deleteJobRunner;
+    private final IdempotencyStore idempotencyStore;
+
+    @Autowired
+    public DeleteJobs(final DeleteJobStore deleteJobStore,
+                      final DeleteJobRunner deleteJobRunner,
+                      final IdempotencyStore idempotencyStore) {
+        this.deleteJobStore = deleteJobStore;
+        this.deleteJobRunner = deleteJobRunner;
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    /**
+     * Deletes every file of the user matching the filter, in the background. The first slice of the job is run
+     * before returning, so small jobs are usually done by then, and the rest is continued by the warmer every minute.
+     *
+     * @param filter         Which files to delete, with the same meaning as in ListFiles. The limit is ignored.
+     * @param idempotencyKey Nullable. A retry with the same key gets the same job instead of creating another one.
+     * @return The job, to be followed with {@link #getDeleteJob}.
+     */
+    @PostMapping(path = "/deleteJobs/{userId}")
+    public DeleteJob createDeleteJob(@PathVariable("userId") final String userId,
+                                     @RequestBody final ListFilesRequest filter,
+                                     @RequestHeader(required = false, name = Header.IDEMPOTENCY_KEY) final String idempotencyKey,
+                                     @Context final HttpServletResponse context) {
+        return idempotencyStore.execute("deleteJobs", userId, idempotencyKey, () -> filter, DeleteJob.class, context,
+                                        () -> createDeleteJob(userId, filter, context));
+    }
+
+    private DeleteJob createDeleteJob(final String userId,
+                                      final ListFilesRequest filter,
+                                      final HttpServletResponse context) {
+        final DeleteJob job = deleteJobStore.create(userId, filter);
+        try {
+            deleteJobRunner.run(job.getJobId());
+        } catch (final Exception e) {
+            // The job was recorded, and is continued by the next run.
+            logger.warn("Was unable to start the delete job = {}", job.getJobId(), e);
+        }
+        context.setStatus(HttpServletResponse.SC_ACCEPTED);
+        return deleteJobStore.read(job.getJobId());
+    }
+
+    /**
+     * Returns the progress of a delete job: its status, how many files were deleted and how fast.
+     */
+    @GetMapping(path = "/deleteJobs/{userId}/{jobId}")
+    public DeleteJob getDeleteJob(@PathVariable("userId") final String userId,
+                                  @PathVariable("jobId") final String jobId,
+                                  @Context final HttpServletResponse context) {
+        final DeleteJob job = deleteJobStore.read(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            logger.error("Unable to find the delete job = {} of user ID = {}", jobId, userId);
+            context.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return job;
+    }
+}
@@ -0,0 +1,86 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.models.File;
+import com.walmart.service.models.FileMetadataRequest;
+import com.walmart.service.models.FileMetadataResponse;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.util.DynamoDBUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+@RestController
+@EnableWebMvc
+@RouteGroups(RouteGroup.GET)
+public class FileMetadata {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileMetadata.class);
+    private final DynamoDbClient dynamoDbClient;
+    private final ExecutorService ioExecutor;
+    private final String tableName;
+    private final int maxFileIds;
+
+    @Autowired
+    public FileMetadata(final DynamoDbClient dynamoDbClient,
+                        final ExecutorService ioExecutor,
+                        final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.ioExecutor = ioExecutor;
+        this.tableName = configurationModule.getTableName();
+        this.maxFileIds = configurationModule.getMetadataMaxFileIds();
+    }
+
+    /**
+     * Returns the information of many files in one request. The lookups are done with concurrent BatchGetItem calls
+     * instead of one GetItem per file.
+     *
+     * @param userId              The owner of the files. Files belonging to anybody else are reported as not found.
+     * @param fileMetadataRequest The IDs of the files.
+     * @param context             Used to reject requests with too many IDs.
+     * @return The files in the order they were requested, and the IDs that weren't found.
+     */
+    @PostMapping(path = "/files/{userId}/metadata")
+    public FileMetadataResponse retrieveFileMetadata(@PathVariable("userId") final String userId,
+                                                     @RequestBody final FileMetadataRequest fileMetadataRequest,
+                                                     @Context final HttpServletResponse context) {
+        final List<String> fileIds = fileMetadataRequest.getFileIds();
+        logger.info("Attempting to retrieve the metadata of {} files for user ID = {}", fileIds.size(), userId);
+        if (fileIds.size() > maxFileIds) {
+            logger.error("Unable to retrieve the metadata of {} files, at most {} can be requested at once", fileIds.size(), maxFileIds);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        try {
+            final Map<String, File> filesById = DynamoDBUtil.batchGetFilesFromDDB(fileIds, tableName, dynamoDbClient, ioExecutor);
+            final List<File> files = new ArrayList<>();
+            final List<String> notFound = new ArrayList<>();
+            for (final String fileId : fileIds) {
+                final File fileInfo = filesById.get(fileId);
+                if (fileInfo != null && userId.equals(fileInfo.getOwnerID())) {
+                    files.add(fileInfo);
+                } else {
+                    notFound.add(fileId);
+                }
+            }
+            logger.info("Found {} files for user ID = {}, {} were not found", files.size(), userId, notFound.size());
+            return new FileMetadataResponse(files, notFound);
+        } catch (final Exception e) {
+            logger.error("Was unable to retrieve the metadata of the files = {}", fileIds, e);
+            context.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            throw e;
+        }
+    }
+}
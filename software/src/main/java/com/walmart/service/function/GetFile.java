@@ -1,9 +1,18 @@
 package com.walmart.service.function;
 
 import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.cache.ObjectCache;
+import com.walmart.service.coalescing.FileFetches;
+import com.walmart.service.errors.ValidationException;
+import com.walmart.service.images.ImageDerivatives;
 import com.walmart.service.models.File;
+import com.walmart.service.models.FileType;
+import com.walmart.service.models.GetFilesRequest;
 import com.walmart.service.models.Header;
-import com.walmart.service.models.TableAttributes;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.util.ChecksumUtil;
 import com.walmart.service.util.DynamoDBUtil;
 import com.walmart.service.util.S3Util;
 import org.slf4j.Logger;
@@ -13,96 +22,221 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.*;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Context;
-import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @RestController
 @EnableWebMvc
+@RouteGroups(RouteGroup.GET)
 public class GetFile {
 
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
     private final Logger logger = LoggerFactory.getLogger(GetFile.class);
     private final DynamoDbClient dynamoDbClient;
     private final S3Client s3Client;
     private final String tableName;
     private final String bucketName;
+    private final ImageDerivatives imageDerivatives;
+    private final ExecutorService ioExecutor;
+    private final int zipPrefetchWindow;
+    private final UserShards userShards;
+    private final FileFetches fileFetches;
+    private final ObjectCache objectCache;
 
     @Autowired
     public GetFile(final DynamoDbClient dynamoDbClient,
                    final S3Client s3Client,
+                   final ImageDerivatives imageDerivatives,
+                   final ExecutorService ioExecutor,
+                   final UserShards userShards,
+                   final FileFetches fileFetches,
+                   final ObjectCache objectCache,
                    final LambdaConfigurationModule configurationModule) {
         this.dynamoDbClient = dynamoDbClient;
         this.s3Client = s3Client;
+        this.imageDerivatives = imageDerivatives;
+        this.ioExecutor = ioExecutor;
+        this.userShards = userShards;
+        this.fileFetches = fileFetches;
+        this.objectCache = objectCache;
+        this.zipPrefetchWindow = Math.max(1, configurationModule.getZipPrefetchWindow());
         this.tableName = configurationModule.getTableName();
         this.bucketName = configurationModule.getBucketName();
     }
 
     /**
-     * The file name and user id should uniquely identify a file.
-     * @param fileName  Name of the file we're looking for (e.g. image.png).
-     * @param userId    User ID of the person that owns the file.
-     * @param context   The file that's stored in S3 is written to here.
+     * Writes a scaled down copy of an image, creating it if this is the first time it's requested.
+     * @param size      The longest edge of the derivative, must be one of the configured sizes.
+     * @param context   The derivative is written to here.
+     */
+    private void writeDerivative(final String userId,
+                                 final String fileName,
+                                 final int size,
+                                 final HttpServletResponse context) throws IOException {
+        final FileType fileType;
+        try {
+            fileType = imageDerivatives.validate(fileName, size);
+        } catch (final ValidationException e) {
+            logger.warn("Unable to serve a derivative of size = {} for the file name = {}", size, fileName, e);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        final byte[] derivative = imageDerivatives.getDerivative(userId, fileName, size);
+        context.setContentLength(derivative.length);
+        context.setContentType(FileType.getContentType(fileType));
+        context.setHeader(Header.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+        final ServletOutputStream outputStream = context.getOutputStream();
+        outputStream.write(derivative);
+        outputStream.flush();
+    }
+
+    /**
+     * Sets the headers of a file from its metadata. Files uploaded before the size and content type were stored
+     * fall back to a HeadObject call.
+     *
+     * @return False if the client already has this version of the file, in which case the status is 304.
+     */
+    private boolean writeHeaders(final File fileInfo, final String ifNoneMatch, final HttpServletResponse context) {
+        long contentLength;
+        String contentType;
+        if (fileInfo.getFileSize() != null && fileInfo.getContentType() != null) {
+            contentLength = fileInfo.getFileSize();
+            contentType = fileInfo.getContentType();
+        } else {
+            final HeadObjectResponse headObjectResponse = s3Client.headObject(HeadObjectRequest.builder()
+                                                                                      .bucket(bucketName)
+                                                                                      .key(S3Util.getFileKey(fileInfo.getOwnerID(), fileInfo.getFileName()))
+                                                                                      .build());
+            contentLength = headObjectResponse.contentLength();
+            contentType = headObjectResponse.contentType();
+        }
+        if (fileInfo.getChecksum() != null) {
+            final String eTag = ChecksumUtil.toETag(fileInfo.getChecksum());
+            context.setHeader(Header.ETAG, eTag);
+            if (eTag.equals(ifNoneMatch)) {
+                context.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return false;
+            }
+        }
+        context.setContentLengthLong(contentLength);
+        context.setContentType(contentType);
+        context.setHeader(Header.CONTENT_DISPOSITION, "attachment; filename=" + fileInfo.getFileName());
+        return true;
+    }
+
+    /**
+     * Writes a file that was found in the DDB. Small files with a checksum are served from, and added to, the
+     * {@link ObjectCache}.
+     *
+     * @param prefetched Nullable. The S3 object of the file, already being requested. Released if it isn't needed,
+     *                   and requested here if it's needed but wasn't prefetched.
+     */
+    private void writeFile(final File fileInfo,
+                           final Integer size,
+                           final String ifNoneMatch,
+                           final CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetched,
+                           final HttpServletResponse context) throws IOException {
+        if (size != null) {
+            discardPrefetch(prefetched);
+            writeDerivative(fileInfo.getOwnerID(), fileInfo.getFileName(), size, context);
+            return;
+        }
+        // The headers come from the metadata, so only the content has to wait for S3.
+        final boolean headersFromMetadata = fileInfo.getFileSize() != null && fileInfo.getContentType() != null;
+        if (headersFromMetadata && !writeHeaders(fileInfo, ifNoneMatch, context)) {
+            discardPrefetch(prefetched);
+            return;
+        }
+        final boolean cacheable = headersFromMetadata && fileInfo.getChecksum() != null
+                && objectCache.isAdmissible(fileInfo.getFileSize());
+        final String cacheKey = S3Util.getFileKey(fileInfo.getOwnerID(), fileInfo.getFileName());
+        final ServletOutputStream outputStream = context.getOutputStream();
+        if (cacheable && objectCache.write(cacheKey, fileInfo.getChecksum(), Channels.newChannel(outputStream))) {
+            discardPrefetch(prefetched);
+            outputStream.flush();
+            return;
+        }
+
+        final ByteArrayOutputStream copy = cacheable ? new ByteArrayOutputStream(fileInfo.getFileSize().intValue()) : null;
+        try (final ResponseInputStream<GetObjectResponse> response = awaitPrefetch(prefetched != null ? prefetched : prefetch(fileInfo))) {
+            logger.debug("Found response from S3: {}", response.response());
+            if (!headersFromMetadata) {
+                context.setContentLengthLong(response.response().contentLength());
+                context.setContentType(response.response().contentType());
+                context.setHeader(Header.CONTENT_DISPOSITION, "attachment; filename=" + fileInfo.getFileName());
+            }
+            final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int length;
+            while ((length = response.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+                if (copy != null) {
+                    copy.write(buffer, 0, length);
+                }
+            }
+            outputStream.flush();
+        }
+        if (copy != null && copy.size() == fileInfo.getFileSize()) {
+            objectCache.put(cacheKey, fileInfo.getChecksum(), copy.toByteArray());
+        }
+    }
+
+    /**
+     * The file name and user id should uniquely identify a file. The S3 object is requested at the same time as the
+     * file is looked up in the DDB, since its key only depends on the name.
+     * @param fileName    Name of the file we're looking for (e.g. image.png).
+     * @param userId      User ID of the person that owns the file.
+     * @param size        Nullable. When set, a derivative of the image with this longest edge is returned instead.
+     * @param ifNoneMatch Nullable. The ETag of the version the client has, in which case nothing is sent back.
+     * @param context     The file that's stored in S3 is written to here.
      */
     @RequestMapping(path = "/getFile/{userId}/{fileName}", method = RequestMethod.GET)
     public void retrieveFileByName(@PathVariable("userId") final String userId,
                                    @PathVariable("fileName") final String fileName,
+                                   @RequestParam(name = "size", required = false) final Integer size,
+                                   @RequestHeader(name = Header.IF_NONE_MATCH, required = false) final String ifNoneMatch,
                                    @Context final HttpServletResponse context) throws IOException {
         logger.info("Attempting to retrieve the file with file name = {} and user ID = {}", fileName, userId);
 
+        final CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetched = size == null
+                ? prefetchUnlessCached(new File(fileName, null, userId, null))
+                : null;
         try {
-            final String keyExpression = String.format("%s = %s and %s = %s",
-                                                       TableAttributes.FILE_NAME_KEY, ":name",
-                                                       TableAttributes.USER_ID_KEY, ":user");
-            final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
-            expressionAttributeValues.put(":name", AttributeValue.builder().s(fileName).build());
-            expressionAttributeValues.put(":user", AttributeValue.builder().s(userId).build());
-
-            final QueryRequest queryRequest = QueryRequest.builder()
-                    .keyConditionExpression(keyExpression)
-                    .expressionAttributeValues(expressionAttributeValues)
-                    .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
-                    .tableName(tableName)
-                    .build();
-            final QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-            if (!queryResponse.hasItems() || queryResponse.items().isEmpty()) {
-                logger.warn("Was unable to find any items with file name = {} and user ID = {}", fileName, userId);
+            final File fileInfo = fileFetches.getFile(userShards.indexKeysOf(userId, fileName), fileName);
+            if (fileInfo.getFileUUID() == null) {
+                discardPrefetch(prefetched);
                 return;
             }
 
-            final Map<String, AttributeValue> item = queryResponse.items().get(0);
-            final String fileId = item.get(TableAttributes.FILE_ID_KEY).s();
-            logger.info("Was able to find the file with file name = {} and user ID = {}. File ID = {}", fileName, userId, fileId);
-
-            final ResponseInputStream<GetObjectResponse> response = S3Util.getS3File(fileName, userId, bucketName, s3Client);
-            logger.debug("Found response from S3: {}", response);
-
-            final int contentLength = Math.toIntExact(response.response().contentLength());
-            context.setContentLength(contentLength);
-            context.setContentType(response.response().contentType());
-            context.setHeader(Header.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
-            final ServletOutputStream outputStream = context.getOutputStream();
-            byte[] bbuf = new byte[contentLength + 1024];
-            DataInputStream in = new DataInputStream(response);
-            int length;
-            while ((length = in.read(bbuf)) != -1) {
-                outputStream.write(bbuf, 0, length);
-            }
-            in.close();
-            outputStream.flush();
+            logger.info("Was able to find the file with file name = {} and user ID = {}. File ID = {}", fileName, userId,
+                        fileInfo.getFileUUID());
+            writeFile(fileInfo, size, ifNoneMatch, prefetched, context);
         } catch (final S3Exception e) {
             logger.error("Something went wrong when finding the file with file name = {} and user ID = {} in S3", fileName, userId, e);
             throw e;
         }
         catch (final Exception e) {
+            discardPrefetch(prefetched);
             logger.error("Was unable to retrieve the file with file name = {} and user ID = {}", fileName, userId, e);
             throw e;
         }
@@ -110,21 +244,203 @@ public class GetFile {
 
     /**
      * Retrieves a file based on the file UUID.
-     * @param fileId    The file UUID we're looking for in the DDB.
-     * @param context   The file that's stored in S3 is written to here.
+     * @param fileId      The file UUID we're looking for in the DDB.
+     * @param size        Nullable. When set, a derivative of the image with this longest edge is returned instead.
+     * @param ifNoneMatch Nullable. The ETag of the version the client has, in which case nothing is sent back.
+     * @param context     The file that's stored in S3 is written to here.
      */
     @RequestMapping(path = "/getFile/{fileId}", method = RequestMethod.GET)
     public void retrieveFileById(@PathVariable("fileId") final String fileId,
+                                 @RequestParam(name = "size", required = false) final Integer size,
+                                 @RequestHeader(name = Header.IF_NONE_MATCH, required = false) final String ifNoneMatch,
                                  @Context HttpServletResponse context) throws IOException {
         logger.info("Attempting to retrieve the file with file ID = {}", fileId);
         try {
-            final File fileInfo = DynamoDBUtil.getFileFromDDB(fileId, tableName, dynamoDbClient);
+            final File fileInfo = fileFetches.getFile(fileId);
             logger.debug("Found fileInfo = {} in the DDB", fileInfo);
+            if (fileInfo.getFileUUID() == null) {
+                return;
+            }
 
-            retrieveFileByName(fileInfo.getOwnerID(), fileInfo.getFileName(), context);
+            writeFile(fileInfo, size, ifNoneMatch, size == null ? prefetchUnlessCached(fileInfo) : null, context);
         } catch (final Exception e) {
             logger.error("Was unable to retrieve the file with file ID = {}", fileId, e);
             throw e;
         }
     }
+
+    /**
+     * Answers a HEAD request from the file's metadata, without reading it from S3.
+     * @param fileName    Name of the file we're looking for (e.g. image.png).
+     * @param userId      User ID of the person that owns the file.
+     * @param ifNoneMatch Nullable. The ETag of the version the client has, in which case the status is 304.
+     * @param context     The headers of the file are set here. The status is 404 if the file doesn't exist.
+     */
+    @RequestMapping(path = "/getFile/{userId}/{fileName}", method = RequestMethod.HEAD)
+    public void headFileByName(@PathVariable("userId") final String userId,
+                               @PathVariable("fileName") final String fileName,
+                               @RequestHeader(name = Header.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+                               @Context final HttpServletResponse context) {
+        headFile(fileFetches.getFile(userShards.indexKeysOf(userId, fileName), fileName), ifNoneMatch, context);
+    }
+
+    /**
+     * Same as {@link #headFileByName}, based on the file UUID.
+     */
+    @RequestMapping(path = "/getFile/{fileId}", method = RequestMethod.HEAD)
+    public void headFileById(@PathVariable("fileId") final String fileId,
+                             @RequestHeader(name = Header.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+                             @Context final HttpServletResponse context) {
+        headFile(fileFetches.getFile(fileId), ifNoneMatch, context);
+    }
+
+    private void headFile(final File fileInfo, final String ifNoneMatch, final HttpServletResponse context) {
+        if (fileInfo.getFileUUID() == null) {
+            context.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try {
+            writeHeaders(fileInfo, ifNoneMatch, context);
+        } catch (final NoSuchKeyException e) {
+            logger.warn("The file = {} is missing from S3", fileInfo, e);
+            context.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    /**
+     * Finds the files owned by the user that were requested by ID or by name. Files that don't exist or belong to
+     * someone else are left out.
+     *
+     * @return The files in the order they were requested, without duplicates.
+     */
+    private List<File> findRequestedFiles(final String userId, final GetFilesRequest getFilesRequest) {
+        final Map<String, File> requestedFiles = new LinkedHashMap<>();
+        final Map<String, File> filesById = DynamoDBUtil.batchGetFilesFromDDB(getFilesRequest.getFileIds(), tableName,
+                                                                                dynamoDbClient, ioExecutor);
+        for (final String fileId : getFilesRequest.getFileIds()) {
+            final File fileInfo = filesById.get(fileId);
+            if (fileInfo == null || !userId.equals(fileInfo.getOwnerID())) {
+                logger.warn("Leaving the file with file ID = {} out of the bundle for user ID = {}", fileId, userId);
+                continue;
+            }
+            requestedFiles.put(fileId, fileInfo);
+        }
+        for (final String fileName : getFilesRequest.getFileNames()) {
+            final File fileInfo = DynamoDBUtil.getFileFromDDB(userShards.indexKeysOf(userId, fileName), fileName,
+                                                              tableName, dynamoDbClient);
+            if (fileInfo.getFileUUID() == null) {
+                logger.warn("Leaving the file with file name = {} out of the bundle for user ID = {}", fileName, userId);
+                continue;
+            }
+            requestedFiles.put(fileInfo.getFileUUID(), fileInfo);
+        }
+        // Files with the same name share an S3 object, and a ZIP can't hold duplicate entries.
+        final Set<String> fileNames = new HashSet<>();
+        return requestedFiles.values().stream()
+                .filter(fileInfo -> fileNames.add(fileInfo.getFileName()))
+                .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetch(final File fileInfo) {
+        return CompletableFuture.supplyAsync(() -> fileFetches.getS3File(fileInfo.getFileName(), fileInfo.getOwnerID()),
+                                             ioExecutor);
+    }
+
+    /**
+     * @return Null if some version of the file is cached, it's fetched later if that version turns out to be stale.
+     */
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetchUnlessCached(final File fileInfo) {
+        if (objectCache.mightContain(S3Util.getFileKey(fileInfo.getOwnerID(), fileInfo.getFileName()))) {
+            return null;
+        }
+        return prefetch(fileInfo);
+    }
+
+    private static ResponseInputStream<GetObjectResponse> awaitPrefetch(final CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetched) throws IOException {
+        try {
+            return prefetched.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching a file from S3", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Releases the S3 object of a prefetch that isn't needed, once it's fetched. The fetch isn't cancelled, since
+     * interrupting it could leave its connection (or its share of {@code coalescing.maxBufferedBytes}) unreleased.
+     */
+    private static void discardPrefetch(final CompletableFuture<ResponseInputStream<GetObjectResponse>> prefetched) {
+        if (prefetched == null) {
+            return;
+        }
+        prefetched.whenComplete((stream, e) -> {
+            if (stream != null) {
+                stream.abort();
+            }
+        });
+    }
+
+    /**
+     * Streams multiple files back as a single ZIP archive. The archive is written straight to the response, and while
+     * one entry is being written the next few S3 objects are already being requested. Only the open S3 streams are
+     * held at any point, so memory use doesn't grow with the number or size of the files.
+     *
+     * @param userId          The owner of the files.
+     * @param getFilesRequest The IDs and/or names of the files to bundle.
+     * @param context         The ZIP archive is written to here.
+     */
+    @PostMapping(path = "/getFiles/{userId}")
+    public void retrieveMultipleFiles(@PathVariable("userId") final String userId,
+                                      @RequestBody final GetFilesRequest getFilesRequest,
+                                      @Context final HttpServletResponse context) throws IOException {
+        logger.info("Attempting to bundle the files = {} for user ID = {}", getFilesRequest, userId);
+        final List<File> files = findRequestedFiles(userId, getFilesRequest);
+
+        context.setContentType(ZIP_CONTENT_TYPE);
+        context.setHeader(Header.CONTENT_DISPOSITION, "attachment; filename=files.zip");
+        final Deque<CompletableFuture<ResponseInputStream<GetObjectResponse>>> prefetched = new ArrayDeque<>();
+        int nextToFetch = 0;
+        try {
+            final ZipOutputStream zipOutputStream = new ZipOutputStream(context.getOutputStream());
+            final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            for (final File fileInfo : files) {
+                while (nextToFetch < files.size() && prefetched.size() < zipPrefetchWindow) {
+                    prefetched.add(prefetch(files.get(nextToFetch++)));
+                }
+
+                final ResponseInputStream<GetObjectResponse> objectStream;
+                try {
+                    objectStream = awaitPrefetch(prefetched.poll());
+                } catch (final NoSuchKeyException e) {
+                    logger.warn("The file = {} is missing from S3, leaving it out of the bundle", fileInfo, e);
+                    continue;
+                }
+
+                final ZipEntry zipEntry = new ZipEntry(fileInfo.getFileName());
+                zipEntry.setTime(Instant.parse(fileInfo.getCreationDate()).toEpochMilli());
+                zipOutputStream.putNextEntry(zipEntry);
+                try (final ResponseInputStream<GetObjectResponse> in = objectStream) {
+                    int length;
+                    while ((length = in.read(buffer)) != -1) {
+                        zipOutputStream.write(buffer, 0, length);
+                    }
+                }
+                zipOutputStream.closeEntry();
+            }
+            zipOutputStream.finish();
+            zipOutputStream.flush();
+            logger.info("Successfully bundled {} files for user ID = {}", files.size(), userId);
+        } catch (final Exception e) {
+            logger.error("Was unable to bundle the files = {} for user ID = {}", getFilesRequest, userId, e);
+            throw e;
+        } finally {
+            // Release the connections of anything that was fetched but never written.
+            prefetched.forEach(GetFile::discardPrefetch);
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package com.walmart.service.function;
+
+import com.walmart.service.metrics.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+
+@RestController
+@EnableWebMvc
+public class GetMetrics {
+
+    private final Metrics metrics;
+
+    @Autowired
+    public GetMetrics(final Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the counters and gauges of this container.
+     */
+    @GetMapping("/metrics")
+    public Map<String, Number> retrieveMetrics() {
+        return metrics.snapshot();
+    }
+}
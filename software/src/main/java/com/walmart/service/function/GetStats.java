@@ -0,0 +1,43 @@
+package com.walmart.service.function;
+
+import com.walmart.service.models.UserUsageResponse;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.stats.UserStats;
+import com.walmart.service.stats.UserStatsStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+@RestController
+@EnableWebMvc
+@RouteGroups(RouteGroup.LIST)
+public class GetStats {
+
+    private static final Logger logger = LoggerFactory.getLogger(GetStats.class);
+    private final UserStatsStore userStatsStore;
+
+    @Autowired
+    public GetStats(final UserStatsStore userStatsStore) {
+        this.userStatsStore = userStatsStore;
+    }
+
+    /**
+     * Returns how many files a user has and how much they store, from the user's statistics item. This is a single
+     * GetItem no matter how many files the user has.
+     */
+    @GetMapping(path = "/stats/{userId}")
+    public UserUsageResponse getStats(@PathVariable("userId") final String userId) {
+        try {
+            final UserStats stats = userStatsStore.readStats(userId);
+            return new UserUsageResponse(userId, stats.getFileCount(), stats.getTotalBytes(), stats.getBytesByType());
+        } catch (final Exception e) {
+            logger.error("Was unable to read the statistics of user ID = {}", userId, e);
+            throw e;
+        }
+    }
+}
@@ -1,8 +1,20 @@
 package com.walmart.service.function;
 
 import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.manifest.ManifestEntry;
+import com.walmart.service.manifest.ManifestStore;
+import com.walmart.service.manifest.ManifestView;
 import com.walmart.service.models.*;
+import com.walmart.service.planner.QueryPlanner;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.tracing.Tracing;
+import com.walmart.service.util.CompositeCursor;
 import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.QueryIterator;
+import com.walmart.service.util.SortedMerge;
+import io.opentelemetry.context.Scope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,22 +25,45 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 @RestController
 @EnableWebMvc
+@RouteGroups(RouteGroup.LIST)
 public class ListFiles {
 
     private static final Logger logger = LoggerFactory.getLogger(ListFiles.class);
     private final DynamoDbClient dynamoDbClient;
     private final String tableName;
+    private final UserShards userShards;
+    private final ExecutorService ioExecutor;
+    private final QueryPlanner queryPlanner;
+    private final int maxBranches;
+    private final ManifestStore manifestStore;
+    private static final char PLAN_TOKEN_SEPARATOR = ':';
+    // Listings served from a manifest keep doing so while it's up to date, their next tokens start with this.
+    private static final String MANIFEST_TOKEN_PREFIX = AccessPath.MANIFEST.name() + PLAN_TOKEN_SEPARATOR;
+    // Separates the sort key value from the file ID in the position of a batch listing branch.
+    private static final char POSITION_SEPARATOR = '\n';
 
     @Autowired
     public ListFiles(final LambdaConfigurationModule configurationModule,
-                     final DynamoDbClient dynamoDbClient) {
+                     final DynamoDbClient dynamoDbClient,
+                     final UserShards userShards,
+                     final ExecutorService ioExecutor,
+                     final QueryPlanner queryPlanner,
+                     final ManifestStore manifestStore) {
         this.tableName = configurationModule.getTableName();
         this.dynamoDbClient = dynamoDbClient;
+        this.userShards = userShards;
+        this.ioExecutor = ioExecutor;
+        this.queryPlanner = queryPlanner;
+        this.maxBranches = configurationModule.getListingMaxBranches();
+        this.manifestStore = manifestStore;
     }
 
     private String getLastEvaluatedKey(final QueryResponse queryResponse) {
@@ -70,7 +105,8 @@ public class ListFiles {
     public ListFilesResponse repeatedQuerying(QueryRequest queryRequest,
                                               int limit) {
         logger.info("Last evaluated key that's being used = {}", queryRequest.exclusiveStartKey());
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        int page = 1;
+        QueryResponse queryResponse = queryPage(queryRequest, page);
         final List<String> fileIds = getFileIdsFromQuery(queryResponse);
         limit = limit - queryResponse.count();
 
@@ -79,13 +115,90 @@ public class ListFiles {
                     .exclusiveStartKey(queryResponse.lastEvaluatedKey())
                     .limit(limit)
                     .build();
-            queryResponse = dynamoDbClient.query(queryRequest);
+            queryResponse = queryPage(queryRequest, ++page);
             fileIds.addAll(getFileIdsFromQuery(queryResponse));
+            limit = limit - queryResponse.count();
         }
 
         return new ListFilesResponse(fileIds, getLastEvaluatedKey(queryResponse));
     }
 
+    /**
+     * Queries one page, numbered on its trace span.
+     */
+    private QueryResponse queryPage(final QueryRequest queryRequest, final int page) {
+        try (Scope scope = Tracing.page(page)) {
+            return dynamoDbClient.query(queryRequest);
+        }
+    }
+
+    /**
+     * Runs a query against every index partition of a sharded user (see {@link UserShards}) in parallel, and does a
+     * k-way merge of the results by the index's sort key. The files come back in the same order as they would from a
+     * single partition, and the next token is the ID of the last file returned, like for unsharded users.
+     * <p>
+     * To resume, every shard starts after a key built from the last file's sort key and ID. Files that share a sort
+     * key value are ordered by file ID, which is only an issue for the time index since names are unique per user.
+     *
+     * @param queryRequest     The query for an unsharded user. Its :user value is replaced for every shard.
+     * @param sortKey          The sort key of the index being queried.
+     * @param lastEvaluatedKey Nullable. The attributes of the last file that was returned.
+     * @return A list of file IDs and potentially a nextToken value.
+     */
+    public ListFilesResponse scatterQuery(final QueryRequest queryRequest,
+                                          final String userId,
+                                          final String sortKey,
+                                          final Map<String, AttributeValue> lastEvaluatedKey,
+                                          final int limit) {
+        final List<QueryIterator> shards = startShardQueries(queryRequest, userId, sortKey, lastEvaluatedKey);
+        final Iterator<Map<String, AttributeValue>> merged = SortedMerge.merge(shards, sortKeyOrder(sortKey));
+        final List<String> fileIds = new ArrayList<>();
+        while (fileIds.size() < limit && merged.hasNext()) {
+            fileIds.add(merged.next().get(TableAttributes.FILE_ID_KEY).s());
+        }
+        logger.debug("Merged {} files from {} shards of user ID = {}", fileIds.size(), shards.size(), userId);
+        final String nextToken = merged.hasNext() && !fileIds.isEmpty() ? fileIds.get(fileIds.size() - 1) : null;
+        return new ListFilesResponse(fileIds, nextToken);
+    }
+
+    /**
+     * Starts the query on every index partition of the user (a single one for unsharded users).
+     */
+    private List<QueryIterator> startShardQueries(final QueryRequest queryRequest,
+                                                  final String userId,
+                                                  final String sortKey,
+                                                  final Map<String, AttributeValue> lastEvaluatedKey) {
+        final List<QueryIterator> shards = new ArrayList<>();
+        for (final String userIndexKey : userShards.indexKeysOf(userId)) {
+            final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>(queryRequest.expressionAttributeValues());
+            expressionAttributeValues.put(":user", AttributeValue.builder().s(userIndexKey).build());
+            shards.add(new QueryIterator(queryRequest.toBuilder()
+                                                 .expressionAttributeValues(expressionAttributeValues)
+                                                 .exclusiveStartKey(getShardStartKey(lastEvaluatedKey, userIndexKey, sortKey))
+                                                 .build(),
+                                         dynamoDbClient, ioExecutor));
+        }
+        return shards;
+    }
+
+    private static Comparator<Map<String, AttributeValue>> sortKeyOrder(final String sortKey) {
+        return Comparator.comparing((Map<String, AttributeValue> item) -> item.get(sortKey).s())
+                .thenComparing(item -> item.get(TableAttributes.FILE_ID_KEY).s());
+    }
+
+    private static Map<String, AttributeValue> getShardStartKey(final Map<String, AttributeValue> lastEvaluatedKey,
+                                                                final String userIndexKey,
+                                                                final String sortKey) {
+        if (lastEvaluatedKey == null) {
+            return null;
+        }
+        final Map<String, AttributeValue> startKey = new HashMap<>();
+        startKey.put(TableAttributes.USER_ID_KEY, AttributeValue.builder().s(userIndexKey).build());
+        startKey.put(sortKey, lastEvaluatedKey.get(sortKey));
+        startKey.put(TableAttributes.FILE_ID_KEY, lastEvaluatedKey.get(TableAttributes.FILE_ID_KEY));
+        return startKey;
+    }
+
     /**
      * Returns all files owned by this user that start with a specific string and also fall within a time range.
      * The time range defaults to all-time if not specified.
@@ -122,13 +235,17 @@ public class ListFiles {
                 .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
                 .tableName(tableName)
                 .build();
+        if (userShards.isSharded(userId)) {
+            return scatterQuery(queryRequest, userId, TableAttributes.FILE_NAME_KEY, lastEvaluatedKey, listFilesRequest.getLimit());
+        }
         return repeatedQuerying(queryRequest, listFilesRequest.getLimit());
     }
 
     /**
-     * Returns all files owned by this user that fall within a specific time range.
+     * Returns all files owned by this user that fall within a specific time range, and start with a specific string
+     * when a prefix is set.
      *
-     * @param listFilesRequest A class that contains the date range.
+     * @param listFilesRequest A class that contains the date range and potentially the prefix.
      * @param userId           The ID of the user that owns the files.
      * @param lastEvaluatedKey Nullable. The partition key to start from for these queries.
      * @return A list of file IDs and potentially a lastEvaluatedKey value.
@@ -148,15 +265,25 @@ public class ListFiles {
         expressionAttributeValues.put(":dateAfter", AttributeValue.builder().s(listFilesRequest.getCreatedAfter()).build());
         expressionAttributeValues.put(":dateBefore", AttributeValue.builder().s(listFilesRequest.getCreatedBefore()).build());
         expressionAttributeValues.put(":user", AttributeValue.builder().s(userId).build());
+        // TimeRangeNameIndex projects the file name, so a name prefix can be applied as a filter.
+        String filterExpression = null;
+        if (listFilesRequest.getNameBeginsWith() != null) {
+            filterExpression = String.format("begins_with (%s, %s)", TableAttributes.FILE_NAME_KEY, ":name");
+            expressionAttributeValues.put(":name", AttributeValue.builder().s(listFilesRequest.getNameBeginsWith()).build());
+        }
 
         final QueryRequest queryRequest = QueryRequest.builder()
                 .keyConditionExpression(keyExpression)
+                .filterExpression(filterExpression)
                 .expressionAttributeValues(expressionAttributeValues)
                 .limit(listFilesRequest.getLimit())
                 .exclusiveStartKey(lastEvaluatedKeyFiltered)
-                .indexName(TableAttributes.TIME_RANGE_INDEX_KEY)
+                .indexName(TableAttributes.TIME_RANGE_NAME_INDEX_KEY)
                 .tableName(tableName)
                 .build();
+        if (userShards.isSharded(userId)) {
+            return scatterQuery(queryRequest, userId, TableAttributes.CREATION_DATE_KEY, lastEvaluatedKey, listFilesRequest.getLimit());
+        }
         return repeatedQuerying(queryRequest, listFilesRequest.getLimit());
     }
 
@@ -171,6 +298,11 @@ public class ListFiles {
     public ListFilesResponse queryByUser(final String userId,
                                          int limit,
                                          final Map<String, AttributeValue> lastEvaluatedKey) {
+        if (userShards.isSharded(userId)) {
+            // UserIdIndex has no sort key, so its shards can't be merged in order. The time index over all time holds
+            // the same files.
+            return queryByTimeRange(ListFilesRequest.builder().limit(limit).build(), userId, lastEvaluatedKey);
+        }
 
         final Map<String, AttributeValue> lastEvaluatedKeyFiltered = DynamoDBUtil.removeUnwantedKeys(lastEvaluatedKey,
                                                                                                      TableAttributes.USER_ID_KEY,
@@ -191,25 +323,386 @@ public class ListFiles {
         return repeatedQuerying(queryRequest, limit);
     }
 
+    /**
+     * Returns the files owned by this user that are found by both the name prefix and the time range queries. Both
+     * ranges are read at the same time without filters: the time range in full to collect its file IDs, and the
+     * name range in order until enough of its files were also in the time range. The files come back in name order,
+     * like with {@link #queryByFileName}. Only the name range resumes from the next token, the time range is read
+     * again for every page, which the {@link QueryPlanner} charges for.
+     *
+     * @param listFilesRequest A class that contains the prefix and also the date range.
+     * @param userId           The ID of the user that owns the files.
+     * @param lastEvaluatedKey Nullable. The attributes of the last file that was returned.
+     * @return A list of file IDs and potentially a nextToken value.
+     */
+    public ListFilesResponse queryByIntersection(final ListFilesRequest listFilesRequest,
+                                                 final String userId,
+                                                 final Map<String, AttributeValue> lastEvaluatedKey) {
+        final Map<String, AttributeValue> timeValues = new HashMap<>();
+        timeValues.put(":dateAfter", AttributeValue.builder().s(listFilesRequest.getCreatedAfter()).build());
+        timeValues.put(":dateBefore", AttributeValue.builder().s(listFilesRequest.getCreatedBefore()).build());
+        timeValues.put(":user", AttributeValue.builder().s(userId).build());
+        final QueryRequest timeQuery = QueryRequest.builder()
+                .keyConditionExpression(String.format("%s BETWEEN %s AND %s and %s = %s",
+                                                      TableAttributes.CREATION_DATE_KEY, ":dateAfter", ":dateBefore",
+                                                      TableAttributes.USER_ID_KEY, ":user"))
+                .expressionAttributeValues(timeValues)
+                .indexName(TableAttributes.TIME_RANGE_NAME_INDEX_KEY)
+                .tableName(tableName)
+                .build();
+
+        final Map<String, AttributeValue> nameValues = new HashMap<>();
+        nameValues.put(":name", AttributeValue.builder().s(listFilesRequest.getNameBeginsWith()).build());
+        nameValues.put(":user", AttributeValue.builder().s(userId).build());
+        final QueryRequest nameQuery = QueryRequest.builder()
+                .keyConditionExpression(String.format("begins_with (%s, %s) and %s = %s",
+                                                      TableAttributes.FILE_NAME_KEY, ":name",
+                                                      TableAttributes.USER_ID_KEY, ":user"))
+                .expressionAttributeValues(nameValues)
+                .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
+                .tableName(tableName)
+                .build();
+
+        final List<QueryIterator> timeShards = startShardQueries(timeQuery, userId, TableAttributes.CREATION_DATE_KEY, null);
+        final List<QueryIterator> nameShards = startShardQueries(nameQuery, userId, TableAttributes.FILE_NAME_KEY, lastEvaluatedKey);
+        final Set<String> fileIdsInRange = new HashSet<>();
+        for (final QueryIterator shard : timeShards) {
+            shard.forEachRemaining(item -> fileIdsInRange.add(item.get(TableAttributes.FILE_ID_KEY).s()));
+        }
+
+        final Iterator<Map<String, AttributeValue>> names = SortedMerge.merge(nameShards, sortKeyOrder(TableAttributes.FILE_NAME_KEY));
+        final List<String> fileIds = new ArrayList<>();
+        while (fileIds.size() < listFilesRequest.getLimit() && names.hasNext()) {
+            final String fileId = names.next().get(TableAttributes.FILE_ID_KEY).s();
+            if (fileIdsInRange.contains(fileId)) {
+                fileIds.add(fileId);
+            }
+        }
+        logger.debug("Intersected {} files in the time range with the name prefix = {}", fileIdsInRange.size(),
+                     listFilesRequest.getNameBeginsWith());
+        final String nextToken = names.hasNext() && !fileIds.isEmpty() ? fileIds.get(fileIds.size() - 1) : null;
+        return new ListFilesResponse(fileIds, nextToken);
+    }
+
+    /**
+     * Returns the files owned by this user that match any branch of the request (see {@link BatchListFilesRequest}).
+     * Every branch is its own key condition query, and every branch (and every shard of a sharded user) is started in
+     * parallel. The results are merged by the index's sort key, and a file found by several branches is returned once.
+     * <p>
+     * The next token is a {@link CompositeCursor} with the last file returned by every branch, so each branch resumes
+     * where it left off and finished branches aren't queried again.
+     *
+     * @param cursor Nullable. The next token of the previous page.
+     * @return A list of file IDs and potentially a nextToken value.
+     * @throws IllegalArgumentException When the cursor doesn't belong to this request.
+     */
+    public ListFilesResponse listBranches(final BatchListFilesRequest batchRequest,
+                                          final String userId,
+                                          final String cursor) {
+        final boolean byName = !batchRequest.getNamePrefixes().isEmpty();
+        final String sortKey = byName ? TableAttributes.FILE_NAME_KEY : TableAttributes.CREATION_DATE_KEY;
+        final List<QueryRequest> branchQueries = byName
+                ? createPrefixBranchQueries(batchRequest, userId)
+                : createRangeBranchQueries(batchRequest, userId);
+        final String fingerprint = Integer.toHexString(Objects.hash(sortKey, batchRequest.getNamePrefixes(),
+                                                                    batchRequest.getDateRanges().stream()
+                                                                            .map(range -> range.getCreatedAfter() + range.getCreatedBefore())
+                                                                            .collect(Collectors.toList())));
+        final List<String> startPositions = cursor == null
+                ? new ArrayList<>(Collections.<String>nCopies(branchQueries.size(), null))
+                : CompositeCursor.decode(cursor, fingerprint, branchQueries.size());
+
+        final List<Branch> branches = new ArrayList<>();
+        for (int i = 0; i < branchQueries.size(); i++) {
+            final String startPosition = startPositions.get(i);
+            final Iterator<Map<String, AttributeValue>> items = CompositeCursor.DONE.equals(startPosition)
+                    ? Collections.<Map<String, AttributeValue>>emptyIterator()
+                    : SortedMerge.merge(startShardQueries(branchQueries.get(i), userId, sortKey,
+                                                          positionToKey(startPosition, sortKey)),
+                                        sortKeyOrder(sortKey));
+            branches.add(new Branch(i, startPosition, items));
+        }
+
+        final Comparator<Map<String, AttributeValue>> order = sortKeyOrder(sortKey);
+        final Iterator<BranchItem> merged = SortedMerge.merge(branches, (a, b) -> order.compare(a.item, b.item));
+        final List<String> fileIds = new ArrayList<>();
+        String lastFileId = null;
+        while (merged.hasNext()) {
+            final BranchItem next = merged.next();
+            final String fileId = next.item.get(TableAttributes.FILE_ID_KEY).s();
+            // A file found by several branches has the same sort key in all of them, so the copies are adjacent.
+            if (!fileId.equals(lastFileId)) {
+                if (fileIds.size() >= batchRequest.getLimit()) {
+                    // Not returned, so its branch will read it again from its own position.
+                    break;
+                }
+                fileIds.add(fileId);
+                lastFileId = fileId;
+            }
+            branches.get(next.branch).lastReturned = next.item;
+        }
+
+        final List<String> positions = branches.stream()
+                .map(branch -> branch.position(sortKey))
+                .collect(Collectors.toList());
+        logger.debug("Merged {} files from {} branches for user ID = {}, positions = {}", fileIds.size(),
+                     branches.size(), userId, positions);
+        final String nextToken = CompositeCursor.allDone(positions) ? null : CompositeCursor.encode(fingerprint, positions);
+        return new ListFilesResponse(fileIds, nextToken);
+    }
+
+    private List<QueryRequest> createPrefixBranchQueries(final BatchListFilesRequest batchRequest, final String userId) {
+        final String keyExpression = String.format("begins_with (%s, %s) and %s = %s",
+                                                   TableAttributes.FILE_NAME_KEY, ":name",
+                                                   TableAttributes.USER_ID_KEY, ":user");
+        // The date ranges become a single filter shared by every prefix.
+        final Map<String, AttributeValue> rangeValues = new HashMap<>();
+        final List<String> rangeConditions = new ArrayList<>();
+        for (int i = 0; i < batchRequest.getDateRanges().size(); i++) {
+            final DateRange dateRange = batchRequest.getDateRanges().get(i);
+            rangeConditions.add(String.format("%s BETWEEN %s AND %s", TableAttributes.CREATION_DATE_KEY,
+                                              ":dateAfter" + i, ":dateBefore" + i));
+            rangeValues.put(":dateAfter" + i, AttributeValue.builder().s(dateRange.getCreatedAfter()).build());
+            rangeValues.put(":dateBefore" + i, AttributeValue.builder().s(dateRange.getCreatedBefore()).build());
+        }
+        final String filterExpression = rangeConditions.isEmpty() ? null : String.join(" OR ", rangeConditions);
+
+        final List<QueryRequest> queries = new ArrayList<>();
+        for (final String namePrefix : batchRequest.getNamePrefixes()) {
+            final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>(rangeValues);
+            expressionAttributeValues.put(":name", AttributeValue.builder().s(namePrefix).build());
+            expressionAttributeValues.put(":user", AttributeValue.builder().s(userId).build());
+            queries.add(QueryRequest.builder()
+                                .keyConditionExpression(keyExpression)
+                                .filterExpression(filterExpression)
+                                .expressionAttributeValues(expressionAttributeValues)
+                                .limit(batchRequest.getLimit())
+                                .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
+                                .tableName(tableName)
+                                .build());
+        }
+        return queries;
+    }
+
+    private List<QueryRequest> createRangeBranchQueries(final BatchListFilesRequest batchRequest, final String userId) {
+        final String keyExpression = String.format("%s BETWEEN %s AND %s and %s = %s",
+                                                   TableAttributes.CREATION_DATE_KEY, ":dateAfter", ":dateBefore",
+                                                   TableAttributes.USER_ID_KEY, ":user");
+        final List<QueryRequest> queries = new ArrayList<>();
+        for (final DateRange dateRange : batchRequest.getDateRanges()) {
+            final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            expressionAttributeValues.put(":dateAfter", AttributeValue.builder().s(dateRange.getCreatedAfter()).build());
+            expressionAttributeValues.put(":dateBefore", AttributeValue.builder().s(dateRange.getCreatedBefore()).build());
+            expressionAttributeValues.put(":user", AttributeValue.builder().s(userId).build());
+            queries.add(QueryRequest.builder()
+                                .keyConditionExpression(keyExpression)
+                                .expressionAttributeValues(expressionAttributeValues)
+                                .limit(batchRequest.getLimit())
+                                .indexName(TableAttributes.TIME_RANGE_NAME_INDEX_KEY)
+                                .tableName(tableName)
+                                .build());
+        }
+        return queries;
+    }
+
+    private static Map<String, AttributeValue> positionToKey(final String position, final String sortKey) {
+        if (position == null) {
+            return null;
+        }
+        final int separator = position.lastIndexOf(POSITION_SEPARATOR);
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put(sortKey, AttributeValue.builder().s(position.substring(0, separator)).build());
+        key.put(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(position.substring(separator + 1)).build());
+        return key;
+    }
+
+    /**
+     * One branch of a batch listing. Tracks the last item it pulled from its queries and the last one that was
+     * returned to the caller, which tell where the branch resumes and whether it has anything left.
+     */
+    private static class Branch implements Iterator<BranchItem> {
+        private final int index;
+        private final String startPosition;
+        private final Iterator<Map<String, AttributeValue>> items;
+        private Map<String, AttributeValue> lastPulled;
+        private Map<String, AttributeValue> lastReturned;
+
+        private Branch(final int index, final String startPosition, final Iterator<Map<String, AttributeValue>> items) {
+            this.index = index;
+            this.startPosition = startPosition;
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public BranchItem next() {
+            lastPulled = items.next();
+            return new BranchItem(index, lastPulled);
+        }
+
+        private String position(final String sortKey) {
+            if (CompositeCursor.DONE.equals(startPosition) || (!items.hasNext() && lastPulled == lastReturned)) {
+                return CompositeCursor.DONE;
+            } else if (lastReturned == null) {
+                return startPosition;
+            }
+            return lastReturned.get(sortKey).s() + POSITION_SEPARATOR + lastReturned.get(TableAttributes.FILE_ID_KEY).s();
+        }
+    }
+
+    private static class BranchItem {
+        private final int branch;
+        private final Map<String, AttributeValue> item;
+
+        private BranchItem(final int branch, final Map<String, AttributeValue> item) {
+            this.branch = branch;
+            this.item = item;
+        }
+    }
+
+    @PostMapping(path = "/listFiles/{userId}/batch")
+    public ListFilesResponse handleBatchRequest(@RequestBody final BatchListFilesRequest batchRequest,
+                                                @PathVariable("userId") final String userId,
+                                                @RequestHeader(required = false, name = Header.NEXT_TOKEN) final String nextToken,
+                                                @Context final HttpServletResponse context) {
+        final int branchCount = batchRequest.branchCount();
+        if (branchCount == 0 || branchCount > maxBranches || batchRequest.getLimit() < 1) {
+            logger.error("Unable to list {} branches with limit = {}, between 1 and {} branches can be listed at once",
+                         branchCount, batchRequest.getLimit(), maxBranches);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        try {
+            final ListFilesResponse response = listBranches(batchRequest, userId, nextToken);
+            logger.debug("Batch List Files Result = {}", response);
+            return response;
+        } catch (final IllegalArgumentException e) {
+            logger.error("The next token = {} is not valid for {}", nextToken, batchRequest, e);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        } catch (final Exception e) {
+            logger.error("Received an exception while processing {}", batchRequest, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Lists the files from the user's manifest, in name order when there's a name prefix and in date order otherwise.
+     * The next token is the ID of the last file returned, prefixed with {@link #MANIFEST_TOKEN_PREFIX}.
+     *
+     * @param lastFileId Nullable. The ID of the last file returned by the previous page.
+     * @return Null if the user has no up to date manifest, or it doesn't have the last file.
+     */
+    public ListFilesResponse listFromManifest(final ListFilesRequest listFilesRequest,
+                                              final String userId,
+                                              final String lastFileId) {
+        final ManifestView view = manifestStore.freshView(userId);
+        if (view == null) {
+            return null;
+        }
+        final List<ManifestEntry> entries = view.list(listFilesRequest.getNameBeginsWith(),
+                                                      listFilesRequest.getCreatedAfter(),
+                                                      listFilesRequest.getCreatedBefore(),
+                                                      lastFileId,
+                                                      listFilesRequest.getLimit() + 1);
+        if (entries == null) {
+            logger.warn("The manifest of user ID = {} doesn't have the file ID = {} to continue from", userId, lastFileId);
+            return null;
+        }
+        final List<String> fileIds = entries.stream()
+                .limit(listFilesRequest.getLimit())
+                .map(ManifestEntry::getFileId)
+                .collect(Collectors.toList());
+        final String nextToken = entries.size() > listFilesRequest.getLimit() && !fileIds.isEmpty()
+                ? MANIFEST_TOKEN_PREFIX + fileIds.get(fileIds.size() - 1)
+                : null;
+        return new ListFilesResponse(fileIds, nextToken,
+                                     new QueryPlan(AccessPath.MANIFEST, "The user's manifest is up to date"));
+    }
+
+    /**
+     * @return The access path kept in a next token, or null if it isn't one (e.g. a tampered or outdated token).
+     */
+    private static AccessPath accessPathOf(final String name) {
+        for (final AccessPath accessPath : AccessPath.values()) {
+            if (accessPath.name().equals(name)) {
+                return accessPath;
+            }
+        }
+        return null;
+    }
+
     @PostMapping(path = "/listFiles/{userId}")
     public ListFilesResponse handleRequest(@RequestBody final ListFilesRequest listFilesRequest,
                                            @PathVariable("userId") final String userId,
-                                           @RequestHeader(required = false, name = Header.NEXT_TOKEN) final String nextToken) {
+                                           @RequestHeader(required = false, name = Header.NEXT_TOKEN) final String nextToken,
+                                           @Context final HttpServletResponse context) {
 
-        final Map<String, AttributeValue> lastEvaluatedKey = getLastEvalutedKeyItem(nextToken);
+        // A listing that started from the user's manifest keeps using it, and falls back to the index that has the
+        // same order when the manifest isn't up to date anymore.
+        final boolean continuesManifest = nextToken != null && nextToken.startsWith(MANIFEST_TOKEN_PREFIX);
+        if (nextToken == null || continuesManifest) {
+            final ListFilesResponse fromManifest = listFromManifest(listFilesRequest, userId, continuesManifest
+                    ? nextToken.substring(MANIFEST_TOKEN_PREFIX.length())
+                    : null);
+            if (fromManifest != null) {
+                logger.debug("List Files Result = {}", fromManifest);
+                return fromManifest;
+            }
+        }
+
+        // When a request has both a name prefix and a date range, the access path is picked by the planner. It's kept
+        // in the next token as <path>:<file ID> so every page of the listing uses the same path.
+        final boolean plannedByCost = listFilesRequest.getNameBeginsWith() != null && !listFilesRequest.datesAreDefault();
+        AccessPath previousPath = null;
+        String lastFileId = nextToken;
+        final int separator = nextToken == null ? -1 : nextToken.indexOf(PLAN_TOKEN_SEPARATOR);
+        if (continuesManifest) {
+            lastFileId = nextToken.substring(MANIFEST_TOKEN_PREFIX.length());
+            previousPath = plannedByCost ? AccessPath.NAME_INDEX : null;
+        } else if (plannedByCost && separator > 0) {
+            previousPath = accessPathOf(nextToken.substring(0, separator));
+            if (previousPath == null) {
+                logger.error("The next token = {} is not valid for {}", nextToken, listFilesRequest);
+                context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return null;
+            }
+            lastFileId = nextToken.substring(separator + 1);
+        }
+        final Map<String, AttributeValue> lastEvaluatedKey = getLastEvalutedKeyItem(lastFileId);
         logger.debug("Last Evaluated Key = {}", lastEvaluatedKey);
         try {
+            final QueryPlan plan = queryPlanner.plan(listFilesRequest, userId, previousPath);
+            // Without a prefix or date range a manifest lists in date order, which the time index over all time has too.
+            final AccessPath accessPath = continuesManifest && plan.getAccessPath() == AccessPath.USER_INDEX
+                    ? AccessPath.TIME_INDEX
+                    : plan.getAccessPath();
             final ListFilesResponse result;
-            if (listFilesRequest.getNameBeginsWith() != null) {
-                result = queryByFileName(listFilesRequest, userId, lastEvaluatedKey);
-            } else if (!listFilesRequest.datesAreDefault()) {
-                result = queryByTimeRange(listFilesRequest, userId, lastEvaluatedKey);
-            } else {
-                result = queryByUser(userId, listFilesRequest.getLimit(), lastEvaluatedKey);
+            switch (accessPath) {
+                case NAME_INDEX:
+                    result = queryByFileName(listFilesRequest, userId, lastEvaluatedKey);
+                    break;
+                case TIME_INDEX:
+                    result = queryByTimeRange(listFilesRequest, userId, lastEvaluatedKey);
+                    break;
+                case INTERSECTION:
+                    result = queryByIntersection(listFilesRequest, userId, lastEvaluatedKey);
+                    break;
+                default:
+                    result = queryByUser(userId, listFilesRequest.getLimit(), lastEvaluatedKey);
             }
 
-            logger.debug("List Files Result = {}", result);
-            return result;
+            final String resultNextToken = plannedByCost && result.getNextToken() != null
+                    ? accessPath.name() + PLAN_TOKEN_SEPARATOR + result.getNextToken()
+                    : result.getNextToken();
+            final ListFilesResponse response = new ListFilesResponse(result.getFileIDs(), resultNextToken, plan);
+            logger.debug("List Files Result = {}", response);
+            return response;
         } catch (final Exception e) {
             logger.error("Received an exception while processing {}", listFilesRequest, e);
             throw e;
@@ -0,0 +1,65 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.models.SearchFilesResponse;
+import com.walmart.service.models.SearchHit;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.search.SearchIndexStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
+import java.util.List;
+
+@RestController
+@EnableWebMvc
+@RouteGroups(RouteGroup.LIST)
+public class SearchFiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchFiles.class);
+    private final SearchIndexStore searchIndexStore;
+    private final int maxResults;
+
+    @Autowired
+    public SearchFiles(final SearchIndexStore searchIndexStore,
+                       final LambdaConfigurationModule configurationModule) {
+        this.searchIndexStore = searchIndexStore;
+        this.maxResults = configurationModule.getSearchMaxResults();
+    }
+
+    /**
+     * Finds the files of a user whose name contains the query, ignoring case. When no name contains it, names
+     * sharing most of its trigrams are returned instead.
+     *
+     * @param query   The text to look for in the file names.
+     * @param limit   The maximum number of hits, capped by search.maxResults.
+     * @param context Used to reject empty queries.
+     * @return The best matches first.
+     */
+    @GetMapping(path = "/searchFiles/{userId}")
+    public SearchFilesResponse searchFiles(@PathVariable("userId") final String userId,
+                                           @RequestParam("q") final String query,
+                                           @RequestParam(name = "limit", defaultValue = "25") final int limit,
+                                           @Context final HttpServletResponse context) {
+        if (query.isEmpty() || limit < 1) {
+            logger.error("Unable to search the files of user ID = {} for the query = '{}' with limit = {}", userId, query, limit);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+
+        try {
+            final List<SearchHit> hits = searchIndexStore.search(userId, query, Math.min(limit, maxResults));
+            logger.info("Found {} files for the query = '{}' and user ID = {}", hits.size(), query, userId);
+            return new SearchFilesResponse(hits);
+        } catch (final Exception e) {
+            logger.error("Was unable to search the files of user ID = {} for the query = '{}'", userId, query, e);
+            context.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            throw e;
+        }
+    }
+}
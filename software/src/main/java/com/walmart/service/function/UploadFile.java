@@ -2,12 +2,28 @@ package com.walmart.service.function;
 
 import com.walmart.service.LambdaConfigurationModule;
 import com.walmart.service.errors.ValidationException;
+import com.walmart.service.idempotency.IdempotencyStore;
+import com.walmart.service.images.ImageDerivatives;
+import com.walmart.service.manifest.ManifestStore;
 import com.walmart.service.models.File;
 import com.walmart.service.models.FileType;
+import com.walmart.service.models.Header;
 import com.walmart.service.models.MultipleFilesResponse;
 import com.walmart.service.models.Pair;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import com.walmart.service.search.SearchIndexStore;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.stats.UserStatsStore;
+import com.walmart.service.util.ChecksumUtil;
 import com.walmart.service.util.DynamoDBUtil;
 import com.walmart.service.util.RequestUtils;
+import com.walmart.service.util.S3Util;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,41 +34,90 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Context;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
 
 @RestController
 @EnableWebMvc
+@RouteGroups(RouteGroup.UPLOAD)
 public class UploadFile {
 
     private final LambdaConfigurationModule configurationModule;
     private final S3Client s3Client;
     private final DynamoDbClient dynamoDbClient;
+    private final ImageDerivatives imageDerivatives;
+    private final UserShards userShards;
+    private final SearchIndexStore searchIndexStore;
+    private final ManifestStore manifestStore;
+    private final UserStatsStore userStatsStore;
+    private final IdempotencyStore idempotencyStore;
+    // Uploads of the same name that race each other retry their transaction this many times at most.
+    private static final int NAME_CLAIM_ATTEMPTS = 3;
+    // S3 doesn't accept smaller parts in a multipart upload, except for the last one.
+    private static final int MIN_PART_BYTES = 5 * 1024 * 1024;
+    // Streaming uploads read their own body, so the multipart resolver has to leave them alone.
+    private static final Pattern STREAMING_UPLOAD_PATH = Pattern.compile("/uploadFile/[^/]+/stream/?$");
     private static final Logger logger = LoggerFactory.getLogger(UploadFile.class);
 
     @Autowired
     public UploadFile(final LambdaConfigurationModule configurationModule,
                       final S3Client s3Client,
-                      final DynamoDbClient dynamoDbClient) {
+                      final DynamoDbClient dynamoDbClient,
+                      final ImageDerivatives imageDerivatives,
+                      final UserShards userShards,
+                      final SearchIndexStore searchIndexStore,
+                      final ManifestStore manifestStore,
+                      final UserStatsStore userStatsStore,
+                      final IdempotencyStore idempotencyStore) {
         this.configurationModule = configurationModule;
         this.s3Client = s3Client;
         this.dynamoDbClient = dynamoDbClient;
+        this.imageDerivatives = imageDerivatives;
+        this.userShards = userShards;
+        this.searchIndexStore = searchIndexStore;
+        this.manifestStore = manifestStore;
+        this.userStatsStore = userStatsStore;
+        this.idempotencyStore = idempotencyStore;
     }
 
-    public void uploadFileToS3(final InputStream inputStream, final long fileSize,
-                               final String fileName, final String userId) throws ValidationException {
-        final software.amazon.awssdk.core.sync.RequestBody requestBody = software.amazon.awssdk.core.sync.RequestBody.fromInputStream(inputStream, fileSize);
+    /**
+     * Streams the file into S3, and computes the SHA-256 of its content on the way.
+     *
+     * @return The base64 encoded SHA-256 of the content.
+     */
+    public String uploadFileToS3(final InputStream inputStream, final long fileSize,
+                                 final String fileName, final String userId) throws ValidationException {
+        final MessageDigest digest = ChecksumUtil.newDigest();
+        final software.amazon.awssdk.core.sync.RequestBody requestBody = software.amazon.awssdk.core.sync.RequestBody.fromInputStream(new DigestInputStream(inputStream, digest), fileSize);
 
         final FileType fileType = RequestUtils.getFileType(fileName);
-        final String mediaType = FileType.getMediaType(fileType);
-        final String contentType = String.format("%s/%s", mediaType, fileType);
-        final String key = String.format("%s/%s", userId, fileName);
+        final String contentType = FileType.getContentType(fileType);
+        final String key = S3Util.getFileKey(userId, fileName);
         final PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .contentLength(fileSize)
                 .contentType(contentType)
@@ -63,19 +128,109 @@ public class UploadFile {
 
         s3Client.putObject(putObjectRequest, requestBody);
         logger.info("Successfully put the file = {}/{} into S3", userId, fileName);
+        return ChecksumUtil.encode(digest);
     }
 
-    public String createDDBEntry(final String userId, final String fileName, final String creationDate) {
-        final String fileId = UUID.randomUUID().toString();
-        final Map<String, AttributeValue> keyValuePairs = DynamoDBUtil.createAttributeValueMap(fileId, userId, fileName, creationDate);
+    /**
+     * Stores the file's metadata, together with its name pointer in the same transaction, and then counts it in the
+     * user's statistics. A user can only have one
+     * file per name: uploading a name again replaces the file (and keeps its ID), just like it replaces the S3 object.
+     * Files uploaded before name pointers existed are found through FileNameIndex, and keep their ID as well.
+     * For sharded users (see {@link UserShards}) the UserID carries the shard suffix.
+     *
+     * @param file The uploaded file without an ID. Its size, content type and checksum are stored with it, so
+     *             lookups and HEAD requests don't need S3.
+     * @return The ID of the file.
+     */
+    public String createDDBEntry(final File file) {
+        final String tableName = configurationModule.getTableName();
+        final String userId = file.getOwnerID();
+        final String fileName = file.getFileName();
+        final long fileSize = file.getFileSize();
+        final String userIndexKey = userShards.indexKeyFor(userId, fileName);
+        for (int attempt = 1; ; attempt++) {
+            final File existingFile = DynamoDBUtil.getNamePointerFromDDB(userId, fileName, tableName, dynamoDbClient);
+            final String existingFileId = existingFile.getFileUUID();
+            final String legacyFileId = existingFileId != null ? null
+                    : DynamoDBUtil.getLegacyFileFromDDB(userShards.indexKeysOf(userId, fileName), fileName,
+                                                        tableName, dynamoDbClient).getFileUUID();
+            final String fileId = existingFileId != null ? existingFileId
+                    : legacyFileId != null ? legacyFileId : UUID.randomUUID().toString();
+            final File storedFile = new File(fileName, fileId, userId, file.getCreationDate(), fileSize,
+                                             file.getContentType(), file.getChecksum());
+            final List<TransactWriteItem> writes = new ArrayList<>();
+            writes.add(TransactWriteItem.builder().put(createFileItem(storedFile, userIndexKey, existingFileId, legacyFileId)).build());
+            writes.add(TransactWriteItem.builder().put(createNamePointer(storedFile, existingFileId)).build());
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(writes).build());
+            } catch (final TransactionCanceledException e) {
+                // Another upload claimed (or released) the name between the read and the write.
+                if (attempt == NAME_CLAIM_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("The file name = {}/{} changed during the upload, retrying. Reasons = {}",
+                            userId, fileName, e.cancellationReasons());
+                DynamoDBUtil.sleepWithJitter(attempt);
+                continue;
+            }
+            logger.info("Successfully put the file = {}/{} as an entry in the database", userId, fileName);
+            // Files without a name pointer were never counted in the statistics.
+            userStatsStore.record(userId, existingFileId == null
+                    ? UserStatsStore.recordCreate(tableName, userId, fileName, file.getCreationDate(), fileSize)
+                    : UserStatsStore.recordReplace(tableName, userId, fileName, existingFile.getCreationDate(),
+                                                   existingFile.getFileSize(), file.getCreationDate(), fileSize));
+            return fileId;
+        }
+    }
 
-        final PutItemRequest putItemRequest = PutItemRequest.builder()
-                .item(keyValuePairs)
-                .tableName(configurationModule.getTableName())
-                .build();
-        dynamoDbClient.putItem(putItemRequest);
-        logger.info("Successfully put the file = {}/{} as an entry in the database", userId, fileName);
-        return fileId;
+    /**
+     * @param existingFileId The file the name pointer refers to, which is replaced as is.
+     * @param legacyFileId   A file without a name pointer, which is replaced only while it still has this name and
+     *                       wasn't deleted in the meantime.
+     */
+    private Put createFileItem(final File file, final String userIndexKey,
+                               final String existingFileId, final String legacyFileId) {
+        final Put.Builder put = Put.builder()
+                .item(DynamoDBUtil.createAttributeValueMap(file, userIndexKey))
+                .tableName(configurationModule.getTableName());
+        if (legacyFileId != null) {
+            put.conditionExpression(String.format("attribute_exists(%s) and %s = :name",
+                                                  TableAttributes.USER_ID_KEY, TableAttributes.FILE_NAME_KEY))
+                    .expressionAttributeValues(Collections.singletonMap(":name", AttributeValue.builder().s(file.getFileName()).build()));
+        } else if (existingFileId == null) {
+            put.conditionExpression(String.format("attribute_not_exists(%s)", TableAttributes.FILE_ID_KEY));
+        }
+        return put.build();
+    }
+
+    private Put createNamePointer(final File file, final String existingFileId) {
+        final Put.Builder put = Put.builder()
+                .item(DynamoDBUtil.createNamePointer(file))
+                .tableName(configurationModule.getTableName());
+        if (existingFileId == null) {
+            put.conditionExpression(String.format("attribute_not_exists(%s)", TableAttributes.FILE_ID_KEY));
+        } else {
+            put.conditionExpression(String.format("%s = :fileId", TableAttributes.TARGET_FILE_ID_KEY))
+                    .expressionAttributeValues(Collections.singletonMap(":fileId", AttributeValue.builder().s(existingFileId).build()));
+        }
+        return put.build();
+    }
+
+    /**
+     * Eagerly creates the image derivatives of an upload. Failures are only logged since derivatives are
+     * created lazily by {@link GetFile} as well.
+     *
+     * @param content Reads the content of the upload, only called for images.
+     */
+    private void createDerivatives(final Callable<byte[]> content, final String userId, final String fileName) {
+        try {
+            final FileType fileType = RequestUtils.getFileType(fileName);
+            if (FileType.isImage(fileType)) {
+                imageDerivatives.createAll(userId, fileName, content.call());
+            }
+        } catch (final Exception e) {
+            logger.warn("Was unable to create the derivatives for the file = {}/{}", userId, fileName, e);
+        }
     }
 
     public File uploadFile(final MultipartFile data,
@@ -83,11 +238,17 @@ public class UploadFile {
                            final String fileName) throws Exception {
         try {
             final String creationDate = Instant.now().toString();
+            RequestUtils.validateUserId(userId);
             RequestUtils.validateFileName(fileName);
-            this.uploadFileToS3(data.getInputStream(), data.getSize(), fileName, userId);
-            final String fileId = this.createDDBEntry(userId, fileName, creationDate);
+            final String checksum = this.uploadFileToS3(data.getInputStream(), data.getSize(), fileName, userId);
+            final String contentType = FileType.getContentType(RequestUtils.getFileType(fileName));
+            final String fileId = this.createDDBEntry(new File(fileName, null, userId, creationDate, data.getSize(),
+                                                               contentType, checksum));
+            if (configurationModule.isGenerateDerivativesOnUpload()) {
+                this.createDerivatives(data::getBytes, userId, fileName);
+            }
 
-            final File response = new File(fileName, fileId, userId, creationDate);
+            final File response = new File(fileName, fileId, userId, creationDate, data.getSize(), contentType, checksum);
             logger.info("File = {} successfully stored in S3 and DDB", response);
             return response;
         } catch (final Exception e) {
@@ -100,7 +261,31 @@ public class UploadFile {
     @PostMapping(path = "/uploadFile/{userId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
     public MultipleFilesResponse uploadMultipleFiles(@RequestBody List<MultipartFile> data,
-                                                     @PathVariable("userId") final String userId) {
+                                                     @PathVariable("userId") final String userId,
+                                                     @RequestHeader(required = false, name = Header.IDEMPOTENCY_KEY) final String idempotencyKey,
+                                                     @Context final HttpServletResponse context) {
+        return idempotencyStore.execute("uploadFile", userId, idempotencyKey, () -> describe(data),
+                                        MultipleFilesResponse.class, context, () -> uploadAll(data, userId));
+    }
+
+    /**
+     * @return The name, size and checksum of each file, what a retry of the same upload has in common with it.
+     */
+    private static List<String> describe(final List<MultipartFile> data) {
+        final List<String> files = new ArrayList<>();
+        for (final MultipartFile file : data) {
+            final MessageDigest digest = ChecksumUtil.newDigest();
+            try {
+                digest.update(file.getBytes());
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            files.add(file.getOriginalFilename() + "#" + file.getSize() + "#" + ChecksumUtil.encode(digest));
+        }
+        return files;
+    }
+
+    private MultipleFilesResponse uploadAll(final List<MultipartFile> data, final String userId) {
         final ArrayList<File> fileResponses = new ArrayList<>();
         final ArrayList<Pair> failedFileNames = new ArrayList<>();
         for (final MultipartFile file : data) {
@@ -114,6 +299,177 @@ public class UploadFile {
                 failedFileNames.add(new Pair(fileName, HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
             }
         }
+        recordUploads(userId, fileResponses);
+        return new MultipleFilesResponse(fileResponses, failedFileNames);
+    }
+
+    /**
+     * One search index update and one manifest delta for the whole request.
+     */
+    private void recordUploads(final String userId, final List<File> fileResponses) {
+        final Map<String, String> uploadedNames = new HashMap<>();
+        fileResponses.forEach(file -> uploadedNames.put(file.getFileUUID(), file.getFileName()));
+        searchIndexStore.update(userId, uploadedNames, Collections.<String>emptyList());
+        manifestStore.record(userId, fileResponses, Collections.<String>emptyList());
+    }
+
+    /**
+     * @return Whether the request is for {@link #uploadStreamedFiles}, whose body isn't parsed up front.
+     */
+    public static boolean isStreamingUpload(final HttpServletRequest request) {
+        return STREAMING_UPLOAD_PATH.matcher(request.getRequestURI()).find();
+    }
+
+    /**
+     * Reads the next part of an upload, up to the size of the buffer.
+     *
+     * @return The number of bytes read, less than the size of the buffer only at the end of the upload.
+     */
+    private static int readPart(final InputStream inputStream, final byte[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Streams a file of unknown size into S3 through a buffer of {@code upload.partBytes}. A file that fits in the
+     * buffer is stored with a single PutObject, and larger ones with a multipart upload, one buffer per part.
+     *
+     * @return The file without an ID or creation date, but with its size, content type and checksum.
+     */
+    private File streamFileToS3(final InputStream inputStream, final String fileName,
+                                final String userId) throws IOException, ValidationException {
+        final MessageDigest digest = ChecksumUtil.newDigest();
+        final InputStream content = new DigestInputStream(inputStream, digest);
+        final String contentType = FileType.getContentType(RequestUtils.getFileType(fileName));
+        final String bucketName = configurationModule.getBucketName();
+        final String key = S3Util.getFileKey(userId, fileName);
+        final byte[] buffer = new byte[Math.max(MIN_PART_BYTES, configurationModule.getUploadPartBytes())];
+
+        int length = readPart(content, buffer);
+        if (length < buffer.length) {
+            s3Client.putObject(PutObjectRequest.builder()
+                                       .contentLength((long) length)
+                                       .contentType(contentType)
+                                       .cacheControl("public, max-age=31536000")
+                                       .bucket(bucketName)
+                                       .key(key)
+                                       .build(),
+                               software.amazon.awssdk.core.sync.RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+            if (configurationModule.isGenerateDerivativesOnUpload()) {
+                final int size = length;
+                createDerivatives(() -> Arrays.copyOf(buffer, size), userId, fileName);
+            }
+            logger.info("Successfully put the file = {}/{} into S3", userId, fileName);
+            return new File(fileName, null, userId, null, (long) length, contentType, ChecksumUtil.encode(digest));
+        }
+
+        final String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                                                                       .contentType(contentType)
+                                                                       .cacheControl("public, max-age=31536000")
+                                                                       .bucket(bucketName)
+                                                                       .key(key)
+                                                                       .build()).uploadId();
+        try {
+            final List<CompletedPart> parts = new ArrayList<>();
+            long fileSize = 0;
+            while (length > 0) {
+                final int partNumber = parts.size() + 1;
+                final UploadPartResponse uploadPartResponse = s3Client.uploadPart(
+                        UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        software.amazon.awssdk.core.sync.RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(uploadPartResponse.eTag()).build());
+                fileSize += length;
+                length = length < buffer.length ? 0 : readPart(content, buffer);
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                                                     .bucket(bucketName)
+                                                     .key(key)
+                                                     .uploadId(uploadId)
+                                                     .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                                                     .build());
+            logger.info("Successfully put the file = {}/{} into S3 in {} parts", userId, fileName, parts.size());
+            return new File(fileName, null, userId, null, fileSize, contentType, ChecksumUtil.encode(digest));
+        } catch (final IOException | RuntimeException e) {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                                                  .bucket(bucketName)
+                                                  .key(key)
+                                                  .uploadId(uploadId)
+                                                  .build());
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #uploadMultipleFiles}, without holding the files in memory or on disk. The parts of the request
+     * are read one at a time, each one is validated from its headers and streamed into S3 as it's read, so memory
+     * use doesn't depend on the size of the upload.
+     *
+     * @param request       A multipart/form-data request. Parts without a file name (plain form fields) are ignored.
+     * @param contentSha256 Required with an idempotency key. The body isn't read before the key is claimed, so a
+     *                      reuse of the key for a different request is told apart by the client's digest of the body,
+     *                      along with its length and its Content-Type (which has the multipart boundary). The digest
+     *                      isn't checked against the body.
+     */
+    @PostMapping(path = "/uploadFile/{userId}/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public MultipleFilesResponse uploadStreamedFiles(@PathVariable("userId") final String userId,
+                                                     @RequestHeader(required = false, name = Header.IDEMPOTENCY_KEY) final String idempotencyKey,
+                                                     @RequestHeader(required = false, name = Header.CONTENT_SHA256) final String contentSha256,
+                                                     final HttpServletRequest request,
+                                                     @Context final HttpServletResponse context) throws Exception {
+        if (idempotencyKey != null && contentSha256 == null) {
+            logger.error("Unable to stream an upload with an idempotency key but without the {} header", Header.CONTENT_SHA256);
+            context.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        // A retry's body isn't read at all when the first request with its key already uploaded the files.
+        return idempotencyStore.execute("uploadFile/stream", userId, idempotencyKey,
+                                        () -> Arrays.asList(request.getContentLengthLong(), request.getContentType(), contentSha256),
+                                        MultipleFilesResponse.class, context, () -> streamAll(userId, request));
+    }
+
+    private MultipleFilesResponse streamAll(final String userId,
+                                            final HttpServletRequest request) throws IOException, FileUploadException {
+        final ArrayList<File> fileResponses = new ArrayList<>();
+        final ArrayList<Pair> failedFileNames = new ArrayList<>();
+        final FileItemIterator items = new ServletFileUpload().getItemIterator(request);
+        while (items.hasNext()) {
+            final FileItemStream item = items.next();
+            if (item.isFormField() || item.getName() == null) {
+                continue;
+            }
+            final String fileName = item.getName();
+            try (final InputStream inputStream = item.openStream()) {
+                final String creationDate = Instant.now().toString();
+                RequestUtils.validateUserId(userId);
+                RequestUtils.validateFileName(fileName);
+                final File uploaded = streamFileToS3(inputStream, fileName, userId);
+                final String fileId = createDDBEntry(new File(fileName, null, userId, creationDate, uploaded.getFileSize(),
+                                                              uploaded.getContentType(), uploaded.getChecksum()));
+                final File response = new File(fileName, fileId, userId, creationDate, uploaded.getFileSize(),
+                                               uploaded.getContentType(), uploaded.getChecksum());
+                logger.info("File = {} successfully streamed to S3 and stored in DDB", response);
+                fileResponses.add(response);
+            } catch (final ValidationException e) {
+                logger.warn("Rejected the streamed file = {} for user ID = {}", fileName, userId, e);
+                failedFileNames.add(new Pair(fileName, e.getErrorCodes().get(0).getStatusCode()));
+            } catch (final Exception e) {
+                logger.error("ERROR: Failed to process the streamed file = {}", fileName);
+                logger.error(ExceptionUtils.getStackTrace(e));
+                failedFileNames.add(new Pair(fileName, HttpServletResponse.SC_INTERNAL_SERVER_ERROR));
+            }
+        }
+        recordUploads(userId, fileResponses);
         return new MultipleFilesResponse(fileResponses, failedFileNames);
     }
 }
@@ -1,7 +1,13 @@
 package com.walmart.service.function;
 
+import com.walmart.service.jobs.DeleteJobRunner;
+import com.walmart.service.reclaim.Reclaimer;
+import com.walmart.service.routing.RouteGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
@@ -11,10 +17,32 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 public class Warmer {
 
     private static final Logger logger = LoggerFactory.getLogger(Warmer.class);
+    // Only resolved by the functions that run the background work, the others never create them.
+    private final ObjectProvider<Reclaimer> reclaimer;
+    private final ObjectProvider<DeleteJobRunner> deleteJobRunner;
+    private final boolean runsBackgroundWork;
 
+    @Autowired
+    public Warmer(final ObjectProvider<Reclaimer> reclaimer,
+                  final ObjectProvider<DeleteJobRunner> deleteJobRunner,
+                  final Environment environment) {
+        this.reclaimer = reclaimer;
+        this.deleteJobRunner = deleteJobRunner;
+        final RouteGroup routeGroup = RouteGroup.active(environment);
+        this.runsBackgroundWork = routeGroup == null || routeGroup == RouteGroup.DELETE;
+    }
+
+    /**
+     * Called every minute by the warming rule, which also makes it the schedule of the {@link Reclaimer} and of the
+     * delete jobs that didn't finish in their first slice. Only the function serving deletes runs them.
+     */
     @GetMapping("/")
     public String warmFunction() {
         logger.info("Warming Lambda function.");
+        if (runsBackgroundWork) {
+            reclaimer.getObject().reclaim();
+            deleteJobRunner.getObject().resumeAll();
+        }
         return "Warmed up Lambda";
     }
 }
@@ -0,0 +1,271 @@
+package com.walmart.service.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.MultipleFilesResponse;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.util.ChecksumUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Makes uploads and deletes safe to retry. The first request with an Idempotency-Key claims it with a conditional
+ * PutItem and records its response once it's done. Retries with the same key get that response back without redoing
+ * the work, and retries that arrive while the first request is still running wait for it.
+ * <p>
+ * The claim stores a hash of the request, so a key that's reused for a different request (e.g. another body) is
+ * rejected with 422 instead of getting the first request's response.
+ * <p>
+ * A request that fails, returns an error status or has files that failed releases its key so that it can be
+ * retried. A claim that's never completed (e.g. its Lambda
+ * timed out) can be taken over after {@code idempotency.claimSeconds}.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final long FIRST_POLL_MILLIS = 50;
+    private static final long MAX_POLL_MILLIS = 500;
+    private final DynamoDbClient dynamoDbClient;
+    private final Metrics metrics;
+    private final String tableName;
+    private final long ttlSeconds;
+    private final long claimSeconds;
+    private final long waitMillis;
+
+    /**
+     * The work done for a request, with the checked exception it may throw.
+     */
+    @FunctionalInterface
+    public interface Work<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    @Autowired
+    public IdempotencyStore(final DynamoDbClient dynamoDbClient,
+                            final Metrics metrics,
+                            final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.metrics = metrics;
+        this.tableName = configurationModule.getTableName();
+        this.ttlSeconds = configurationModule.getIdempotencyTtlSeconds();
+        this.claimSeconds = configurationModule.getIdempotencyClaimSeconds();
+        this.waitMillis = configurationModule.getIdempotencyWaitMillis();
+    }
+
+    /**
+     * Runs the work once per idempotency key.
+     *
+     * @param route          Keys are only shared by requests of the same route and user.
+     * @param idempotencyKey Nullable. Without a key the work is simply run.
+     * @param request        What identifies the request besides its route and user, e.g. its path variables and
+     *                       body. It's serialized as JSON and hashed, and only called when there's a key.
+     * @param responseType   The type the stored response is read back as.
+     * @param context        Gets the status of the stored response, 409 when the first request is still running
+     *                       after {@code idempotency.waitMillis}, or 422 when the key was used for another request.
+     * @return The response of the work, or the stored response of an earlier request with the same key.
+     */
+    public <T, E extends Exception> T execute(final String route,
+                                              final String userId,
+                                              final String idempotencyKey,
+                                              final Supplier<?> request,
+                                              final Class<T> responseType,
+                                              final HttpServletResponse context,
+                                              final Work<T, E> work) throws E {
+        if (idempotencyKey == null) {
+            return work.run();
+        }
+        final Map<String, AttributeValue> key = Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder()
+                .s(TableAttributes.IDEMPOTENCY_PREFIX + route + "#" + userId + "#" + idempotencyKey)
+                .build());
+        final String requestHash = hash(route, request.get());
+
+        final long deadline = System.currentTimeMillis() + waitMillis;
+        long pollMillis = FIRST_POLL_MILLIS;
+        while (!claim(key, requestHash)) {
+            final Map<String, AttributeValue> item = read(key);
+            if (item != null && !isSameRequest(item, requestHash)) {
+                metrics.increment("idempotency.mismatches");
+                logger.warn("The idempotency key = {} of user ID = {} was reused for a different request", idempotencyKey, userId);
+                context.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+                return null;
+            }
+            if (item != null && COMPLETED.equals(item.get(TableAttributes.IDEMPOTENCY_STATUS_KEY).s())) {
+                metrics.increment("idempotency.replayed");
+                logger.info("Replaying the response to the idempotency key = {} of user ID = {}", idempotencyKey, userId);
+                context.setStatus(Integer.parseInt(item.get(TableAttributes.RESPONSE_STATUS_KEY).n()));
+                return fromJson(item.get(TableAttributes.RESPONSE_BODY_KEY).s(), responseType);
+            }
+            if (item != null && System.currentTimeMillis() + pollMillis > deadline) {
+                metrics.increment("idempotency.conflicts");
+                logger.warn("The request with the idempotency key = {} of user ID = {} is still running", idempotencyKey, userId);
+                context.setStatus(HttpServletResponse.SC_CONFLICT);
+                return null;
+            }
+            if (item != null) {
+                metrics.increment("idempotency.waits");
+                sleep(pollMillis);
+                pollMillis = Math.min(MAX_POLL_MILLIS, pollMillis * 2);
+            }
+            // Otherwise the claim was released or expired since, and is taken again.
+        }
+
+        final T response;
+        try {
+            response = work.run();
+        } catch (final Exception e) {
+            release(key);
+            throw e;
+        }
+        if (isFinal(context.getStatus(), response)) {
+            complete(key, requestHash, context.getStatus(), toJson(response));
+        } else {
+            // A retry with the same key is run again, it may succeed where this request failed.
+            metrics.increment("idempotency.notRecorded");
+            release(key);
+        }
+        return response;
+    }
+
+    /**
+     * @return Whether the response is worth replaying: a success, without files that failed (e.g. on a transient S3
+     * or DynamoDB error).
+     */
+    private static boolean isFinal(final int status, final Object response) {
+        if (status < 200 || status >= 300) {
+            return false;
+        }
+        return !(response instanceof MultipleFilesResponse) || !((MultipleFilesResponse) response).hasFailures();
+    }
+
+    /**
+     * @return The base64 encoded SHA-256 of the route and the request's JSON.
+     */
+    private static String hash(final String route, final Object request) {
+        final MessageDigest digest = ChecksumUtil.newDigest();
+        digest.update(route.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(toJson(request).getBytes(StandardCharsets.UTF_8));
+        return ChecksumUtil.encode(digest);
+    }
+
+    /**
+     * @return False if the item was claimed by a different request. Items claimed before requests were hashed match
+     * any request.
+     */
+    private static boolean isSameRequest(final Map<String, AttributeValue> item, final String requestHash) {
+        final AttributeValue storedHash = item.get(TableAttributes.REQUEST_HASH_KEY);
+        return storedHash == null || requestHash.equals(storedHash.s());
+    }
+
+    private boolean claim(final Map<String, AttributeValue> key, final String requestHash) {
+        final Map<String, AttributeValue> item = new HashMap<>(key);
+        item.put(TableAttributes.IDEMPOTENCY_STATUS_KEY, AttributeValue.builder().s(IN_PROGRESS).build());
+        item.put(TableAttributes.REQUEST_HASH_KEY, AttributeValue.builder().s(requestHash).build());
+        item.put(TableAttributes.EXPIRES_AT_KEY, epochSecondsFromNow(claimSeconds));
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                                           .tableName(tableName)
+                                           .item(item)
+                                           // TTL deletes take up to a few days, so expired items count as missing.
+                                           .conditionExpression(String.format("attribute_not_exists(%s) OR %s < :now",
+                                                                              TableAttributes.FILE_ID_KEY,
+                                                                              TableAttributes.EXPIRES_AT_KEY))
+                                           .expressionAttributeValues(Collections.singletonMap(":now", epochSecondsFromNow(0)))
+                                           .build());
+            return true;
+        } catch (final ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    private Map<String, AttributeValue> read(final Map<String, AttributeValue> key) {
+        final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                               .tableName(tableName)
+                                                                               .key(key)
+                                                                               .consistentRead(true)
+                                                                               .build());
+        return getItemResponse.hasItem() && !getItemResponse.item().isEmpty() ? getItemResponse.item() : null;
+    }
+
+    private void complete(final Map<String, AttributeValue> key, final String requestHash, final int status, final String body) {
+        final Map<String, AttributeValue> item = new HashMap<>(key);
+        item.put(TableAttributes.IDEMPOTENCY_STATUS_KEY, AttributeValue.builder().s(COMPLETED).build());
+        item.put(TableAttributes.REQUEST_HASH_KEY, AttributeValue.builder().s(requestHash).build());
+        item.put(TableAttributes.RESPONSE_STATUS_KEY, AttributeValue.builder().n(Integer.toString(status)).build());
+        item.put(TableAttributes.RESPONSE_BODY_KEY, AttributeValue.builder().s(body).build());
+        item.put(TableAttributes.EXPIRES_AT_KEY, epochSecondsFromNow(ttlSeconds));
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder().tableName(tableName).item(item).build());
+        } catch (final RuntimeException e) {
+            // The work is done, a retry redoes it once the claim expires.
+            logger.warn("Was unable to record the response to the idempotency key = {}", key, e);
+        }
+    }
+
+    private void release(final Map<String, AttributeValue> key) {
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder().tableName(tableName).key(key).build());
+        } catch (final RuntimeException e) {
+            logger.warn("Was unable to release the idempotency key = {}, it expires on its own", key, e);
+        }
+    }
+
+    private static AttributeValue epochSecondsFromNow(final long seconds) {
+        return AttributeValue.builder()
+                .n(Long.toString(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds))
+                .build();
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted while waiting on an idempotency key", e));
+        }
+    }
+
+    private static String toJson(final Object response) {
+        try {
+            return Json.MAPPER.writeValueAsString(response);
+        } catch (final JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T fromJson(final String body, final Class<T> responseType) {
+        try {
+            return Json.MAPPER.readValue(body, responseType);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Holds the ObjectMapper, which is only created once a request uses an idempotency key.
+     */
+    private static class Json {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+}
@@ -0,0 +1,210 @@
+package com.walmart.service.images;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.errors.ErrorCode;
+import com.walmart.service.errors.ValidationException;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.FileType;
+import com.walmart.service.util.S3Util;
+import com.walmart.service.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and serves scaled down copies (derivatives) of uploaded images, e.g. gallery thumbnails.
+ * A derivative is identified by the size of its longest edge and is stored in S3 under {@link S3Util#getDerivativeKey}.
+ */
+@Component
+public class ImageDerivatives {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivatives.class);
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final Set<Integer> derivativeSizes;
+
+    // Derivatives currently being loaded or created, keyed by their S3 key. Concurrent requests share the same load.
+    private final SingleFlight<String, byte[]> loads;
+
+    @Autowired
+    public ImageDerivatives(final S3Client s3Client,
+                            final Metrics metrics,
+                            final LambdaConfigurationModule configurationModule) {
+        this.s3Client = s3Client;
+        this.loads = new SingleFlight<>(metrics, "coalescing.derivatives");
+        this.bucketName = configurationModule.getBucketName();
+        this.derivativeSizes = new TreeSet<>(configurationModule.getDerivativeSizes());
+    }
+
+    public Set<Integer> getDerivativeSizes() {
+        return Collections.unmodifiableSet(derivativeSizes);
+    }
+
+    /**
+     * Makes sure a derivative of the given size can be produced for the file.
+     *
+     * @return The type of the file.
+     */
+    public FileType validate(final String fileName, final int size) throws ValidationException {
+        final FileType fileType = fileTypeOf(fileName);
+        if (fileType == null || !FileType.isImage(fileType) || !derivativeSizes.contains(size)) {
+            throw new ValidationException(String.format("Unable to create a derivative of size %d for %s. Supported sizes = %s",
+                                                        size, fileName, derivativeSizes),
+                                          null, ErrorCode.UNSUPPORTED_DERIVATIVE_SIZE);
+        }
+        return fileType;
+    }
+
+    /**
+     * Retrieves a derivative from S3, creating it from the original image first if it doesn't exist yet.
+     * Concurrent calls for the same derivative share a single load (and creation).
+     *
+     * @return The encoded derivative.
+     */
+    public byte[] getDerivative(final String userId, final String fileName, final int size) throws IOException {
+        final String key = S3Util.getDerivativeKey(userId, fileName, size);
+        return loads.execute(key, () -> loadOrCreate(key, userId, fileName, size));
+    }
+
+    /**
+     * Creates every configured derivative of an image that was just uploaded.
+     *
+     * @param original The bytes of the original image.
+     */
+    public void createAll(final String userId, final String fileName, final byte[] original) throws IOException {
+        final FileType fileType = fileTypeOf(fileName);
+        final BufferedImage source = decode(original, fileName);
+        for (final int size : derivativeSizes) {
+            store(S3Util.getDerivativeKey(userId, fileName, size), encode(resize(source, size, fileType), fileType), fileType);
+        }
+        logger.info("Created the derivatives = {} for the file = {}/{}", derivativeSizes, userId, fileName);
+    }
+
+    /**
+     * @return The S3 keys of every configured derivative of a file, whether they were created or not.
+     */
+    public List<String> getDerivativeKeys(final String userId, final String fileName) {
+        return derivativeSizes.stream()
+                .map(size -> S3Util.getDerivativeKey(userId, fileName, size))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Removes every configured derivative of a file. Missing derivatives are ignored by S3.
+     */
+    public void deleteAll(final String userId, final String fileName) {
+        final List<ObjectIdentifier> keys = getDerivativeKeys(userId, fileName).stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .collect(Collectors.toList());
+        if (keys.isEmpty()) {
+            return;
+        }
+        s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                                       .bucket(bucketName)
+                                       .delete(Delete.builder().objects(keys).quiet(true).build())
+                                       .build());
+    }
+
+    private byte[] loadOrCreate(final String key, final String userId,
+                                final String fileName, final int size) throws IOException {
+        try {
+            return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                                                     .bucket(bucketName)
+                                                     .key(key)
+                                                     .build()).asByteArray();
+        } catch (final NoSuchKeyException e) {
+            logger.info("The derivative = {} doesn't exist yet, creating it", key);
+        }
+
+        final FileType fileType = fileTypeOf(fileName);
+        final byte[] original = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                                                                  .bucket(bucketName)
+                                                                  .key(S3Util.getFileKey(userId, fileName))
+                                                                  .build()).asByteArray();
+        final byte[] derivative = encode(resize(decode(original, fileName), size, fileType), fileType);
+        store(key, derivative, fileType);
+        return derivative;
+    }
+
+    private void store(final String key, final byte[] derivative, final FileType fileType) {
+        final PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .contentLength((long) derivative.length)
+                .contentType(FileType.getContentType(fileType))
+                .cacheControl("public, max-age=31536000")
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        s3Client.putObject(putObjectRequest, RequestBody.fromBytes(derivative));
+        logger.info("Successfully put the derivative = {} into S3", key);
+    }
+
+    private static FileType fileTypeOf(final String fileName) {
+        return FileType.fromString(fileName.substring(fileName.lastIndexOf('.') + 1));
+    }
+
+    private static BufferedImage decode(final byte[] original, final String fileName) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(original));
+        if (image == null) {
+            throw new IOException(String.format("The file = %s could not be decoded as an image", fileName));
+        }
+        return image;
+    }
+
+    static byte[] encode(final BufferedImage image, final FileType fileType) throws IOException {
+        final String formatName = fileType == FileType.PNG ? "png" : "jpeg";
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, formatName, outputStream)) {
+            throw new IOException(String.format("No image writer is available for %s", formatName));
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Scales an image down so its longest edge is at most {@code maxDimension} pixels, keeping the aspect ratio.
+     * Images that are already small enough keep their dimensions. Large reductions are done in halving steps,
+     * which keeps bilinear interpolation from dropping most of the source pixels.
+     */
+    static BufferedImage resize(final BufferedImage source, final int maxDimension, final FileType fileType) {
+        final double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        final int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        final int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        // JPEG has no alpha channel, so those derivatives are flattened onto a white background.
+        final boolean keepAlpha = fileType == FileType.PNG;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            final BufferedImage step = new BufferedImage(width, height,
+                                                         keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            final Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!keepAlpha) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+}
@@ -0,0 +1,177 @@
+package com.walmart.service.jobs;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.function.DeleteFiles;
+import com.walmart.service.function.ListFiles;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.BatchListFilesRequest;
+import com.walmart.service.models.DateRange;
+import com.walmart.service.models.File;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.models.ListFilesResponse;
+import com.walmart.service.util.DynamoDBUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs delete jobs in slices of at most {@code deleteJobs.sliceMillis}. A slice lists a batch of matching files with
+ * {@link ListFiles#listBranches}, deletes them with {@code deleteJobs.concurrency} deletes in flight, and checkpoints
+ * the listing's next token before the next batch. The token holds the sort key of the last file listed rather than
+ * the file itself, so it stays valid after the file is deleted, and a job that was cut short by a Lambda timeout
+ * continues from its last checkpoint.
+ */
+@Component
+public class DeleteJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeleteJobRunner.class);
+    // Added to the lease of a slice, for the batch that's in progress when the slice runs out of time.
+    private static final long LEASE_MARGIN_MILLIS = 30000;
+    private final DeleteJobStore deleteJobStore;
+    private final ListFiles listFiles;
+    private final DeleteFiles deleteFiles;
+    private final DynamoDbClient dynamoDbClient;
+    private final ExecutorService ioExecutor;
+    private final Metrics metrics;
+    private final String tableName;
+    private final int batchSize;
+    private final int concurrency;
+    private final long sliceMillis;
+
+    @Autowired
+    public DeleteJobRunner(final DeleteJobStore deleteJobStore,
+                           final ListFiles listFiles,
+                           final DeleteFiles deleteFiles,
+                           final DynamoDbClient dynamoDbClient,
+                           final ExecutorService ioExecutor,
+                           final Metrics metrics,
+                           final LambdaConfigurationModule configurationModule) {
+        this.deleteJobStore = deleteJobStore;
+        this.listFiles = listFiles;
+        this.deleteFiles = deleteFiles;
+        this.dynamoDbClient = dynamoDbClient;
+        this.ioExecutor = ioExecutor;
+        this.metrics = metrics;
+        this.tableName = configurationModule.getTableName();
+        this.batchSize = configurationModule.getDeleteJobsBatchSize();
+        this.concurrency = Math.max(1, configurationModule.getDeleteJobsConcurrency());
+        this.sliceMillis = configurationModule.getDeleteJobsSliceMillis();
+    }
+
+    /**
+     * Continues every unfinished job that no other instance is running, until the slice runs out of time.
+     */
+    public void resumeAll() {
+        final long deadline = System.currentTimeMillis() + sliceMillis;
+        final Set<String> jobIds;
+        try {
+            jobIds = deleteJobStore.activeJobIds();
+        } catch (final RuntimeException e) {
+            logger.warn("Was unable to read the active delete jobs", e);
+            return;
+        }
+        for (final String jobId : jobIds) {
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            try {
+                run(jobId, deadline);
+            } catch (final RuntimeException e) {
+                metrics.increment("deleteJobs.failures");
+                logger.warn("Was unable to continue the delete job = {}, it's retried on the next run", jobId, e);
+            }
+        }
+    }
+
+    /**
+     * Runs a slice of the job, unless another instance is running it.
+     */
+    public void run(final String jobId) {
+        run(jobId, System.currentTimeMillis() + sliceMillis);
+    }
+
+    private void run(final String jobId, final long deadline) {
+        final DeleteJobStore.Lease lease = deleteJobStore.acquire(jobId, deadline - System.currentTimeMillis() + LEASE_MARGIN_MILLIS);
+        if (lease == null) {
+            return;
+        }
+        final BatchListFilesRequest batchRequest = toBatchRequest(lease);
+        String cursor = lease.getCursor();
+        boolean leased = true;
+        do {
+            final long start = System.currentTimeMillis();
+            final ListFilesResponse page = listFiles.listBranches(batchRequest, lease.getUserId(), cursor);
+            final Collection<File> files = DynamoDBUtil.batchGetFilesFromDDB(page.getFileIDs(), tableName,
+                                                                             dynamoDbClient, ioExecutor).values();
+            final long deleted = deleteAll(lease.getUserId(), files);
+            final long failed = files.size() - deleted;
+            metrics.add("deleteJobs.deleted", deleted);
+            metrics.add("deleteJobs.failed", failed);
+            cursor = page.getNextToken();
+            final long leaseMillis = deadline - System.currentTimeMillis() + LEASE_MARGIN_MILLIS;
+            leased = deleteJobStore.checkpoint(lease, cursor, deleted, failed, System.currentTimeMillis() - start,
+                                               leaseMillis);
+        } while (leased && cursor != null && System.currentTimeMillis() < deadline);
+
+        if (cursor == null && leased) {
+            logger.info("Finished the delete job = {}", jobId);
+        } else if (leased) {
+            deleteJobStore.release(lease);
+        }
+    }
+
+    /**
+     * Deletes (or tombstones) the files in up to {@code deleteJobs.concurrency} parallel chunks, and then removes the
+     * deleted ones from the user's search index and manifest with a single write each.
+     *
+     * @return The number of files that were deleted.
+     */
+    private long deleteAll(final String userId, final Collection<File> files) {
+        final List<File> remaining = new ArrayList<>(files);
+        final List<String> deletedIds = Collections.synchronizedList(new ArrayList<>());
+        final int chunkSize = (remaining.size() + concurrency - 1) / concurrency;
+        final List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < remaining.size(); start += chunkSize) {
+            final List<File> chunk = remaining.subList(start, Math.min(start + chunkSize, remaining.size()));
+            chunks.add(CompletableFuture.runAsync(() -> chunk.forEach(file -> {
+                try {
+                    deleteFiles.deleteStoredFile(file.getOwnerID(), file.getFileName(), file.getFileUUID());
+                    deletedIds.add(file.getFileUUID());
+                } catch (final RuntimeException e) {
+                    logger.warn("Was unable to delete the file = {}", file.getFileUUID(), e);
+                }
+            }), ioExecutor));
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        deleteFiles.forget(userId, new ArrayList<>(deletedIds));
+        return deletedIds.size();
+    }
+
+    /**
+     * A filter with a name prefix lists FileNameIndex, and one without lists TimeRangeNameIndex, as ListFiles would.
+     */
+    private BatchListFilesRequest toBatchRequest(final DeleteJobStore.Lease lease) {
+        final ListFilesRequest filter = ListFilesRequest.builder()
+                .nameBeginsWith(lease.getNameBeginsWith())
+                .createdAfter(lease.getCreatedAfter())
+                .createdBefore(lease.getCreatedBefore())
+                .build();
+        final List<String> namePrefixes = filter.getNameBeginsWith() == null
+                ? Collections.<String>emptyList()
+                : Collections.singletonList(filter.getNameBeginsWith());
+        final List<DateRange> dateRanges = filter.getNameBeginsWith() != null && filter.datesAreDefault()
+                ? Collections.<DateRange>emptyList()
+                : Collections.singletonList(new DateRange(filter.getCreatedAfter(), filter.getCreatedBefore()));
+        return new BatchListFilesRequest(new ArrayList<>(namePrefixes), new ArrayList<>(dateRanges), batchSize);
+    }
+}
@@ -0,0 +1,306 @@
+package com.walmart.service.jobs;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.models.DeleteJob;
+import com.walmart.service.models.JobStatus;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.models.TableAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Reads and writes the items of delete jobs, keyed by JOB#jobId. The IDs of unfinished jobs are kept in the set of a
+ * single JOBS#ACTIVE item so they can be found without a scan.
+ * <p>
+ * A job is run by one instance at a time, which holds a lease on it. Every checkpoint is conditional on the lease,
+ * so an instance that lost it (e.g. its Lambda timed out and another instance took over) stops writing progress.
+ */
+@Component
+public class DeleteJobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeleteJobStore.class);
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    @Autowired
+    public DeleteJobStore(final DynamoDbClient dynamoDbClient,
+                          final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = configurationModule.getTableName();
+    }
+
+    /**
+     * Creates a job that deletes the files of the user matching the filter. The limit of the filter is ignored.
+     */
+    public DeleteJob create(final String userId, final ListFilesRequest filter) {
+        final String jobId = UUID.randomUUID().toString();
+        final String now = Instant.now().toString();
+        final Map<String, AttributeValue> item = new HashMap<>(getJobKey(jobId));
+        item.put(TableAttributes.OWNER_ID_KEY, AttributeValue.builder().s(userId).build());
+        item.put(TableAttributes.CREATION_DATE_KEY, AttributeValue.builder().s(now).build());
+        item.put(TableAttributes.UPDATED_AT_KEY, AttributeValue.builder().s(now).build());
+        item.put(TableAttributes.JOB_STATUS_KEY, AttributeValue.builder().s(JobStatus.RUNNING.name()).build());
+        if (filter.getNameBeginsWith() != null) {
+            item.put(TableAttributes.JOB_NAME_PREFIX_KEY, AttributeValue.builder().s(filter.getNameBeginsWith()).build());
+        }
+        item.put(TableAttributes.JOB_CREATED_AFTER_KEY, AttributeValue.builder().s(filter.getCreatedAfter()).build());
+        item.put(TableAttributes.JOB_CREATED_BEFORE_KEY, AttributeValue.builder().s(filter.getCreatedBefore()).build());
+        item.put(TableAttributes.DELETED_COUNT_KEY, number(0));
+        item.put(TableAttributes.FAILED_COUNT_KEY, number(0));
+        item.put(TableAttributes.ACTIVE_MILLIS_KEY, number(0));
+        item.put(TableAttributes.LEASE_EXPIRES_AT_KEY, number(0));
+
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                                                  .transactItems(TransactWriteItem.builder()
+                                                                         .put(Put.builder()
+                                                                                      .tableName(tableName)
+                                                                                      .item(item)
+                                                                                      .conditionExpression(String.format("attribute_not_exists(%s)", TableAttributes.FILE_ID_KEY))
+                                                                                      .build())
+                                                                         .build(),
+                                                                 TransactWriteItem.builder()
+                                                                         .update(updateActiveJobs("ADD", jobId))
+                                                                         .build())
+                                                  .build());
+        logger.info("Created the delete job = {} for user ID = {} and {}", jobId, userId, filter);
+        return itemToJob(item);
+    }
+
+    /**
+     * @return The job, read with a strongly consistent GetItem, or null if it doesn't exist.
+     */
+    public DeleteJob read(final String jobId) {
+        final Map<String, AttributeValue> item = getJobItem(jobId);
+        return item == null ? null : itemToJob(item);
+    }
+
+    /**
+     * @return The IDs of the jobs that are still running.
+     */
+    public Set<String> activeJobIds() {
+        final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                               .tableName(tableName)
+                                                                               .key(getActiveJobsKey())
+                                                                               .consistentRead(true)
+                                                                               .build());
+        if (!getItemResponse.hasItem() || !getItemResponse.item().containsKey(TableAttributes.JOB_IDS_KEY)) {
+            return Collections.emptySet();
+        }
+        return new LinkedHashSet<>(getItemResponse.item().get(TableAttributes.JOB_IDS_KEY).ss());
+    }
+
+    /**
+     * Takes the lease of a running job whose lease expired (or was released).
+     *
+     * @return Null if the job is done, doesn't exist, or is being run by another instance.
+     */
+    public Lease acquire(final String jobId, final long leaseMillis) {
+        final String leaseOwner = UUID.randomUUID().toString();
+        final long now = System.currentTimeMillis();
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":owner", AttributeValue.builder().s(leaseOwner).build());
+        values.put(":expires", number(now + leaseMillis));
+        values.put(":now", number(now));
+        values.put(":running", AttributeValue.builder().s(JobStatus.RUNNING.name()).build());
+        try {
+            final UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(getJobKey(jobId))
+                    .updateExpression(String.format("SET %s = :owner, %s = :expires",
+                                                    TableAttributes.LEASE_OWNER_KEY, TableAttributes.LEASE_EXPIRES_AT_KEY))
+                    .conditionExpression(String.format("%s = :running AND %s < :now",
+                                                       TableAttributes.JOB_STATUS_KEY, TableAttributes.LEASE_EXPIRES_AT_KEY))
+                    .expressionAttributeValues(values)
+                    .returnValues(ReturnValue.ALL_NEW)
+                    .build());
+            return new Lease(jobId, leaseOwner, updateItemResponse.attributes());
+        } catch (final ConditionalCheckFailedException e) {
+            logger.debug("The delete job = {} is done or leased by another instance", jobId);
+            return null;
+        }
+    }
+
+    /**
+     * Records the progress of a leased job and extends its lease. The job is done when the cursor is null, in which
+     * case it's also removed from the active jobs.
+     *
+     * @return False if the lease was lost, in which case nothing was recorded.
+     */
+    public boolean checkpoint(final Lease lease,
+                              final String cursor,
+                              final long deleted,
+                              final long failed,
+                              final long activeMillis,
+                              final long leaseMillis) {
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":owner", AttributeValue.builder().s(lease.getLeaseOwner()).build());
+        values.put(":now", AttributeValue.builder().s(Instant.now().toString()).build());
+        values.put(":deleted", number(deleted));
+        values.put(":failed", number(failed));
+        values.put(":active", number(activeMillis));
+        final String counts = String.format(" ADD %s :deleted, %s :failed, %s :active", TableAttributes.DELETED_COUNT_KEY,
+                                            TableAttributes.FAILED_COUNT_KEY, TableAttributes.ACTIVE_MILLIS_KEY);
+        final String updateExpression;
+        if (cursor != null) {
+            values.put(":cursor", AttributeValue.builder().s(cursor).build());
+            values.put(":expires", number(System.currentTimeMillis() + leaseMillis));
+            updateExpression = String.format("SET %s = :cursor, %s = :now, %s = :expires", TableAttributes.JOB_CURSOR_KEY,
+                                             TableAttributes.UPDATED_AT_KEY, TableAttributes.LEASE_EXPIRES_AT_KEY) + counts;
+        } else {
+            values.put(":done", AttributeValue.builder().s(JobStatus.DONE.name()).build());
+            updateExpression = String.format("SET %s = :done, %s = :now", TableAttributes.JOB_STATUS_KEY,
+                                             TableAttributes.UPDATED_AT_KEY) + counts +
+                    String.format(" REMOVE %s, %s", TableAttributes.JOB_CURSOR_KEY, TableAttributes.LEASE_OWNER_KEY);
+        }
+        final Update jobUpdate = Update.builder()
+                .tableName(tableName)
+                .key(getJobKey(lease.getJobId()))
+                .updateExpression(updateExpression)
+                .conditionExpression(String.format("%s = :owner", TableAttributes.LEASE_OWNER_KEY))
+                .expressionAttributeValues(values)
+                .build();
+        final List<TransactWriteItem> writes = new ArrayList<>();
+        writes.add(TransactWriteItem.builder().update(jobUpdate).build());
+        if (cursor == null) {
+            writes.add(TransactWriteItem.builder().update(updateActiveJobs("DELETE", lease.getJobId())).build());
+        }
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(writes).build());
+            return true;
+        } catch (final TransactionCanceledException e) {
+            logger.warn("Lost the lease of the delete job = {}, another instance took it over", lease.getJobId());
+            return false;
+        }
+    }
+
+    /**
+     * Lets another run take over the job right away, instead of when the lease expires.
+     */
+    public void release(final Lease lease) {
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":zero", number(0));
+        values.put(":owner", AttributeValue.builder().s(lease.getLeaseOwner()).build());
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                              .tableName(tableName)
+                                              .key(getJobKey(lease.getJobId()))
+                                              .updateExpression(String.format("SET %s = :zero", TableAttributes.LEASE_EXPIRES_AT_KEY))
+                                              .conditionExpression(String.format("%s = :owner", TableAttributes.LEASE_OWNER_KEY))
+                                              .expressionAttributeValues(values)
+                                              .build());
+        } catch (final ConditionalCheckFailedException e) {
+            logger.debug("The lease of the delete job = {} was already taken over", lease.getJobId());
+        }
+    }
+
+    private Map<String, AttributeValue> getJobItem(final String jobId) {
+        final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                               .tableName(tableName)
+                                                                               .key(getJobKey(jobId))
+                                                                               .consistentRead(true)
+                                                                               .build());
+        return getItemResponse.hasItem() && !getItemResponse.item().isEmpty() ? getItemResponse.item() : null;
+    }
+
+    private Update updateActiveJobs(final String action, final String jobId) {
+        return Update.builder()
+                .tableName(tableName)
+                .key(getActiveJobsKey())
+                .updateExpression(String.format("%s %s :ids", action, TableAttributes.JOB_IDS_KEY))
+                .expressionAttributeValues(Collections.singletonMap(":ids", AttributeValue.builder().ss(jobId).build()))
+                .build();
+    }
+
+    private static Map<String, AttributeValue> getJobKey(final String jobId) {
+        return Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                        AttributeValue.builder().s(TableAttributes.JOB_PREFIX + jobId).build());
+    }
+
+    private static Map<String, AttributeValue> getActiveJobsKey() {
+        return Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                        AttributeValue.builder().s(TableAttributes.ACTIVE_JOBS_ID).build());
+    }
+
+    private static AttributeValue number(final long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+
+    private static long getNumber(final Map<String, AttributeValue> item, final String key) {
+        final AttributeValue value = item.get(key);
+        return value == null ? 0 : Long.parseLong(value.n());
+    }
+
+    private static String getString(final Map<String, AttributeValue> item, final String key) {
+        final AttributeValue value = item.get(key);
+        return value == null ? null : value.s();
+    }
+
+    private static DeleteJob itemToJob(final Map<String, AttributeValue> item) {
+        final long deleted = getNumber(item, TableAttributes.DELETED_COUNT_KEY);
+        final long activeMillis = getNumber(item, TableAttributes.ACTIVE_MILLIS_KEY);
+        return new DeleteJob(item.get(TableAttributes.FILE_ID_KEY).s().substring(TableAttributes.JOB_PREFIX.length()),
+                             getString(item, TableAttributes.OWNER_ID_KEY),
+                             JobStatus.valueOf(getString(item, TableAttributes.JOB_STATUS_KEY)),
+                             getString(item, TableAttributes.JOB_NAME_PREFIX_KEY),
+                             getString(item, TableAttributes.JOB_CREATED_AFTER_KEY),
+                             getString(item, TableAttributes.JOB_CREATED_BEFORE_KEY),
+                             deleted,
+                             getNumber(item, TableAttributes.FAILED_COUNT_KEY),
+                             getString(item, TableAttributes.CREATION_DATE_KEY),
+                             getString(item, TableAttributes.UPDATED_AT_KEY),
+                             activeMillis == 0 ? 0 : deleted * 1000.0 / activeMillis);
+    }
+
+    /**
+     * The right to run a job until its lease expires, with the job as it was when the lease was taken.
+     */
+    public static class Lease {
+        private final String jobId;
+        private final String leaseOwner;
+        private final Map<String, AttributeValue> item;
+
+        private Lease(final String jobId, final String leaseOwner, final Map<String, AttributeValue> item) {
+            this.jobId = jobId;
+            this.leaseOwner = leaseOwner;
+            this.item = item;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        String getLeaseOwner() {
+            return leaseOwner;
+        }
+
+        public String getUserId() {
+            return getString(item, TableAttributes.OWNER_ID_KEY);
+        }
+
+        public String getNameBeginsWith() {
+            return getString(item, TableAttributes.JOB_NAME_PREFIX_KEY);
+        }
+
+        public String getCreatedAfter() {
+            return getString(item, TableAttributes.JOB_CREATED_AFTER_KEY);
+        }
+
+        public String getCreatedBefore() {
+            return getString(item, TableAttributes.JOB_CREATED_BEFORE_KEY);
+        }
+
+        /**
+         * @return Null if the job hasn't listed any files yet.
+         */
+        public String getCursor() {
+            return getString(item, TableAttributes.JOB_CURSOR_KEY);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.walmart.service.limiting;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.routing.RouteGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Sheds the requests the {@link ConcurrencyLimiter} rejects before anything is read, including the parts of an
+ * upload. Bulk requests get a 429, and the others a 503, both with a Retry-After of {@code limiting.retryAfterSeconds}.
+ * The warmer and metrics routes are never limited.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+    private static final String REJECTED_BODY = "{\"message\":\"The service is overloaded, retry later\"}";
+    private final ConcurrencyLimiter limiter;
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public ConcurrencyLimitFilter(final ConcurrencyLimiter limiter, final LambdaConfigurationModule configurationModule) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = Long.toString(configurationModule.getLimitingRetryAfterSeconds());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !limiter.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final RouteGroup routeGroup = RouteGroup.of(path);
+        if (routeGroup == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        final Priority priority = Priority.of(request.getMethod(), path);
+        final ConcurrencyLimiter.Permit permit = limiter.tryAcquire(routeGroup, priority);
+        if (permit == null) {
+            logger.debug("Shedding the {} request to {}", priority, path);
+            response.setStatus(priority == Priority.BULK
+                                      ? HttpStatus.TOO_MANY_REQUESTS.value()
+                                      : HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write(REJECTED_BODY);
+            return;
+        }
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= 500;
+        } finally {
+            permit.release(dropped);
+        }
+    }
+}
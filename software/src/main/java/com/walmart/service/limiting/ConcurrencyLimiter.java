@@ -0,0 +1,134 @@
+package com.walmart.service.limiting;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.routing.RouteGroup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the requests in flight when the service runs as a server, where every request holds one of the server's
+ * threads. Each route group has its own {@link GradientLimit}, since the groups' latencies have little in common,
+ * and all groups together are held to {@code limiting.maxInflight}. Bulk requests may only use
+ * {@code limiting.bulkShare} of both, which leaves the rest to the cheap ones.
+ * <p>
+ * The limits, the requests in flight and the rejections are exported through {@link Metrics}.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private final Metrics metrics;
+    private final boolean enabled;
+    private final int maxInflight;
+    private final double bulkShare;
+    private final Map<RouteGroup, Group> groups = new EnumMap<>(RouteGroup.class);
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * A request that was let in, which is released once it's done.
+     */
+    public final class Permit {
+        private final Group group;
+        private final int inflightAtStart;
+        private final long start = System.nanoTime();
+
+        private Permit(final Group group, final int inflightAtStart) {
+            this.group = group;
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * @param dropped Whether the request failed, which backs the limit off.
+         */
+        public void release(final boolean dropped) {
+            group.limit.onSample(System.nanoTime() - start, inflightAtStart, dropped);
+            group.inflight.decrementAndGet();
+            inflight.decrementAndGet();
+        }
+    }
+
+    private static final class Group {
+        private final GradientLimit limit;
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        private Group(final GradientLimit limit) {
+            this.limit = limit;
+        }
+    }
+
+    @Autowired
+    public ConcurrencyLimiter(final Metrics metrics, final LambdaConfigurationModule configurationModule) {
+        this(metrics,
+             configurationModule.isLimitingEnabled(),
+             configurationModule.getLimitingInitialLimit(),
+             configurationModule.getLimitingMinLimit(),
+             configurationModule.getLimitingMaxLimit(),
+             configurationModule.getLimitingMaxInflight(),
+             configurationModule.getLimitingBulkShare());
+    }
+
+    ConcurrencyLimiter(final Metrics metrics,
+                       final boolean enabled,
+                       final int initialLimit,
+                       final int minLimit,
+                       final int maxLimit,
+                       final int maxInflight,
+                       final double bulkShare) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.maxInflight = maxInflight;
+        this.bulkShare = bulkShare;
+        for (final RouteGroup routeGroup : RouteGroup.values()) {
+            final Group group = new Group(new GradientLimit(initialLimit, minLimit, maxLimit));
+            groups.put(routeGroup, group);
+            if (enabled) {
+                metrics.gauge(String.format("limiting.limit.%s", routeGroup.profile()), group.limit::getLimit);
+                metrics.gauge(String.format("limiting.inflight.%s", routeGroup.profile()), group.inflight::get);
+            }
+        }
+        if (enabled) {
+            metrics.gauge("limiting.inflight.total", inflight::get);
+        }
+    }
+
+    /**
+     * @return Whether requests are limited, only when the service runs as a server (see LambdaApplication#main).
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Null if the request has to be rejected.
+     */
+    public Permit tryAcquire(final RouteGroup routeGroup, final Priority priority) {
+        final Group group = groups.get(routeGroup);
+        final double share = priority == Priority.BULK ? bulkShare : 1.0;
+        final int groupInflight = group.inflight.incrementAndGet();
+        if (groupInflight > Math.max(1, (int) (group.limit.getLimit() * share))) {
+            group.inflight.decrementAndGet();
+            return reject(routeGroup, priority);
+        }
+        if (inflight.incrementAndGet() > Math.max(1, (int) (maxInflight * share))) {
+            inflight.decrementAndGet();
+            group.inflight.decrementAndGet();
+            return reject(routeGroup, priority);
+        }
+        return new Permit(group, groupInflight);
+    }
+
+    private Permit reject(final RouteGroup routeGroup, final Priority priority) {
+        metrics.increment(String.format("limiting.rejected.%s.%s", routeGroup.profile(),
+                                        priority.name().toLowerCase(Locale.ROOT)));
+        return null;
+    }
+
+    int getLimit(final RouteGroup routeGroup) {
+        return groups.get(routeGroup).limit.getLimit();
+    }
+}
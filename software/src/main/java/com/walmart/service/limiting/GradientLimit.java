@@ -0,0 +1,62 @@
+package com.walmart.service.limiting;
+
+/**
+ * A concurrency limit that follows the latency of the requests, in the style of the gradient limits of Netflix's
+ * concurrency-limits. Requests are compared against the long term average latency: as long as they're no slower than
+ * {@link #TOLERANCE} times the average, the limit grows by its square root, and once they're slower (i.e. requests
+ * queue on the AWS clients or on threads), it shrinks by the ratio down to half. A failed request (a 5xx, which
+ * includes throttles and open circuits surfacing) cuts the limit by {@link #BACKOFF_RATIO} right away.
+ * <p>
+ * Samples taken while less than half of the limit was in use say nothing about the limit, so they only update the
+ * averages.
+ */
+class GradientLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+    private static final int SHORT_WINDOW = 10;
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double longRttNanos;
+    private double shortRttNanos;
+    private long samples;
+
+    GradientLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @param rttNanos How long the request took.
+     * @param inflight The requests in flight when it started, itself included.
+     * @param dropped  Whether it failed.
+     */
+    synchronized void onSample(final long rttNanos, final int inflight, final boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        samples++;
+        longRttNanos += (rttNanos - longRttNanos) / Math.min(samples, LONG_WINDOW);
+        shortRttNanos += (rttNanos - shortRttNanos) / Math.min(samples, SHORT_WINDOW);
+        // Once a spike passed, the average would stay above the requests' latency for a long time and keep the limit
+        // too high when the next one comes.
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (inflight < limit / 2) {
+            return;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        final double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,25 @@
+package com.walmart.service.limiting;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * How a request is admitted once a limit is close. Bulk requests hold a thread and the AWS clients' connections for
+ * much longer than the cheap requests clients wait on, so they may only use part of each limit.
+ */
+public enum Priority {
+    // Listings and HEADs.
+    CRITICAL,
+    NORMAL,
+    // Uploads, ZIP bundles and deletes of many files.
+    BULK;
+
+    public static Priority of(final String method, final String path) {
+        if (HttpMethod.HEAD.matches(method) || path.startsWith("/listFiles/")) {
+            return CRITICAL;
+        }
+        if (path.startsWith("/uploadFile/") || path.startsWith("/getFiles/") || path.startsWith("/deleteFiles/")) {
+            return BULK;
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,265 @@
+package com.walmart.service.manifest;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An immutable snapshot of a user's files, sorted in every {@link ManifestOrder}.
+ * <p>
+ * Every order is split into blocks of {@link #BLOCK_ENTRIES} entries that are deflated on their own, followed by an
+ * index with the first position (key and file ID) of every block:
+ * <pre>
+ * MFT1 | changeCount | entryCount | blocks of every order... | index of every order | index offset | MFT1
+ * </pre>
+ * Only the indexes are read when the manifest is opened, usually over a memory-mapped file. A scan binary searches
+ * the index of its order and inflates the blocks it reads one at a time, so it never touches the rest of the file.
+ * Thread safe.
+ */
+public final class Manifest {
+
+    private static final int MAGIC = 0x4D465431; // MFT1
+    static final int BLOCK_ENTRIES = 256;
+    // Magic, change count and entry count.
+    private static final int HEADER_BYTES = 16;
+    // Index offset and magic.
+    private static final int FOOTER_BYTES = 12;
+
+    private final ByteBuffer buffer;
+    private final long changeCount;
+    private final int size;
+    private final Map<ManifestOrder, BlockIndex> indexes = new EnumMap<>(ManifestOrder.class);
+
+    private Manifest(final ByteBuffer buffer, final long changeCount, final int size) {
+        this.buffer = buffer;
+        this.changeCount = changeCount;
+        this.size = size;
+    }
+
+    /**
+     * The number of uploads and deletes of the user that the manifest reflects.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Writes a manifest of the entries.
+     *
+     * @param changeCount The number of uploads and deletes the entries reflect.
+     */
+    public static void write(final OutputStream outputStream,
+                             final long changeCount,
+                             final Collection<ManifestEntry> entries) throws IOException {
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        output.writeLong(changeCount);
+        output.writeInt(entries.size());
+        long offset = HEADER_BYTES;
+
+        final Map<ManifestOrder, BlockIndex> indexes = new EnumMap<>(ManifestOrder.class);
+        for (final ManifestOrder order : ManifestOrder.values()) {
+            final List<ManifestEntry> sorted = new ArrayList<>(entries);
+            sorted.sort(order.comparator());
+            final BlockIndex index = new BlockIndex((sorted.size() + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES);
+            for (int start = 0, block = 0; start < sorted.size(); start += BLOCK_ENTRIES, block++) {
+                final List<ManifestEntry> blockEntries = sorted.subList(start, Math.min(start + BLOCK_ENTRIES, sorted.size()));
+                final byte[] compressed = compress(blockEntries);
+                output.write(compressed);
+                index.firstKeys[block] = order.keyOf(blockEntries.get(0));
+                index.firstFileIds[block] = blockEntries.get(0).getFileId();
+                index.offsets[block] = offset;
+                index.lengths[block] = compressed.length;
+                offset += compressed.length;
+            }
+            indexes.put(order, index);
+        }
+
+        final long indexOffset = offset;
+        for (final ManifestOrder order : ManifestOrder.values()) {
+            final BlockIndex index = indexes.get(order);
+            output.writeInt(index.offsets.length);
+            for (int block = 0; block < index.offsets.length; block++) {
+                output.writeUTF(index.firstKeys[block]);
+                output.writeUTF(index.firstFileIds[block]);
+                output.writeLong(index.offsets[block]);
+                output.writeInt(index.lengths[block]);
+            }
+        }
+        output.writeLong(indexOffset);
+        output.writeInt(MAGIC);
+        output.flush();
+    }
+
+    /**
+     * Opens a manifest written by {@link #write}. Only its indexes are read.
+     */
+    public static Manifest read(final ByteBuffer buffer) throws IOException {
+        final int limit = buffer.limit();
+        if (limit < HEADER_BYTES + FOOTER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(limit - 4) != MAGIC) {
+            throw new IOException("Not a manifest");
+        }
+        final Manifest manifest = new Manifest(buffer, buffer.getLong(4), buffer.getInt(12));
+        final long indexOffset = buffer.getLong(limit - FOOTER_BYTES);
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+                slice(buffer, indexOffset, limit - FOOTER_BYTES - (int) indexOffset)));
+        for (final ManifestOrder order : ManifestOrder.values()) {
+            final BlockIndex index = new BlockIndex(input.readInt());
+            for (int block = 0; block < index.offsets.length; block++) {
+                index.firstKeys[block] = input.readUTF();
+                index.firstFileIds[block] = input.readUTF();
+                index.offsets[block] = input.readLong();
+                index.lengths[block] = input.readInt();
+            }
+            manifest.indexes.put(order, index);
+        }
+        return manifest;
+    }
+
+    /**
+     * @param key    Nullable to scan from the first entry.
+     * @param fileId Together with the key, the position to scan from. Only entries after it are returned.
+     * @return The entries after the position, in the order.
+     */
+    public Iterator<ManifestEntry> scan(final ManifestOrder order, final String key, final String fileId) {
+        return new BlockIterator(order, key, fileId);
+    }
+
+    /**
+     * @return The entry of the file, or null if the manifest doesn't have it.
+     */
+    public ManifestEntry findById(final String fileId) {
+        // Nothing comes before (fileId, ""), so the scan starts at the entry of the file if there is one.
+        final Iterator<ManifestEntry> entries = scan(ManifestOrder.ID, fileId, "");
+        if (entries.hasNext()) {
+            final ManifestEntry entry = entries.next();
+            return entry.getFileId().equals(fileId) ? entry : null;
+        }
+        return null;
+    }
+
+    private List<ManifestEntry> readBlock(final ManifestOrder order, final int block) {
+        final BlockIndex index = indexes.get(order);
+        final byte[] compressed = slice(buffer, index.offsets[block], index.lengths[block]);
+        try (final DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            final int count = input.readInt();
+            final List<ManifestEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String fileId = input.readUTF();
+                final String fileName = input.readUTF();
+                final String creationDate = input.readUTF();
+                final long fileSize = input.readLong();
+                entries.add(new ManifestEntry(fileId, fileName, creationDate, fileSize < 0 ? null : fileSize));
+            }
+            return entries;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(String.format("Block %d of the %s order is unreadable", block, order), e);
+        }
+    }
+
+    private static byte[] compress(final List<ManifestEntry> entries) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(compressed))) {
+            output.writeInt(entries.size());
+            for (final ManifestEntry entry : entries) {
+                output.writeUTF(entry.getFileId());
+                output.writeUTF(entry.getFileName());
+                output.writeUTF(entry.getCreationDate());
+                output.writeLong(entry.getFileSize() == null ? -1 : entry.getFileSize());
+            }
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] slice(final ByteBuffer buffer, final long offset, final int length) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(Math.toIntExact(offset));
+        final byte[] bytes = new byte[length];
+        view.get(bytes);
+        return bytes;
+    }
+
+    private static class BlockIndex {
+        private final String[] firstKeys;
+        private final String[] firstFileIds;
+        private final long[] offsets;
+        private final int[] lengths;
+
+        private BlockIndex(final int blocks) {
+            this.firstKeys = new String[blocks];
+            this.firstFileIds = new String[blocks];
+            this.offsets = new long[blocks];
+            this.lengths = new int[blocks];
+        }
+
+        /**
+         * @return The last block starting at or before the position, i.e. the only one that can hold the first entry
+         * after it. 0 if every block starts after it.
+         */
+        private int floor(final String key, final String fileId) {
+            int low = 0;
+            int high = offsets.length - 1;
+            int found = 0;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int byKey = firstKeys[middle].compareTo(key);
+                final int comparison = byKey != 0 ? byKey : firstFileIds[middle].compareTo(fileId);
+                if (comparison <= 0) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return found;
+        }
+    }
+
+    private class BlockIterator implements Iterator<ManifestEntry> {
+        private final ManifestOrder order;
+        private int nextBlock;
+        private Iterator<ManifestEntry> current = Collections.emptyIterator();
+        private ManifestEntry next;
+
+        private BlockIterator(final ManifestOrder order, final String key, final String fileId) {
+            this.order = order;
+            this.nextBlock = key == null ? 0 : indexes.get(order).floor(key, fileId);
+            advance();
+            while (key != null && next != null && order.compare(next, key, fileId) <= 0) {
+                advance();
+            }
+        }
+
+        private void advance() {
+            while (!current.hasNext() && nextBlock < indexes.get(order).offsets.length) {
+                current = readBlock(order, nextBlock++).iterator();
+            }
+            next = current.hasNext() ? current.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ManifestEntry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final ManifestEntry entry = next;
+            advance();
+            return entry;
+        }
+    }
+}
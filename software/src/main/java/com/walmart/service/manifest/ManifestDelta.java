@@ -0,0 +1,66 @@
+package com.walmart.service.manifest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The files a single upload or delete request wrote and removed, as logged for the {@link Manifest} of the user.
+ * Every file is one change, i.e. one transaction that counted a change for the user.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ManifestDelta {
+
+    private static final int MAGIC = 0x4D464431; // MFD1
+    private final List<ManifestEntry> written;
+    private final List<String> removed;
+
+    public int changeCount() {
+        return written.size() + removed.size();
+    }
+
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        final DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(written.size());
+        for (final ManifestEntry entry : written) {
+            output.writeUTF(entry.getFileId());
+            output.writeUTF(entry.getFileName());
+            output.writeUTF(entry.getCreationDate());
+            output.writeLong(entry.getFileSize() == null ? -1 : entry.getFileSize());
+        }
+        output.writeInt(removed.size());
+        for (final String fileId : removed) {
+            output.writeUTF(fileId);
+        }
+        output.flush();
+    }
+
+    public static ManifestDelta readFrom(final InputStream inputStream) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a manifest delta");
+        }
+        final int writtenCount = input.readInt();
+        final List<ManifestEntry> written = new ArrayList<>(writtenCount);
+        for (int i = 0; i < writtenCount; i++) {
+            final String fileId = input.readUTF();
+            final String fileName = input.readUTF();
+            final String creationDate = input.readUTF();
+            final long fileSize = input.readLong();
+            written.add(new ManifestEntry(fileId, fileName, creationDate, fileSize < 0 ? null : fileSize));
+        }
+        final int removedCount = input.readInt();
+        final List<String> removed = new ArrayList<>(removedCount);
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(input.readUTF());
+        }
+        return new ManifestDelta(written, removed);
+    }
+}
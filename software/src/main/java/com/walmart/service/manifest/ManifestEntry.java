@@ -0,0 +1,26 @@
+package com.walmart.service.manifest;
+
+import com.walmart.service.models.File;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * What a {@link Manifest} knows about a file.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class ManifestEntry {
+    private final String fileId;
+    private final String fileName;
+    private final String creationDate;
+    // Null for files uploaded before sizes were stored.
+    private final Long fileSize;
+
+    public static ManifestEntry of(final File file) {
+        return new ManifestEntry(file.getFileUUID(), file.getFileName(), file.getCreationDate(), file.getFileSize());
+    }
+}
@@ -0,0 +1,45 @@
+package com.walmart.service.manifest;
+
+import java.util.Comparator;
+
+/**
+ * The orders a {@link Manifest} keeps its entries in. Entries with the same key are ordered by file ID, like
+ * ListFiles merges index partitions.
+ */
+public enum ManifestOrder {
+    // Like FileNameIndex.
+    NAME {
+        @Override
+        public String keyOf(final ManifestEntry entry) {
+            return entry.getFileName();
+        }
+    },
+    // Like TimeRangeNameIndex.
+    DATE {
+        @Override
+        public String keyOf(final ManifestEntry entry) {
+            return entry.getCreationDate();
+        }
+    },
+    // Only used to find the entry of a file ID.
+    ID {
+        @Override
+        public String keyOf(final ManifestEntry entry) {
+            return entry.getFileId();
+        }
+    };
+
+    public abstract String keyOf(ManifestEntry entry);
+
+    public Comparator<ManifestEntry> comparator() {
+        return Comparator.comparing(this::keyOf).thenComparing(ManifestEntry::getFileId);
+    }
+
+    /**
+     * Compares the position of an entry with the position (key, fileId).
+     */
+    int compare(final ManifestEntry entry, final String key, final String fileId) {
+        final int byKey = keyOf(entry).compareTo(key);
+        return byKey != 0 ? byKey : entry.getFileId().compareTo(fileId);
+    }
+}
@@ -0,0 +1,419 @@
+package com.walmart.service.manifest;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.File;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.stats.UserStatsStore;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.QueryIterator;
+import com.walmart.service.util.S3Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a {@link Manifest} of every user with at least {@code manifest.minFiles} files in S3, so ListFiles can list
+ * them without querying DDB.
+ * <p>
+ * Every upload and delete counts a change in the user's statistics item once its transaction succeeded (see
+ * {@link UserStatsStore#record}). The request then logs what it changed as a
+ * {@link ManifestDelta} under the user's delta prefix. A manifest plus the deltas logged after it is up to date when
+ * their changes add up to the user's change count, which costs a single GetItem to check. A cached view is caught up by
+ * listing the deltas it hasn't applied yet.
+ * <p>
+ * Background work on the I/O executor keeps this cheap:
+ * <ul>
+ *     <li>Once a view has more than {@code manifest.maxDeltas} deltas, they're merged into a new manifest and deleted.</li>
+ *     <li>A user without a manifest, or whose view stays behind (e.g. a delta failed to be written), has the manifest
+ *     rebuilt from DDB. A view whose count doesn't add up is never used, so a lost delta can't go unnoticed.</li>
+ * </ul>
+ * Manifests are copied to temporary files and memory-mapped, and the recently used ones are kept up to
+ * {@code manifest.cacheBytes}.
+ */
+@Component
+public class ManifestStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManifestStore.class);
+    // How long a view may stay behind before the manifest is rebuilt, deltas are written right after their transaction.
+    private static final long STALE_REBUILD_MILLIS = 30_000;
+    // The least time between two rebuilds of the same user's manifest.
+    private static final long REBUILD_INTERVAL_MILLIS = 300_000;
+    // The maximum number of keys in one DeleteObjects call.
+    private static final int DELETE_OBJECTS_LIMIT = 1000;
+    private final S3Client s3Client;
+    private final DynamoDbClient dynamoDbClient;
+    private final UserShards userShards;
+    private final UserStatsStore userStatsStore;
+    private final ExecutorService ioExecutor;
+    private final Metrics metrics;
+    private final String bucketName;
+    private final String tableName;
+    private final boolean enabled;
+    private final long minFiles;
+    private final int maxDeltas;
+    private final long maxCacheBytes;
+    // In access order, so the least recently used view is evicted first.
+    private final LinkedHashMap<String, CachedView> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final Set<String> inBackground = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastRebuilds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ManifestStore(final S3Client s3Client,
+                         final DynamoDbClient dynamoDbClient,
+                         final UserShards userShards,
+                         final UserStatsStore userStatsStore,
+                         final ExecutorService ioExecutor,
+                         final Metrics metrics,
+                         final LambdaConfigurationModule configurationModule) {
+        this.s3Client = s3Client;
+        this.dynamoDbClient = dynamoDbClient;
+        this.userShards = userShards;
+        this.userStatsStore = userStatsStore;
+        this.ioExecutor = ioExecutor;
+        this.metrics = metrics;
+        this.bucketName = configurationModule.getBucketName();
+        this.tableName = configurationModule.getTableName();
+        this.enabled = configurationModule.isManifestEnabled();
+        this.minFiles = configurationModule.getManifestMinFiles();
+        this.maxDeltas = configurationModule.getManifestMaxDeltas();
+        this.maxCacheBytes = configurationModule.getManifestCacheBytes();
+        metrics.gauge("manifest.cachedBytes", this::getCachedBytes);
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return True if the user has enough files to keep a manifest, going by the (cached) statistics.
+     */
+    public boolean isKeptFor(final String userId) {
+        return enabled && userStatsStore.getStats(userId).getFileCount() >= minFiles;
+    }
+
+    /**
+     * @return A view of the user's files that reflects every upload and delete so far, or null if there's none. The
+     * manifest is then (re)built in the background when needed.
+     */
+    public ManifestView freshView(final String userId) {
+        if (!isKeptFor(userId)) {
+            return null;
+        }
+        try {
+            final long changeCount = userStatsStore.readStats(userId).getChangeCount();
+            ManifestView view = getCached(userId);
+            if (view == null) {
+                view = load(userId);
+                if (view == null) {
+                    metrics.increment("manifest.missing");
+                    scheduleRebuild(userId);
+                    return null;
+                }
+            }
+            if (view.getChangeCount() != changeCount) {
+                catchUp(userId, view);
+            }
+            if (view.getChangeCount() == changeCount) {
+                view.markFresh();
+                metrics.increment("manifest.hits");
+                if (view.deltaCount() > maxDeltas) {
+                    scheduleCompaction(userId, view);
+                }
+                return view;
+            }
+            metrics.increment("manifest.stale");
+            logger.debug("The manifest of user ID = {} reflects {} of {} changes", userId, view.getChangeCount(), changeCount);
+            if (System.currentTimeMillis() - view.markStale(System.currentTimeMillis()) > STALE_REBUILD_MILLIS) {
+                scheduleRebuild(userId);
+            }
+        } catch (final Exception e) {
+            metrics.increment("manifest.failures");
+            logger.warn("Was unable to use the manifest of user ID = {}", userId, e);
+        }
+        return null;
+    }
+
+    /**
+     * Logs the files an upload or delete request changed, once their transactions succeeded. Failures are only
+     * logged, the manifest is rebuilt when it stays behind.
+     *
+     * @param written The uploaded files.
+     * @param removed The IDs of the deleted files.
+     */
+    public void record(final String userId, final Collection<File> written, final Collection<String> removed) {
+        if ((written.isEmpty() && removed.isEmpty()) || !isKeptFor(userId)) {
+            return;
+        }
+        try {
+            final ManifestDelta delta = new ManifestDelta(written.stream().map(ManifestEntry::of).collect(Collectors.toList()),
+                                                          new ArrayList<>(removed));
+            final ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            delta.writeTo(blob);
+            // Keys sort by time, which keeps the listing of a user's deltas in roughly the order they were written.
+            final String deltaKey = S3Util.getManifestDeltaPrefix(userId)
+                    + String.format("%013d-%s", System.currentTimeMillis(), UUID.randomUUID());
+            s3Client.putObject(PutObjectRequest.builder()
+                                       .bucket(bucketName)
+                                       .key(deltaKey)
+                                       .contentLength((long) blob.size())
+                                       .build(),
+                               RequestBody.fromBytes(blob.toByteArray()));
+            final ManifestView view = getCached(userId);
+            if (view != null) {
+                view.apply(deltaKey, delta);
+            }
+        } catch (final Exception e) {
+            metrics.increment("manifest.recordFailures");
+            logger.warn("Was unable to log the manifest changes of user ID = {}", userId, e);
+        }
+    }
+
+    private ManifestView load(final String userId) throws IOException {
+        final GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(S3Util.getManifestKey(userId))
+                .build();
+        final Path path = Files.createTempFile("manifest-", ".bin");
+        try {
+            try (final ResponseInputStream<GetObjectResponse> blob = s3Client.getObject(getObjectRequest)) {
+                Files.copy(blob, path, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final NoSuchKeyException e) {
+                logger.info("No manifest exists for user ID = {}", userId);
+                return null;
+            }
+            final ManifestView view = new ManifestView(Manifest.read(map(path)));
+            put(userId, view);
+            return view;
+        } finally {
+            // The mapping stays valid, and the disk space is released along with it.
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static MappedByteBuffer map(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Applies the deltas of the user that the view doesn't have yet.
+     */
+    private void catchUp(final String userId, final ManifestView view) throws IOException {
+        for (final String deltaKey : listDeltaKeys(userId)) {
+            if (view.isApplied(deltaKey)) {
+                continue;
+            }
+            try (final ResponseInputStream<GetObjectResponse> blob = s3Client.getObject(GetObjectRequest.builder()
+                                                                                                .bucket(bucketName)
+                                                                                                .key(deltaKey)
+                                                                                                .build())) {
+                view.apply(deltaKey, ManifestDelta.readFrom(blob));
+            } catch (final NoSuchKeyException e) {
+                // Merged into a new manifest in the meantime, the view is rebuilt if it stays behind.
+                logger.debug("The delta = {} was deleted while catching up", deltaKey);
+            }
+        }
+    }
+
+    private List<String> listDeltaKeys(final String userId) {
+        return s3Client.listObjectsV2Paginator(ListObjectsV2Request.builder()
+                                                       .bucket(bucketName)
+                                                       .prefix(S3Util.getManifestDeltaPrefix(userId))
+                                                       .build())
+                .contents()
+                .stream()
+                .map(S3Object::key)
+                .collect(Collectors.toList());
+    }
+
+    private void scheduleRebuild(final String userId) {
+        final Long lastRebuild = lastRebuilds.get(userId);
+        if (lastRebuild != null && System.currentTimeMillis() - lastRebuild < REBUILD_INTERVAL_MILLIS) {
+            return;
+        }
+        runInBackground(userId, () -> {
+            lastRebuilds.put(userId, System.currentTimeMillis());
+            rebuild(userId);
+        });
+    }
+
+    private void scheduleCompaction(final String userId, final ManifestView view) {
+        runInBackground(userId, () -> compact(userId, view));
+    }
+
+    /**
+     * Runs one background task per user at a time.
+     */
+    private void runInBackground(final String userId, final ManifestTask task) {
+        if (!inBackground.add(userId)) {
+            return;
+        }
+        ioExecutor.submit(() -> {
+            try {
+                task.run();
+            } catch (final Exception e) {
+                metrics.increment("manifest.failures");
+                logger.warn("Was unable to update the manifest of user ID = {}", userId, e);
+            } finally {
+                inBackground.remove(userId);
+            }
+        });
+    }
+
+    /**
+     * Writes a new manifest from the files in DDB. The deltas are listed before the change count is read, and the
+     * files are queried after it. UserIdIndex and BatchGetItem are eventually consistent and may miss the latest
+     * changes, so the listed deltas are applied again on top of the files, in the order they were written. Applying a
+     * delta is idempotent by file ID, which makes every listed delta reflected by the new manifest, and only those are
+     * deleted. Deltas written later stay, and are applied by the views on top of it.
+     */
+    private void rebuild(final String userId) throws IOException {
+        final List<String> deltaKeys = listDeltaKeys(userId);
+        final long changeCount = userStatsStore.readStats(userId).getChangeCount();
+        final List<String> fileIds = new ArrayList<>();
+        for (final String userIndexKey : userShards.indexKeysOf(userId)) {
+            // Queried on this thread, the I/O executor is already running this task.
+            new QueryIterator(QueryRequest.builder()
+                                      .tableName(tableName)
+                                      .indexName(TableAttributes.USER_ID_INDEX_KEY)
+                                      .keyConditionExpression(String.format("%s = %s", TableAttributes.USER_ID_KEY, ":user"))
+                                      .expressionAttributeValues(Collections.singletonMap(":user", AttributeValue.builder().s(userIndexKey).build()))
+                                      .build(),
+                              dynamoDbClient, Runnable::run)
+                    .forEachRemaining(item -> fileIds.add(item.get(TableAttributes.FILE_ID_KEY).s()));
+        }
+        final Map<String, ManifestEntry> entries = new HashMap<>();
+        DynamoDBUtil.batchGetFilesFromDDB(fileIds, tableName, dynamoDbClient, Runnable::run)
+                .values()
+                .forEach(file -> entries.put(file.getFileUUID(), ManifestEntry.of(file)));
+        for (final String deltaKey : deltaKeys) {
+            final ManifestDelta delta;
+            try (final ResponseInputStream<GetObjectResponse> blob = s3Client.getObject(GetObjectRequest.builder()
+                                                                                                .bucket(bucketName)
+                                                                                                .key(deltaKey)
+                                                                                                .build())) {
+                delta = ManifestDelta.readFrom(blob);
+            } catch (final NoSuchKeyException e) {
+                // Another instance merged it into a manifest, which this one would replace without its changes.
+                logger.info("The delta = {} was deleted during the rebuild of user ID = {}, giving up", deltaKey, userId);
+                return;
+            }
+            delta.getRemoved().forEach(entries::remove);
+            delta.getWritten().forEach(entry -> entries.put(entry.getFileId(), entry));
+        }
+        install(userId, changeCount, new ArrayList<>(entries.values()), deltaKeys);
+        metrics.increment("manifest.rebuilds");
+        logger.info("Rebuilt the manifest of user ID = {} with {} files and {} changes", userId, entries.size(), changeCount);
+    }
+
+    /**
+     * Merges the deltas a view applied into a new manifest.
+     */
+    private void compact(final String userId, final ManifestView view) throws IOException {
+        final long changeCount;
+        final List<ManifestEntry> entries;
+        final Set<String> deltaKeys;
+        synchronized (view) {
+            changeCount = view.getChangeCount();
+            entries = view.entries();
+            deltaKeys = view.getAppliedDeltas();
+        }
+        install(userId, changeCount, entries, deltaKeys);
+        metrics.increment("manifest.compactions");
+        logger.debug("Merged {} deltas into the manifest of user ID = {}", deltaKeys.size(), userId);
+    }
+
+    /**
+     * Writes a manifest to S3 and deletes the deltas it reflects. The new view is cached, and catches up with any
+     * later deltas on its next use.
+     */
+    private void install(final String userId,
+                         final long changeCount,
+                         final List<ManifestEntry> entries,
+                         final Collection<String> deltaKeys) throws IOException {
+        final Path path = Files.createTempFile("manifest-", ".bin");
+        try {
+            try (final OutputStream outputStream = Files.newOutputStream(path)) {
+                Manifest.write(outputStream, changeCount, entries);
+            }
+            s3Client.putObject(PutObjectRequest.builder()
+                                       .bucket(bucketName)
+                                       .key(S3Util.getManifestKey(userId))
+                                       .contentLength(Files.size(path))
+                                       .build(),
+                               RequestBody.fromFile(path));
+            put(userId, new ManifestView(Manifest.read(map(path))));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+
+        final List<ObjectIdentifier> deltas = deltaKeys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .collect(Collectors.toList());
+        for (int start = 0; start < deltas.size(); start += DELETE_OBJECTS_LIMIT) {
+            s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                                           .bucket(bucketName)
+                                           .delete(Delete.builder()
+                                                           .objects(deltas.subList(start, Math.min(start + DELETE_OBJECTS_LIMIT, deltas.size())))
+                                                           .build())
+                                           .build());
+        }
+    }
+
+    private synchronized ManifestView getCached(final String userId) {
+        final CachedView cached = cache.get(userId);
+        return cached == null ? null : cached.view;
+    }
+
+    private synchronized void put(final String userId, final ManifestView view) {
+        final CachedView previous = cache.put(userId, new CachedView(view, view.estimatedBytes()));
+        cachedBytes += view.estimatedBytes() - (previous == null ? 0 : previous.bytes);
+        final Iterator<Map.Entry<String, CachedView>> eldest = cache.entrySet().iterator();
+        // The view that was just put is the most recently used, so it's only evicted when it doesn't fit on its own.
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            metrics.increment("manifest.evictions");
+        }
+    }
+
+    private interface ManifestTask {
+        void run() throws Exception;
+    }
+
+    private static class CachedView {
+        private final ManifestView view;
+        private final long bytes;
+
+        private CachedView(final ManifestView view, final long bytes) {
+            this.view = view;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.walmart.service.manifest;
+
+import com.walmart.service.util.SortedMerge;
+
+import java.util.*;
+
+/**
+ * A {@link Manifest} with the deltas that were logged after it was written. The deltas are kept in memory, sorted in
+ * every order, and are merged with the manifest's blocks when listing. Thread safe.
+ */
+public class ManifestView {
+
+    // Rough memory use of an entry held in memory, in bytes.
+    private static final long ENTRY_BYTES = 400;
+    private final Manifest manifest;
+    private final Set<String> appliedDeltas = new HashSet<>();
+    private final Map<String, ManifestEntry> written = new HashMap<>();
+    // Files of the manifest that were replaced or removed since.
+    private final Set<String> shadowed = new HashSet<>();
+    private final Map<ManifestOrder, TreeSet<ManifestEntry>> sortedWritten = new EnumMap<>(ManifestOrder.class);
+    private long changeCount;
+    // When the view was first found to be behind the user's change count, 0 while it's up to date.
+    private long staleSince;
+
+    public ManifestView(final Manifest manifest) {
+        this.manifest = manifest;
+        this.changeCount = manifest.getChangeCount();
+        for (final ManifestOrder order : ManifestOrder.values()) {
+            sortedWritten.put(order, new TreeSet<>(order.comparator()));
+        }
+    }
+
+    public synchronized long getChangeCount() {
+        return changeCount;
+    }
+
+    public synchronized int deltaCount() {
+        return appliedDeltas.size();
+    }
+
+    public synchronized Set<String> getAppliedDeltas() {
+        return new HashSet<>(appliedDeltas);
+    }
+
+    public synchronized long estimatedBytes() {
+        return manifest.sizeInBytes() + ENTRY_BYTES * (written.size() + shadowed.size());
+    }
+
+    public synchronized boolean isApplied(final String deltaKey) {
+        return appliedDeltas.contains(deltaKey);
+    }
+
+    /**
+     * Applies a delta once, and counts its changes.
+     *
+     * @param deltaKey Identifies the delta, it's ignored if it was applied before.
+     */
+    public synchronized void apply(final String deltaKey, final ManifestDelta delta) {
+        if (!appliedDeltas.add(deltaKey)) {
+            return;
+        }
+        for (final String fileId : delta.getRemoved()) {
+            removeWritten(fileId);
+            shadowed.add(fileId);
+        }
+        for (final ManifestEntry entry : delta.getWritten()) {
+            removeWritten(entry.getFileId());
+            shadowed.add(entry.getFileId());
+            written.put(entry.getFileId(), entry);
+            sortedWritten.values().forEach(sorted -> sorted.add(entry));
+        }
+        changeCount += delta.changeCount();
+    }
+
+    private void removeWritten(final String fileId) {
+        final ManifestEntry previous = written.remove(fileId);
+        if (previous != null) {
+            sortedWritten.values().forEach(sorted -> sorted.remove(previous));
+        }
+    }
+
+    /**
+     * Keeps track of how long the view has been behind. A delta is written right after its transaction, so a view is
+     * only briefly behind unless a delta was lost.
+     *
+     * @return When the view was first found to be behind, in epoch millis.
+     */
+    public synchronized long markStale(final long now) {
+        if (staleSince == 0) {
+            staleSince = now;
+        }
+        return staleSince;
+    }
+
+    public synchronized void markFresh() {
+        staleSince = 0;
+    }
+
+    public synchronized ManifestEntry findById(final String fileId) {
+        if (written.containsKey(fileId)) {
+            return written.get(fileId);
+        }
+        return shadowed.contains(fileId) ? null : manifest.findById(fileId);
+    }
+
+    /**
+     * @return Every file, for writing a new manifest.
+     */
+    public synchronized List<ManifestEntry> entries() {
+        final List<ManifestEntry> entries = new ArrayList<>(manifest.size() + written.size());
+        scan(ManifestOrder.ID, null, null).forEachRemaining(entries::add);
+        return entries;
+    }
+
+    /**
+     * Lists files like ListFiles does: in name order when there's a name prefix (with the date range as a filter),
+     * and in date order otherwise.
+     *
+     * @param namePrefix  Nullable.
+     * @param afterFileId Nullable. The files after this one are returned.
+     * @return Up to limit files, or null if the file to continue after isn't in the manifest.
+     */
+    public synchronized List<ManifestEntry> list(final String namePrefix,
+                                                 final String createdAfter,
+                                                 final String createdBefore,
+                                                 final String afterFileId,
+                                                 final int limit) {
+        final ManifestOrder order = namePrefix != null ? ManifestOrder.NAME : ManifestOrder.DATE;
+        // Nothing comes before (key, ""), so scanning after it includes the files with that key.
+        String key = namePrefix != null ? namePrefix : createdAfter;
+        String fileId = "";
+        if (afterFileId != null) {
+            final ManifestEntry after = findById(afterFileId);
+            if (after == null) {
+                return null;
+            }
+            if (order.compare(after, key, fileId) > 0) {
+                key = order.keyOf(after);
+                fileId = after.getFileId();
+            }
+        }
+
+        final List<ManifestEntry> entries = new ArrayList<>();
+        final Iterator<ManifestEntry> scanned = scan(order, key, fileId);
+        while (entries.size() < limit && scanned.hasNext()) {
+            final ManifestEntry entry = scanned.next();
+            if (namePrefix != null && !entry.getFileName().startsWith(namePrefix)) {
+                break;
+            } else if (namePrefix == null && entry.getCreationDate().compareTo(createdBefore) > 0) {
+                break;
+            }
+            final String creationDate = entry.getCreationDate();
+            if (creationDate.compareTo(createdAfter) >= 0 && creationDate.compareTo(createdBefore) <= 0) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Merges the manifest's entries that are still current with the written ones.
+     */
+    private Iterator<ManifestEntry> scan(final ManifestOrder order, final String key, final String fileId) {
+        final Iterator<ManifestEntry> fromManifest = manifest.scan(order, key, fileId);
+        final Iterator<ManifestEntry> current = new Iterator<ManifestEntry>() {
+            private ManifestEntry next = advance();
+
+            private ManifestEntry advance() {
+                while (fromManifest.hasNext()) {
+                    final ManifestEntry entry = fromManifest.next();
+                    if (!shadowed.contains(entry.getFileId())) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public ManifestEntry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final ManifestEntry entry = next;
+                next = advance();
+                return entry;
+            }
+        };
+        // Only a few files are written between compactions.
+        final Iterator<ManifestEntry> fromWritten = sortedWritten.get(order).stream()
+                .filter(entry -> key == null || order.compare(entry, key, fileId) > 0)
+                .iterator();
+        return SortedMerge.merge(Arrays.asList(current, fromWritten), order.comparator());
+    }
+}
@@ -0,0 +1,50 @@
+package com.walmart.service.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process counters and gauges, keyed by a dotted name (e.g. aws.retries). The values are exposed through
+ * {@link com.walmart.service.function.GetMetrics} and are reset whenever the container restarts.
+ */
+@Component
+public class Metrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public void increment(final String name) {
+        add(name, 1);
+    }
+
+    public void add(final String name, final long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    public long get(final String name) {
+        final LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Registers a value that's read every time a snapshot is taken. Registering the same name again replaces it.
+     */
+    public void gauge(final String name, final Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return The current value of every counter and gauge, sorted by name.
+     */
+    public Map<String, Number> snapshot() {
+        final Map<String, Number> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, value) -> snapshot.put(name, value.get()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,17 @@
+package com.walmart.service.models;
+
+/**
+ * The ways ListFiles can find a user's files.
+ */
+public enum AccessPath {
+    // Every file of the user, through UserIdIndex.
+    USER_INDEX,
+    // A name prefix query on FileNameIndex, with the date range as a filter.
+    NAME_INDEX,
+    // A date range query on TimeRangeNameIndex, with the name prefix as a filter.
+    TIME_INDEX,
+    // Both range queries without filters, keeping the files found by both.
+    INTERSECTION,
+    // The user's manifest in S3, without querying DDB. See com.walmart.service.manifest.ManifestStore.
+    MANIFEST
+}
@@ -0,0 +1,30 @@
+package com.walmart.service.models;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the files matching any of several name prefixes and/or date ranges in one paginated request.
+ * When prefixes are given, every prefix is a branch and the date ranges filter them. Otherwise every date range is
+ * a branch.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BatchListFilesRequest {
+    @Builder.Default
+    private List<String> namePrefixes = new ArrayList<>();
+    @Builder.Default
+    private List<DateRange> dateRanges = new ArrayList<>();
+    @Builder.Default
+    private int limit = 25;
+
+    public int branchCount() {
+        return namePrefixes.isEmpty() ? dateRanges.size() : namePrefixes.size();
+    }
+}
@@ -0,0 +1,16 @@
+package com.walmart.service.models;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class DateRange {
+    @Builder.Default
+    private String createdAfter = ListFilesRequest.DEFAULT_CREATED_AFTER;
+    @Builder.Default
+    private String createdBefore = ListFilesRequest.DEFAULT_CREATED_BEFORE;
+}
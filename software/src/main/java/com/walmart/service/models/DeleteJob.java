@@ -0,0 +1,29 @@
+package com.walmart.service.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The progress of a delete job, which deletes every file of a user matching a ListFilesRequest filter.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class DeleteJob {
+    private String jobId;
+    private String userId;
+    private JobStatus status;
+    private String nameBeginsWith;
+    private String createdAfter;
+    private String createdBefore;
+    private long deletedFiles;
+    // Files that matched but couldn't be deleted. They're not retried by the job.
+    private long failedFiles;
+    private String createdAt;
+    private String updatedAt;
+    // Files deleted per second of the time the job actually ran.
+    private double filesPerSecond;
+}
@@ -15,4 +15,14 @@ public class File {
     private String fileUUID;
     private String ownerID;
     private String creationDate;
+    // In bytes. Null for files uploaded before sizes were stored.
+    private Long fileSize;
+    // Like the size, null for older files.
+    private String contentType;
+    // Base64 encoded SHA-256 of the content.
+    private String checksum;
+
+    public File(final String fileName, final String fileUUID, final String ownerID, final String creationDate) {
+        this(fileName, fileUUID, ownerID, creationDate, null, null, null);
+    }
 }
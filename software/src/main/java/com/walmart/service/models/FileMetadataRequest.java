@@ -0,0 +1,16 @@
+package com.walmart.service.models;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileMetadataRequest {
+    @Builder.Default
+    private List<String> fileIds = new ArrayList<>();
+}
@@ -0,0 +1,16 @@
+package com.walmart.service.models;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class FileMetadataResponse {
+
+    List<File> files;
+    // IDs that don't exist, or that belong to a different user.
+    List<String> notFound;
+}
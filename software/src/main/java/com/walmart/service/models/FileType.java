@@ -41,6 +41,17 @@ public enum FileType {
         return valueToType.get(fileType);
     }
 
+    public static boolean isImage(final FileType fileType) {
+        return images.contains(fileType.toString());
+    }
+
+    /**
+     * The content type used when storing and serving files of this type (e.g. image/png).
+     */
+    public static String getContentType(final FileType fileType) {
+        return String.format("%s/%s", getMediaType(fileType), fileType);
+    }
+
     public static String getMediaType(final FileType fileType) {
         return getMediaType(fileType.toString());
     }
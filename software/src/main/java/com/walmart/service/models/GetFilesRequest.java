@@ -0,0 +1,18 @@
+package com.walmart.service.models;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GetFilesRequest {
+    @Builder.Default
+    private List<String> fileIds = new ArrayList<>();
+    @Builder.Default
+    private List<String> fileNames = new ArrayList<>();
+}
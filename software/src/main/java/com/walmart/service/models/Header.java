@@ -6,6 +6,13 @@ public final class Header {
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
     public static final String CONTENT_LENGTH = "Content-Length";
+    // The checksum of a file, see com.walmart.service.util.ChecksumUtil.
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
     // The token the request should continue from.
     public static final String NEXT_TOKEN = "Next-Token";
+    // Chosen by the client for an upload or delete. Retries with the same key get the first response back.
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    // The base64 encoded SHA-256 of a request's body, required by streamed uploads with an Idempotency-Key.
+    public static final String CONTENT_SHA256 = "Content-SHA256";
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.walmart.service.models;
+
+/**
+ * The states of a delete job.
+ */
+public enum JobStatus {
+    // Has matching files left. Continued by the next run after a timeout.
+    RUNNING,
+    // Every matching file was processed.
+    DONE
+}
@@ -1,5 +1,6 @@
 package com.walmart.service.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
@@ -12,4 +13,11 @@ import java.util.List;
 public class ListFilesResponse {
     private List<String> fileIDs;
     private String nextToken;
+    // Debug information on how the files were found.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private QueryPlan plan;
+
+    public ListFilesResponse(final List<String> fileIDs, final String nextToken) {
+        this(fileIDs, nextToken, null);
+    }
 }
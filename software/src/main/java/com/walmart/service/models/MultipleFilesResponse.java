@@ -12,4 +12,8 @@ public class MultipleFilesResponse {
 
     List<File> successfulFiles;
     List<Pair> failedFiles;
+
+    public boolean hasFailures() {
+        return failedFiles != null && !failedFiles.isEmpty();
+    }
 }
@@ -0,0 +1,32 @@
+package com.walmart.service.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * How ListFiles answered a request, returned as debug information.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryPlan {
+    private AccessPath accessPath;
+    // False when the request left only one access path, or the plan of the previous page was kept.
+    private boolean costBased;
+    private String reason;
+    private Long estimatedNameMatches;
+    private Long estimatedTimeMatches;
+    // Estimated cost of every candidate access path, in index entries read.
+    private Map<AccessPath, Long> estimatedCosts;
+
+    public QueryPlan(final AccessPath accessPath, final String reason) {
+        this(accessPath, false, reason, null, null, null);
+    }
+}
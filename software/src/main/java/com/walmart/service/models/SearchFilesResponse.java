@@ -0,0 +1,17 @@
+package com.walmart.service.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SearchFilesResponse {
+    // The best matches first.
+    private List<SearchHit> hits;
+}
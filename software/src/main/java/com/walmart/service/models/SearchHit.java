@@ -0,0 +1,17 @@
+package com.walmart.service.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SearchHit {
+    private String fileUUID;
+    private String fileName;
+    // Higher is better, see com.walmart.service.search.NGramIndex#search.
+    private double score;
+}
@@ -0,0 +1,21 @@
+package com.walmart.service.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class UserUsageResponse {
+    private String userId;
+    private long fileCount;
+    // In bytes.
+    private long totalBytes;
+    // In bytes, by file type (e.g. pdf).
+    private Map<String, Long> bytesByType;
+}
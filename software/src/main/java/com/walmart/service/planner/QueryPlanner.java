@@ -0,0 +1,145 @@
+package com.walmart.service.planner;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.models.AccessPath;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.models.QueryPlan;
+import com.walmart.service.stats.UserStats;
+import com.walmart.service.stats.UserStatsStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Picks the access path of a ListFiles request that filters on both a name prefix and a date range.
+ * <p>
+ * The number of files matching each condition is estimated from the user's {@link UserStats}: the prefix counts for
+ * the name, and the monthly histogram (prorated for partial months) for the dates. The conditions are assumed to be
+ * independent. Every candidate is then costed in index entries read per page of the listing, plus a fixed cost per
+ * round trip:
+ * <ul>
+ *     <li>A filtered query reads entries from its index until it found {@code limit} files that pass the filter,
+ *     fetching {@code limit} entries per round trip.</li>
+ *     <li>An intersection reads the date range in full on every page, since it isn't kept between pages, and the
+ *     names until {@code limit} of them were in the date range. Both in large pages and in parallel.</li>
+ * </ul>
+ */
+@Component
+public class QueryPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanner.class);
+    // Every character after the two that are counted is assumed to keep this share of the names.
+    private static final double EXTRA_CHARACTER_SELECTIVITY = 0.25;
+    // Index entries returned by an unlimited query page (1MB at roughly 250 bytes per entry).
+    static final long ENTRIES_PER_FULL_PAGE = 4000;
+    private final UserStatsStore userStatsStore;
+    private final long roundTripCost;
+
+    @Autowired
+    public QueryPlanner(final UserStatsStore userStatsStore,
+                        final LambdaConfigurationModule configurationModule) {
+        this.userStatsStore = userStatsStore;
+        this.roundTripCost = configurationModule.getPlannerRoundTripCost();
+    }
+
+    /**
+     * @param previousPath Nullable. The access path of the previous page, which has to be kept for the cursor to work.
+     */
+    public QueryPlan plan(final ListFilesRequest listFilesRequest, final String userId, final AccessPath previousPath) {
+        final boolean hasName = listFilesRequest.getNameBeginsWith() != null;
+        final boolean hasDates = !listFilesRequest.datesAreDefault();
+        if (!hasName && !hasDates) {
+            return new QueryPlan(AccessPath.USER_INDEX, "No name prefix or date range");
+        } else if (!hasDates) {
+            return new QueryPlan(AccessPath.NAME_INDEX, "Only a name prefix");
+        } else if (!hasName) {
+            return new QueryPlan(AccessPath.TIME_INDEX, "Only a date range");
+        } else if (previousPath != null) {
+            return new QueryPlan(previousPath, "Continuing the plan of the previous page");
+        }
+
+        final UserStats stats = userStatsStore.getStats(userId);
+        if (stats.isEmpty()) {
+            return new QueryPlan(AccessPath.NAME_INDEX, "No statistics for the user");
+        }
+        final QueryPlan plan = plan(stats, listFilesRequest.getNameBeginsWith(), listFilesRequest.getCreatedAfter(),
+                                    listFilesRequest.getCreatedBefore(), listFilesRequest.getLimit(), roundTripCost);
+        logger.debug("Plan for user ID = {} and request = {}: {}", userId, listFilesRequest, plan);
+        return plan;
+    }
+
+    static QueryPlan plan(final UserStats stats, final String namePrefix, final String createdAfter,
+                          final String createdBefore, final int limit, final long roundTripCost) {
+        final double fileCount = stats.getFileCount();
+        final double nameMatches = estimateNameMatches(stats, namePrefix);
+        final double timeMatches = estimateTimeMatches(stats, createdAfter, createdBefore);
+        final double pageSize = Math.max(1, limit);
+
+        final Map<AccessPath, Long> costs = new EnumMap<>(AccessPath.class);
+        costs.put(AccessPath.NAME_INDEX, filteredQueryCost(nameMatches, timeMatches / fileCount, pageSize, roundTripCost));
+        costs.put(AccessPath.TIME_INDEX, filteredQueryCost(timeMatches, nameMatches / fileCount, pageSize, roundTripCost));
+        final double namesRead = entriesRead(nameMatches, timeMatches / fileCount, pageSize);
+        final double intersectionRoundTrips = Math.max(Math.ceil(namesRead / ENTRIES_PER_FULL_PAGE),
+                                                       Math.ceil(timeMatches / ENTRIES_PER_FULL_PAGE));
+        costs.put(AccessPath.INTERSECTION, Math.round(namesRead + timeMatches + Math.max(1, intersectionRoundTrips) * roundTripCost));
+
+        // Ties go to the name index, which was the only plan before the planner existed.
+        AccessPath cheapest = AccessPath.NAME_INDEX;
+        for (final Map.Entry<AccessPath, Long> cost : costs.entrySet()) {
+            if (cost.getValue() < costs.get(cheapest)) {
+                cheapest = cost.getKey();
+            }
+        }
+        return new QueryPlan(cheapest, true, "Lowest estimated cost", Math.round(nameMatches), Math.round(timeMatches), costs);
+    }
+
+    /**
+     * Cost of reading an index until {@code pageSize} entries passed the filter, or the index range ran out.
+     */
+    private static long filteredQueryCost(final double rangeMatches, final double filterSelectivity,
+                                          final double pageSize, final long roundTripCost) {
+        final double entriesRead = entriesRead(rangeMatches, filterSelectivity, pageSize);
+        final double roundTrips = Math.max(1, Math.ceil(entriesRead / pageSize));
+        return Math.round(entriesRead + roundTrips * roundTripCost);
+    }
+
+    /**
+     * @return The entries of a range that are read until {@code pageSize} of them passed the filter.
+     */
+    private static double entriesRead(final double rangeMatches, final double filterSelectivity, final double pageSize) {
+        return filterSelectivity <= 0 ? rangeMatches : Math.min(rangeMatches, pageSize / filterSelectivity);
+    }
+
+    static double estimateNameMatches(final UserStats stats, final String namePrefix) {
+        final int length = namePrefix.codePointCount(0, namePrefix.length());
+        if (length == 0) {
+            return stats.getFileCount();
+        }
+        final String countedPrefix = UserStatsStore.namePrefix(namePrefix, Math.min(2, length));
+        final double counted = stats.getNamePrefixCounts().getOrDefault(countedPrefix, 0L);
+        return counted * Math.pow(EXTRA_CHARACTER_SELECTIVITY, Math.max(0, length - 2));
+    }
+
+    static double estimateTimeMatches(final UserStats stats, final String createdAfter, final String createdBefore) {
+        final long after = Instant.parse(createdAfter).toEpochMilli();
+        final long before = Instant.parse(createdBefore).toEpochMilli();
+        double matches = 0;
+        for (final Map.Entry<String, Long> month : stats.getMonthHistogram().entrySet()) {
+            final YearMonth yearMonth = YearMonth.parse(month.getKey());
+            final long monthStart = yearMonth.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            final long monthEnd = yearMonth.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            final long overlap = Math.min(before, monthEnd) - Math.max(after, monthStart);
+            if (overlap > 0) {
+                matches += month.getValue() * (double) overlap / (monthEnd - monthStart);
+            }
+        }
+        return matches;
+    }
+}
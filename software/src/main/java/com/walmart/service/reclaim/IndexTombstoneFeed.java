@@ -0,0 +1,115 @@
+package com.walmart.service.reclaim;
+
+import com.walmart.service.models.TableAttributes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.Select;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the tombstones of every instance in ReclaimIndex, a sparse index of the soft deleted files sorted by
+ * DeletedAt. Deleting an item takes it out of the index, so nothing has to be removed here.
+ * <p>
+ * Tombstones are spread over {@link #QUEUE_SHARDS} partitions of the index by file ID, so a burst of deletes doesn't
+ * make a single partition hot. Polls take the partitions in turn, so tombstones come out oldest first within each
+ * partition only.
+ */
+public class IndexTombstoneFeed implements TombstoneFeed {
+
+    // Tombstones written before the queue was sharded, polled until it's empty.
+    public static final String PENDING = "PENDING";
+    static final int QUEUE_SHARDS = 8;
+    // The backlog is counted up to this many tombstones per partition, with one Query each.
+    static final int BACKLOG_COUNT_LIMIT = 1000;
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final List<String> queues = new ArrayList<>();
+    private final AtomicInteger nextQueue = new AtomicInteger();
+
+    public IndexTombstoneFeed(final DynamoDbClient dynamoDbClient, final String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        for (int shard = 0; shard < QUEUE_SHARDS; shard++) {
+            queues.add(queueOf(shard));
+        }
+        queues.add(PENDING);
+    }
+
+    /**
+     * @return The ReclaimQueue of a soft deleted file.
+     */
+    public static String queueOf(final String fileId) {
+        return queueOf(Math.floorMod(fileId.hashCode(), QUEUE_SHARDS));
+    }
+
+    private static String queueOf(final int shard) {
+        return PENDING + "#" + shard;
+    }
+
+    @Override
+    public void offer(final Tombstone tombstone) {
+        // The tombstone is already in the index.
+    }
+
+    /**
+     * Queries the partitions one after another until there are enough tombstones, starting from the one after the
+     * previous poll's first.
+     */
+    @Override
+    public List<Tombstone> poll(final int limit) {
+        final List<Tombstone> tombstones = new ArrayList<>();
+        final int first = Math.floorMod(nextQueue.getAndIncrement(), queues.size());
+        for (int i = 0; i < queues.size() && tombstones.size() < limit; i++) {
+            final QueryResponse queryResponse = dynamoDbClient.query(pendingQuery(queues.get((first + i) % queues.size()))
+                                                                             .limit(limit - tombstones.size())
+                                                                             .build());
+            queryResponse.items().forEach(item -> tombstones.add(itemToTombstone(item)));
+        }
+        return tombstones;
+    }
+
+    @Override
+    public void remove(final List<Tombstone> tombstones) {
+        // Deleted items leave the index by themselves.
+    }
+
+    /**
+     * @return The number of tombstones, counting at most {@link #BACKLOG_COUNT_LIMIT} per partition. A larger backlog
+     * shows as the cap, which is enough to tell that reclaiming is behind.
+     */
+    @Override
+    public long backlog() {
+        long count = 0;
+        for (final String queue : queues) {
+            count += dynamoDbClient.query(pendingQuery(queue)
+                                                  .select(Select.COUNT)
+                                                  .limit(BACKLOG_COUNT_LIMIT)
+                                                  .build())
+                    .count();
+        }
+        return count;
+    }
+
+    private QueryRequest.Builder pendingQuery(final String queue) {
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(TableAttributes.RECLAIM_INDEX_KEY)
+                .keyConditionExpression("#queue = :queue")
+                .expressionAttributeNames(Collections.singletonMap("#queue", TableAttributes.RECLAIM_QUEUE_KEY))
+                .expressionAttributeValues(Collections.singletonMap(":queue", AttributeValue.builder().s(queue).build()));
+    }
+
+    private static Tombstone itemToTombstone(final Map<String, AttributeValue> item) {
+        return new Tombstone(item.get(TableAttributes.FILE_ID_KEY).s(),
+                             item.get(TableAttributes.OWNER_ID_KEY).s(),
+                             item.get(TableAttributes.FILE_NAME_KEY).s(),
+                             item.get(TableAttributes.DELETED_AT_KEY).s());
+    }
+}
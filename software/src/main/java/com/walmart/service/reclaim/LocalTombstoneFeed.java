@@ -0,0 +1,43 @@
+package com.walmart.service.reclaim;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the tombstones of this instance in memory, in the order they were offered. A stand-in for
+ * {@link IndexTombstoneFeed} in tests and local runs, where ReclaimIndex may not exist. Tombstones are lost on
+ * restart, in which case their items expire through their TTL.
+ */
+public class LocalTombstoneFeed implements TombstoneFeed {
+
+    private final Set<Tombstone> tombstones = new LinkedHashSet<>();
+
+    @Override
+    public synchronized void offer(final Tombstone tombstone) {
+        tombstones.add(tombstone);
+    }
+
+    @Override
+    public synchronized List<Tombstone> poll(final int limit) {
+        final List<Tombstone> oldest = new ArrayList<>();
+        for (final Tombstone tombstone : tombstones) {
+            if (oldest.size() == limit) {
+                break;
+            }
+            oldest.add(tombstone);
+        }
+        return oldest;
+    }
+
+    @Override
+    public synchronized void remove(final List<Tombstone> reclaimed) {
+        reclaimed.forEach(tombstones::remove);
+    }
+
+    @Override
+    public synchronized long backlog() {
+        return tombstones.size();
+    }
+}
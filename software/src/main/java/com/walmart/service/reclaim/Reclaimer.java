@@ -0,0 +1,237 @@
+package com.walmart.service.reclaim;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.errors.ValidationException;
+import com.walmart.service.images.ImageDerivatives;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.FileType;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.RequestUtils;
+import com.walmart.service.util.S3Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Removes the S3 objects and items of soft deleted files in batches, see {@link TableAttributes#DELETED_AT_KEY}.
+ * <p>
+ * S3 keys are derived from the file name, so a tombstone's key may already hold a file that was uploaded again
+ * under the same name. The object (and its derivatives) is only deleted when the name has no pointer and the object
+ * wasn't written after the delete, otherwise only the tombstone's item is removed.
+ */
+@Component
+public class Reclaimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Reclaimer.class);
+    // The most keys one DeleteObjects call takes.
+    private static final int MAX_OBJECTS_PER_DELETE = 1000;
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final ImageDerivatives imageDerivatives;
+    private final Metrics metrics;
+    private final TombstoneFeed feed;
+    private final String tableName;
+    private final String bucketName;
+    private final int batchSize;
+    private final long maxMillis;
+    // The backlog as of the last reclaim, plus the tombstones recorded since. Counting ReclaimIndex on every metrics
+    // read would be too expensive.
+    private final AtomicLong backlog = new AtomicLong();
+
+    @Autowired
+    public Reclaimer(final DynamoDbClient dynamoDbClient,
+                     final S3Client s3Client,
+                     final ImageDerivatives imageDerivatives,
+                     final Metrics metrics,
+                     final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.s3Client = s3Client;
+        this.imageDerivatives = imageDerivatives;
+        this.metrics = metrics;
+        this.tableName = configurationModule.getTableName();
+        this.bucketName = configurationModule.getBucketName();
+        this.batchSize = configurationModule.getReclaimBatchSize();
+        this.maxMillis = configurationModule.getReclaimMaxMillis();
+        this.feed = "local".equals(configurationModule.getReclaimFeed())
+                ? new LocalTombstoneFeed()
+                : new IndexTombstoneFeed(dynamoDbClient, tableName);
+        metrics.gauge("reclaim.backlog", backlog::get);
+    }
+
+    /**
+     * Called once a file was soft deleted.
+     */
+    public void record(final Tombstone tombstone) {
+        feed.offer(tombstone);
+        backlog.incrementAndGet();
+    }
+
+    /**
+     * Reclaims batches of tombstones, the oldest first, until none are left or {@code reclaim.maxMillis} passed.
+     * A batch that fails is left for the next run.
+     *
+     * @return The number of tombstones that were reclaimed.
+     */
+    public synchronized int reclaim() {
+        final long deadline = System.currentTimeMillis() + maxMillis;
+        int reclaimed = 0;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                final List<Tombstone> batch = feed.poll(batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                final int batchReclaimed = reclaimBatch(batch, deadline);
+                reclaimed += batchReclaimed;
+                if (batchReclaimed < batch.size()) {
+                    // The rest would only be polled again.
+                    break;
+                }
+            }
+            backlog.set(feed.backlog());
+        } catch (final RuntimeException e) {
+            metrics.increment("reclaim.failures");
+            logger.warn("Was unable to reclaim a batch of tombstones, it's retried on the next run", e);
+        }
+        if (reclaimed > 0) {
+            logger.info("Reclaimed {} soft deleted files, {} are left", reclaimed, backlog.get());
+        }
+        return reclaimed;
+    }
+
+    private int reclaimBatch(final List<Tombstone> batch, final long deadline) {
+        final Map<String, Tombstone> tombstonesByKey = new LinkedHashMap<>();
+        final List<String> keys = new ArrayList<>();
+        for (final Tombstone tombstone : batch) {
+            if (!ownsObject(tombstone)) {
+                metrics.increment("reclaim.skipped");
+                continue;
+            }
+            final String key = S3Util.getFileKey(tombstone.getOwnerId(), tombstone.getFileName());
+            tombstonesByKey.put(key, tombstone);
+            keys.add(key);
+            if (isImage(tombstone.getFileName())) {
+                keys.addAll(imageDerivatives.getDerivativeKeys(tombstone.getOwnerId(), tombstone.getFileName()));
+            }
+        }
+
+        final Set<Tombstone> failed = new HashSet<>();
+        for (int start = 0; start < keys.size(); start += MAX_OBJECTS_PER_DELETE) {
+            for (final S3Error error : deleteObjects(keys.subList(start, Math.min(keys.size(), start + MAX_OBJECTS_PER_DELETE)))) {
+                final Tombstone tombstone = tombstonesByKey.get(error.key());
+                logger.warn("Was unable to delete the S3 object = {}: {}", error.key(), error.message());
+                if (tombstone != null) {
+                    // The item is kept, so that the object isn't left without anything referring to it.
+                    failed.add(tombstone);
+                }
+            }
+        }
+
+        final List<Tombstone> reclaimable = batch.stream()
+                .filter(tombstone -> !failed.contains(tombstone))
+                .collect(Collectors.toList());
+        deleteItems(reclaimable, deadline);
+        feed.remove(reclaimable);
+        metrics.add("reclaim.reclaimed", reclaimable.size());
+        if (!failed.isEmpty()) {
+            metrics.add("reclaim.failures", failed.size());
+        }
+        return reclaimable.size();
+    }
+
+    /**
+     * @return False for names that aren't valid anymore (e.g. legacy names), their files are reclaimed as non-images.
+     */
+    private static boolean isImage(final String fileName) {
+        try {
+            final FileType fileType = RequestUtils.getFileType(fileName);
+            // Unknown types are only rejected when assertions are enabled.
+            return fileType != null && FileType.isImage(fileType);
+        } catch (final ValidationException e) {
+            logger.warn("The file name = {} has no valid file type, reclaiming it without derivatives", fileName);
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether the S3 object under the tombstone's key is still the deleted file's.
+     */
+    private boolean ownsObject(final Tombstone tombstone) {
+        final String userId = tombstone.getOwnerId();
+        final String fileName = tombstone.getFileName();
+        if (DynamoDBUtil.getNamePointerFromDDB(userId, fileName, tableName, dynamoDbClient).getFileUUID() != null) {
+            logger.info("The file = {}/{} was uploaded again since it was deleted, keeping its S3 object", userId, fileName);
+            return false;
+        }
+        try {
+            final HeadObjectResponse headObjectResponse = s3Client.headObject(HeadObjectRequest.builder()
+                                                                                      .bucket(bucketName)
+                                                                                      .key(S3Util.getFileKey(userId, fileName))
+                                                                                      .build());
+            // An upload that's still writing its item has no pointer yet, but its object is newer than the delete.
+            return !headObjectResponse.lastModified().isAfter(Instant.parse(tombstone.getDeletedAt()));
+        } catch (final NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    private List<S3Error> deleteObjects(final List<String> keys) {
+        final List<ObjectIdentifier> objects = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .collect(Collectors.toList());
+        final DeleteObjectsResponse deleteObjectsResponse = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                                                                                           .bucket(bucketName)
+                                                                                           .delete(Delete.builder()
+                                                                                                           .objects(objects)
+                                                                                                           .quiet(true)
+                                                                                                           .build())
+                                                                                           .build());
+        return deleteObjectsResponse.hasErrors() ? deleteObjectsResponse.errors() : Collections.<S3Error>emptyList();
+    }
+
+    /**
+     * Deletes the tombstones' items. Items that are still unprocessed once the retries or {@code reclaim.maxMillis}
+     * ran out fail the run, and their tombstones are polled again on the next one. Their objects are gone by then, so
+     * only their items are deleted.
+     */
+    private void deleteItems(final List<Tombstone> tombstones, final long deadline) {
+        for (int start = 0; start < tombstones.size(); start += DynamoDBUtil.BATCH_WRITE_ITEM_LIMIT) {
+            final List<WriteRequest> deletes = tombstones.subList(start, Math.min(tombstones.size(), start + DynamoDBUtil.BATCH_WRITE_ITEM_LIMIT))
+                    .stream()
+                    .map(tombstone -> WriteRequest.builder()
+                            .deleteRequest(DeleteRequest.builder()
+                                                   .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                                                                 AttributeValue.builder().s(tombstone.getFileId()).build()))
+                                                   .build())
+                            .build())
+                    .collect(Collectors.toList());
+            DynamoDBUtil.batchWriteItems(deletes, tableName, dynamoDbClient, deadline);
+        }
+    }
+}
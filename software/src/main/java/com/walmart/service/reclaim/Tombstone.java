@@ -0,0 +1,21 @@
+package com.walmart.service.reclaim;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A soft deleted file whose S3 object and item still have to be removed.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class Tombstone {
+    private String fileId;
+    private String ownerId;
+    private String fileName;
+    // ISO-8601, like CreatedAt.
+    private String deletedAt;
+}
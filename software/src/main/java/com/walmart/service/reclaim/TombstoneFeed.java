@@ -0,0 +1,29 @@
+package com.walmart.service.reclaim;
+
+import java.util.List;
+
+/**
+ * Where the {@link Reclaimer} finds the files that were soft deleted.
+ */
+public interface TombstoneFeed {
+
+    /**
+     * Called right after a file was soft deleted on this instance.
+     */
+    void offer(Tombstone tombstone);
+
+    /**
+     * @return Up to limit tombstones, roughly the oldest first. They're returned again until they're removed.
+     */
+    List<Tombstone> poll(int limit);
+
+    /**
+     * Called once the tombstones' items were deleted.
+     */
+    void remove(List<Tombstone> tombstones);
+
+    /**
+     * @return The number of tombstones waiting to be reclaimed.
+     */
+    long backlog();
+}
@@ -0,0 +1,81 @@
+package com.walmart.service.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a dependency after too many consecutive failures. Once open, calls fail immediately until the
+ * cool down has passed, after which a single trial call is let through. The breaker closes again if it succeeds.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier millisClock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * @param failureThreshold Consecutive failures needed to open the breaker. Zero or less disables the breaker.
+     * @param openMillis       How long the breaker stays open before a trial call is allowed.
+     */
+    public CircuitBreaker(final int failureThreshold, final long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(final int failureThreshold, final long openMillis, final LongSupplier millisClock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.millisClock = millisClock;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (millisClock.getAsLong() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (failureThreshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = millisClock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Used when an allowed call ended without telling us anything about the dependency's health.
+     */
+    public synchronized void recordIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,11 @@
+package com.walmart.service.resilience;
+
+/**
+ * Thrown when an AWS call is refused on the client side, because of a rate limit or an open circuit breaker.
+ */
+public class RejectedCallException extends RuntimeException {
+
+    public RejectedCallException(final String message) {
+        super(message);
+    }
+}
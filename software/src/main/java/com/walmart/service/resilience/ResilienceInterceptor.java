@@ -0,0 +1,240 @@
+package com.walmart.service.resilience;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.retry.RetryUtils;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client side protection for the AWS clients, registered on them in {@link com.walmart.service.LambdaApplication}.
+ * <ul>
+ *     <li>Every attempt (including the SDK's own retries) takes a permit from a token bucket. DynamoDB calls are
+ *     limited per table and index, S3 calls per bucket and top level key prefix (the user ID).</li>
+ *     <li>Each service has a circuit breaker that opens after consecutive throttles or server errors, so callers
+ *     fail fast instead of piling up retries against a struggling dependency.</li>
+ *     <li>Throttled attempts are counted as absorbed when the call eventually succeeded and as surfaced when the
+ *     throttle reached the caller.</li>
+ * </ul>
+ */
+@Component
+public class ResilienceInterceptor implements ExecutionInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilienceInterceptor.class);
+    private static final ExecutionAttribute<CircuitBreaker> BREAKER = new ExecutionAttribute<>("ResilienceBreaker");
+    private static final ExecutionAttribute<AtomicInteger> ATTEMPTS = new ExecutionAttribute<>("ResilienceAttempts");
+    private static final ExecutionAttribute<AtomicInteger> THROTTLED_ATTEMPTS = new ExecutionAttribute<>("ResilienceThrottledAttempts");
+    private static final String DYNAMODB_SERVICE = "DynamoDb";
+    private static final String S3_SERVICE = "S3";
+
+    private final Metrics metrics;
+    private final double dynamoDbPermitsPerSecond;
+    private final double s3PermitsPerSecond;
+    private final double burstSeconds;
+    private final long maxWaitNanos;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, Double> rateLimitOverrides;
+    private final Map<String, Optional<TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ResilienceInterceptor(final LambdaConfigurationModule configurationModule, final Metrics metrics) {
+        this.metrics = metrics;
+        this.dynamoDbPermitsPerSecond = configurationModule.getDynamoDbPermitsPerSecond();
+        this.s3PermitsPerSecond = configurationModule.getS3PermitsPerSecond();
+        this.burstSeconds = configurationModule.getRateLimitBurstSeconds();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(configurationModule.getRateLimitMaxWaitMillis());
+        this.failureThreshold = configurationModule.getCircuitFailureThreshold();
+        this.openMillis = configurationModule.getCircuitOpenMillis();
+        this.rateLimitOverrides = parseOverrides(configurationModule.getRateLimitOverrides());
+    }
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        final String serviceName = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+        final CircuitBreaker breaker = breakers.computeIfAbsent(serviceName, this::createBreaker);
+        if (!breaker.allowRequest()) {
+            metrics.increment("aws.circuitOpenRejections");
+            throw new RejectedCallException(String.format("The circuit breaker for %s is open", serviceName));
+        }
+        executionAttributes.putAttribute(BREAKER, breaker);
+        executionAttributes.putAttribute(ATTEMPTS, new AtomicInteger());
+        executionAttributes.putAttribute(THROTTLED_ATTEMPTS, new AtomicInteger());
+    }
+
+    @Override
+    public void beforeTransmission(final Context.BeforeTransmission context, final ExecutionAttributes executionAttributes) {
+        executionAttributes.getAttribute(ATTEMPTS).incrementAndGet();
+        final String limiterKey = limiterKey(executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME),
+                                             context.request());
+        final Optional<TokenBucket> bucket = buckets.computeIfAbsent(limiterKey, this::createBucket);
+        if (!bucket.isPresent()) {
+            return;
+        }
+        try {
+            if (!bucket.get().tryAcquire(maxWaitNanos)) {
+                metrics.increment("aws.rateLimited");
+                throw new RejectedCallException(String.format("The client side rate limit for %s was exceeded", limiterKey));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedCallException(String.format("Interrupted while waiting on the rate limit for %s", limiterKey));
+        }
+    }
+
+    @Override
+    public void afterTransmission(final Context.AfterTransmission context, final ExecutionAttributes executionAttributes) {
+        if (isThrottle(context.httpResponse())) {
+            executionAttributes.getAttribute(THROTTLED_ATTEMPTS).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterExecution(final Context.AfterExecution context, final ExecutionAttributes executionAttributes) {
+        executionAttributes.getAttribute(BREAKER).recordSuccess();
+        final int attempts = executionAttributes.getAttribute(ATTEMPTS).get();
+        if (attempts > 1) {
+            metrics.add("aws.retries", attempts - 1);
+        }
+        final int throttledAttempts = executionAttributes.getAttribute(THROTTLED_ATTEMPTS).get();
+        if (throttledAttempts > 0) {
+            metrics.add("aws.throttlesAbsorbed", throttledAttempts);
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(final Context.FailedExecution context, final ExecutionAttributes executionAttributes) {
+        final CircuitBreaker breaker = executionAttributes.getAttribute(BREAKER);
+        if (breaker == null) {
+            // Rejected by the breaker itself before anything was sent.
+            return;
+        }
+        final AtomicInteger attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null && attempts.get() > 1) {
+            metrics.add("aws.retries", attempts.get() - 1);
+        }
+
+        final Throwable exception = context.exception();
+        if (isCausedBy(exception, RejectedCallException.class)) {
+            breaker.recordIgnored();
+            return;
+        }
+        final SdkException sdkException = exception instanceof SdkException ? (SdkException) exception : null;
+        if (sdkException != null && RetryUtils.isThrottlingException(sdkException)) {
+            metrics.increment("aws.throttlesSurfaced");
+            breaker.recordFailure();
+        } else if (sdkException instanceof SdkServiceException && ((SdkServiceException) sdkException).statusCode() >= 500) {
+            metrics.increment("aws.serverErrors");
+            breaker.recordFailure();
+        } else if (sdkException instanceof SdkClientException) {
+            // Connection failures and timeouts.
+            metrics.increment("aws.clientErrors");
+            breaker.recordFailure();
+        } else {
+            // A 4xx such as NoSuchKey or a failed condition means the service is healthy.
+            breaker.recordSuccess();
+        }
+    }
+
+    /**
+     * @return The key of the token bucket an attempt takes its permit from, e.g. dynamodb:table/index or s3:bucket/userId.
+     */
+    static String limiterKey(final String serviceName, final SdkRequest request) {
+        if (DYNAMODB_SERVICE.equals(serviceName)) {
+            final String tableName = request.getValueForField("TableName", String.class).orElse("*");
+            return request.getValueForField("IndexName", String.class)
+                    .map(indexName -> String.format("dynamodb:%s/%s", tableName, indexName))
+                    .orElse("dynamodb:" + tableName);
+        }
+        if (S3_SERVICE.equals(serviceName)) {
+            final String bucket = request.getValueForField("Bucket", String.class).orElse("*");
+            final String prefix = request.getValueForField("Key", String.class)
+                    .map(key -> key.indexOf('/') < 0 ? "" : key.substring(0, key.indexOf('/')))
+                    .orElse("");
+            return String.format("s3:%s/%s", bucket, prefix);
+        }
+        return serviceName;
+    }
+
+    private Optional<TokenBucket> createBucket(final String limiterKey) {
+        final double permitsPerSecond;
+        if (rateLimitOverrides.containsKey(limiterKey)) {
+            permitsPerSecond = rateLimitOverrides.get(limiterKey);
+        } else if (limiterKey.startsWith("dynamodb:")) {
+            permitsPerSecond = dynamoDbPermitsPerSecond;
+        } else if (limiterKey.startsWith("s3:")) {
+            permitsPerSecond = s3PermitsPerSecond;
+        } else {
+            permitsPerSecond = 0;
+        }
+        if (permitsPerSecond <= 0) {
+            return Optional.empty();
+        }
+        logger.info("Limiting {} to {} calls per second", limiterKey, permitsPerSecond);
+        return Optional.of(new TokenBucket(permitsPerSecond, burstSeconds));
+    }
+
+    private CircuitBreaker createBreaker(final String serviceName) {
+        final CircuitBreaker breaker = new CircuitBreaker(failureThreshold, openMillis);
+        metrics.gauge(String.format("aws.circuitOpen.%s", serviceName),
+                      () -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        return breaker;
+    }
+
+    private static boolean isThrottle(final SdkHttpResponse response) {
+        if (response.statusCode() == 429 || response.statusCode() == 503) {
+            return true;
+        }
+        // DynamoDB throttles with a 400 and the error type in a header.
+        return response.statusCode() == 400 && response.firstMatchingHeader("x-amzn-ErrorType")
+                .map(errorType -> errorType.contains("ProvisionedThroughputExceeded")
+                        || errorType.contains("Throttling")
+                        || errorType.contains("RequestLimitExceeded"))
+                .orElse(false);
+    }
+
+    private static boolean isCausedBy(final Throwable exception, final Class<? extends Throwable> type) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses limiter keys and their rates, e.g. "dynamodb:table/FileNameIndex=50,s3:bucket/user=100".
+     */
+    static Map<String, Double> parseOverrides(final String overrides) {
+        final Map<String, Double> parsed = new ConcurrentHashMap<>();
+        if (overrides == null) {
+            return parsed;
+        }
+        for (final String entry : overrides.split(",")) {
+            final int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                parsed.put(entry.substring(0, separator).trim(), Double.parseDouble(entry.substring(separator + 1).trim()));
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,59 @@
+package com.walmart.service.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket rate limiter. Tokens are added continuously at the configured rate, up to the size of a burst.
+ * A caller that has to wait reserves its token right away, so callers are served in the order they arrived.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond The sustained rate.
+     * @param burstSeconds     How many seconds worth of permits can be used at once after the bucket was idle.
+     */
+    public TokenBucket(final double permitsPerSecond, final double burstSeconds) {
+        this(permitsPerSecond, burstSeconds, System::nanoTime);
+    }
+
+    TokenBucket(final double permitsPerSecond, final double burstSeconds, final LongSupplier nanoClock) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, permitsPerSecond * burstSeconds);
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a permit, waiting for one if necessary.
+     *
+     * @param maxWaitNanos The longest the caller is willing to wait.
+     * @return False if no permit would be available in time, in which case nothing was taken.
+     */
+    public boolean tryAcquire(final long maxWaitNanos) throws InterruptedException {
+        final long waitNanos;
+        synchronized (this) {
+            final long now = nanoClock.getAsLong();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return false;
+            }
+            tokens -= 1;
+        }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        return true;
+    }
+}
@@ -0,0 +1,341 @@
+package com.walmart.service.routing;
+
+import com.amazonaws.serverless.exceptions.InvalidResponseObjectException;
+import com.amazonaws.serverless.proxy.RequestReader;
+import com.amazonaws.serverless.proxy.internal.jaxrs.AwsProxySecurityContext;
+import com.amazonaws.serverless.proxy.internal.servlet.AwsHttpServletResponse;
+import com.amazonaws.serverless.proxy.internal.servlet.AwsProxyHttpServletRequest;
+import com.amazonaws.serverless.proxy.internal.servlet.AwsProxyHttpServletResponseWriter;
+import com.amazonaws.serverless.proxy.model.AwsProxyRequest;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.function.DeleteFiles;
+import com.walmart.service.function.GetFile;
+import com.walmart.service.function.ListFiles;
+import com.walmart.service.function.UploadFile;
+import com.walmart.service.function.Warmer;
+import com.walmart.service.models.BatchListFilesRequest;
+import com.walmart.service.models.DeleteFilesRequest;
+import com.walmart.service.models.GetFilesRequest;
+import com.walmart.service.models.Header;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.startup.ColdStart;
+import com.walmart.service.tracing.Tracing;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An alternative to the Spring MVC dispatch of {@link com.walmart.service.StreamLambdaHandler}, selected with
+ * {@code LAMBDA_ROUTER=functional}. The proxy event is read straight from the input stream, matched against routes
+ * that were compiled when the function started, handed to the controllers' methods and the proxy response is written
+ * straight to the output stream. The Spring context still creates the controllers and their dependencies, but it's
+ * not a web application: there's no DispatcherServlet, handler mappings, argument resolvers or message converters.
+ * <p>
+ * It serves the routes of GetFile, ListFiles, UploadFile and DeleteFiles, and the warmer. Other routes get a 404, so
+ * it's only meant for the functions of those routes.
+ */
+public class FunctionalRouter {
+
+    public static final String ENVIRONMENT_KEY = "LAMBDA_ROUTER";
+    public static final String NAME = "functional";
+    // Active when the context was started by the functional router, see LambdaApplication#routeGroupExcludeFilter.
+    public static final String PROFILE = "functional";
+    private static final Logger logger = LoggerFactory.getLogger(FunctionalRouter.class);
+    private static final String INTERNAL_SERVER_ERROR = "{\"message\":\"Internal Server Error\"}";
+    private final ObjectReader eventReader;
+    private final ObjectWriter responseWriter;
+    // Reads and writes bodies the way Spring MVC's Jackson converter does.
+    private final ObjectMapper bodyMapper;
+    private final AwsProxyHttpServletResponseWriter proxyResponseWriter = new AwsProxyHttpServletResponseWriter();
+    // The routes of each method and segment count.
+    private final Map<String, List<Route>> routes = new HashMap<>();
+    private final ObjectProvider<MultipartResolver> multipartResolver;
+    // Does for the routes what TracingFilter does for Spring MVC.
+    private final Tracing tracing;
+
+    /**
+     * Handles a request once its route matched.
+     */
+    @FunctionalInterface
+    interface RouteHandler {
+        Object handle(Exchange exchange) throws Exception;
+    }
+
+    private static final class Route {
+        private final RoutePattern pattern;
+        private final RouteHandler handler;
+
+        private Route(final RoutePattern pattern, final RouteHandler handler) {
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Starts the application without a web server, with lazy initialization (see {@link RouteGroupExcludeFilter}).
+     */
+    public static FunctionalRouter start(final String... profiles) {
+        System.setProperty("spring.main.lazy-initialization", "true");
+        final List<String> allProfiles = new ArrayList<>();
+        Collections.addAll(allProfiles, profiles);
+        allProfiles.add(PROFILE);
+        final ApplicationContext context = new SpringApplicationBuilder(LambdaApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles(allProfiles.toArray(new String[0]))
+                .run();
+        return new FunctionalRouter(context);
+    }
+
+    public FunctionalRouter(final ApplicationContext context) {
+        final ObjectMapper eventMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.eventReader = eventMapper.readerFor(AwsProxyRequest.class);
+        this.responseWriter = eventMapper.writerFor(AwsProxyResponse.class);
+        this.bodyMapper = Jackson2ObjectMapperBuilder.json().applicationContext(context).build();
+        this.multipartResolver = context.getBeanProvider(MultipartResolver.class);
+        this.tracing = context.getBean(Tracing.class);
+
+        // The controllers are only resolved on their first request, a function that serves one route group never
+        // creates the others'.
+        final ObjectProvider<GetFile> getFile = context.getBeanProvider(GetFile.class);
+        final ObjectProvider<ListFiles> listFiles = context.getBeanProvider(ListFiles.class);
+        final ObjectProvider<UploadFile> uploadFile = context.getBeanProvider(UploadFile.class);
+        final ObjectProvider<DeleteFiles> deleteFiles = context.getBeanProvider(DeleteFiles.class);
+        final ObjectProvider<Warmer> warmer = context.getBeanProvider(Warmer.class);
+
+        route("GET", "/", exchange -> warmer.getObject().warmFunction());
+        route("GET", "/getFile/{userId}/{fileName}", exchange -> {
+            getFile.getObject().retrieveFileByName(exchange.pathVariable("userId"), exchange.pathVariable("fileName"),
+                                                   exchange.integerParameter("size"), exchange.header(Header.IF_NONE_MATCH),
+                                                   exchange.getResponse());
+            return null;
+        });
+        route("GET", "/getFile/{fileId}", exchange -> {
+            getFile.getObject().retrieveFileById(exchange.pathVariable("fileId"), exchange.integerParameter("size"),
+                                                 exchange.header(Header.IF_NONE_MATCH), exchange.getResponse());
+            return null;
+        });
+        route("HEAD", "/getFile/{userId}/{fileName}", exchange -> {
+            getFile.getObject().headFileByName(exchange.pathVariable("userId"), exchange.pathVariable("fileName"),
+                                               exchange.header(Header.IF_NONE_MATCH), exchange.getResponse());
+            return null;
+        });
+        route("HEAD", "/getFile/{fileId}", exchange -> {
+            getFile.getObject().headFileById(exchange.pathVariable("fileId"), exchange.header(Header.IF_NONE_MATCH),
+                                             exchange.getResponse());
+            return null;
+        });
+        route("POST", "/getFiles/{userId}", exchange -> {
+            getFile.getObject().retrieveMultipleFiles(exchange.pathVariable("userId"), exchange.body(GetFilesRequest.class),
+                                                      exchange.getResponse());
+            return null;
+        });
+        route("POST", "/listFiles/{userId}/batch", exchange -> listFiles.getObject().handleBatchRequest(
+                exchange.body(BatchListFilesRequest.class), exchange.pathVariable("userId"),
+                exchange.header(Header.NEXT_TOKEN), exchange.getResponse()));
+        route("POST", "/listFiles/{userId}", exchange -> listFiles.getObject().handleRequest(
+                exchange.body(ListFilesRequest.class), exchange.pathVariable("userId"), exchange.header(Header.NEXT_TOKEN),
+                exchange.getResponse()));
+        route("POST", "/uploadFile/{userId}", exchange -> uploadFile.getObject().uploadMultipleFiles(
+                exchange.multipartFiles(), exchange.pathVariable("userId"), exchange.header(Header.IDEMPOTENCY_KEY),
+                exchange.getResponse()));
+        route("POST", "/uploadFile/{userId}/stream", exchange -> uploadFile.getObject().uploadStreamedFiles(
+                exchange.pathVariable("userId"), exchange.header(Header.IDEMPOTENCY_KEY),
+                exchange.header(Header.CONTENT_SHA256), exchange.getRequest(), exchange.getResponse()));
+        route("DELETE", "/deleteFile/{userId}/{fileId}", exchange -> deleteFiles.getObject().deleteFileById(
+                exchange.pathVariable("userId"), exchange.pathVariable("fileId"), exchange.header(Header.IDEMPOTENCY_KEY),
+                exchange.getResponse()));
+        route("POST", "/deleteFiles/{userId}", exchange -> deleteFiles.getObject().deleteMultipleFiles(
+                exchange.pathVariable("userId"), exchange.body(DeleteFilesRequest.class),
+                exchange.header(Header.IDEMPOTENCY_KEY), exchange.getResponse()));
+    }
+
+    private void route(final String method, final String pattern, final RouteHandler handler) {
+        final RoutePattern compiled = RoutePattern.compile(pattern);
+        routes.computeIfAbsent(routeKey(method, compiled.segmentCount()), key -> new ArrayList<>())
+                .add(new Route(compiled, handler));
+    }
+
+    private static String routeKey(final String method, final int segmentCount) {
+        return method + " " + segmentCount;
+    }
+
+    /**
+     * Reads a proxy event from the input, and writes the proxy response to the output.
+     */
+    public void handle(final InputStream input, final OutputStream output, final Context lambdaContext) throws IOException {
+        final AwsProxyRequest request = eventReader.readValue(input);
+        // The warming rule's scheduled events have neither.
+        if (request.getPath() == null) {
+            request.setPath("/");
+        }
+        if (request.getHttpMethod() == null) {
+            request.setHttpMethod("GET");
+        }
+        final Span span = tracing.startRequest(request.getHttpMethod(), name -> request.getMultiValueHeaders() == null
+                ? null
+                : request.getMultiValueHeaders().getFirst(name));
+        AwsProxyResponse response = internalServerError();
+        try (Scope scope = span.makeCurrent()) {
+            response = handle(request, lambdaContext);
+        } finally {
+            tracing.endRequest(span, response.getStatusCode());
+        }
+        responseWriter.writeValue(output, response);
+    }
+
+    AwsProxyResponse handle(final AwsProxyRequest request, final Context lambdaContext) throws IOException {
+        final AwsProxyHttpServletRequest servletRequest = new AwsProxyHttpServletRequest(
+                request, lambdaContext, new AwsProxySecurityContext(lambdaContext, request));
+        servletRequest.setAttribute(RequestReader.API_GATEWAY_EVENT_PROPERTY, request);
+        servletRequest.setAttribute(RequestReader.LAMBDA_CONTEXT_PROPERTY, lambdaContext);
+        final AwsHttpServletResponse servletResponse = new AwsHttpServletResponse(servletRequest, new CountDownLatch(1));
+
+        final String[] segments = RoutePattern.segments(request.getPath());
+        final Exchange exchange = match(request.getHttpMethod(), segments, servletRequest, servletResponse);
+        if (exchange == null) {
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        } else {
+            ColdStart.route(request.getHttpMethod() + " " + exchange.route.pattern);
+            Tracing.route(request.getHttpMethod(), exchange.route.pattern.toString());
+            try {
+                writeBody(exchange.route.handler.handle(exchange), servletResponse);
+            } catch (final Exception e) {
+                // As the Spring container does for exceptions that no resolver handled.
+                logger.error("Was unable to handle the request to {} {}", request.getHttpMethod(), exchange.route.pattern, e);
+                return internalServerError();
+            }
+        }
+        servletResponse.flushBuffer();
+        try {
+            return proxyResponseWriter.writeResponse(servletResponse, lambdaContext);
+        } catch (final InvalidResponseObjectException e) {
+            logger.error("Was unable to write the response to {} {}", request.getHttpMethod(), request.getPath(), e);
+            return internalServerError();
+        }
+    }
+
+    private Exchange match(final String method,
+                           final String[] segments,
+                           final HttpServletRequest servletRequest,
+                           final HttpServletResponse servletResponse) {
+        final List<Route> candidates = routes.get(routeKey(method, segments.length));
+        if (candidates == null) {
+            return null;
+        }
+        for (final Route route : candidates) {
+            final Map<String, String> pathVariables = route.pattern.match(segments);
+            if (pathVariables != null) {
+                return new Exchange(route, pathVariables, servletRequest, servletResponse);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a controller's return value, as Spring MVC would: strings as text and everything else as JSON.
+     */
+    private void writeBody(final Object body, final HttpServletResponse servletResponse) throws IOException {
+        if (body == null) {
+            return;
+        }
+        if (body instanceof String) {
+            servletResponse.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            servletResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            servletResponse.getOutputStream().write(((String) body).getBytes(StandardCharsets.UTF_8));
+        } else {
+            servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            bodyMapper.writeValue(servletResponse.getOutputStream(), body);
+        }
+    }
+
+    private static AwsProxyResponse internalServerError() {
+        final AwsProxyResponse response = new AwsProxyResponse();
+        response.setStatusCode(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        response.setBody(INTERNAL_SERVER_ERROR);
+        response.addHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE);
+        return response;
+    }
+
+    /**
+     * A matched request, with what the controllers' methods take.
+     */
+    final class Exchange {
+        private final Route route;
+        private final Map<String, String> pathVariables;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+
+        private Exchange(final Route route,
+                         final Map<String, String> pathVariables,
+                         final HttpServletRequest request,
+                         final HttpServletResponse response) {
+            this.route = route;
+            this.pathVariables = pathVariables;
+            this.request = request;
+            this.response = response;
+        }
+
+        HttpServletRequest getRequest() {
+            return request;
+        }
+
+        HttpServletResponse getResponse() {
+            return response;
+        }
+
+        String pathVariable(final String name) {
+            return pathVariables.get(name);
+        }
+
+        String header(final String name) {
+            return request.getHeader(name);
+        }
+
+        Integer integerParameter(final String name) {
+            final String value = request.getParameter(name);
+            return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+        }
+
+        <T> T body(final Class<T> type) throws IOException {
+            try (InputStream body = request.getInputStream()) {
+                return bodyMapper.readValue(body, type);
+            }
+        }
+
+        List<MultipartFile> multipartFiles() {
+            final MultipartHttpServletRequest multipartRequest = multipartResolver.getObject().resolveMultipart(request);
+            final List<MultipartFile> files = new ArrayList<>();
+            multipartRequest.getMultiFileMap().values().forEach(files::addAll);
+            return files;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.walmart.service.routing;
+
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The groups of routes that can be deployed as their own Lambda functions, each with its own memory size, timeout
+ * and concurrency. A function serves one group when {@link #ENVIRONMENT_KEY} is set, see
+ * {@link com.walmart.service.StreamLambdaHandler}, and the whole API otherwise.
+ */
+public enum RouteGroup {
+    // GetFile, GetFiles and file metadata.
+    GET("getFile", "getFiles", "files"),
+    // ListFiles, SearchFiles and stats.
+    LIST("listFiles", "searchFiles", "stats"),
+    UPLOAD("uploadFile"),
+    // Deletes and delete jobs. Also runs the background work started by the warmer.
+    DELETE("deleteFile", "deleteFiles", "deleteJobs");
+
+    public static final String ENVIRONMENT_KEY = "ROUTE_GROUP";
+    // The first path segment of every route of the group's controllers.
+    private final List<String> pathPrefixes;
+
+    RouteGroup(final String... pathPrefixes) {
+        this.pathPrefixes = Arrays.asList(pathPrefixes);
+    }
+
+    /**
+     * @return The Spring profile a function of this group runs with.
+     */
+    public String profile() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param path A request's path, e.g. /listFiles/123.
+     * @return The group of the route, or null for the routes of every function (the warmer and metrics).
+     */
+    public static RouteGroup of(final String path) {
+        final int start = path.startsWith("/") ? 1 : 0;
+        final int end = path.indexOf('/', start);
+        final String firstSegment = path.substring(start, end < 0 ? path.length() : end);
+        for (final RouteGroup group : values()) {
+            if (group.pathPrefixes.contains(firstSegment)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The group this function serves, or null if it serves every route.
+     */
+    public static RouteGroup active(final Environment environment) {
+        for (final String profile : environment.getActiveProfiles()) {
+            for (final RouteGroup group : values()) {
+                if (group.profile().equals(profile)) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.walmart.service.routing;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Arrays;
+
+/**
+ * A function that serves one route group starts with lazy initialization, see
+ * {@link com.walmart.service.StreamLambdaHandler}. This keeps the group's controllers and the MVC infrastructure
+ * eager, so they and everything they depend on are still created during the function's init phase. The beans only
+ * other groups need are never created.
+ * <p>
+ * The routes of the other groups stay mapped, and their controllers are created if they're ever called.
+ */
+public class RouteGroupExcludeFilter implements LazyInitializationExcludeFilter {
+
+    private final RouteGroup routeGroup;
+    private final boolean mvcEager;
+
+    /**
+     * @param routeGroup Nullable. Every controller is kept eager without a route group.
+     * @param mvcEager   Whether the MVC infrastructure is kept eager, it isn't used by the {@link FunctionalRouter}.
+     */
+    public RouteGroupExcludeFilter(final RouteGroup routeGroup, final boolean mvcEager) {
+        this.routeGroup = routeGroup;
+        this.mvcEager = mvcEager;
+    }
+
+    @Override
+    public boolean isExcluded(final String beanName, final BeanDefinition beanDefinition, final Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        if (HandlerMapping.class.isAssignableFrom(beanType) || HandlerAdapter.class.isAssignableFrom(beanType) ||
+                HandlerExceptionResolver.class.isAssignableFrom(beanType) || MultipartResolver.class.isAssignableFrom(beanType)) {
+            return mvcEager;
+        }
+        if (!AnnotatedElementUtils.hasAnnotation(beanType, RestController.class)) {
+            return false;
+        }
+        final RouteGroups routeGroups = AnnotatedElementUtils.findMergedAnnotation(beanType, RouteGroups.class);
+        return routeGroup == null || routeGroups == null || Arrays.asList(routeGroups.value()).contains(routeGroup);
+    }
+}
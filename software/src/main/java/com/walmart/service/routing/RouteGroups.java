@@ -0,0 +1,16 @@
+package com.walmart.service.routing;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The route groups a controller belongs to. Only the controllers of a function's group, and the beans they depend
+ * on, are created when the function starts. Controllers without this annotation are created in every function.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RouteGroups {
+    RouteGroup[] value();
+}
@@ -0,0 +1,90 @@
+package com.walmart.service.routing;
+
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A path pattern such as {@code /getFile/{userId}/{fileName}}, compiled once into its segments. Matching a path only
+ * compares the literal segments, there's no regex or AntPathMatcher involved.
+ */
+final class RoutePattern {
+
+    private final String pattern;
+    // The literal segments, null where the pattern has a variable.
+    private final String[] literals;
+    // The variables' names, null where the pattern has a literal.
+    private final String[] variables;
+
+    private RoutePattern(final String pattern, final String[] literals, final String[] variables) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    static RoutePattern compile(final String pattern) {
+        final String[] segments = segments(pattern);
+        final String[] literals = new String[segments.length];
+        final String[] variables = new String[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                variables[i] = segment.substring(1, segment.length() - 1);
+            } else {
+                literals[i] = segment;
+            }
+        }
+        return new RoutePattern(pattern, literals, variables);
+    }
+
+    /**
+     * @return The path's non-empty segments, e.g. {@code [getFile, 123]} for {@code /getFile/123/}.
+     */
+    static String[] segments(final String path) {
+        final List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= path.length(); i++) {
+            if (i == path.length() || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    int segmentCount() {
+        return literals.length;
+    }
+
+    /**
+     * @return The decoded path variables, or null if the path doesn't match.
+     */
+    Map<String, String> match(final String[] segments) {
+        if (segments.length != literals.length) {
+            return null;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (literals[i] != null && !literals[i].equals(segments[i])) {
+                return null;
+            }
+        }
+        final Map<String, String> pathVariables = new HashMap<>();
+        for (int i = 0; i < segments.length; i++) {
+            if (variables[i] != null) {
+                pathVariables.put(variables[i], UriUtils.decode(segments[i], StandardCharsets.UTF_8));
+            }
+        }
+        return pathVariables;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
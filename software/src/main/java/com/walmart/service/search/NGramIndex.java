@@ -0,0 +1,329 @@
+package com.walmart.service.search;
+
+import com.walmart.service.models.SearchHit;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An inverted index from the trigrams of file names to the files containing them, used for substring search.
+ * <p>
+ * Names are indexed lowercased. Every file gets an ordinal in the order it was added, and every trigram keeps the
+ * sorted ordinals of its files (its postings). A query of three characters or more intersects the postings of its
+ * trigrams and then checks the remaining names, shorter queries scan the names. When no name contains the query,
+ * names sharing most of its trigrams are returned instead, so small typos still find the file.
+ * <p>
+ * Removed files are only marked as such, and are dropped when the index is written out. Not thread safe.
+ */
+public class NGramIndex {
+
+    private static final int N = 3;
+    private static final int MAGIC = 0x4E474931; // NGI1
+    // Share of the query's trigrams a name needs when nothing contains the query.
+    private static final double FUZZY_MIN_MATCH = 0.6;
+    private static final Comparator<SearchHit> RANKING = Comparator.comparingDouble(SearchHit::getScore).reversed()
+            .thenComparing(SearchHit::getFileName)
+            .thenComparing(SearchHit::getFileUUID);
+
+    private final List<String> fileIds = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    private final BitSet removed = new BitSet();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private long estimatedBytes;
+
+    /**
+     * Adds a file, or renames it if its ID is already indexed.
+     */
+    public void add(final String fileId, final String fileName) {
+        final Integer existing = ordinals.get(fileId);
+        if (existing != null) {
+            if (fileNames.get(existing).equals(fileName)) {
+                return;
+            }
+            remove(fileId);
+        }
+        final int ordinal = fileIds.size();
+        final String lowerName = fileName.toLowerCase(Locale.ROOT);
+        fileIds.add(fileId);
+        fileNames.add(fileName);
+        lowerNames.add(lowerName);
+        ordinals.put(fileId, ordinal);
+        estimatedBytes += 2L * (fileId.length() + fileName.length() + lowerName.length()) + 160;
+        for (final long gram : distinctGrams(lowerName)) {
+            Postings gramPostings = postings.get(gram);
+            if (gramPostings == null) {
+                gramPostings = new Postings();
+                postings.put(gram, gramPostings);
+                estimatedBytes += 80;
+            }
+            gramPostings.add(ordinal);
+            estimatedBytes += 4;
+        }
+    }
+
+    public void remove(final String fileId) {
+        final Integer ordinal = ordinals.remove(fileId);
+        if (ordinal != null) {
+            removed.set(ordinal);
+        }
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return The best matches first: names equal to the query, then names starting with it, then names containing
+     * it (the more of the name the query covers the better), then names only sharing trigrams with it.
+     */
+    public List<SearchHit> search(final String query, final int limit) {
+        final String lowerQuery = query.toLowerCase(Locale.ROOT);
+        final PriorityQueue<SearchHit> best = new PriorityQueue<>(Math.max(1, limit), RANKING.reversed());
+        if (lowerQuery.length() < N) {
+            for (int ordinal = 0; ordinal < lowerNames.size(); ordinal++) {
+                if (!removed.get(ordinal) && lowerNames.get(ordinal).contains(lowerQuery)) {
+                    offer(best, hit(ordinal, lowerQuery), limit);
+                }
+            }
+            return sorted(best);
+        }
+
+        final Set<Long> queryGrams = distinctGrams(lowerQuery);
+        final List<Postings> gramPostings = new ArrayList<>();
+        for (final long gram : queryGrams) {
+            final Postings found = postings.get(gram);
+            if (found != null) {
+                gramPostings.add(found);
+            }
+        }
+        if (gramPostings.size() == queryGrams.size()) {
+            for (final int ordinal : intersect(gramPostings)) {
+                if (!removed.get(ordinal) && lowerNames.get(ordinal).contains(lowerQuery)) {
+                    offer(best, hit(ordinal, lowerQuery), limit);
+                }
+            }
+        }
+        if (best.isEmpty()) {
+            fuzzySearch(best, gramPostings, queryGrams.size(), limit);
+        }
+        return sorted(best);
+    }
+
+    private void fuzzySearch(final PriorityQueue<SearchHit> best, final List<Postings> gramPostings,
+                             final int queryGramCount, final int limit) {
+        final int minMatches = (int) Math.ceil(queryGramCount * FUZZY_MIN_MATCH);
+        if (gramPostings.size() < minMatches) {
+            return;
+        }
+        final Map<Integer, Integer> matches = new HashMap<>();
+        for (final Postings found : gramPostings) {
+            for (int i = 0; i < found.size; i++) {
+                matches.merge(found.ordinals[i], 1, Integer::sum);
+            }
+        }
+        for (final Map.Entry<Integer, Integer> match : matches.entrySet()) {
+            if (match.getValue() >= minMatches && !removed.get(match.getKey())) {
+                final int ordinal = match.getKey();
+                offer(best, new SearchHit(fileIds.get(ordinal), fileNames.get(ordinal),
+                                          (double) match.getValue() / queryGramCount), limit);
+            }
+        }
+    }
+
+    private SearchHit hit(final int ordinal, final String lowerQuery) {
+        final String lowerName = lowerNames.get(ordinal);
+        final double kind = lowerName.equals(lowerQuery) ? 3 : lowerName.startsWith(lowerQuery) ? 2 : 1;
+        return new SearchHit(fileIds.get(ordinal), fileNames.get(ordinal),
+                             kind + (double) lowerQuery.length() / lowerName.length());
+    }
+
+    // Keeps the best `limit` hits, the worst of them at the head of the queue.
+    private static void offer(final PriorityQueue<SearchHit> best, final SearchHit hit, final int limit) {
+        if (best.size() < limit) {
+            best.add(hit);
+        } else if (limit > 0 && RANKING.compare(hit, best.peek()) < 0) {
+            best.poll();
+            best.add(hit);
+        }
+    }
+
+    private static List<SearchHit> sorted(final PriorityQueue<SearchHit> best) {
+        final List<SearchHit> hits = new ArrayList<>(best);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    /**
+     * Intersects sorted postings, starting with the shortest and galloping through the longer ones.
+     */
+    private static int[] intersect(final List<Postings> lists) {
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] result = Arrays.copyOf(lists.get(0).ordinals, lists.get(0).size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            final Postings other = lists.get(l);
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < resultSize && from < other.size; i++) {
+                final int position = gallop(other.ordinals, from, other.size, result[i]);
+                if (position < other.size && other.ordinals[position] == result[i]) {
+                    result[kept++] = result[i];
+                }
+                from = position;
+            }
+            resultSize = kept;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    // The first position at or after `from` holding a value >= target.
+    private static int gallop(final int[] values, final int from, final int to, final int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && values[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        final int position = Arrays.binarySearch(values, low, Math.min(high + 1, to), target);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private static Set<Long> distinctGrams(final String lowerText) {
+        final Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + N <= lowerText.length(); i++) {
+            grams.add(((long) lowerText.charAt(i) << 32) | ((long) lowerText.charAt(i + 1) << 16) | lowerText.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Writes the index without its removed files. The format is the magic number, the files as (ID, name) pairs,
+     * then every trigram with its ordinals as delta encoded varints.
+     */
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        final int[] newOrdinals = new int[fileIds.size()];
+        int liveCount = 0;
+        for (int ordinal = 0; ordinal < fileIds.size(); ordinal++) {
+            newOrdinals[ordinal] = removed.get(ordinal) ? -1 : liveCount++;
+        }
+
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        writeVarint(output, liveCount);
+        for (int ordinal = 0; ordinal < fileIds.size(); ordinal++) {
+            if (!removed.get(ordinal)) {
+                output.writeUTF(fileIds.get(ordinal));
+                output.writeUTF(fileNames.get(ordinal));
+            }
+        }
+        final int[] live = new int[liveCount];
+        final Map<Long, int[]> livePostings = new HashMap<>();
+        for (final Map.Entry<Long, Postings> gram : postings.entrySet()) {
+            int count = 0;
+            for (int i = 0; i < gram.getValue().size; i++) {
+                final int newOrdinal = newOrdinals[gram.getValue().ordinals[i]];
+                if (newOrdinal >= 0) {
+                    live[count++] = newOrdinal;
+                }
+            }
+            if (count > 0) {
+                livePostings.put(gram.getKey(), Arrays.copyOf(live, count));
+            }
+        }
+        writeVarint(output, livePostings.size());
+        for (final Map.Entry<Long, int[]> gram : livePostings.entrySet()) {
+            writeVarint(output, gram.getKey());
+            writeVarint(output, gram.getValue().length);
+            int previous = 0;
+            for (final int ordinal : gram.getValue()) {
+                writeVarint(output, ordinal - previous);
+                previous = ordinal;
+            }
+        }
+        output.flush();
+    }
+
+    public static NGramIndex readFrom(final InputStream inputStream) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a search index");
+        }
+        final NGramIndex index = new NGramIndex();
+        final int fileCount = (int) readVarint(input);
+        for (int ordinal = 0; ordinal < fileCount; ordinal++) {
+            final String fileId = input.readUTF();
+            final String fileName = input.readUTF();
+            final String lowerName = fileName.toLowerCase(Locale.ROOT);
+            index.fileIds.add(fileId);
+            index.fileNames.add(fileName);
+            index.lowerNames.add(lowerName);
+            index.ordinals.put(fileId, ordinal);
+            index.estimatedBytes += 2L * (fileId.length() + fileName.length() + lowerName.length()) + 160;
+        }
+        final int gramCount = (int) readVarint(input);
+        for (int g = 0; g < gramCount; g++) {
+            final long gram = readVarint(input);
+            final int count = (int) readVarint(input);
+            final Postings gramPostings = new Postings(count);
+            int ordinal = 0;
+            for (int i = 0; i < count; i++) {
+                ordinal += (int) readVarint(input);
+                gramPostings.add(ordinal);
+            }
+            index.postings.put(gram, gramPostings);
+            index.estimatedBytes += 80 + 4L * count;
+        }
+        return index;
+    }
+
+    private static void writeVarint(final DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarint(final DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * A growable, sorted array of file ordinals.
+     */
+    private static class Postings {
+        private int[] ordinals;
+        private int size;
+
+        private Postings() {
+            this(4);
+        }
+
+        private Postings(final int capacity) {
+            this.ordinals = new int[Math.max(1, capacity)];
+        }
+
+        private void add(final int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.walmart.service.search;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.SearchHit;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.sharding.UserShards;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.QueryIterator;
+import com.walmart.service.util.S3Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the {@link NGramIndex} of every user in S3 (see {@link S3Util#getSearchIndexKey}) and the recently used ones
+ * in memory, up to a total estimated size. A user's index is loaded the first time it's needed, and built from
+ * FileNameIndex when it doesn't exist in S3 yet.
+ * <p>
+ * Uploads and deletes update the index in memory and write it back to S3, once per request. Every write goes to a new
+ * S3 key, and is only installed by a conditional update of the user's version item (see
+ * {@link TableAttributes#SEARCH_INDEX_PREFIX}) from the version it was based on. When another instance wrote the
+ * index in the meantime, the index is reloaded and the changes are applied to it again, so concurrent writes never
+ * lose each other's entries. Cached indexes are reloaded after {@code search.cacheSeconds} to pick up the other
+ * instances' changes.
+ */
+@Component
+public class SearchIndexStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexStore.class);
+    // Writes that keep losing to other instances give up after this many attempts.
+    private static final int WRITE_ATTEMPTS = 4;
+    // Loads retry when the version they read is replaced (and its object deleted) before they fetched it.
+    private static final int LOAD_ATTEMPTS = 3;
+    private final S3Client s3Client;
+    private final DynamoDbClient dynamoDbClient;
+    private final UserShards userShards;
+    private final ExecutorService ioExecutor;
+    private final Metrics metrics;
+    private final String bucketName;
+    private final String tableName;
+    private final long maxCacheBytes;
+    private final long cacheNanos;
+    // In access order, so the least recently used index is evicted first.
+    private final LinkedHashMap<String, CachedIndex> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    @Autowired
+    public SearchIndexStore(final S3Client s3Client,
+                            final DynamoDbClient dynamoDbClient,
+                            final UserShards userShards,
+                            final ExecutorService ioExecutor,
+                            final Metrics metrics,
+                            final LambdaConfigurationModule configurationModule) {
+        this.s3Client = s3Client;
+        this.dynamoDbClient = dynamoDbClient;
+        this.userShards = userShards;
+        this.ioExecutor = ioExecutor;
+        this.metrics = metrics;
+        this.bucketName = configurationModule.getBucketName();
+        this.tableName = configurationModule.getTableName();
+        this.maxCacheBytes = configurationModule.getSearchCacheBytes();
+        this.cacheNanos = TimeUnit.SECONDS.toNanos(configurationModule.getSearchCacheSeconds());
+        metrics.gauge("search.cachedBytes", this::getCachedBytes);
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Searches the file names of a user, see {@link NGramIndex#search}.
+     */
+    public List<SearchHit> search(final String userId, final String query, final int limit) {
+        final StoredIndex stored = getIndex(userId);
+        synchronized (stored) {
+            return stored.index.search(query, limit);
+        }
+    }
+
+    /**
+     * Adds and removes files from the index of a user, and writes it back to S3. Callers pass every file a request
+     * changed at once, so a request writes the index once. Failures are only logged, the index is rebuilt from
+     * FileNameIndex when it can't be read.
+     *
+     * @param added   The names of the new (or replaced) files, by file ID.
+     * @param removed The IDs of the deleted files.
+     */
+    public void update(final String userId, final Map<String, String> added, final Collection<String> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try {
+            StoredIndex stored = getIndex(userId);
+            for (int attempt = 1; !write(userId, stored, added, removed); attempt++) {
+                metrics.increment("search.writeConflicts");
+                if (attempt == WRITE_ATTEMPTS) {
+                    throw new IllegalStateException(String.format("The index was written by others %d times in a row", attempt));
+                }
+                DynamoDBUtil.sleepWithJitter(attempt);
+                // The changes are applied again to the version another instance wrote.
+                stored = load(userId);
+            }
+            put(userId, stored);
+            logger.debug("Updated the search index of user ID = {}, {} added and {} removed", userId, added.size(), removed.size());
+        } catch (final Exception e) {
+            // The cached index may have changes S3 doesn't, so it's reloaded on its next use.
+            evict(userId);
+            metrics.increment("search.updateFailures");
+            logger.warn("Was unable to update the search index of user ID = {}", userId, e);
+        }
+    }
+
+    /**
+     * Applies the changes, writes the index to a new S3 key and installs it as the next version.
+     *
+     * @return False if another instance installed a version first, the index is then out of date.
+     */
+    private boolean write(final String userId, final StoredIndex stored,
+                          final Map<String, String> added, final Collection<String> removed) {
+        synchronized (stored) {
+            removed.forEach(stored.index::remove);
+            added.forEach(stored.index::add);
+            final byte[] blob = serialize(stored.index);
+            final String objectKey = S3Util.getSearchIndexKey(userId, UUID.randomUUID().toString());
+            s3Client.putObject(PutObjectRequest.builder()
+                                       .bucket(bucketName)
+                                       .key(objectKey)
+                                       .contentLength((long) blob.length)
+                                       .build(),
+                               RequestBody.fromBytes(blob));
+            final Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":version", AttributeValue.builder().n(Long.toString(stored.version)).build());
+            values.put(":next", AttributeValue.builder().n(Long.toString(stored.version + 1)).build());
+            values.put(":key", AttributeValue.builder().s(objectKey).build());
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                                  .tableName(tableName)
+                                                  .key(getVersionKey(userId))
+                                                  .updateExpression(String.format("SET %s = :next, %s = :key",
+                                                                                  TableAttributes.INDEX_VERSION_KEY,
+                                                                                  TableAttributes.INDEX_OBJECT_KEY))
+                                                  .conditionExpression(String.format("attribute_not_exists(%s) or %s = :version",
+                                                                                     TableAttributes.INDEX_VERSION_KEY,
+                                                                                     TableAttributes.INDEX_VERSION_KEY))
+                                                  .expressionAttributeValues(values)
+                                                  .build());
+            } catch (final ConditionalCheckFailedException e) {
+                deleteObject(objectKey);
+                return false;
+            }
+            if (stored.objectKey != null) {
+                deleteObject(stored.objectKey);
+            }
+            stored.version++;
+            stored.objectKey = objectKey;
+            return true;
+        }
+    }
+
+    private void deleteObject(final String objectKey) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(objectKey).build());
+        } catch (final Exception e) {
+            logger.warn("Was unable to delete the search index object = {}", objectKey, e);
+        }
+    }
+
+    private StoredIndex getIndex(final String userId) {
+        synchronized (this) {
+            final CachedIndex cached = cache.get(userId);
+            if (cached != null && System.nanoTime() - cached.loadedAt < cacheNanos) {
+                metrics.increment("search.cacheHits");
+                return cached.stored;
+            }
+        }
+        metrics.increment("search.cacheMisses");
+        final StoredIndex stored = load(userId);
+        put(userId, stored);
+        return stored;
+    }
+
+    /**
+     * Loads the current version of the index. Users whose index wasn't written since versions were introduced have
+     * it under the unversioned key.
+     */
+    private StoredIndex load(final String userId) {
+        long version = 0;
+        String objectKey = null;
+        for (int attempt = 1; attempt <= LOAD_ATTEMPTS; attempt++) {
+            final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                                   .tableName(tableName)
+                                                                                   .key(getVersionKey(userId))
+                                                                                   .consistentRead(true)
+                                                                                   .build());
+            final Map<String, AttributeValue> item = getItemResponse.hasItem() ? getItemResponse.item() : Collections.<String, AttributeValue>emptyMap();
+            version = item.containsKey(TableAttributes.INDEX_VERSION_KEY) ? Long.parseLong(item.get(TableAttributes.INDEX_VERSION_KEY).n()) : 0;
+            objectKey = item.containsKey(TableAttributes.INDEX_OBJECT_KEY) ? item.get(TableAttributes.INDEX_OBJECT_KEY).s() : S3Util.getSearchIndexKey(userId);
+            final GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(objectKey)
+                    .build();
+            try (final ResponseInputStream<GetObjectResponse> blob = s3Client.getObject(getObjectRequest)) {
+                return new StoredIndex(NGramIndex.readFrom(blob), version, objectKey);
+            } catch (final NoSuchKeyException e) {
+                if (version == 0) {
+                    logger.info("No search index exists for user ID = {}, building it", userId);
+                    return new StoredIndex(build(userId), 0, null);
+                }
+                logger.debug("The search index version {} of user ID = {} was replaced while loading it", version, userId);
+            } catch (final IOException e) {
+                logger.warn("The search index of user ID = {} is unreadable, rebuilding it", userId, e);
+                break;
+            }
+        }
+        // Written again from the rebuilt index, on top of the last version that was read.
+        return new StoredIndex(build(userId), version, objectKey);
+    }
+
+    /**
+     * Builds the index of a user from every partition of FileNameIndex.
+     */
+    private NGramIndex build(final String userId) {
+        final NGramIndex index = new NGramIndex();
+        final List<QueryIterator> partitions = new ArrayList<>();
+        for (final String userIndexKey : userShards.indexKeysOf(userId)) {
+            partitions.add(new QueryIterator(QueryRequest.builder()
+                                                     .tableName(tableName)
+                                                     .indexName(TableAttributes.FILE_NAME_INDEX_KEY)
+                                                     .keyConditionExpression(String.format("%s = %s", TableAttributes.USER_ID_KEY, ":user"))
+                                                     .expressionAttributeValues(Collections.singletonMap(":user", AttributeValue.builder().s(userIndexKey).build()))
+                                                     .build(),
+                                             dynamoDbClient, ioExecutor));
+        }
+        for (final QueryIterator partition : partitions) {
+            partition.forEachRemaining(item -> {
+                if (DynamoDBUtil.isFileItem(item)) {
+                    index.add(item.get(TableAttributes.FILE_ID_KEY).s(), item.get(TableAttributes.FILE_NAME_KEY).s());
+                }
+            });
+        }
+        logger.info("Built the search index of user ID = {} with {} files", userId, index.size());
+        return index;
+    }
+
+    private synchronized void put(final String userId, final StoredIndex stored) {
+        final long bytes = stored.index.estimatedBytes();
+        final CachedIndex previous = cache.put(userId, new CachedIndex(stored, System.nanoTime(), bytes));
+        cachedBytes += bytes - (previous == null ? 0 : previous.bytes);
+        final Iterator<Map.Entry<String, CachedIndex>> eldest = cache.entrySet().iterator();
+        // The index that was just put is the most recently used, so it's only evicted when it doesn't fit on its own.
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            metrics.increment("search.evictions");
+        }
+    }
+
+    private synchronized void evict(final String userId) {
+        final CachedIndex previous = cache.remove(userId);
+        if (previous != null) {
+            cachedBytes -= previous.bytes;
+        }
+    }
+
+    private static Map<String, AttributeValue> getVersionKey(final String userId) {
+        return Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                        AttributeValue.builder().s(TableAttributes.SEARCH_INDEX_PREFIX + userId).build());
+    }
+
+    private static byte[] serialize(final NGramIndex index) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            index.writeTo(outputStream);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * An index with the version it was loaded as (or last written as), guarded by its own monitor.
+     */
+    private static class StoredIndex {
+        private final NGramIndex index;
+        private long version;
+        // Null when nothing was stored yet.
+        private String objectKey;
+
+        private StoredIndex(final NGramIndex index, final long version, final String objectKey) {
+            this.index = index;
+            this.version = version;
+            this.objectKey = objectKey;
+        }
+    }
+
+    private static class CachedIndex {
+        private final StoredIndex stored;
+        private final long loadedAt;
+        private final long bytes;
+
+        private CachedIndex(final StoredIndex stored, final long loadedAt, final long bytes) {
+            this.stored = stored;
+            this.loadedAt = loadedAt;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.walmart.service.sharding;
+
+import com.walmart.service.models.TableAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves existing items to the UserID value they'd get if they were written today, i.e. onto the shards of users that
+ * were sharded (or given more shards) after their files were uploaded. The table is read with a parallel scan, and
+ * every item is updated with a condition on its current UserID so files that changed in the meantime are skipped.
+ * The backfill can be stopped and run again at any time.
+ * <p>
+ * Usage: {@code ShardBackfill <tableName> <shardSpec> [segments]}, e.g. {@code ShardBackfill files user=8 16}.
+ */
+public class ShardBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardBackfill.class);
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final UserShards userShards;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong migrated = new AtomicLong();
+
+    public ShardBackfill(final DynamoDbClient dynamoDbClient, final String tableName, final UserShards userShards) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.userShards = userShards;
+    }
+
+    /**
+     * @param totalSegments The number of parallel scan segments, each one is scanned by its own thread.
+     * @return The number of items that were moved to another UserID value.
+     */
+    public long run(final int totalSegments) {
+        final ExecutorService executor = Executors.newFixedThreadPool(totalSegments);
+        try {
+            final List<CompletableFuture<Void>> segments = new ArrayList<>();
+            for (int segment = 0; segment < totalSegments; segment++) {
+                final int currentSegment = segment;
+                segments.add(CompletableFuture.runAsync(() -> backfillSegment(currentSegment, totalSegments), executor));
+            }
+            CompletableFuture.allOf(segments.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        logger.info("Scanned {} items and moved {} of them to their shard", scanned.get(), migrated.get());
+        return migrated.get();
+    }
+
+    private void backfillSegment(final int segment, final int totalSegments) {
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            final ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                                                                          .tableName(tableName)
+                                                                          .segment(segment)
+                                                                          .totalSegments(totalSegments)
+                                                                          .projectionExpression(String.join(",",
+                                                                                                            TableAttributes.FILE_ID_KEY,
+                                                                                                            TableAttributes.USER_ID_KEY,
+                                                                                                            TableAttributes.OWNER_ID_KEY,
+                                                                                                            TableAttributes.FILE_NAME_KEY))
+                                                                          .exclusiveStartKey(exclusiveStartKey)
+                                                                          .build());
+            for (final Map<String, AttributeValue> item : scanResponse.items()) {
+                scanned.incrementAndGet();
+                backfillItem(item);
+            }
+            exclusiveStartKey = scanResponse.hasLastEvaluatedKey() && !scanResponse.lastEvaluatedKey().isEmpty()
+                    ? scanResponse.lastEvaluatedKey() : null;
+        } while (exclusiveStartKey != null);
+        logger.info("Finished backfilling segment {} of {}", segment, totalSegments);
+    }
+
+    private void backfillItem(final Map<String, AttributeValue> item) {
+        if (!item.containsKey(TableAttributes.USER_ID_KEY) || !item.containsKey(TableAttributes.FILE_NAME_KEY)) {
+            return;
+        }
+        final String currentIndexKey = item.get(TableAttributes.USER_ID_KEY).s();
+        // Only items under a shard have an OwnerID, the UserID of the others is the user's ID as is.
+        final String userId = item.containsKey(TableAttributes.OWNER_ID_KEY)
+                ? item.get(TableAttributes.OWNER_ID_KEY).s() : currentIndexKey;
+        if (!userShards.isSharded(userId)) {
+            return;
+        }
+        final String targetIndexKey = userShards.indexKeyFor(userId, item.get(TableAttributes.FILE_NAME_KEY).s());
+        if (targetIndexKey.equals(currentIndexKey)) {
+            return;
+        }
+
+        final Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":current", AttributeValue.builder().s(currentIndexKey).build());
+        expressionAttributeValues.put(":target", AttributeValue.builder().s(targetIndexKey).build());
+        expressionAttributeValues.put(":owner", AttributeValue.builder().s(userId).build());
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                              .tableName(tableName)
+                                              .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                                                            item.get(TableAttributes.FILE_ID_KEY)))
+                                              .updateExpression(String.format("SET %s = :target, %s = :owner",
+                                                                              TableAttributes.USER_ID_KEY,
+                                                                              TableAttributes.OWNER_ID_KEY))
+                                              .conditionExpression(String.format("%s = :current", TableAttributes.USER_ID_KEY))
+                                              .expressionAttributeValues(expressionAttributeValues)
+                                              .build());
+            migrated.incrementAndGet();
+        } catch (final ConditionalCheckFailedException e) {
+            logger.info("Skipping the file ID = {} since it changed during the backfill", item.get(TableAttributes.FILE_ID_KEY).s());
+        }
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardBackfill <tableName> <shardSpec> [segments]");
+            System.exit(1);
+        }
+        final int totalSegments = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        try (final DynamoDbClient dynamoDbClient = DynamoDbClient.create()) {
+            new ShardBackfill(dynamoDbClient, args[0], new UserShards(args[1])).run(totalSegments);
+        }
+    }
+}
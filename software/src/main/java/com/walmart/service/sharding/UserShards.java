@@ -0,0 +1,88 @@
+package com.walmart.service.sharding;
+
+import com.walmart.service.LambdaConfigurationModule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Spreads the index entries of heavy users over several GSI partitions. For a user with n shards, the UserID of a
+ * file's item is written as "userId#k", where k is derived from the file name, instead of the plain user ID.
+ * <p>
+ * Queries for a sharded user have to cover every shard plus the plain user ID, which still holds the items that
+ * were written before the user was sharded (until {@link ShardBackfill} migrates them). Since the shard comes from
+ * the file name, a lookup by name only needs the file's own shard and the plain user ID. Items under a shard keep
+ * their user ID in OwnerID, the UserID value isn't parsed since user IDs with a '#' predate sharding.
+ * Shard counts should only ever grow, and the backfill has to run after a change so items move to their new shard.
+ */
+@Component
+public class UserShards {
+
+    public static final char SHARD_SEPARATOR = '#';
+    private final Map<String, Integer> shardCounts;
+
+    @Autowired
+    public UserShards(final LambdaConfigurationModule configurationModule) {
+        this(configurationModule.getUserShards());
+    }
+
+    /**
+     * @param shardSpec The shard count of every sharded user, e.g. "serviceAccount=8,otherAccount=4".
+     */
+    public UserShards(final String shardSpec) {
+        final Map<String, Integer> counts = new HashMap<>();
+        if (shardSpec != null) {
+            for (final String entry : shardSpec.split(",")) {
+                final int separator = entry.lastIndexOf('=');
+                if (separator > 0) {
+                    final int count = Integer.parseInt(entry.substring(separator + 1).trim());
+                    if (count > 1) {
+                        counts.put(entry.substring(0, separator).trim(), count);
+                    }
+                }
+            }
+        }
+        this.shardCounts = Collections.unmodifiableMap(counts);
+    }
+
+    public boolean isSharded(final String userId) {
+        return shardCounts.containsKey(userId);
+    }
+
+    public Set<String> getShardedUsers() {
+        return shardCounts.keySet();
+    }
+
+    /**
+     * @return The value written to the UserID attribute of a file's item.
+     */
+    public String indexKeyFor(final String userId, final String fileName) {
+        final Integer shardCount = shardCounts.get(userId);
+        if (shardCount == null) {
+            return userId;
+        }
+        return userId + SHARD_SEPARATOR + Math.floorMod(fileName.hashCode(), shardCount);
+    }
+
+    /**
+     * @return Every UserID value that has to be queried to find all of a user's files.
+     */
+    public List<String> indexKeysOf(final String userId) {
+        final List<String> indexKeys = new ArrayList<>();
+        indexKeys.add(userId);
+        final Integer shardCount = shardCounts.get(userId);
+        for (int shard = 0; shardCount != null && shard < shardCount; shard++) {
+            indexKeys.add(userId + SHARD_SEPARATOR + shard);
+        }
+        return indexKeys;
+    }
+
+    /**
+     * @return The UserID values that can hold the file with this name, its shard first and the plain user ID last.
+     */
+    public List<String> indexKeysOf(final String userId, final String fileName) {
+        final String indexKey = indexKeyFor(userId, fileName);
+        return indexKey.equals(userId) ? Collections.singletonList(userId) : Arrays.asList(indexKey, userId);
+    }
+}
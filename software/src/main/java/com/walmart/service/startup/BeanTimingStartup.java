@@ -0,0 +1,107 @@
+package com.walmart.service.startup;
+
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Times the steps Spring reports while it starts. A bean's creation ({@code spring.beans.instantiate}) includes the
+ * creation of the beans it depends on, which are nested steps on the same thread, so every bean gets both its
+ * inclusive time and its exclusive time without the nested beans. The other steps are summed by name.
+ * <p>
+ * Unlike the FlightRecorder and buffering startups, no tags are kept beyond the bean's name.
+ */
+class BeanTimingStartup implements ApplicationStartup {
+
+    static final String BEAN_STEP = "spring.beans.instantiate";
+    private static final String BEAN_NAME_TAG = "beanName";
+    private final AtomicLong ids = new AtomicLong();
+    private final ThreadLocal<Deque<TimedStep>> steps = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public StartupStep start(final String name) {
+        if (!ColdStart.isRecording()) {
+            return DEFAULT.start(name);
+        }
+        final Deque<TimedStep> stack = steps.get();
+        final TimedStep step = new TimedStep(name, ids.incrementAndGet(), stack.peek());
+        stack.push(step);
+        return step;
+    }
+
+    private final class TimedStep implements StartupStep {
+        private final String name;
+        private final long id;
+        private final TimedStep parent;
+        private final long start = System.nanoTime();
+        private String beanName;
+        // The inclusive time of the beans created within this step.
+        private long nestedBeanNanos;
+
+        private TimedStep(final String name, final long id, final TimedStep parent) {
+            this.name = name;
+            this.id = id;
+            this.parent = parent;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getParentId() {
+            return parent == null ? null : parent.id;
+        }
+
+        @Override
+        public StartupStep tag(final String key, final String value) {
+            if (BEAN_NAME_TAG.equals(key)) {
+                beanName = value;
+            }
+            return this;
+        }
+
+        @Override
+        public StartupStep tag(final String key, final Supplier<String> value) {
+            return BEAN_NAME_TAG.equals(key) ? tag(key, value.get()) : this;
+        }
+
+        @Override
+        public Tags getTags() {
+            return Collections::emptyIterator;
+        }
+
+        @Override
+        public void end() {
+            final long nanos = System.nanoTime() - start;
+            steps.get().remove(this);
+            final boolean isBean = BEAN_STEP.equals(name) && beanName != null;
+            if (isBean) {
+                ColdStart.bean(beanName, nanos, nanos - nestedBeanNanos);
+            } else {
+                ColdStart.springStep(name, nanos);
+            }
+            if (isBean) {
+                // Counted against the closest enclosing bean, through the steps that aren't beans.
+                TimedStep enclosing = parent;
+                while (enclosing != null && !BEAN_STEP.equals(enclosing.name)) {
+                    enclosing = enclosing.parent;
+                }
+                if (enclosing != null) {
+                    enclosing.nestedBeanNanos += nanos;
+                }
+            }
+        }
+    }
+}
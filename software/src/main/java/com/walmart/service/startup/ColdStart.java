@@ -0,0 +1,262 @@
+package com.walmart.service.startup;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamps the phases of a cold start: the JVM's start up to StreamLambdaHandler's static init, the handler's init,
+ * Spring's startup events ({@link ColdStartListener}), the creation of each bean ({@link BeanTimingStartup}), the
+ * first call of each AWS operation ({@link FirstSdkCallInterceptor}) and the first request of each route.
+ * <p>
+ * Once the first invocation ends, everything is written as one record per container, with the first invocation
+ * flagged. Later first requests of other routes are written as their own records. The records are in CloudWatch's
+ * embedded metric format, so the phases become metrics that dashboards can break the init time down by.
+ * <p>
+ * The recording starts before Spring does, so it's static rather than a bean.
+ */
+public final class ColdStart {
+
+    static final String NAMESPACE = "FileQueriesService/ColdStart";
+    // Beans that took less than this, without the beans they depend on, are only counted.
+    private static final long BEAN_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_BEANS = 50;
+    private static final String CONTAINER_ID = UUID.randomUUID().toString();
+    private static final String FUNCTION_NAME = System.getenv("AWS_LAMBDA_FUNCTION_NAME") == null
+            ? "local"
+            : System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+    private static final ThreadLocal<String> currentRoute = new ThreadLocal<>();
+    // Milliseconds since the JVM started, by event.
+    private static final Map<String, Long> events = new LinkedHashMap<>();
+    private static final Map<String, Long> springStepNanos = new LinkedHashMap<>();
+    private static final Map<String, long[]> beanNanos = new LinkedHashMap<>();
+    private static final Map<String, Long> firstSdkCallNanos = new LinkedHashMap<>();
+    private static final Set<String> routesSeen = new HashSet<>();
+    private static long handlerInitStartMillis = -1;
+    private static long handlerInitEndMillis = -1;
+    private static volatile boolean emitted;
+
+    private ColdStart() {
+    }
+
+    /**
+     * @return Milliseconds since the JVM started.
+     */
+    static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * @return Whether the container's record wasn't written yet, after which only first requests are recorded.
+     */
+    static boolean isRecording() {
+        return !emitted;
+    }
+
+    public static synchronized void handlerInitStarted() {
+        handlerInitStartMillis = uptimeMillis();
+    }
+
+    public static synchronized void handlerInitEnded() {
+        handlerInitEndMillis = uptimeMillis();
+    }
+
+    static synchronized void event(final String name) {
+        if (!emitted) {
+            events.putIfAbsent(name, uptimeMillis());
+        }
+    }
+
+    static synchronized void springStep(final String name, final long nanos) {
+        if (!emitted) {
+            springStepNanos.merge(name, nanos, Long::sum);
+        }
+    }
+
+    static synchronized void bean(final String name, final long inclusiveNanos, final long exclusiveNanos) {
+        if (!emitted) {
+            beanNanos.put(name, new long[]{ inclusiveNanos, exclusiveNanos });
+        }
+    }
+
+    static synchronized void sdkCall(final String operation, final long nanos) {
+        if (!emitted) {
+            firstSdkCallNanos.putIfAbsent(operation, nanos);
+        }
+    }
+
+    /**
+     * Names the route of the request being handled, e.g. {@code GET /getFile/{fileId}}.
+     */
+    public static void route(final String route) {
+        currentRoute.set(route);
+    }
+
+    /**
+     * Called once every invocation ended. Writes the container's record after the first one, and a record for the
+     * first request of every other route.
+     */
+    public static synchronized void invocationEnded(final long nanos) {
+        final String route = currentRoute.get() == null ? "unmatched" : currentRoute.get();
+        currentRoute.remove();
+        if (!routesSeen.add(route) && emitted) {
+            return;
+        }
+        System.out.println(emitted ? routeRecord(route, nanos) : containerRecord(route, nanos));
+        emitted = true;
+    }
+
+    static String containerRecord(final String route, final long firstInvocationNanos) {
+        final long beanTotalNanos = beanNanos.values().stream().mapToLong(nanos -> nanos[1]).sum();
+        final long sdkTotalNanos = firstSdkCallNanos.values().stream().mapToLong(Long::longValue).sum();
+        final Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("jvmStartMillis", handlerInitStartMillis);
+        metrics.put("handlerInitMillis", handlerInitEndMillis - handlerInitStartMillis);
+        metrics.put("contextRefreshMillis", between("contextPrepared", "contextRefreshed"));
+        metrics.put("beanCreationMillis", TimeUnit.NANOSECONDS.toMillis(beanTotalNanos));
+        metrics.put("firstSdkCallsMillis", TimeUnit.NANOSECONDS.toMillis(sdkTotalNanos));
+        metrics.put("initMillis", handlerInitEndMillis);
+        metrics.put("firstInvocationMillis", TimeUnit.NANOSECONDS.toMillis(firstInvocationNanos));
+
+        final Json json = new Json();
+        json.metadata(new ArrayList<>(metrics.keySet()));
+        json.field("FunctionName", FUNCTION_NAME);
+        json.field("Route", route);
+        json.field("containerId", CONTAINER_ID);
+        json.field("firstInvocation", true);
+        metrics.forEach(json::field);
+        json.field("firstRequestMillis", TimeUnit.NANOSECONDS.toMillis(firstInvocationNanos));
+        json.object("events", events);
+        json.object("springStepsMillis", toMillis(springStepNanos));
+        json.object("firstSdkCallsMillis", toMillis(firstSdkCallNanos));
+        json.field("beanCount", beanNanos.size());
+        json.beans(slowestBeans());
+        return json.end();
+    }
+
+    private static String routeRecord(final String route, final long nanos) {
+        final Json json = new Json();
+        json.metadata(new ArrayList<>());
+        json.field("FunctionName", FUNCTION_NAME);
+        json.field("Route", route);
+        json.field("containerId", CONTAINER_ID);
+        json.field("firstInvocation", false);
+        json.field("firstRequestMillis", TimeUnit.NANOSECONDS.toMillis(nanos));
+        return json.end();
+    }
+
+    private static long between(final String from, final String to) {
+        return events.containsKey(from) && events.containsKey(to) ? events.get(to) - events.get(from) : -1;
+    }
+
+    private static Map<String, Long> toMillis(final Map<String, Long> nanos) {
+        final Map<String, Long> millis = new LinkedHashMap<>();
+        nanos.forEach((name, value) -> millis.put(name, TimeUnit.NANOSECONDS.toMillis(value)));
+        return millis;
+    }
+
+    private static List<Map.Entry<String, long[]>> slowestBeans() {
+        final List<Map.Entry<String, long[]>> beans = new ArrayList<>();
+        beanNanos.entrySet().stream()
+                .filter(bean -> bean.getValue()[1] >= BEAN_THRESHOLD_NANOS)
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> bean) -> bean.getValue()[1]).reversed())
+                .limit(MAX_BEANS)
+                .forEach(beans::add);
+        return beans;
+    }
+
+    /**
+     * Writes a record on one line. Built by hand so that the first invocation doesn't pay for an ObjectMapper.
+     */
+    private static final class Json {
+        private final StringBuilder builder = new StringBuilder(1024).append('{');
+
+        /**
+         * The embedded metric format's metadata: the phases by function, and the first request by function and route.
+         */
+        void metadata(final List<String> functionMetrics) {
+            builder.append("\"_aws\":{\"Timestamp\":").append(System.currentTimeMillis())
+                    .append(",\"CloudWatchMetrics\":[");
+            if (!functionMetrics.isEmpty()) {
+                directive(functionMetrics, "[\"FunctionName\"]");
+                builder.append(',');
+            }
+            directive(Collections.singletonList("firstRequestMillis"), "[\"FunctionName\",\"Route\"]");
+            builder.append("]}");
+        }
+
+        private void directive(final List<String> metrics, final String dimensions) {
+            builder.append("{\"Namespace\":\"").append(NAMESPACE).append("\",\"Dimensions\":[").append(dimensions)
+                    .append("],\"Metrics\":[");
+            for (int i = 0; i < metrics.size(); i++) {
+                builder.append(i == 0 ? "" : ",").append("{\"Name\":\"").append(metrics.get(i))
+                        .append("\",\"Unit\":\"Milliseconds\"}");
+            }
+            builder.append("]}");
+        }
+
+        void field(final String name, final Object value) {
+            builder.append(',');
+            string(name);
+            builder.append(':');
+            if (value instanceof Number || value instanceof Boolean) {
+                builder.append(value);
+            } else {
+                string(String.valueOf(value));
+            }
+        }
+
+        void object(final String name, final Map<String, ? extends Number> values) {
+            builder.append(',');
+            string(name);
+            builder.append(":{");
+            boolean first = true;
+            for (final Map.Entry<String, ? extends Number> entry : values.entrySet()) {
+                builder.append(first ? "" : ",");
+                string(entry.getKey());
+                builder.append(':').append(entry.getValue());
+                first = false;
+            }
+            builder.append('}');
+        }
+
+        void beans(final List<Map.Entry<String, long[]>> beans) {
+            builder.append(",\"beansMillis\":{");
+            for (int i = 0; i < beans.size(); i++) {
+                builder.append(i == 0 ? "" : ",");
+                string(beans.get(i).getKey());
+                builder.append(":{\"inclusive\":").append(TimeUnit.NANOSECONDS.toMillis(beans.get(i).getValue()[0]))
+                        .append(",\"exclusive\":").append(TimeUnit.NANOSECONDS.toMillis(beans.get(i).getValue()[1]))
+                        .append('}');
+            }
+            builder.append('}');
+        }
+
+        private void string(final String value) {
+            builder.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    builder.append('\\').append(c);
+                } else if (c < 0x20) {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+            builder.append('"');
+        }
+
+        String end() {
+            return builder.append('}').toString();
+        }
+    }
+}
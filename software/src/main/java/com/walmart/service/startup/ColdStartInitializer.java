@@ -0,0 +1,16 @@
+package com.walmart.service.startup;
+
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Times the context's startup steps, including the creation of every bean, with {@link BeanTimingStartup}.
+ * Registered in META-INF/spring.factories. Once the first invocation is recorded, the steps are no longer timed.
+ */
+public class ColdStartInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    @Override
+    public void initialize(final ConfigurableApplicationContext context) {
+        context.setApplicationStartup(new BeanTimingStartup());
+    }
+}
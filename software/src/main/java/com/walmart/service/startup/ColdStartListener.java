@@ -0,0 +1,51 @@
+package com.walmart.service.startup;
+
+import org.springframework.boot.context.event.ApplicationContextInitializedEvent;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+/**
+ * Timestamps Spring Boot's startup events for {@link ColdStart}. Registered in META-INF/spring.factories, so that it
+ * also gets the events published before the context exists.
+ */
+public class ColdStartListener implements ApplicationListener<ApplicationEvent> {
+
+    @Override
+    public void onApplicationEvent(final ApplicationEvent event) {
+        final String name = eventName(event);
+        if (name != null) {
+            ColdStart.event(name);
+        }
+    }
+
+    static String eventName(final ApplicationEvent event) {
+        if (event instanceof ApplicationStartingEvent) {
+            return "applicationStarting";
+        }
+        if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            return "environmentPrepared";
+        }
+        if (event instanceof ApplicationContextInitializedEvent) {
+            return "contextInitialized";
+        }
+        if (event instanceof ApplicationPreparedEvent) {
+            return "contextPrepared";
+        }
+        if (event instanceof ContextRefreshedEvent) {
+            return "contextRefreshed";
+        }
+        if (event instanceof ApplicationStartedEvent) {
+            return "applicationStarted";
+        }
+        if (event instanceof ApplicationReadyEvent) {
+            return "applicationReady";
+        }
+        return null;
+    }
+}
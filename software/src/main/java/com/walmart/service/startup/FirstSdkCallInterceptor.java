@@ -0,0 +1,44 @@
+package com.walmart.service.startup;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * Times the first call of every AWS operation for {@link ColdStart}, which includes loading the client's marshallers,
+ * the HTTP client's first connection and its TLS handshake. Registered on the AWS clients in
+ * {@link com.walmart.service.LambdaApplication}.
+ */
+public class FirstSdkCallInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START = new ExecutionAttribute<>("ColdStartCallStart");
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        if (ColdStart.isRecording()) {
+            executionAttributes.putAttribute(START, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterExecution(final Context.AfterExecution context, final ExecutionAttributes executionAttributes) {
+        record(executionAttributes);
+    }
+
+    @Override
+    public void onExecutionFailure(final Context.FailedExecution context, final ExecutionAttributes executionAttributes) {
+        record(executionAttributes);
+    }
+
+    private static void record(final ExecutionAttributes executionAttributes) {
+        final Long start = executionAttributes.getAttribute(START);
+        if (start != null) {
+            ColdStart.sdkCall(String.format("%s.%s",
+                                            executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME),
+                                            executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME)),
+                              System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.walmart.service.startup;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Names the route of the request for {@link ColdStart}, by the pattern of the mapping that matched it, e.g.
+ * {@code GET /getFile/{fileId}}.
+ */
+public class RouteInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            ColdStart.route(request.getMethod() + " " + pattern);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,281 @@
+package com.walmart.service.stats;
+
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.S3Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the statistics item of every user from the table, correcting any drift of the counters (e.g. from files
+ * uploaded before the statistics existed). The table is read with a parallel scan. Like the live counters, only files
+ * with a name pointer are counted. Each segment adds its pointers to per-user counters as it goes, so memory grows
+ * with the number of users rather than the number of files.
+ * <p>
+ * When a bucket is given, the size of files that don't have one yet is read from S3 and stored on the file and its
+ * name pointer. Uploads and deletes that happen while the job runs may be missed, so it's best run when the service
+ * is quiet. The job can be run again at any time.
+ * <p>
+ * Usage: {@code StatsRecompute <tableName> [bucketName|-] [segments]}, e.g. {@code StatsRecompute files bucket 16}.
+ */
+public class StatsRecompute {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsRecompute.class);
+    // The most attributes set or removed by one UpdateItem, which keeps its expression well within 4 KB.
+    private static final int UPDATE_ATTRIBUTES_LIMIT = 100;
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final String tableName;
+    private final String bucketName;
+    // The counters of every user, merged from each segment once it's scanned.
+    private final Map<String, Map<String, Long>> statsByUser = new ConcurrentHashMap<>();
+    private final Set<String> usersWithStats = ConcurrentHashMap.newKeySet();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong sizesBackfilled = new AtomicLong();
+
+    /**
+     * @param s3Client   Nullable, sizes aren't backfilled without it.
+     * @param bucketName Nullable, sizes aren't backfilled without it.
+     */
+    public StatsRecompute(final DynamoDbClient dynamoDbClient, final S3Client s3Client,
+                          final String tableName, final String bucketName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.s3Client = s3Client;
+        this.tableName = tableName;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * @param totalSegments The number of parallel scan segments, each one is scanned by its own thread.
+     * @return The number of users whose statistics were written.
+     */
+    public long run(final int totalSegments) {
+        final ExecutorService executor = Executors.newFixedThreadPool(totalSegments);
+        try {
+            final List<CompletableFuture<Void>> segments = new ArrayList<>();
+            for (int segment = 0; segment < totalSegments; segment++) {
+                final int currentSegment = segment;
+                segments.add(CompletableFuture.runAsync(() -> scanSegment(currentSegment, totalSegments), executor));
+            }
+            CompletableFuture.allOf(segments.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        final Set<String> users = new HashSet<>(usersWithStats);
+        users.addAll(statsByUser.keySet());
+        for (final String userId : users) {
+            writeStats(userId, statsByUser.getOrDefault(userId, Collections.emptyMap()));
+        }
+        logger.info("Scanned {} items, backfilled {} sizes and wrote the statistics of {} users",
+                    scanned.get(), sizesBackfilled.get(), users.size());
+        return users.size();
+    }
+
+    /**
+     * Scans one segment for name pointers and statistics items, the other items are left out by the filter. The
+     * pointers are counted right away and not kept.
+     */
+    private void scanSegment(final int segment, final int totalSegments) {
+        final Map<String, String> names = new HashMap<>();
+        names.put("#id", TableAttributes.FILE_ID_KEY);
+        names.put("#target", TableAttributes.TARGET_FILE_ID_KEY);
+        names.put("#owner", TableAttributes.OWNER_ID_KEY);
+        names.put("#name", TableAttributes.FILE_NAME_KEY);
+        names.put("#created", TableAttributes.CREATION_DATE_KEY);
+        names.put("#size", TableAttributes.FILE_SIZE_KEY);
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":pointer", AttributeValue.builder().s(TableAttributes.NAME_POINTER_PREFIX).build());
+        values.put(":stats", AttributeValue.builder().s(TableAttributes.STATS_PREFIX).build());
+        final Map<String, Map<String, Long>> segmentStats = new HashMap<>();
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            final ScanResponse scanResponse = dynamoDbClient.scan(ScanRequest.builder()
+                                                                          .tableName(tableName)
+                                                                          .segment(segment)
+                                                                          .totalSegments(totalSegments)
+                                                                          .filterExpression("begins_with(#id, :pointer) or begins_with(#id, :stats)")
+                                                                          .projectionExpression("#id, #target, #owner, #name, #created, #size")
+                                                                          .expressionAttributeNames(names)
+                                                                          .expressionAttributeValues(values)
+                                                                          .exclusiveStartKey(exclusiveStartKey)
+                                                                          .build());
+            scanned.addAndGet(scanResponse.scannedCount());
+            for (final Map<String, AttributeValue> item : scanResponse.items()) {
+                final String key = item.get(TableAttributes.FILE_ID_KEY).s();
+                if (key.startsWith(TableAttributes.NAME_POINTER_PREFIX)) {
+                    count(segmentStats, item);
+                } else if (key.startsWith(TableAttributes.STATS_PREFIX)) {
+                    usersWithStats.add(key.substring(TableAttributes.STATS_PREFIX.length()));
+                }
+            }
+            exclusiveStartKey = scanResponse.hasLastEvaluatedKey() && !scanResponse.lastEvaluatedKey().isEmpty()
+                    ? scanResponse.lastEvaluatedKey() : null;
+        } while (exclusiveStartKey != null);
+        segmentStats.forEach((userId, stats) -> statsByUser.merge(userId, stats, (existing, added) -> {
+            final Map<String, Long> merged = new HashMap<>(existing);
+            added.forEach((name, value) -> merged.merge(name, value, Long::sum));
+            return merged;
+        }));
+        logger.info("Finished scanning segment {} of {}", segment, totalSegments);
+    }
+
+    /**
+     * Adds the file a name pointer refers to to the counters of its owner.
+     */
+    private void count(final Map<String, Map<String, Long>> statsByUser, final Map<String, AttributeValue> pointer) {
+        final String userId = pointer.get(TableAttributes.OWNER_ID_KEY).s();
+        final String fileName = pointer.get(TableAttributes.FILE_NAME_KEY).s();
+        final long fileSize = sizeOf(pointer.get(TableAttributes.TARGET_FILE_ID_KEY).s(), pointer, userId, fileName);
+
+        final Map<String, Long> stats = statsByUser.computeIfAbsent(userId, user -> new HashMap<>());
+        stats.merge(TableAttributes.FILE_COUNT_KEY, 1L, Long::sum);
+        stats.merge(TableAttributes.MONTH_HISTOGRAM_PREFIX + UserStatsStore.monthOf(pointer.get(TableAttributes.CREATION_DATE_KEY).s()),
+                    1L, Long::sum);
+        final String oneCharacterPrefix = UserStatsStore.namePrefix(fileName, 1);
+        if (oneCharacterPrefix != null) {
+            stats.merge(TableAttributes.ONE_CHARACTER_PREFIX + oneCharacterPrefix, 1L, Long::sum);
+        }
+        final String twoCharacterPrefix = UserStatsStore.namePrefix(fileName, 2);
+        if (twoCharacterPrefix != null) {
+            stats.merge(TableAttributes.TWO_CHARACTER_PREFIX + twoCharacterPrefix, 1L, Long::sum);
+        }
+        stats.merge(TableAttributes.TOTAL_BYTES_KEY, fileSize, Long::sum);
+        stats.merge(TableAttributes.TYPE_BYTES_PREFIX + UserStatsStore.typeOf(fileName), fileSize, Long::sum);
+    }
+
+    /**
+     * @return The size copied to the pointer, else the size of the file's item, else the size of its S3 object,
+     * which is then stored on both. Only pointers of files uploaded before sizes were stored need the extra reads.
+     */
+    private long sizeOf(final String fileId, final Map<String, AttributeValue> pointer,
+                        final String userId, final String fileName) {
+        final Long pointerSize = DynamoDBUtil.getFileSize(pointer);
+        if (pointerSize != null) {
+            return pointerSize;
+        }
+        final Map<String, AttributeValue> fileKey = Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                                                             AttributeValue.builder().s(fileId).build());
+        final GetItemResponse fileItem = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                        .tableName(tableName)
+                                                                        .key(fileKey)
+                                                                        .projectionExpression(TableAttributes.FILE_SIZE_KEY)
+                                                                        .build());
+        final Long fileSize = fileItem.hasItem() ? DynamoDBUtil.getFileSize(fileItem.item()) : null;
+        if (fileSize != null || s3Client == null || bucketName == null) {
+            return fileSize == null ? 0 : fileSize;
+        }
+        try {
+            final long s3Size = s3Client.headObject(HeadObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(S3Util.getFileKey(userId, fileName))
+                                                            .build()).contentLength();
+            backfillSize(fileKey, s3Size);
+            backfillSize(Collections.singletonMap(TableAttributes.FILE_ID_KEY, pointer.get(TableAttributes.FILE_ID_KEY)), s3Size);
+            sizesBackfilled.incrementAndGet();
+            return s3Size;
+        } catch (final NoSuchKeyException e) {
+            logger.warn("The file = {}/{} has a name pointer but no S3 object", userId, fileName);
+            return 0;
+        }
+    }
+
+    private void backfillSize(final Map<String, AttributeValue> key, final long fileSize) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                              .tableName(tableName)
+                                              .key(key)
+                                              .updateExpression(String.format("SET %s = :size", TableAttributes.FILE_SIZE_KEY))
+                                              .conditionExpression(String.format("attribute_exists(%s) and attribute_not_exists(%s)",
+                                                                                 TableAttributes.FILE_ID_KEY, TableAttributes.FILE_SIZE_KEY))
+                                              .expressionAttributeValues(Collections.singletonMap(":size", AttributeValue.builder().n(Long.toString(fileSize)).build()))
+                                              .build());
+        } catch (final ConditionalCheckFailedException e) {
+            logger.info("Skipping the size of the item = {} since it changed during the recompute", key);
+        }
+    }
+
+    /**
+     * Sets the recomputed counters of a user, and removes the histogram, prefix and type counters that no longer
+     * count anything. The item is updated rather than replaced, so its change count (see
+     * {@link TableAttributes#CHANGE_COUNT_KEY}) and every other attribute are kept.
+     */
+    private void writeStats(final String userId, final Map<String, Long> stats) {
+        final Map<String, Long> counters = new TreeMap<>(stats);
+        counters.putIfAbsent(TableAttributes.FILE_COUNT_KEY, 0L);
+        counters.putIfAbsent(TableAttributes.TOTAL_BYTES_KEY, 0L);
+        final List<String> removed = new ArrayList<>();
+        final GetItemResponse current = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                       .tableName(tableName)
+                                                                       .key(UserStatsStore.getStatsKey(userId))
+                                                                       .consistentRead(true)
+                                                                       .build());
+        if (current.hasItem()) {
+            for (final String name : current.item().keySet()) {
+                if (isPrefixedCounter(name) && !counters.containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+        }
+        final List<Map.Entry<String, Long>> updates = new ArrayList<>(counters.entrySet());
+        removed.forEach(name -> updates.add(new AbstractMap.SimpleEntry<String, Long>(name, null)));
+        // Split up to keep each update expression within its size limit.
+        for (int start = 0; start < updates.size(); start += UPDATE_ATTRIBUTES_LIMIT) {
+            final List<String> sets = new ArrayList<>();
+            final List<String> removes = new ArrayList<>();
+            final Map<String, String> names = new HashMap<>();
+            final Map<String, AttributeValue> values = new HashMap<>();
+            for (int i = start; i < Math.min(start + UPDATE_ATTRIBUTES_LIMIT, updates.size()); i++) {
+                final Map.Entry<String, Long> update = updates.get(i);
+                names.put("#a" + i, update.getKey());
+                if (update.getValue() == null) {
+                    removes.add("#a" + i);
+                } else {
+                    sets.add(String.format("#a%d = :v%d", i, i));
+                    values.put(":v" + i, AttributeValue.builder().n(Long.toString(update.getValue())).build());
+                }
+            }
+            final String updateExpression = (sets.isEmpty() ? "" : "SET " + String.join(", ", sets) + " ")
+                    + (removes.isEmpty() ? "" : "REMOVE " + String.join(", ", removes));
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                              .tableName(tableName)
+                                              .key(UserStatsStore.getStatsKey(userId))
+                                              .updateExpression(updateExpression.trim())
+                                              .expressionAttributeNames(names)
+                                              .expressionAttributeValues(values.isEmpty() ? null : values)
+                                              .build());
+        }
+    }
+
+    private static boolean isPrefixedCounter(final String name) {
+        return name.startsWith(TableAttributes.MONTH_HISTOGRAM_PREFIX)
+                || name.startsWith(TableAttributes.ONE_CHARACTER_PREFIX)
+                || name.startsWith(TableAttributes.TWO_CHARACTER_PREFIX)
+                || name.startsWith(TableAttributes.TYPE_BYTES_PREFIX);
+    }
+
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: StatsRecompute <tableName> [bucketName|-] [segments]");
+            System.exit(1);
+        }
+        final String bucketName = args.length > 1 && !"-".equals(args[1]) ? args[1] : null;
+        final int totalSegments = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        try (final DynamoDbClient dynamoDbClient = DynamoDbClient.create();
+             final S3Client s3Client = S3Client.create()) {
+            new StatsRecompute(dynamoDbClient, s3Client, args[0], bucketName).run(totalSegments);
+        }
+    }
+}
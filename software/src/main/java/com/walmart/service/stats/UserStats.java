@@ -0,0 +1,46 @@
+package com.walmart.service.stats;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Lightweight statistics of a user's files, kept up to date by the upload and delete transactions.
+ * Files uploaded before the statistics existed aren't counted until {@link StatsRecompute} is run.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserStats {
+    public static final UserStats EMPTY = new UserStats(0, Collections.emptySortedMap(), Collections.emptyMap());
+
+    private long fileCount;
+    // Files created per month, keyed by yyyy-MM.
+    private SortedMap<String, Long> monthHistogram = new TreeMap<>();
+    // Files whose name starts with a given one or two characters.
+    private Map<String, Long> namePrefixCounts;
+    // Size of every file that has one, in bytes.
+    private long totalBytes;
+    // Same as totalBytes, by file type (e.g. pdf).
+    private Map<String, Long> bytesByType = new TreeMap<>();
+    // Uploads and deletes so far, see com.walmart.service.manifest.ManifestStore.
+    private long changeCount;
+
+    public UserStats(final long fileCount, final SortedMap<String, Long> monthHistogram,
+                     final Map<String, Long> namePrefixCounts) {
+        this(fileCount, monthHistogram, namePrefixCounts, 0, Collections.emptyMap(), 0);
+    }
+
+    public boolean isEmpty() {
+        return fileCount <= 0;
+    }
+}
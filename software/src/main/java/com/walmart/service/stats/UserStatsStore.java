@@ -0,0 +1,303 @@
+package com.walmart.service.stats;
+
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.TableAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes the statistics item of a user (see {@link UserStats}). The item is keyed by STATS#userId and is
+ * updated with ADD right after the transaction that creates or deletes a file. It's kept out of that transaction, since
+ * every write of a user would otherwise conflict on this one item. A lost update makes the statistics drift until
+ * {@link StatsRecompute} runs, which is fine since they only steer query planning, and the manifest rebuilds itself
+ * when its change count doesn't add up. Reads are cached for a short time.
+ */
+@Component
+public class UserStatsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatsStore.class);
+    private final DynamoDbClient dynamoDbClient;
+    private final Metrics metrics;
+    private final String tableName;
+    private final long cacheNanos;
+    private final Map<String, CachedStats> cache = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserStatsStore(final DynamoDbClient dynamoDbClient,
+                          final Metrics metrics,
+                          final LambdaConfigurationModule configurationModule) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.metrics = metrics;
+        this.tableName = configurationModule.getTableName();
+        this.cacheNanos = TimeUnit.SECONDS.toNanos(configurationModule.getStatsCacheSeconds());
+    }
+
+    /**
+     * @return The statistics of the user, possibly a few seconds old.
+     */
+    public UserStats getStats(final String userId) {
+        final CachedStats cached = cache.get(userId);
+        if (cached != null && System.nanoTime() - cached.loadedAt < cacheNanos) {
+            return cached.stats;
+        }
+        final UserStats stats = loadStats(userId, false);
+        cache.put(userId, new CachedStats(stats, System.nanoTime()));
+        return stats;
+    }
+
+    /**
+     * @return The current statistics of the user, read with a single strongly consistent GetItem.
+     */
+    public UserStats readStats(final String userId) {
+        return loadStats(userId, true);
+    }
+
+    /**
+     * Counts a change, along with its update of the statistics, once the transaction that made the change succeeded.
+     * Failures are only logged: the file was stored (or deleted) already, and must not fail because of its statistics.
+     *
+     * @param statsUpdate Nullable. The update returned by {@link #recordCreate}, {@link #recordDelete} or
+     *                    {@link #recordReplace}.
+     */
+    public void record(final String userId, final Update statsUpdate) {
+        final Update update = countChange(tableName, userId, statsUpdate);
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                                              .tableName(update.tableName())
+                                              .key(update.key())
+                                              .updateExpression(update.updateExpression())
+                                              .expressionAttributeNames(update.expressionAttributeNames())
+                                              .expressionAttributeValues(update.expressionAttributeValues())
+                                              .build());
+        } catch (final Exception e) {
+            metrics.increment("stats.updateFailures");
+            logger.warn("Was unable to update the statistics of user ID = {}", userId, e);
+        }
+    }
+
+    private UserStats loadStats(final String userId, final boolean consistentRead) {
+        final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                               .tableName(tableName)
+                                                                               .key(getStatsKey(userId))
+                                                                               .consistentRead(consistentRead)
+                                                                               .build());
+        if (!getItemResponse.hasItem() || getItemResponse.item().isEmpty()) {
+            logger.debug("No statistics were found for the user ID = {}", userId);
+            return UserStats.EMPTY;
+        }
+        return itemToStats(getItemResponse.item());
+    }
+
+    /**
+     * Parses the attributes of a statistics item.
+     */
+    public static UserStats itemToStats(final Map<String, AttributeValue> item) {
+
+        long fileCount = 0;
+        long totalBytes = 0;
+        long changeCount = 0;
+        final SortedMap<String, Long> monthHistogram = new TreeMap<>();
+        final Map<String, Long> namePrefixCounts = new HashMap<>();
+        final Map<String, Long> bytesByType = new TreeMap<>();
+        for (final Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            final String name = attribute.getKey();
+            if (attribute.getValue().n() == null) {
+                continue;
+            }
+            final long value = Long.parseLong(attribute.getValue().n());
+            if (name.equals(TableAttributes.FILE_COUNT_KEY)) {
+                fileCount = value;
+            } else if (name.equals(TableAttributes.TOTAL_BYTES_KEY)) {
+                totalBytes = value;
+            } else if (name.equals(TableAttributes.CHANGE_COUNT_KEY)) {
+                changeCount = value;
+            } else if (name.startsWith(TableAttributes.TYPE_BYTES_PREFIX)) {
+                bytesByType.put(name.substring(TableAttributes.TYPE_BYTES_PREFIX.length()), value);
+            } else if (name.startsWith(TableAttributes.MONTH_HISTOGRAM_PREFIX)) {
+                monthHistogram.put(name.substring(TableAttributes.MONTH_HISTOGRAM_PREFIX.length()), value);
+            } else if (name.startsWith(TableAttributes.ONE_CHARACTER_PREFIX)) {
+                namePrefixCounts.put(name.substring(TableAttributes.ONE_CHARACTER_PREFIX.length()), value);
+            } else if (name.startsWith(TableAttributes.TWO_CHARACTER_PREFIX)) {
+                namePrefixCounts.put(name.substring(TableAttributes.TWO_CHARACTER_PREFIX.length()), value);
+            }
+        }
+        return new UserStats(fileCount, monthHistogram, namePrefixCounts, totalBytes, bytesByType, changeCount);
+    }
+
+    public static Map<String, AttributeValue> getStatsKey(final String userId) {
+        return Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                        AttributeValue.builder().s(TableAttributes.STATS_PREFIX + userId).build());
+    }
+
+    /**
+     * Counts a new file.
+     *
+     * @param fileSize In bytes.
+     */
+    public static Update recordCreate(final String tableName, final String userId, final String fileName,
+                                      final String creationDate, final long fileSize) {
+        return countFile(tableName, userId, fileName, creationDate, 1, fileSize);
+    }
+
+    /**
+     * Stops counting a deleted file.
+     *
+     * @param fileSize Nullable for files uploaded before sizes were stored.
+     */
+    public static Update recordDelete(final String tableName, final String userId, final String fileName,
+                                      final String creationDate, final Long fileSize) {
+        return countFile(tableName, userId, fileName, creationDate, -1, fileSize == null ? 0 : -fileSize);
+    }
+
+    /**
+     * Moves a file that was uploaded again to the month of its new creation date, and counts its new size.
+     *
+     * @param previousFileSize Nullable for files uploaded before sizes were stored.
+     * @return Null when both dates are in the same month, the size didn't change, and nothing has to change.
+     */
+    public static Update recordReplace(final String tableName, final String userId, final String fileName,
+                                       final String previousCreationDate, final Long previousFileSize,
+                                       final String creationDate, final long fileSize) {
+        final String previousMonth = monthOf(previousCreationDate);
+        final String month = monthOf(creationDate);
+        final long bytesDelta = fileSize - (previousFileSize == null ? 0 : previousFileSize);
+        if (previousMonth.equals(month) && bytesDelta == 0) {
+            return null;
+        }
+        final Map<String, String> names = new HashMap<>();
+        final Map<String, AttributeValue> values = new HashMap<>();
+        final List<String> additions = new ArrayList<>();
+        if (!previousMonth.equals(month)) {
+            names.put("#previousMonth", TableAttributes.MONTH_HISTOGRAM_PREFIX + previousMonth);
+            names.put("#month", TableAttributes.MONTH_HISTOGRAM_PREFIX + month);
+            values.put(":one", AttributeValue.builder().n("1").build());
+            values.put(":minusOne", AttributeValue.builder().n("-1").build());
+            additions.add("#previousMonth :minusOne");
+            additions.add("#month :one");
+        }
+        if (bytesDelta != 0) {
+            addBytes(names, values, additions, fileName, bytesDelta);
+        }
+        return Update.builder()
+                .tableName(tableName)
+                .key(getStatsKey(userId))
+                .updateExpression("ADD " + String.join(", ", additions))
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    /**
+     * Counts one upload or delete, for every transaction that changes a file. It's added to the update of the
+     * statistics, so both are applied with a single write.
+     *
+     * @param statsUpdate Nullable. The update returned by {@link #recordCreate}, {@link #recordDelete} or
+     *                    {@link #recordReplace}.
+     */
+    public static Update countChange(final String tableName, final String userId, final Update statsUpdate) {
+        final Map<String, String> names = new HashMap<>();
+        final Map<String, AttributeValue> values = new HashMap<>();
+        String updateExpression = "ADD #changes :change";
+        if (statsUpdate != null) {
+            names.putAll(statsUpdate.expressionAttributeNames());
+            values.putAll(statsUpdate.expressionAttributeValues());
+            updateExpression = statsUpdate.updateExpression() + ", #changes :change";
+        }
+        names.put("#changes", TableAttributes.CHANGE_COUNT_KEY);
+        values.put(":change", AttributeValue.builder().n("1").build());
+        return Update.builder()
+                .tableName(tableName)
+                .key(getStatsKey(userId))
+                .updateExpression(updateExpression)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    private static Update countFile(final String tableName, final String userId, final String fileName,
+                                    final String creationDate, final long delta, final long bytesDelta) {
+        final Map<String, String> names = new HashMap<>();
+        final Map<String, AttributeValue> values = new HashMap<>();
+        final List<String> additions = new ArrayList<>();
+        values.put(":delta", AttributeValue.builder().n(Long.toString(delta)).build());
+        names.put("#count", TableAttributes.FILE_COUNT_KEY);
+        additions.add("#count :delta");
+        names.put("#month", TableAttributes.MONTH_HISTOGRAM_PREFIX + monthOf(creationDate));
+        additions.add("#month :delta");
+        final String oneCharacterPrefix = namePrefix(fileName, 1);
+        if (oneCharacterPrefix != null) {
+            names.put("#p1", TableAttributes.ONE_CHARACTER_PREFIX + oneCharacterPrefix);
+            additions.add("#p1 :delta");
+        }
+        final String twoCharacterPrefix = namePrefix(fileName, 2);
+        if (twoCharacterPrefix != null) {
+            names.put("#p2", TableAttributes.TWO_CHARACTER_PREFIX + twoCharacterPrefix);
+            additions.add("#p2 :delta");
+        }
+        addBytes(names, values, additions, fileName, bytesDelta);
+        return Update.builder()
+                .tableName(tableName)
+                .key(getStatsKey(userId))
+                .updateExpression("ADD " + String.join(", ", additions))
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    private static void addBytes(final Map<String, String> names, final Map<String, AttributeValue> values,
+                                 final List<String> additions, final String fileName, final long bytesDelta) {
+        values.put(":bytes", AttributeValue.builder().n(Long.toString(bytesDelta)).build());
+        names.put("#bytes", TableAttributes.TOTAL_BYTES_KEY);
+        additions.add("#bytes :bytes");
+        names.put("#typeBytes", TableAttributes.TYPE_BYTES_PREFIX + typeOf(fileName));
+        additions.add("#typeBytes :bytes");
+    }
+
+    /**
+     * @return The extension of a file name in lower case, which is its {@link com.walmart.service.models.FileType}
+     * for every file that passed validation.
+     */
+    static String typeOf(final String fileName) {
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The first characters (code points) of a name, or null if the name is shorter than that.
+     */
+    public static String namePrefix(final String fileName, final int characters) {
+        if (fileName.codePointCount(0, fileName.length()) < characters) {
+            return null;
+        }
+        return fileName.substring(0, fileName.offsetByCodePoints(0, characters));
+    }
+
+    /**
+     * @return The yyyy-MM part of an ISO-8601 date.
+     */
+    static String monthOf(final String creationDate) {
+        return creationDate.substring(0, 7);
+    }
+
+    private static class CachedStats {
+        private final UserStats stats;
+        private final long loadedAt;
+
+        private CachedStats(final UserStats stats, final long loadedAt) {
+            this.stats = stats;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.walmart.service.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs every span on one line, for local runs and tests that don't have a collector.
+ */
+public class LogSpanExporter implements SpanExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogSpanExporter.class);
+
+    @Override
+    public CompletableResultCode export(final Collection<SpanData> spans) {
+        for (final SpanData span : spans) {
+            logger.info("Span {} {}/{} parent = {} took {} micros, status = {}, attributes = {}",
+                        span.getName(),
+                        span.getTraceId(),
+                        span.getSpanId(),
+                        span.getParentSpanId(),
+                        TimeUnit.NANOSECONDS.toMicros(span.getEndEpochNanos() - span.getStartEpochNanos()),
+                        span.getStatus().getStatusCode(),
+                        span.getAttributes());
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public String toString() {
+        return "the log";
+    }
+}
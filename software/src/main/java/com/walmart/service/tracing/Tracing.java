@@ -0,0 +1,176 @@
+package com.walmart.service.tracing;
+
+import com.walmart.service.LambdaConfigurationModule;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * OpenTelemetry tracing. Every request gets a server span ({@link TracingFilter}, or the functional router), and every
+ * AWS call a client span within it ({@link TracingInterceptor}). A parent from a W3C traceparent header is continued.
+ * <p>
+ * Spans go to the SpanExporter bean when there is one, and otherwise to the exporter picked by
+ * {@code tracing.exporter}: none, log or otlp. With none (the default) the no-op API is used and the SDK isn't even
+ * loaded. A Lambda is frozen between invocations, so the spans are flushed at the end of every request rather than
+ * left to the batch processor's schedule.
+ */
+@Component
+public class Tracing {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracing.class);
+    static final String INSTRUMENTATION_NAME = "com.walmart.service";
+    static final AttributeKey<String> HTTP_METHOD = AttributeKey.stringKey("http.method");
+    static final AttributeKey<String> HTTP_ROUTE = AttributeKey.stringKey("http.route");
+    static final AttributeKey<Long> HTTP_STATUS_CODE = AttributeKey.longKey("http.status_code");
+    private static final ContextKey<Integer> PAGE = ContextKey.named("file-queries-page");
+    private static final TextMapGetter<Function<String, String>> HEADER_GETTER = new TextMapGetter<Function<String, String>>() {
+        @Override
+        public Iterable<String> keys(final Function<String, String> headers) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String get(final Function<String, String> headers, final String name) {
+            return headers == null ? null : headers.apply(name);
+        }
+    };
+    private final OpenTelemetry openTelemetry;
+    private final SdkTracerProvider tracerProvider;
+    private final Tracer tracer;
+    private final long flushTimeoutMillis;
+
+    @Autowired
+    public Tracing(final LambdaConfigurationModule configurationModule, final ObjectProvider<SpanExporter> spanExporter) {
+        this(spanExporter.getIfAvailable(() -> createExporter(configurationModule)),
+             configurationModule.getTracingSampleRatio(),
+             configurationModule.getTracingFlushTimeoutMillis());
+    }
+
+    /**
+     * @param spanExporter Nullable, to not trace at all.
+     */
+    Tracing(final SpanExporter spanExporter, final double sampleRatio, final long flushTimeoutMillis) {
+        this.flushTimeoutMillis = flushTimeoutMillis;
+        if (spanExporter == null) {
+            this.tracerProvider = null;
+            this.openTelemetry = OpenTelemetry.noop();
+        } else {
+            final String functionName = System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+            this.tracerProvider = SdkTracerProvider.builder()
+                    .setResource(Resource.getDefault().merge(Resource.create(Attributes.of(
+                            AttributeKey.stringKey("service.name"), "file-queries-service",
+                            AttributeKey.stringKey("faas.name"), functionName == null ? "local" : functionName))))
+                    // A request that arrives with a sampled parent is always traced.
+                    .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)))
+                    .addSpanProcessor(BatchSpanProcessor.builder(spanExporter).build())
+                    .build();
+            this.openTelemetry = OpenTelemetrySdk.builder()
+                    .setTracerProvider(tracerProvider)
+                    .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                    .build();
+            logger.info("Tracing {} of the requests to {}", sampleRatio, spanExporter);
+        }
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    private static SpanExporter createExporter(final LambdaConfigurationModule configurationModule) {
+        switch (configurationModule.getTracingExporter()) {
+            case "log":
+                return new LogSpanExporter();
+            case "otlp":
+                return OtlpHttpSpanExporter.builder()
+                        .setEndpoint(configurationModule.getTracingOtlpEndpoint())
+                        .build();
+            case "none":
+                return null;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown tracing exporter = %s",
+                                                                 configurationModule.getTracingExporter()));
+        }
+    }
+
+    public Tracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * Starts the span of a request, as the child of its traceparent header. It's named by the method until the
+     * route is known, see {@link #route}.
+     */
+    public Span startRequest(final String method, final Function<String, String> headers) {
+        final Context parent = openTelemetry.getPropagators().getTextMapPropagator()
+                .extract(Context.root(), headers, HEADER_GETTER);
+        return tracer.spanBuilder(method)
+                .setParent(parent)
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute(HTTP_METHOD, method)
+                .startSpan();
+    }
+
+    /**
+     * Names the current request's span by the pattern of the route that matched it, e.g. {@code POST /listFiles/{userId}}.
+     */
+    public static void route(final String method, final String pattern) {
+        Span.current().updateName(method + " " + pattern).setAttribute(HTTP_ROUTE, pattern);
+    }
+
+    /**
+     * Ends the span of a request and flushes the spans of the request.
+     */
+    public void endRequest(final Span span, final int status) {
+        final boolean recording = span.isRecording();
+        span.setAttribute(HTTP_STATUS_CODE, status);
+        if (status >= 500) {
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+        if (tracerProvider != null && recording) {
+            tracerProvider.forceFlush().join(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Numbers the calls made until the scope is closed as the page of a paginated read, see {@link TracingInterceptor}.
+     */
+    public static Scope page(final int page) {
+        return Context.current().with(PAGE, page).makeCurrent();
+    }
+
+    static Integer currentPage() {
+        return Context.current().get(PAGE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (tracerProvider != null) {
+            tracerProvider.shutdown().join(flushTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
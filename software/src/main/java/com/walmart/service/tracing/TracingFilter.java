@@ -0,0 +1,50 @@
+package com.walmart.service.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Wraps every request handled by Spring MVC in a server span, named by the pattern of the mapping that matched it.
+ */
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+
+    private final Tracing tracing;
+
+    @Autowired
+    public TracingFilter(final Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        final Span span = tracing.startRequest(request.getMethod(), request::getHeader);
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try (Scope scope = span.makeCurrent()) {
+            filterChain.doFilter(request, response);
+            status = response.getStatus();
+            final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                Tracing.route(request.getMethod(), pattern.toString());
+            }
+        } catch (final IOException | ServletException | RuntimeException e) {
+            span.recordException(e).setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            tracing.endRequest(span, status);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.walmart.service.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client span for every AWS call, a child of the span that's current on the calling thread. Registered on the AWS
+ * clients in {@link com.walmart.service.LambdaApplication}. Besides the operation, spans have:
+ * <ul>
+ *     <li>the table and index of DynamoDB calls, or the bucket of S3 calls</li>
+ *     <li>the page of a paginated read (see {@link Tracing#page}) and its limit</li>
+ *     <li>the number of items returned, and scanned for queries and scans</li>
+ *     <li>the bytes sent and received, and the number of attempts including the SDK's retries</li>
+ * </ul>
+ */
+@Component
+public class TracingInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Span> SPAN = new ExecutionAttribute<>("TracingSpan");
+    private static final ExecutionAttribute<AtomicInteger> ATTEMPTS = new ExecutionAttribute<>("TracingAttempts");
+    static final AttributeKey<String> RPC_SYSTEM = AttributeKey.stringKey("rpc.system");
+    static final AttributeKey<String> RPC_SERVICE = AttributeKey.stringKey("rpc.service");
+    static final AttributeKey<String> RPC_METHOD = AttributeKey.stringKey("rpc.method");
+    static final AttributeKey<String> TABLE_NAME = AttributeKey.stringKey("aws.dynamodb.table_names");
+    static final AttributeKey<String> INDEX_NAME = AttributeKey.stringKey("aws.dynamodb.index_name");
+    static final AttributeKey<Long> LIMIT = AttributeKey.longKey("aws.dynamodb.limit");
+    static final AttributeKey<Long> PAGE = AttributeKey.longKey("aws.page");
+    static final AttributeKey<Long> ITEM_COUNT = AttributeKey.longKey("aws.dynamodb.count");
+    static final AttributeKey<Long> SCANNED_COUNT = AttributeKey.longKey("aws.dynamodb.scanned_count");
+    static final AttributeKey<String> BUCKET = AttributeKey.stringKey("aws.s3.bucket");
+    static final AttributeKey<Long> REQUEST_BYTES = AttributeKey.longKey("http.request_content_length");
+    static final AttributeKey<Long> RESPONSE_BYTES = AttributeKey.longKey("http.response_content_length");
+    static final AttributeKey<Long> STATUS_CODE = AttributeKey.longKey("http.status_code");
+    static final AttributeKey<Long> ATTEMPT_COUNT = AttributeKey.longKey("aws.attempts");
+
+    private final Tracing tracing;
+
+    @Autowired
+    public TracingInterceptor(final Tracing tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        final String serviceName = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+        final String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        final SdkRequest request = context.request();
+        final SpanBuilder spanBuilder = tracing.tracer().spanBuilder(serviceName + "." + operationName)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute(RPC_SYSTEM, "aws-api")
+                .setAttribute(RPC_SERVICE, serviceName)
+                .setAttribute(RPC_METHOD, operationName);
+        request.getValueForField("TableName", String.class).ifPresent(name -> spanBuilder.setAttribute(TABLE_NAME, name));
+        request.getValueForField("IndexName", String.class).ifPresent(name -> spanBuilder.setAttribute(INDEX_NAME, name));
+        request.getValueForField("Limit", Integer.class).ifPresent(limit -> spanBuilder.setAttribute(LIMIT, limit.longValue()));
+        request.getValueForField("Bucket", String.class).ifPresent(bucket -> spanBuilder.setAttribute(BUCKET, bucket));
+        request.getValueForField("ContentLength", Long.class).ifPresent(bytes -> spanBuilder.setAttribute(REQUEST_BYTES, bytes));
+        final Integer page = Tracing.currentPage();
+        if (page != null) {
+            spanBuilder.setAttribute(PAGE, page.longValue());
+        }
+        final Span span = spanBuilder.startSpan();
+        if (span.isRecording()) {
+            executionAttributes.putAttribute(SPAN, span);
+            executionAttributes.putAttribute(ATTEMPTS, new AtomicInteger());
+        }
+    }
+
+    @Override
+    public void beforeTransmission(final Context.BeforeTransmission context, final ExecutionAttributes executionAttributes) {
+        final AtomicInteger attempts = executionAttributes.getAttribute(ATTEMPTS);
+        if (attempts != null) {
+            attempts.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterExecution(final Context.AfterExecution context, final ExecutionAttributes executionAttributes) {
+        final Span span = executionAttributes.getAttribute(SPAN);
+        if (span == null) {
+            return;
+        }
+        final SdkResponse response = context.response();
+        span.setAttribute(STATUS_CODE, context.httpResponse().statusCode());
+        context.httpResponse().firstMatchingHeader("Content-Length")
+                .ifPresent(bytes -> span.setAttribute(RESPONSE_BYTES, Long.parseLong(bytes)));
+        final Long itemCount = itemCount(response);
+        if (itemCount != null) {
+            span.setAttribute(ITEM_COUNT, itemCount);
+        }
+        response.getValueForField("ScannedCount", Integer.class).ifPresent(count -> span.setAttribute(SCANNED_COUNT, count.longValue()));
+        end(span, executionAttributes);
+    }
+
+    @Override
+    public void onExecutionFailure(final Context.FailedExecution context, final ExecutionAttributes executionAttributes) {
+        final Span span = executionAttributes.getAttribute(SPAN);
+        if (span == null) {
+            return;
+        }
+        context.httpResponse().ifPresent(httpResponse -> span.setAttribute(STATUS_CODE, httpResponse.statusCode()));
+        span.recordException(context.exception()).setStatus(StatusCode.ERROR);
+        end(span, executionAttributes);
+    }
+
+    private static void end(final Span span, final ExecutionAttributes executionAttributes) {
+        span.setAttribute(ATTEMPT_COUNT, executionAttributes.getAttribute(ATTEMPTS).get());
+        span.end();
+    }
+
+    /**
+     * @return Nullable. The items a DynamoDB read returned, or the keys of an S3 listing.
+     */
+    private static Long itemCount(final SdkResponse response) {
+        if (response instanceof GetItemResponse) {
+            final GetItemResponse getItemResponse = (GetItemResponse) response;
+            return getItemResponse.hasItem() && !getItemResponse.item().isEmpty() ? 1L : 0L;
+        }
+        if (response instanceof BatchGetItemResponse) {
+            return ((BatchGetItemResponse) response).responses().values().stream().mapToLong(List::size).sum();
+        }
+        return response.getValueForField("Count", Integer.class)
+                .map(Long::valueOf)
+                .orElseGet(() -> response.getValueForField("KeyCount", Integer.class).map(Long::valueOf).orElse(null));
+    }
+}
@@ -0,0 +1,35 @@
+package com.walmart.service.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Checksums of the files' content. They are stored with the file's metadata and served as its ETag.
+ */
+public class ChecksumUtil {
+    private static final String ALGORITHM = "SHA-256";
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // Every JVM is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The base64 encoded digest of everything the digest was updated with.
+     */
+    public static String encode(final MessageDigest digest) {
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * @return The checksum as a strong ETag, i.e. in double quotes.
+     */
+    public static String toETag(final String checksum) {
+        return "\"" + checksum + "\"";
+    }
+}
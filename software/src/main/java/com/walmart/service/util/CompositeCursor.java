@@ -0,0 +1,70 @@
+package com.walmart.service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * An opaque pagination token holding the position of several independent branches of a listing.
+ * A position is any string, {@code null} for a branch that hasn't returned anything yet, or {@link #DONE} for a
+ * branch that has nothing left. The token also carries a fingerprint of the request, so it can't be replayed against
+ * a different set of branches.
+ */
+public class CompositeCursor {
+
+    public static final String DONE = "~";
+    private static final String NOT_STARTED = "-";
+    private static final String VERSION = "c1";
+    private static final char SEPARATOR = '.';
+
+    public static String encode(final String fingerprint, final List<String> positions) {
+        final StringBuilder cursor = new StringBuilder(VERSION).append(SEPARATOR).append(fingerprint);
+        for (final String position : positions) {
+            cursor.append(SEPARATOR);
+            if (position == null) {
+                cursor.append(NOT_STARTED);
+            } else if (DONE.equals(position)) {
+                cursor.append(DONE);
+            } else {
+                cursor.append(encodePart(position));
+            }
+        }
+        return encodePart(cursor.toString());
+    }
+
+    /**
+     * @return The position of every branch.
+     * @throws IllegalArgumentException When the cursor is malformed or belongs to another request.
+     */
+    public static List<String> decode(final String cursor, final String fingerprint, final int branchCount) {
+        final String[] parts = decodePart(cursor).split("\\" + SEPARATOR, -1);
+        if (parts.length != branchCount + 2 || !VERSION.equals(parts[0]) || !fingerprint.equals(parts[1])) {
+            throw new IllegalArgumentException("The cursor doesn't belong to this request");
+        }
+        final List<String> positions = new ArrayList<>(branchCount);
+        for (int i = 2; i < parts.length; i++) {
+            if (NOT_STARTED.equals(parts[i])) {
+                positions.add(null);
+            } else if (DONE.equals(parts[i])) {
+                positions.add(DONE);
+            } else {
+                positions.add(decodePart(parts[i]));
+            }
+        }
+        return positions;
+    }
+
+    public static boolean allDone(final List<String> positions) {
+        return positions.stream().allMatch(DONE::equals);
+    }
+
+    private static String encodePart(final String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(final String value) {
+        // Base64 decoding throws IllegalArgumentException on malformed input as well.
+        return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -2,6 +2,7 @@ package com.walmart.service.util;
 
 import com.walmart.service.models.File;
 import com.walmart.service.models.TableAttributes;
+import com.walmart.service.sharding.UserShards;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
@@ -9,9 +10,21 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class DynamoDBUtil {
     private static final Logger logger = LoggerFactory.getLogger(DynamoDBUtil.class);
+    // The maximum number of keys DDB accepts in a single BatchGetItem call.
+    public static final int BATCH_GET_ITEM_LIMIT = 100;
+    // The maximum number of requests DDB accepts in a single BatchWriteItem call.
+    public static final int BATCH_WRITE_ITEM_LIMIT = 25;
+    // Batch calls give up on the keys or items DDB keeps leaving unprocessed after this many attempts.
+    private static final int BATCH_MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 25;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
 
     /**
      * Helper function to retrieve all information about a file in the database.
@@ -27,21 +40,132 @@ public class DynamoDBUtil {
                 .tableName(tableName)
                 .build();
         final GetItemResponse getItemResponse = dynamoDbClient.getItem(getItemRequest);
-        if (!getItemResponse.hasItem()) {
+        if (!getItemResponse.hasItem() || !isFileItem(getItemResponse.item())) {
             logger.warn("No files were found with file ID = {}", fileId);
             return new File();
         }
-        final Map<String, AttributeValue> item = getItemResponse.item();
-        return new File(item.get(TableAttributes.FILE_NAME_KEY).s(),
-                        item.get(TableAttributes.FILE_ID_KEY).s(),
-                        item.get(TableAttributes.USER_ID_KEY).s(),
-                        item.get(TableAttributes.CREATION_DATE_KEY).s());
+        return itemToFile(getItemResponse.item());
     }
 
     public static File getFileFromDDB(final String userId,
                                       final String fileName,
                                       final String tableName,
                                       final DynamoDbClient dynamoDbClient) {
+        return getFileFromDDB(Collections.singletonList(userId), fileName, tableName, dynamoDbClient);
+    }
+
+    /**
+     * Looks a file up by name when its index entry can be under several UserID values (see {@link UserShards}).
+     * The name pointer of the file is read first, with a single strongly consistent GetItem. Files uploaded before
+     * name pointers existed don't have one, and are found through FileNameIndex instead.
+     *
+     * @param userIndexKeys The UserID values to check, in order, see {@link UserShards#indexKeysOf(String, String)}.
+     *                      The last one is the owner's ID.
+     * @return The file if found.
+     */
+    public static File getFileFromDDB(final List<String> userIndexKeys,
+                                      final String fileName,
+                                      final String tableName,
+                                      final DynamoDbClient dynamoDbClient) {
+        final File pointedFile = getNamePointerFromDDB(userIndexKeys.get(userIndexKeys.size() - 1), fileName,
+                                                       tableName, dynamoDbClient);
+        if (pointedFile.getFileUUID() != null) {
+            return pointedFile;
+        }
+        final File legacyFile = getLegacyFileFromDDB(userIndexKeys, fileName, tableName, dynamoDbClient);
+        if (legacyFile.getFileUUID() == null) {
+            logger.warn("Was unable to find any items with file name = {} and user ID = {}", fileName, userIndexKeys);
+        }
+        return legacyFile;
+    }
+
+    /**
+     * Looks a file up through FileNameIndex only, for files uploaded before name pointers existed.
+     *
+     * @param userIndexKeys The UserID values to check, in order. The last one is the owner's ID.
+     * @return The file if found, without its size, content type and checksum since the index doesn't project them.
+     */
+    public static File getLegacyFileFromDDB(final List<String> userIndexKeys,
+                                            final String fileName,
+                                            final String tableName,
+                                            final DynamoDbClient dynamoDbClient) {
+        for (final String userIndexKey : userIndexKeys) {
+            final Map<String, AttributeValue> item = queryFileNameIndex(userIndexKey, fileName, tableName, dynamoDbClient);
+            if (item != null) {
+                // The index doesn't project the OwnerID of sharded entries.
+                return itemToFile(item, userIndexKeys.get(userIndexKeys.size() - 1));
+            }
+        }
+        return new File();
+    }
+
+    /**
+     * Reads the name pointer of a file with a strongly consistent GetItem.
+     *
+     * @return The file the pointer refers to, or a file without an ID if the user has no pointer for that name.
+     */
+    public static File getNamePointerFromDDB(final String userId,
+                                             final String fileName,
+                                             final String tableName,
+                                             final DynamoDbClient dynamoDbClient) {
+        final GetItemResponse getItemResponse = dynamoDbClient.getItem(GetItemRequest.builder()
+                                                                               .key(getNamePointerKey(userId, fileName))
+                                                                               .consistentRead(true)
+                                                                               .tableName(tableName)
+                                                                               .build());
+        if (!getItemResponse.hasItem() || getItemResponse.item().isEmpty()) {
+            return new File();
+        }
+        final Map<String, AttributeValue> pointer = getItemResponse.item();
+        return new File(pointer.get(TableAttributes.FILE_NAME_KEY).s(),
+                        pointer.get(TableAttributes.TARGET_FILE_ID_KEY).s(),
+                        pointer.get(TableAttributes.OWNER_ID_KEY).s(),
+                        pointer.get(TableAttributes.CREATION_DATE_KEY).s(),
+                        getFileSize(pointer),
+                        getString(pointer, TableAttributes.CONTENT_TYPE_KEY),
+                        getString(pointer, TableAttributes.CHECKSUM_KEY));
+    }
+
+    /**
+     * @return The key of the item that points at the file a user has with this name.
+     */
+    public static Map<String, AttributeValue> getNamePointerKey(final String userId, final String fileName) {
+        return Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                        AttributeValue.builder().s(TableAttributes.NAME_POINTER_PREFIX + userId
+                                                                           + UserShards.SHARD_SEPARATOR + fileName).build());
+    }
+
+    /**
+     * Creates the name pointer of a file. It keeps a copy of the file's attributes so a lookup by name only needs
+     * the pointer, but has no UserID so it never shows up in the indexes.
+     */
+    public static Map<String, AttributeValue> createNamePointer(final String fileId,
+                                                                final String userId,
+                                                                final String fileName,
+                                                                final String creationDate) {
+        return createNamePointer(new File(fileName, fileId, userId, creationDate));
+    }
+
+    /**
+     * Same as {@link #createNamePointer(String, String, String, String)}, and copies the size, content type and
+     * checksum of the file when it has them. The size lets deletes and re-uploads correct the user's statistics.
+     *
+     * @param file The file, with {@link File#getOwnerID()} set to the owner without any shard suffix.
+     */
+    public static Map<String, AttributeValue> createNamePointer(final File file) {
+        final Map<String, AttributeValue> pointer = new HashMap<>(getNamePointerKey(file.getOwnerID(), file.getFileName()));
+        pointer.put(TableAttributes.TARGET_FILE_ID_KEY, AttributeValue.builder().s(file.getFileUUID()).build());
+        pointer.put(TableAttributes.OWNER_ID_KEY, AttributeValue.builder().s(file.getOwnerID()).build());
+        pointer.put(TableAttributes.FILE_NAME_KEY, AttributeValue.builder().s(file.getFileName()).build());
+        pointer.put(TableAttributes.CREATION_DATE_KEY, AttributeValue.builder().s(file.getCreationDate()).build());
+        putContentAttributes(pointer, file);
+        return pointer;
+    }
+
+    private static Map<String, AttributeValue> queryFileNameIndex(final String userId,
+                                                                  final String fileName,
+                                                                  final String tableName,
+                                                                  final DynamoDbClient dynamoDbClient) {
         final String keyExpression = String.format("%s = %s and %s = %s",
                                                    TableAttributes.FILE_NAME_KEY, ":name",
                                                    TableAttributes.USER_ID_KEY, ":user");
@@ -57,15 +181,174 @@ public class DynamoDBUtil {
                 .build();
         final QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
         if (!queryResponse.hasItems() || queryResponse.items().isEmpty()) {
-            logger.warn("Was unable to find any items with file name = {} and user ID = {}", fileName, userId);
-            return new File();
+            return null;
+        }
+        return queryResponse.items().get(0);
+    }
+
+    /**
+     * Retrieves the information of many files at once. The IDs are split into chunks of {@link #BATCH_GET_ITEM_LIMIT}
+     * and every chunk is requested concurrently. Keys that DDB leaves unprocessed (e.g. due to throttling) are
+     * requested again after a jittered, exponentially growing delay.
+     *
+     * @param fileIds  The IDs of the files being retrieved. Duplicates are only retrieved once.
+     * @param executor Runs the BatchGetItem calls of the different chunks.
+     * @return The files that were found, keyed by their file ID. IDs that don't exist are absent from the map.
+     */
+    public static Map<String, File> batchGetFilesFromDDB(final Collection<String> fileIds,
+                                                         final String tableName,
+                                                         final DynamoDbClient dynamoDbClient,
+                                                         final Executor executor) {
+        final List<String> uniqueFileIds = new ArrayList<>(new LinkedHashSet<>(fileIds));
+        final List<CompletableFuture<List<File>>> chunks = new ArrayList<>();
+        for (int start = 0; start < uniqueFileIds.size(); start += BATCH_GET_ITEM_LIMIT) {
+            final List<String> chunk = uniqueFileIds.subList(start, Math.min(start + BATCH_GET_ITEM_LIMIT, uniqueFileIds.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> batchGetChunk(chunk, tableName, dynamoDbClient), executor));
+        }
+
+        final Map<String, File> files = new HashMap<>();
+        try {
+            for (final CompletableFuture<List<File>> chunk : chunks) {
+                for (final File file : chunk.join()) {
+                    files.put(file.getFileUUID(), file);
+                }
+            }
+        } catch (final CompletionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        logger.debug("Found {} of the {} requested files", files.size(), uniqueFileIds.size());
+        return files;
+    }
+
+    private static List<File> batchGetChunk(final List<String> fileIds,
+                                            final String tableName,
+                                            final DynamoDbClient dynamoDbClient) {
+        final List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (final String fileId : fileIds) {
+            keys.add(Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build()));
+        }
+
+        final List<File> files = new ArrayList<>();
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName, KeysAndAttributes.builder()
+                .keys(keys)
+                .build());
+        for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+            if (attempt == BATCH_MAX_ATTEMPTS) {
+                throw new IllegalStateException(String.format("%d keys were still unprocessed after %d attempts",
+                                                              requestItems.get(tableName).keys().size(), attempt));
+            }
+            if (attempt > 0) {
+                sleepWithJitter(attempt);
+            }
+            final BatchGetItemResponse batchGetItemResponse = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                                                                                                  .requestItems(requestItems)
+                                                                                                  .build());
+            for (final Map<String, AttributeValue> item : batchGetItemResponse.responses().getOrDefault(tableName, Collections.emptyList())) {
+                if (isFileItem(item)) {
+                    files.add(itemToFile(item));
+                }
+            }
+            requestItems = batchGetItemResponse.hasUnprocessedKeys() ? batchGetItemResponse.unprocessedKeys() : Collections.emptyMap();
+        }
+        return files;
+    }
+
+    /**
+     * Writes a batch of up to {@link #BATCH_WRITE_ITEM_LIMIT} requests. Items that DDB leaves unprocessed (e.g. due to
+     * throttling) are written again after a jittered, exponentially growing delay, like {@link #batchGetFilesFromDDB}.
+     *
+     * @param deadline Epoch millis after which no further attempt is made.
+     * @throws IllegalStateException If some items were still unprocessed after the last attempt.
+     */
+    public static void batchWriteItems(final List<WriteRequest> writes,
+                                       final String tableName,
+                                       final DynamoDbClient dynamoDbClient,
+                                       final long deadline) {
+        Map<String, List<WriteRequest>> requestItems = Collections.singletonMap(tableName, writes);
+        for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+            if (attempt == BATCH_MAX_ATTEMPTS || (attempt > 0 && System.currentTimeMillis() >= deadline)) {
+                throw new IllegalStateException(String.format("%d items were still unprocessed after %d attempts",
+                                                              requestItems.get(tableName).size(), attempt));
+            }
+            if (attempt > 0) {
+                sleepWithJitter(attempt);
+            }
+            final BatchWriteItemResponse batchWriteItemResponse = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                                                                                                        .requestItems(requestItems)
+                                                                                                        .build());
+            requestItems = batchWriteItemResponse.hasUnprocessedItems()
+                    ? batchWriteItemResponse.unprocessedItems()
+                    : Collections.<String, List<WriteRequest>>emptyMap();
         }
+    }
 
-        final Map<String, AttributeValue> item = queryResponse.items().get(0);
+    /**
+     * "Full jitter" backoff, sleeps for a random time between 0 and an exponentially growing cap. Used between the
+     * attempts of any DDB request that is retried after a throttle or a conflict.
+     *
+     * @param attempt The number of attempts made so far.
+     */
+    public static void sleepWithJitter(final int attempt) {
+        final long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    /**
+     * @return False for the other kinds of items stored in the table, e.g. name pointers.
+     */
+    public static boolean isFileItem(final Map<String, AttributeValue> item) {
+        return item.containsKey(TableAttributes.USER_ID_KEY);
+    }
+
+    /**
+     * Converts an item of the table (or of an index that projects the file's attributes) into a {@link File}.
+     * The owner is the item's OwnerID, which items indexed under a shard of their user have, or else its UserID.
+     * The UserID isn't parsed: user IDs with the shard separator were allowed before users could be sharded.
+     */
+    public static File itemToFile(final Map<String, AttributeValue> item) {
+        final AttributeValue ownerId = item.get(TableAttributes.OWNER_ID_KEY);
+        return itemToFile(item, ownerId != null ? ownerId.s() : item.get(TableAttributes.USER_ID_KEY).s());
+    }
+
+    private static File itemToFile(final Map<String, AttributeValue> item, final String ownerId) {
         return new File(item.get(TableAttributes.FILE_NAME_KEY).s(),
                         item.get(TableAttributes.FILE_ID_KEY).s(),
-                        item.get(TableAttributes.USER_ID_KEY).s(),
-                        item.get(TableAttributes.CREATION_DATE_KEY).s());
+                        ownerId,
+                        item.get(TableAttributes.CREATION_DATE_KEY).s(),
+                        getFileSize(item),
+                        getString(item, TableAttributes.CONTENT_TYPE_KEY),
+                        getString(item, TableAttributes.CHECKSUM_KEY));
+    }
+
+    /**
+     * @return The FileSize of an item, or null if it doesn't have one (e.g. an index entry, or an older file).
+     */
+    public static Long getFileSize(final Map<String, AttributeValue> item) {
+        final AttributeValue fileSize = item.get(TableAttributes.FILE_SIZE_KEY);
+        return fileSize == null || fileSize.n() == null ? null : Long.valueOf(fileSize.n());
+    }
+
+    private static String getString(final Map<String, AttributeValue> item, final String key) {
+        final AttributeValue value = item.get(key);
+        return value == null ? null : value.s();
+    }
+
+    private static void putContentAttributes(final Map<String, AttributeValue> item, final File file) {
+        if (file.getFileSize() != null) {
+            item.put(TableAttributes.FILE_SIZE_KEY, AttributeValue.builder().n(Long.toString(file.getFileSize())).build());
+        }
+        if (file.getContentType() != null) {
+            item.put(TableAttributes.CONTENT_TYPE_KEY, AttributeValue.builder().s(file.getContentType()).build());
+        }
+        if (file.getChecksum() != null) {
+            item.put(TableAttributes.CHECKSUM_KEY, AttributeValue.builder().s(file.getChecksum()).build());
+        }
     }
 
     /**
@@ -105,4 +388,22 @@ public class DynamoDBUtil {
         attributeValueMap.put(TableAttributes.CREATION_DATE_KEY, AttributeValue.builder().s(creationDate).build());
         return attributeValueMap;
     }
+
+    /**
+     * Same as {@link #createAttributeValueMap(String, String, String, String)}, with the size, content type and
+     * checksum of the file when it has them.
+     *
+     * @param userId The UserID the file is indexed under. When it differs from {@link File#getOwnerID()} (a shard of
+     *               the owner), the owner is kept in OwnerID.
+     */
+    public static Map<String, AttributeValue> createAttributeValueMap(@NonNull final File file, final String userId) {
+        final Map<String, AttributeValue> attributeValueMap = createAttributeValueMap(file.getFileUUID(), userId,
+                                                                                      file.getFileName(),
+                                                                                      file.getCreationDate());
+        if (file.getOwnerID() != null && !file.getOwnerID().equals(userId)) {
+            attributeValueMap.put(TableAttributes.OWNER_ID_KEY, AttributeValue.builder().s(file.getOwnerID()).build());
+        }
+        putContentAttributes(attributeValueMap, file);
+        return attributeValueMap;
+    }
 }
@@ -0,0 +1,68 @@
+package com.walmart.service.util;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterates over the items of a query, following LastEvaluatedKey as needed. The first page is requested on the
+ * executor as soon as the iterator is created, so several queries can be started in parallel before any of them
+ * is consumed. Later pages are requested on the calling thread.
+ */
+public class QueryIterator implements Iterator<Map<String, AttributeValue>> {
+
+    private final DynamoDbClient dynamoDbClient;
+    private QueryRequest queryRequest;
+    private CompletableFuture<QueryResponse> pendingPage;
+    private Iterator<Map<String, AttributeValue>> items = Collections.emptyIterator();
+    private Map<String, AttributeValue> lastEvaluatedKey;
+    private boolean exhausted;
+
+    public QueryIterator(final QueryRequest queryRequest,
+                         final DynamoDbClient dynamoDbClient,
+                         final Executor executor) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.queryRequest = queryRequest;
+        this.pendingPage = CompletableFuture.supplyAsync(() -> dynamoDbClient.query(queryRequest), executor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!items.hasNext() && !exhausted) {
+            final QueryResponse queryResponse;
+            if (pendingPage != null) {
+                queryResponse = awaitFirstPage();
+                pendingPage = null;
+            } else {
+                queryRequest = queryRequest.toBuilder().exclusiveStartKey(lastEvaluatedKey).build();
+                queryResponse = dynamoDbClient.query(queryRequest);
+            }
+            items = queryResponse.hasItems() ? queryResponse.items().iterator() : Collections.emptyIterator();
+            lastEvaluatedKey = queryResponse.hasLastEvaluatedKey() ? queryResponse.lastEvaluatedKey() : null;
+            exhausted = lastEvaluatedKey == null || lastEvaluatedKey.isEmpty();
+        }
+        return items.hasNext();
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return items.next();
+    }
+
+    private QueryResponse awaitFirstPage() {
+        try {
+            return pendingPage.join();
+        } catch (final CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.walmart.service.util;
 import com.walmart.service.errors.ErrorCode;
 import com.walmart.service.errors.ValidationException;
 import com.walmart.service.models.FileType;
+import com.walmart.service.sharding.UserShards;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +26,17 @@ public class RequestUtils {
         }
     }
 
+    /**
+     * User IDs can't contain the separator used for the shard suffix of sharded users, see {@link UserShards}.
+     */
+    public static void validateUserId(final String userId) throws ValidationException {
+        if (userId == null || userId.isEmpty() || userId.indexOf(UserShards.SHARD_SEPARATOR) >= 0) {
+            throw new ValidationException(String.format("user-id must be non-empty and can't contain '%s'",
+                                                        UserShards.SHARD_SEPARATOR),
+                                          null, ErrorCode.MALFORMED_USER_ID);
+        }
+    }
+
     public static FileType getFileType(final String fileName) throws ValidationException {
         return validateFileName(fileName);
     }
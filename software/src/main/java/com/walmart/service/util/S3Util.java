@@ -8,12 +8,45 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 public class S3Util {
     // The format is assumed to be userId/fileName
     private static final String S3_FILE_KEY_FORMAT = "%s/%s";
+    // Image derivatives live outside of the user prefixes, the format is _derivatives/size/userId/fileName
+    private static final String S3_DERIVATIVE_KEY_FORMAT = "_derivatives/%d/%s/%s";
+    // The search index of a user, see com.walmart.service.search.SearchIndexStore. Each version is written to a new
+    // key, the unversioned one is only read from users whose index wasn't written since.
+    private static final String S3_SEARCH_INDEX_KEY_FORMAT = "_search/%s.idx";
+    private static final String S3_SEARCH_INDEX_VERSION_KEY_FORMAT = "_search/%s/%s.idx";
+    // The manifest of a user and its deltas, see com.walmart.service.manifest.ManifestStore
+    private static final String S3_MANIFEST_KEY_FORMAT = "_manifest/%s/base";
+    private static final String S3_MANIFEST_DELTA_PREFIX_FORMAT = "_manifest/%s/delta/";
+
+    public static String getFileKey(final String userId, final String fileName) {
+        return String.format(S3_FILE_KEY_FORMAT, userId, fileName);
+    }
+
+    public static String getDerivativeKey(final String userId, final String fileName, final int size) {
+        return String.format(S3_DERIVATIVE_KEY_FORMAT, size, userId, fileName);
+    }
+
+    public static String getSearchIndexKey(final String userId) {
+        return String.format(S3_SEARCH_INDEX_KEY_FORMAT, userId);
+    }
+
+    public static String getSearchIndexKey(final String userId, final String writeId) {
+        return String.format(S3_SEARCH_INDEX_VERSION_KEY_FORMAT, userId, writeId);
+    }
+
+    public static String getManifestKey(final String userId) {
+        return String.format(S3_MANIFEST_KEY_FORMAT, userId);
+    }
+
+    public static String getManifestDeltaPrefix(final String userId) {
+        return String.format(S3_MANIFEST_DELTA_PREFIX_FORMAT, userId);
+    }
 
     public static ResponseInputStream<GetObjectResponse> getS3File(final String fileName,
                                          final String userId,
                                          final String bucketName,
                                          final S3Client s3Client) {
-        final String key = String.format(S3_FILE_KEY_FORMAT, userId, fileName);
+        final String key = getFileKey(userId, fileName);
         final GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .key(key)
                 .bucket(bucketName)
@@ -0,0 +1,90 @@
+package com.walmart.service.util;
+
+import com.walmart.service.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the load, and the callers that arrive while it's
+ * in flight wait for its result instead of making their own call. Nothing is cached, the next call after a load
+ * finished starts a new one.
+ *
+ * @param <K> The key of a call, e.g. a file ID or an S3 key.
+ * @param <V> The result of a call. It's shared by every caller, so it shouldn't be modified.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Metrics metrics;
+    private final String metricName;
+
+    @FunctionalInterface
+    public interface Load<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * @param metricName The number of calls that waited on another one is counted as metricName.coalesced.
+     */
+    public SingleFlight(final Metrics metrics, final String metricName) {
+        this.metrics = metrics;
+        this.metricName = metricName;
+    }
+
+    /**
+     * Runs the load on the calling thread, unless a call for the same key is already in flight.
+     *
+     * @return The result of the load, or of the in-flight call. Its exception is rethrown to every caller.
+     */
+    public V execute(final K key, final Load<V> load) throws IOException {
+        final CompletableFuture<V> call = new CompletableFuture<>();
+        final CompletableFuture<V> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            metrics.increment(metricName + ".coalesced");
+            return await(existingCall);
+        }
+
+        try {
+            final V value = load.load();
+            call.complete(value);
+            return value;
+        } catch (final Throwable e) {
+            // Also completes on errors, so the waiting callers are never left hanging.
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return The number of keys with a call in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(final CompletableFuture<V> call) throws IOException {
+        try {
+            return call.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting on an in-flight call", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.walmart.service.util;
+
+import java.util.*;
+
+public class SortedMerge {
+
+    /**
+     * Lazily merges iterators that are each sorted by the same comparator (a k-way merge). Only the head of every
+     * source is held, and a source is only advanced once its head was returned.
+     *
+     * @return An iterator over the elements of every source, sorted by the comparator.
+     */
+    public static <T> Iterator<T> merge(final List<? extends Iterator<T>> sources,
+                                        final Comparator<? super T> comparator) {
+        final PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                                                                  (a, b) -> comparator.compare(a.value, b.value));
+        for (final Iterator<T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                final Head<T> head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.source.hasNext()) {
+                    heads.add(new Head<>(head.source.next(), head.source));
+                }
+                return head.value;
+            }
+        };
+    }
+
+    private static class Head<T> {
+        private final T value;
+        private final Iterator<T> source;
+
+        private Head(final T value, final Iterator<T> source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
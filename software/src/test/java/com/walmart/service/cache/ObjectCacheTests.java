@@ -0,0 +1,103 @@
+package com.walmart.service.cache;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.metrics.Metrics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class ObjectCacheTests {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] content(final int size, final int seed) {
+        final byte[] content = new byte[size];
+        Arrays.fill(content, (byte) seed);
+        return content;
+    }
+
+    private static byte[] read(final ObjectCache cache, final String key, final String checksum) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        return cache.write(key, checksum, Channels.newChannel(outputStream)) ? outputStream.toByteArray() : null;
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void objectsAreOnlyServedForTheirChecksum() throws IOException {
+        final Metrics metrics = new Metrics();
+        final ObjectCache cache = new ObjectCache(metrics, 1000, 10_000, 10_000, directory);
+        cache.put("user/a.png", "v1", content(100, 1));
+
+        assertArrayEquals(content(100, 1), read(cache, "user/a.png", "v1"));
+        assertNull(read(cache, "user/a.png", "v2"));
+        assertFalse(cache.mightContain("user/a.png"));
+        assertEquals(1, metrics.get("cache.memory.hits"));
+        assertEquals(1, metrics.get("cache.misses"));
+        assertFalse(cache.isAdmissible(1001));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void evictedObjectsAreServedFromDisk() throws IOException {
+        final Metrics metrics = new Metrics();
+        final ObjectCache cache = new ObjectCache(metrics, 1000, 1000, 10_000, directory);
+        cache.put("user/0", "v1", content(500, 0));
+        cache.put("user/1", "v1", content(500, 1));
+        // The miss counts as a read, so the object is admitted in place of the least recently used one.
+        assertNull(read(cache, "user/2", "v1"));
+        cache.put("user/2", "v1", content(500, 2));
+
+        assertEquals(1000, cache.getMemoryBytes());
+        assertEquals(500, cache.getDiskBytes());
+        assertEquals(1, Files.list(directory).count());
+        assertEquals(1, metrics.get("cache.memory.evictions"));
+        assertArrayEquals(content(500, 0), read(cache, "user/0", "v1"));
+        assertEquals(1, metrics.get("cache.disk.hits"));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void popularObjectsAreNotEvictedByNewOnes() throws IOException {
+        final Metrics metrics = new Metrics();
+        final ObjectCache cache = new ObjectCache(metrics, 1000, 1000, 0, directory);
+        cache.put("user/popular", "v1", content(1000, 1));
+        for (int i = 0; i < 5; i++) {
+            read(cache, "user/popular", "v1");
+        }
+
+        cache.put("user/new", "v1", content(1000, 2));
+
+        assertNotNull(read(cache, "user/popular", "v1"));
+        assertFalse(cache.mightContain("user/new"));
+        assertEquals(1, metrics.get("cache.memory.rejections"));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void sketchCountsRecentReads() {
+        final FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("hot");
+        }
+        sketch.increment("warm");
+
+        assertEquals(5, sketch.frequency("hot"));
+        assertEquals(1, sketch.frequency("warm"));
+        assertEquals(0, sketch.frequency("cold"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.walmart.service.coalescing;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.utils.IoUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class SharedBodyTests {
+
+    private static final byte[] CONTENT = new byte[100_000];
+
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) i;
+        }
+    }
+
+    private static SharedBody createBody(final int length, final AtomicInteger releases) {
+        return new SharedBody(GetObjectResponse.builder().contentLength((long) length).build(), length,
+                              releases::incrementAndGet);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void everyReaderGetsTheWholeObject() throws IOException {
+        final AtomicInteger releases = new AtomicInteger();
+        final SharedBody body = createBody(CONTENT.length, releases);
+        final ResponseInputStream<GetObjectResponse> first = body.open();
+        final ResponseInputStream<GetObjectResponse> second = body.open();
+
+        body.fill(new ByteArrayInputStream(CONTENT));
+
+        assertArrayEquals(CONTENT, IoUtils.toByteArray(first));
+        assertArrayEquals(CONTENT, IoUtils.toByteArray(second));
+        assertEquals(CONTENT.length, first.response().contentLength());
+        first.close();
+        assertEquals(0, releases.get());
+        second.abort();
+        assertEquals(1, releases.get());
+        // Released buffers can't be joined anymore.
+        assertNull(body.open());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void readersFollowTheFill() throws Exception {
+        final SharedBody body = createBody(CONTENT.length, new AtomicInteger());
+        final ResponseInputStream<GetObjectResponse> reader = body.open();
+        // Hands the object out in small pieces, so the reader catches up with the fill.
+        final InputStream slowObject = new ByteArrayInputStream(CONTENT) {
+            @Override
+            public synchronized int read(final byte[] bytes, final int offset, final int length) {
+                return super.read(bytes, offset, Math.min(length, 1000));
+            }
+        };
+        final Thread fill = new Thread(() -> body.fill(slowObject));
+        fill.start();
+
+        assertArrayEquals(CONTENT, IoUtils.toByteArray(reader));
+        fill.join();
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void truncatedObjectsFailTheReaders() {
+        final SharedBody body = createBody(CONTENT.length, new AtomicInteger());
+        final ResponseInputStream<GetObjectResponse> reader = body.open();
+
+        body.fill(new ByteArrayInputStream(Arrays.copyOf(CONTENT, 10)));
+
+        assertThrows(IOException.class, () -> IoUtils.toByteArray(reader));
+    }
+}
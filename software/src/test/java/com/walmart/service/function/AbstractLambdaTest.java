@@ -37,12 +37,19 @@ public abstract class AbstractLambdaTest {
     final Logger logger = LoggerFactory.getLogger(AbstractLambdaTest.class);
     static final String GET_FILE_BY_NAME_FORMAT = "/getFile/%s/%s";
     static final String GET_FILE_BY_ID_FORMAT = "/getFile/%s";
+    static final String GET_MULTIPLE_FILES_FORMAT = "/getFiles/%s";
     static final String LIST_FILES_FORMAT = "/listFiles/%s";
+    static final String BATCH_LIST_FILES_FORMAT = "/listFiles/%s/batch";
     static final String UPLOAD_FILES_FORMAT = "/uploadFile/%s";
     static final String DELETE_FILE_BY_ID_FORMAT = "/deleteFile/%s/%s";
     static final String DELETE_MULTIPLE_FILES_FORMAT = "/deleteFiles/%s";
+    static final String FILE_METADATA_FORMAT = "/files/%s/metadata";
+    static final String SEARCH_FILES_FORMAT = "/searchFiles/%s";
+    static final String STATS_FORMAT = "/stats/%s";
 
     static final String TEST_USER_ID = "testing";
+    // Has its index entries spread over 4 shards, see ddb.userShards in the test properties.
+    static final String SHARDED_USER_ID = "shardedUser";
 
     static final String JPEG_CONTENT_TYPE = "image/jpeg";
     static final String JPEG_PAYLOAD_FILE_NAME = "payload.jpeg";
@@ -0,0 +1,105 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.jobs.DeleteJobRunner;
+import com.walmart.service.jobs.DeleteJobStore;
+import com.walmart.service.models.DeleteJob;
+import com.walmart.service.models.JobStatus;
+import com.walmart.service.models.ListFilesRequest;
+import com.walmart.service.util.DynamoDBUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+// One file per batch and a slice of one batch, so every run of a job is a checkpoint.
+@TestPropertySource(properties = { "deleteJobs.batchSize=1", "deleteJobs.sliceMillis=0" })
+public class DeleteJobsTests extends AbstractLambdaTest {
+
+    static final String DELETE_JOBS_FORMAT = "/deleteJobs/%s";
+    static final String DELETE_JOB_FORMAT = "/deleteJobs/%s/%s";
+
+    @Autowired
+    DeleteJobRunner deleteJobRunner;
+    @Autowired
+    DeleteJobStore deleteJobStore;
+
+    public DeleteJobsTests() throws IOException {
+        super();
+    }
+
+    @BeforeEach
+    void setupFiles() throws Exception {
+        clearTableAndS3();
+        mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                .file(jpegPayloadFile)
+                                .file(pngPayloadFile)
+                                .file(pdfPayloadFile))
+                .andExpect(status().is(200));
+    }
+
+    private DeleteJob getJob(final String jobId) throws Exception {
+        final MvcResult result = mockMvc.perform(get(format(DELETE_JOB_FORMAT, TEST_USER_ID, jobId)))
+                .andExpect(status().is(200))
+                .andReturn();
+        return gson.fromJson(result.getResponse().getContentAsString(), DeleteJob.class);
+    }
+
+    private boolean exists(final String fileName) {
+        return DynamoDBUtil.getFileFromDDB(TEST_USER_ID, fileName, configurationModule.getTableName(), dynamoDbClient)
+                .getFileUUID() != null;
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void deleteJobResumesFromItsCheckpoint() throws Exception {
+        final ListFilesRequest filter = ListFilesRequest.builder().nameBeginsWith("payload.p").build();
+        final MvcResult result = mockMvc.perform(post(format(DELETE_JOBS_FORMAT, TEST_USER_ID))
+                                                         .content(gson.toJson(filter))
+                                                         .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().is(202))
+                .andReturn();
+        final DeleteJob created = gson.fromJson(result.getResponse().getContentAsString(), DeleteJob.class);
+        assertEquals(JobStatus.RUNNING, created.getStatus());
+        assertEquals(1, created.getDeletedFiles());
+        assertTrue(deleteJobStore.activeJobIds().contains(created.getJobId()));
+
+        for (int run = 0; run < 5 && getJob(created.getJobId()).getStatus() == JobStatus.RUNNING; run++) {
+            deleteJobRunner.run(created.getJobId());
+        }
+        final DeleteJob finished = getJob(created.getJobId());
+        assertEquals(JobStatus.DONE, finished.getStatus());
+        assertEquals(2, finished.getDeletedFiles());
+        assertEquals(0, finished.getFailedFiles());
+        assertFalse(deleteJobStore.activeJobIds().contains(created.getJobId()));
+
+        assertFalse(exists(PNG_PAYLOAD_FILE_NAME));
+        assertFalse(exists(PDF_PAYLOAD_FILE_NAME));
+        assertTrue(exists(JPEG_PAYLOAD_FILE_NAME));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void unknownDeleteJobIsNotFound() throws Exception {
+        mockMvc.perform(get(format(DELETE_JOB_FORMAT, TEST_USER_ID, "missing")))
+                .andExpect(status().is(404));
+    }
+}
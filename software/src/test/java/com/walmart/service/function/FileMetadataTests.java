@@ -0,0 +1,103 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+public class FileMetadataTests extends AbstractLambdaTest {
+
+    private String jpegFileId;
+    private String pngFileId;
+    private String differentUsersFileId;
+
+    public FileMetadataTests() throws IOException {
+        super();
+    }
+
+    private MultipleFilesResponse uploadFiles(final String userId, final MockMultipartFile... files) throws Exception {
+        final MockMultipartHttpServletRequestBuilder request = multipart(format(UPLOAD_FILES_FORMAT, userId));
+        for (final MockMultipartFile file : files) {
+            request.file(file);
+        }
+        final MvcResult mvcResult = mockMvc.perform(request)
+                .andExpect(status().is(200))
+                .andReturn();
+        return gson.fromJson(mvcResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+    }
+
+    @BeforeEach()
+    void setupFiles() throws Exception {
+        clearTableAndS3();
+        final MultipleFilesResponse response = uploadFiles(TEST_USER_ID, jpegPayloadFile, pngPayloadFile);
+        jpegFileId = response.getSuccessfulFiles().get(0).getFileUUID();
+        pngFileId = response.getSuccessfulFiles().get(1).getFileUUID();
+        differentUsersFileId = uploadFiles("unknown_user", pdfPayloadFile).getSuccessfulFiles().get(0).getFileUUID();
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void retrieveFileMetadataWorks() throws Exception {
+        final String garbageFileId = "garbage-file-id";
+        final FileMetadataRequest fileMetadataRequest = FileMetadataRequest.builder()
+                .fileIds(Arrays.asList(pngFileId, garbageFileId, jpegFileId, differentUsersFileId))
+                .build();
+
+        final MockHttpServletResponse servletResponse =
+                mockMvc.perform(post(format(FILE_METADATA_FORMAT,
+                                            TEST_USER_ID))
+                                        .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .content(gson.toJson(fileMetadataRequest)))
+                        .andExpect(status().is(200))
+                        .andReturn()
+                        .getResponse();
+
+        final FileMetadataResponse fileMetadataResponse = gson.fromJson(servletResponse.getContentAsString(), FileMetadataResponse.class);
+        final List<String> foundFileIds = fileMetadataResponse.getFiles().stream().map(File::getFileUUID).collect(Collectors.toList());
+        assertEquals(Arrays.asList(pngFileId, jpegFileId), foundFileIds);
+        assertEquals(PNG_PAYLOAD_FILE_NAME, fileMetadataResponse.getFiles().get(0).getFileName());
+        assertEquals(Arrays.asList(garbageFileId, differentUsersFileId), fileMetadataResponse.getNotFound());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void retrieveFileMetadataRejectsTooManyIds() throws Exception {
+        final FileMetadataRequest fileMetadataRequest = FileMetadataRequest.builder()
+                .fileIds(IntStream.rangeClosed(0, configurationModule.getMetadataMaxFileIds())
+                                 .mapToObj(Integer::toString)
+                                 .collect(Collectors.toList()))
+                .build();
+
+        mockMvc.perform(post(format(FILE_METADATA_FORMAT,
+                                    TEST_USER_ID))
+                                .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .content(gson.toJson(fileMetadataRequest)))
+                .andExpect(status().is(400));
+    }
+}
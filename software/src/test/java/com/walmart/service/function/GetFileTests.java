@@ -3,20 +3,38 @@ package com.walmart.service.function;
 import com.walmart.service.LambdaApplication;
 import com.walmart.service.LambdaConfigurationModule;
 import com.walmart.service.TestTypes;
+import com.walmart.service.models.GetFilesRequest;
+import com.walmart.service.models.Header;
 import com.walmart.service.models.MultipleFilesResponse;
+import com.walmart.service.util.ChecksumUtil;
 import org.junit.jupiter.api.*;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MvcResult;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(classes = LambdaApplication.class)
@@ -79,4 +97,96 @@ public class GetFileTests extends AbstractLambdaTest {
         Assertions.assertArrayEquals(jpegPayloadFile.getBytes(), getJpegResult.getContentAsByteArray());
     }
 
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void getMultipleFilesAsZipWorks() throws Exception {
+        final GetFilesRequest getFilesRequest = GetFilesRequest.builder()
+                .fileIds(Collections.singletonList(jpegFileId))
+                .fileNames(Collections.singletonList(PNG_PAYLOAD_FILE_NAME))
+                .build();
+
+        final MockHttpServletResponse getFilesResult = mockMvc.perform(post(format(GET_MULTIPLE_FILES_FORMAT,
+                                                                                   TEST_USER_ID))
+                                                                               .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                                               .content(gson.toJson(getFilesRequest)))
+                .andExpect(status().is(200))
+                .andReturn()
+                .getResponse();
+
+        assertEquals("application/zip", getFilesResult.getContentType());
+        final Map<String, byte[]> entries = new HashMap<>();
+        try (final ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(getFilesResult.getContentAsByteArray()))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[1024];
+                int length;
+                while ((length = zipInputStream.read(buffer)) != -1) {
+                    entryBytes.write(buffer, 0, length);
+                }
+                entries.put(zipEntry.getName(), entryBytes.toByteArray());
+            }
+        }
+        assertEquals(2, entries.size());
+        Assertions.assertArrayEquals(jpegPayloadFile.getBytes(), entries.get(JPEG_PAYLOAD_FILE_NAME));
+        Assertions.assertArrayEquals(pngPayloadFile.getBytes(), entries.get(PNG_PAYLOAD_FILE_NAME));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void getFileDerivativeWorks() throws Exception {
+
+        final MockHttpServletResponse getDerivativeResult = mockMvc.perform(get(format(GET_FILE_BY_NAME_FORMAT,
+                                                                                       TEST_USER_ID,
+                                                                                       JPEG_PAYLOAD_FILE_NAME))
+                                                                                .param("size", "64"))
+                .andExpect(status().is(200))
+                .andReturn()
+                .getResponse();
+
+        assertEquals("image/jpeg", getDerivativeResult.getContentType());
+        final BufferedImage derivative = ImageIO.read(new ByteArrayInputStream(getDerivativeResult.getContentAsByteArray()));
+        assertTrue(derivative.getWidth() <= 64 && derivative.getHeight() <= 64);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void getFileDerivativeRejectsUnknownSizes() throws Exception {
+        mockMvc.perform(get(format(GET_FILE_BY_NAME_FORMAT, TEST_USER_ID, JPEG_PAYLOAD_FILE_NAME))
+                                .param("size", "65"))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void headFileByNameWorks() throws Exception {
+        final String eTag = ChecksumUtil.toETag(Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(jpegPayloadFile.getBytes())));
+
+        final MockHttpServletResponse headJpegResult = mockMvc.perform(head(format(GET_FILE_BY_NAME_FORMAT,
+                                                                                   TEST_USER_ID,
+                                                                                   JPEG_PAYLOAD_FILE_NAME)))
+                .andExpect(status().is(200))
+                .andReturn()
+                .getResponse();
+
+        assertEquals("image/jpeg", headJpegResult.getContentType());
+        assertEquals(jpegPayloadFile.getSize(), headJpegResult.getContentLength());
+        assertEquals(eTag, headJpegResult.getHeader(Header.ETAG));
+        assertEquals(0, headJpegResult.getContentAsByteArray().length);
+
+        mockMvc.perform(get(format(GET_FILE_BY_ID_FORMAT, jpegFileId))
+                                .header(Header.IF_NONE_MATCH, eTag))
+                .andExpect(status().is(304));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void headFileReturnsNotFoundForMissingFiles() throws Exception {
+        mockMvc.perform(head(format(GET_FILE_BY_NAME_FORMAT, TEST_USER_ID, "missing.png")))
+                .andExpect(status().is(404));
+        mockMvc.perform(head(format(GET_FILE_BY_ID_FORMAT, "missing-file-id")))
+                .andExpect(status().is(404));
+    }
+
 }
@@ -0,0 +1,88 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.MultipleFilesResponse;
+import com.walmart.service.models.UserUsageResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+public class GetStatsTests extends AbstractLambdaTest {
+
+    private String pngFileId;
+
+    public GetStatsTests() throws IOException {
+        super();
+    }
+
+    @BeforeEach()
+    void setupFiles() throws Exception {
+        clearTableAndS3();
+        final MvcResult mvcResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                                            .file(jpegPayloadFile)
+                                                            .file(pngPayloadFile)
+                                                            .file(pdfPayloadFile))
+                .andExpect(status().is(200))
+                .andReturn();
+        final MultipleFilesResponse response = gson.fromJson(mvcResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+        pngFileId = response.getSuccessfulFiles().get(1).getFileUUID();
+    }
+
+    private UserUsageResponse getStats(final String userId) throws Exception {
+        final MvcResult mvcResult = mockMvc.perform(get(format(STATS_FORMAT, userId)))
+                .andExpect(status().is(200))
+                .andReturn();
+        return gson.fromJson(mvcResult.getResponse().getContentAsString(), UserUsageResponse.class);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void statsCountUploadedFilesTest() throws Exception {
+        final UserUsageResponse stats = getStats(TEST_USER_ID);
+
+        assertEquals(3, stats.getFileCount());
+        assertEquals(jpegPayloadFile.getSize() + pngPayloadFile.getSize() + pdfPayloadFile.getSize(), stats.getTotalBytes());
+        assertEquals(jpegPayloadFile.getSize(), stats.getBytesByType().get("jpeg"));
+        assertEquals(pngPayloadFile.getSize(), stats.getBytesByType().get("png"));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void statsUncountDeletedFilesTest() throws Exception {
+        mockMvc.perform(delete(format(DELETE_FILE_BY_ID_FORMAT, TEST_USER_ID, pngFileId)))
+                .andExpect(status().is(200));
+
+        final UserUsageResponse stats = getStats(TEST_USER_ID);
+
+        assertEquals(2, stats.getFileCount());
+        assertEquals(jpegPayloadFile.getSize() + pdfPayloadFile.getSize(), stats.getTotalBytes());
+        assertEquals(0L, stats.getBytesByType().get("png"));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void statsOfAUserWithoutFilesAreEmptyTest() throws Exception {
+        final UserUsageResponse stats = getStats("userWithoutFiles");
+
+        assertEquals(0, stats.getFileCount());
+        assertEquals(0, stats.getTotalBytes());
+        assertFalse(stats.getBytesByType().containsKey("png"));
+    }
+}
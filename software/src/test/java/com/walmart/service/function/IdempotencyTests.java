@@ -0,0 +1,154 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.models.DeleteFilesRequest;
+import com.walmart.service.models.File;
+import com.walmart.service.models.Header;
+import com.walmart.service.models.MultipleFilesResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+public class IdempotencyTests extends AbstractLambdaTest {
+
+    @Autowired
+    Metrics metrics;
+
+    public IdempotencyTests() throws IOException {
+        super();
+    }
+
+    @BeforeEach
+    void clearFiles() {
+        clearTableAndS3();
+    }
+
+    private File upload(final String idempotencyKey) throws Exception {
+        final MvcResult uploadResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                                               .file(pngPayloadFile)
+                                                               .header(Header.IDEMPOTENCY_KEY, idempotencyKey))
+                .andExpect(status().is(200))
+                .andReturn();
+        return gson.fromJson(uploadResult.getResponse().getContentAsString(), MultipleFilesResponse.class)
+                .getSuccessfulFiles().get(0);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void retriedUploadGetsTheFirstResponse() throws Exception {
+        final String idempotencyKey = UUID.randomUUID().toString();
+        final long replayed = metrics.get("idempotency.replayed");
+        final File first = upload(idempotencyKey);
+        final File retry = upload(idempotencyKey);
+
+        // An upload that was done again would have a new creation date.
+        assertEquals(first.getFileUUID(), retry.getFileUUID());
+        assertEquals(first.getCreationDate(), retry.getCreationDate());
+        assertEquals(replayed + 1, metrics.get("idempotency.replayed"));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void retriedDeleteGetsTheFirstResponse() throws Exception {
+        final File uploaded = upload(UUID.randomUUID().toString());
+        final String idempotencyKey = UUID.randomUUID().toString();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final MvcResult deleteResult = mockMvc.perform(delete(format(DELETE_FILE_BY_ID_FORMAT, TEST_USER_ID,
+                                                                         uploaded.getFileUUID()))
+                                                                   .header(Header.IDEMPOTENCY_KEY, idempotencyKey))
+                    .andExpect(status().is(200))
+                    .andReturn();
+            final File deleted = gson.fromJson(deleteResult.getResponse().getContentAsString(), File.class);
+            assertEquals(uploaded.getFileUUID(), deleted.getFileUUID());
+        }
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void keyReusedForAnotherRequestIsRejected() throws Exception {
+        final String idempotencyKey = UUID.randomUUID().toString();
+        final long mismatches = metrics.get("idempotency.mismatches");
+        upload(idempotencyKey);
+        mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                .file(jpegPayloadFile)
+                                .header(Header.IDEMPOTENCY_KEY, idempotencyKey))
+                .andExpect(status().is(422));
+        assertEquals(mismatches + 1, metrics.get("idempotency.mismatches"));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void responseWithFailedFilesIsNotReplayed() throws Exception {
+        final String idempotencyKey = UUID.randomUUID().toString();
+        final DeleteFilesRequest deleteFilesRequest = DeleteFilesRequest.builder()
+                .fileIds(Collections.singletonList(UUID.randomUUID().toString()))
+                .build();
+        final long replayed = metrics.get("idempotency.replayed");
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final MvcResult deleteResult = mockMvc.perform(post(format(DELETE_MULTIPLE_FILES_FORMAT, TEST_USER_ID))
+                                                                   .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                                                   .header(Header.IDEMPOTENCY_KEY, idempotencyKey)
+                                                                   .content(gson.toJson(deleteFilesRequest)))
+                    .andExpect(status().is(200))
+                    .andReturn();
+            final MultipleFilesResponse response = gson.fromJson(deleteResult.getResponse().getContentAsString(),
+                                                                 MultipleFilesResponse.class);
+            assertEquals(1, response.getFailedFiles().size());
+        }
+        // The retry deleted again, the failure may have been transient.
+        assertEquals(replayed, metrics.get("idempotency.replayed"));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void streamedUploadsAreToldApartByTheirDigest() throws Exception {
+        final String boundary = "idempotency-boundary";
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(format("--%s\r\nContent-Disposition: form-data; name=\"data\"; filename=\"%s\"\r\n" +
+                                  "Content-Type: application/octet-stream\r\n\r\n", boundary, PNG_PAYLOAD_FILE_NAME)
+                           .getBytes(StandardCharsets.UTF_8));
+        body.write(pngPayloadFile.getBytes());
+        body.write(format("\r\n--%s--\r\n", boundary).getBytes(StandardCharsets.UTF_8));
+        final String idempotencyKey = UUID.randomUUID().toString();
+
+        // Without a digest a reuse of the key couldn't be detected.
+        mockMvc.perform(post(format(UPLOAD_FILES_FORMAT + "/stream", TEST_USER_ID))
+                                .contentType("multipart/form-data; boundary=" + boundary)
+                                .header(Header.IDEMPOTENCY_KEY, idempotencyKey)
+                                .content(body.toByteArray()))
+                .andExpect(status().is(400));
+        for (final String[] attempt : new String[][] { { "first-digest", "200" }, { "other-digest", "422" } }) {
+            mockMvc.perform(post(format(UPLOAD_FILES_FORMAT + "/stream", TEST_USER_ID))
+                                    .contentType("multipart/form-data; boundary=" + boundary)
+                                    .header(Header.IDEMPOTENCY_KEY, idempotencyKey)
+                                    .header(Header.CONTENT_SHA256, attempt[0])
+                                    .content(body.toByteArray()))
+                    .andExpect(status().is(Integer.parseInt(attempt[1])));
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.walmart.service.function;
 import com.walmart.service.LambdaApplication;
 import com.walmart.service.LambdaConfigurationModule;
 import com.walmart.service.TestTypes;
+import com.walmart.service.models.BatchListFilesRequest;
+import com.walmart.service.models.DateRange;
+import com.walmart.service.models.File;
 import com.walmart.service.models.Header;
 import com.walmart.service.models.ListFilesRequest;
 import com.walmart.service.models.ListFilesResponse;
@@ -14,10 +17,15 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.*;
@@ -111,6 +119,34 @@ public class ListFilesTests extends AbstractLambdaTest {
         assertTrue(listFilesResponse.getNextToken() == null || listFilesResponse.getNextToken().isEmpty());
     }
 
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void listFilesByNameAndTimeRangeTest() throws Exception {
+
+        // Only the png matches both the name and the time range.
+        final ListFilesRequest fileNameQueryRequest = ListFilesRequest.builder()
+                .nameBeginsWith("payload.p")
+                .createdBefore(pngCreationDate)
+                .createdAfter(jpegCreationDate)
+                .build();
+
+        final MockHttpServletResponse servletResponse =
+                mockMvc.perform(post(format(LIST_FILES_FORMAT,
+                                            TEST_USER_ID))
+                                        .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .content(gson.toJson(fileNameQueryRequest)))
+                        .andExpect(status().is(200))
+                        .andReturn()
+                        .getResponse();
+
+        final ListFilesResponse listFilesResponse = gson.fromJson(servletResponse.getContentAsString(), ListFilesResponse.class);
+        assertEquals(Collections.singletonList(pngFileId), listFilesResponse.getFileIDs());
+        // The uploads above were counted in the user's statistics, so the plan is cost based.
+        assertNotNull(listFilesResponse.getPlan());
+        assertTrue(listFilesResponse.getPlan().isCostBased());
+        assertEquals(3, listFilesResponse.getPlan().getEstimatedCosts().size());
+    }
+
     @Test
     @Tag(TestTypes.INTEGRATION_TEST)
     void listFilesByUserTest() throws Exception {
@@ -174,4 +210,142 @@ public class ListFilesTests extends AbstractLambdaTest {
         assertNotEquals(fileIds.get(0), fileIds.get(1));
     }
 
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void listShardedUserFilesByNameWithPaginationTest() throws Exception {
+        final MvcResult mvcResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT,
+                                                                     SHARDED_USER_ID))
+                                                            .file(pngPayloadFile)
+                                                            .file(jpegPayloadFile)
+                                                            .file(pdfPayloadFile))
+                .andExpect(status().is(200))
+                .andReturn();
+        final MultipleFilesResponse uploadResponse = gson.fromJson(mvcResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+        assertEquals(3, uploadResponse.getSuccessfulFiles().size());
+
+        // The shards are merged by file name, so the files come back in name order one page at a time.
+        final ListFilesRequest paginationRequest = ListFilesRequest.builder()
+                .nameBeginsWith("payload")
+                .limit(1)
+                .build();
+        final List<String> fileIds = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final MockHttpServletRequestBuilder request = post(format(LIST_FILES_FORMAT, SHARDED_USER_ID))
+                    .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .content(gson.toJson(paginationRequest));
+            if (nextToken != null) {
+                request.header(Header.NEXT_TOKEN, nextToken);
+            }
+            final MockHttpServletResponse servletResponse = mockMvc.perform(request)
+                    .andExpect(status().is(200))
+                    .andReturn()
+                    .getResponse();
+            final ListFilesResponse listFilesResponse = gson.fromJson(servletResponse.getContentAsString(), ListFilesResponse.class);
+            fileIds.addAll(listFilesResponse.getFileIDs());
+            nextToken = listFilesResponse.getNextToken();
+        } while (nextToken != null && fileIds.size() < 10);
+
+        final Map<String, String> fileIdsByName = uploadResponse.getSuccessfulFiles().stream()
+                .collect(Collectors.toMap(File::getFileName, File::getFileUUID));
+        assertEquals(Arrays.asList(fileIdsByName.get(JPEG_PAYLOAD_FILE_NAME),
+                                   fileIdsByName.get(PDF_PAYLOAD_FILE_NAME),
+                                   fileIdsByName.get(PNG_PAYLOAD_FILE_NAME)), fileIds);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void batchListFilesByOverlappingPrefixesWithPaginationTest() throws Exception {
+        // "payload" overlaps with both other prefixes, so every file is found by two branches but returned once.
+        final BatchListFilesRequest batchRequest = BatchListFilesRequest.builder()
+                .namePrefixes(Arrays.asList("payload.j", "payload.p", "payload"))
+                .limit(2)
+                .build();
+        final List<String> fileIds = new ArrayList<>();
+        String nextToken = null;
+        do {
+            final MockHttpServletRequestBuilder request = post(format(BATCH_LIST_FILES_FORMAT, TEST_USER_ID))
+                    .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .content(gson.toJson(batchRequest));
+            if (nextToken != null) {
+                request.header(Header.NEXT_TOKEN, nextToken);
+            }
+            final MockHttpServletResponse servletResponse = mockMvc.perform(request)
+                    .andExpect(status().is(200))
+                    .andReturn()
+                    .getResponse();
+            final ListFilesResponse listFilesResponse = gson.fromJson(servletResponse.getContentAsString(), ListFilesResponse.class);
+            assertTrue(listFilesResponse.getFileIDs().size() <= 2);
+            fileIds.addAll(listFilesResponse.getFileIDs());
+            nextToken = listFilesResponse.getNextToken();
+        } while (nextToken != null && fileIds.size() < 10);
+
+        assertEquals(Arrays.asList(jpegFileId, pdfFileId, pngFileId), fileIds);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void batchListFilesByDateRangesTest() throws Exception {
+        final BatchListFilesRequest batchRequest = BatchListFilesRequest.builder()
+                .dateRanges(Arrays.asList(DateRange.builder().createdAfter(jpegCreationDate).createdBefore(jpegCreationDate).build(),
+                                          DateRange.builder().createdAfter(pngCreationDate).createdBefore(pngCreationDate).build()))
+                .build();
+
+        final MockHttpServletResponse servletResponse =
+                mockMvc.perform(post(format(BATCH_LIST_FILES_FORMAT, TEST_USER_ID))
+                                        .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .content(gson.toJson(batchRequest)))
+                        .andExpect(status().is(200))
+                        .andReturn()
+                        .getResponse();
+
+        final ListFilesResponse listFilesResponse = gson.fromJson(servletResponse.getContentAsString(), ListFilesResponse.class);
+        assertTrue(listFilesResponse.getFileIDs().containsAll(Arrays.asList(jpegFileId, pngFileId)));
+        assertEquals(2, listFilesResponse.getFileIDs().size());
+        assertNull(listFilesResponse.getNextToken());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void batchListFilesRejectsTheCursorOfAnotherRequestTest() throws Exception {
+        final BatchListFilesRequest firstRequest = BatchListFilesRequest.builder()
+                .namePrefixes(Arrays.asList("payload.j", "payload.p"))
+                .limit(1)
+                .build();
+        final MockHttpServletResponse firstResponse =
+                mockMvc.perform(post(format(BATCH_LIST_FILES_FORMAT, TEST_USER_ID))
+                                        .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                        .content(gson.toJson(firstRequest)))
+                        .andExpect(status().is(200))
+                        .andReturn()
+                        .getResponse();
+        final String nextToken = gson.fromJson(firstResponse.getContentAsString(), ListFilesResponse.class).getNextToken();
+        assertNotNull(nextToken);
+
+        final BatchListFilesRequest otherRequest = BatchListFilesRequest.builder()
+                .namePrefixes(Arrays.asList("payload.j", "payload.x"))
+                .limit(1)
+                .build();
+        mockMvc.perform(post(format(BATCH_LIST_FILES_FORMAT, TEST_USER_ID))
+                                .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .header(Header.NEXT_TOKEN, nextToken)
+                                .content(gson.toJson(otherRequest)))
+                .andExpect(status().is(400));
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void listFilesRejectsATokenWithAnUnknownAccessPathTest() throws Exception {
+        final ListFilesRequest plannedRequest = ListFilesRequest.builder()
+                .nameBeginsWith("payload.p")
+                .createdBefore(pngCreationDate)
+                .createdAfter(jpegCreationDate)
+                .build();
+        mockMvc.perform(post(format(LIST_FILES_FORMAT, TEST_USER_ID))
+                                .header(Header.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .header(Header.NEXT_TOKEN, "NO_SUCH_PATH:" + pngFileId)
+                                .content(gson.toJson(plannedRequest)))
+                .andExpect(status().is(400));
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.MultipleFilesResponse;
+import com.walmart.service.models.SearchFilesResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+public class SearchFilesTests extends AbstractLambdaTest {
+
+    private String pngFileId;
+
+    public SearchFilesTests() throws IOException {
+        super();
+    }
+
+    @BeforeEach()
+    void setupFiles() throws Exception {
+        clearTableAndS3();
+        final MvcResult mvcResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                                            .file(jpegPayloadFile)
+                                                            .file(pngPayloadFile)
+                                                            .file(pdfPayloadFile))
+                .andExpect(status().is(200))
+                .andReturn();
+        final MultipleFilesResponse response = gson.fromJson(mvcResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+        pngFileId = response.getSuccessfulFiles().get(1).getFileUUID();
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void searchFilesBySubstringTest() throws Exception {
+        final MvcResult mvcResult = mockMvc.perform(get(format(SEARCH_FILES_FORMAT, TEST_USER_ID)).param("q", "LOAD.PN"))
+                .andExpect(status().is(200))
+                .andReturn();
+
+        final SearchFilesResponse response = gson.fromJson(mvcResult.getResponse().getContentAsString(), SearchFilesResponse.class);
+        assertEquals(1, response.getHits().size());
+        assertEquals(pngFileId, response.getHits().get(0).getFileUUID());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void deletedFilesAreNotFoundTest() throws Exception {
+        mockMvc.perform(delete(format(DELETE_FILE_BY_ID_FORMAT, TEST_USER_ID, pngFileId)))
+                .andExpect(status().is(200));
+
+        final MvcResult mvcResult = mockMvc.perform(get(format(SEARCH_FILES_FORMAT, TEST_USER_ID)).param("q", "payload"))
+                .andExpect(status().is(200))
+                .andReturn();
+
+        final SearchFilesResponse response = gson.fromJson(mvcResult.getResponse().getContentAsString(), SearchFilesResponse.class);
+        assertEquals(2, response.getHits().size());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void emptyQueriesAreRejectedTest() throws Exception {
+        mockMvc.perform(get(format(SEARCH_FILES_FORMAT, TEST_USER_ID)).param("q", ""))
+                .andExpect(status().is(400));
+    }
+}
@@ -0,0 +1,116 @@
+package com.walmart.service.function;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.LambdaConfigurationModule;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.File;
+import com.walmart.service.models.MultipleFilesResponse;
+import com.walmart.service.models.TableAttributes;
+import com.walmart.service.reclaim.Reclaimer;
+import com.walmart.service.util.DynamoDBUtil;
+import com.walmart.service.util.S3Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = LambdaApplication.class)
+@AutoConfigureMockMvc
+@ContextConfiguration(classes = LambdaConfigurationModule.class)
+@TestPropertySource(properties = "delete.soft=true")
+public class SoftDeleteTests extends AbstractLambdaTest {
+
+    @Autowired
+    Reclaimer reclaimer;
+
+    public SoftDeleteTests() throws IOException {
+        super();
+    }
+
+    @BeforeEach
+    void clearFiles() {
+        clearTableAndS3();
+        // Tombstones of earlier tests point at objects that were just removed.
+        reclaimer.reclaim();
+    }
+
+    private String uploadPng() throws Exception {
+        final MvcResult uploadResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT, TEST_USER_ID))
+                                                               .file(pngPayloadFile))
+                .andExpect(status().is(200))
+                .andReturn();
+        return gson.fromJson(uploadResult.getResponse().getContentAsString(), MultipleFilesResponse.class)
+                .getSuccessfulFiles().get(0).getFileUUID();
+    }
+
+    private Map<String, AttributeValue> getItem(final String fileId) {
+        return dynamoDbClient.getItem(GetItemRequest.builder()
+                                              .tableName(configurationModule.getTableName())
+                                              .key(Collections.singletonMap(TableAttributes.FILE_ID_KEY,
+                                                                            AttributeValue.builder().s(fileId).build()))
+                                              .build()).item();
+    }
+
+    private void headPng() {
+        s3Client.headObject(HeadObjectRequest.builder()
+                                    .bucket(configurationModule.getBucketName())
+                                    .key(S3Util.getFileKey(TEST_USER_ID, PNG_PAYLOAD_FILE_NAME))
+                                    .build());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void softDeleteHidesTheFileUntilItsReclaimed() throws Exception {
+        final String fileId = uploadPng();
+        mockMvc.perform(delete(format(DELETE_FILE_BY_ID_FORMAT, TEST_USER_ID, fileId)))
+                .andExpect(status().is(200));
+
+        final Map<String, AttributeValue> tombstone = getItem(fileId);
+        assertFalse(DynamoDBUtil.isFileItem(tombstone));
+        assertTrue(tombstone.containsKey(TableAttributes.DELETED_AT_KEY));
+        assertTrue(tombstone.containsKey(TableAttributes.EXPIRES_AT_KEY));
+        assertNull(DynamoDBUtil.getFileFromDDB(fileId, configurationModule.getTableName(), dynamoDbClient).getFileUUID());
+        assertNull(DynamoDBUtil.getFileFromDDB(TEST_USER_ID, PNG_PAYLOAD_FILE_NAME,
+                                               configurationModule.getTableName(), dynamoDbClient).getFileUUID());
+        headPng();
+
+        assertEquals(1, reclaimer.reclaim());
+        assertTrue(getItem(fileId).isEmpty());
+        assertThrows(NoSuchKeyException.class, this::headPng);
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void reclaimKeepsTheObjectOfAFileUploadedAgain() throws Exception {
+        final String deletedFileId = uploadPng();
+        mockMvc.perform(delete(format(DELETE_FILE_BY_ID_FORMAT, TEST_USER_ID, deletedFileId)))
+                .andExpect(status().is(200));
+        final String uploadedFileId = uploadPng();
+
+        assertEquals(1, reclaimer.reclaim());
+        assertTrue(getItem(deletedFileId).isEmpty());
+        headPng();
+        final File fileInfo = DynamoDBUtil.getFileFromDDB(TEST_USER_ID, PNG_PAYLOAD_FILE_NAME,
+                                                          configurationModule.getTableName(), dynamoDbClient);
+        assertEquals(uploadedFileId, fileInfo.getFileUUID());
+    }
+}
@@ -6,6 +6,7 @@ import com.walmart.service.TestTypes;
 import com.walmart.service.models.File;
 import com.walmart.service.models.MultipleFilesResponse;
 import com.walmart.service.models.Pair;
+import com.walmart.service.util.DynamoDBUtil;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -13,13 +14,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(classes = LambdaApplication.class)
@@ -76,4 +80,59 @@ public class UploadFileTests extends AbstractLambdaTest {
         assertTrue(fileIsValid(pngFile, PNG_PAYLOAD_FILE_NAME, TEST_USER_ID));
         assertTrue(fileIsValid(pdfFile, PDF_PAYLOAD_FILE_NAME, TEST_USER_ID));
     }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void uploadingTheSameNameReplacesTheFile() throws Exception {
+        final String[] fileIds = new String[2];
+        for (int i = 0; i < fileIds.length; i++) {
+            final MvcResult uploadResult = mockMvc.perform(multipart(format(UPLOAD_FILES_FORMAT,
+                                                                            TEST_USER_ID))
+                                                                   .file(pngPayloadFile))
+                    .andExpect(status().is(200))
+                    .andReturn();
+            final MultipleFilesResponse uploadResponse = gson.fromJson(uploadResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+            assertTrue(fileIsValid(uploadResponse.getSuccessfulFiles().get(0), PNG_PAYLOAD_FILE_NAME, TEST_USER_ID));
+            fileIds[i] = uploadResponse.getSuccessfulFiles().get(0).getFileUUID();
+        }
+        assertEquals(fileIds[0], fileIds[1]);
+
+        final File fileInfo = DynamoDBUtil.getFileFromDDB(TEST_USER_ID, PNG_PAYLOAD_FILE_NAME,
+                                                          configurationModule.getTableName(), dynamoDbClient);
+        assertEquals(fileIds[0], fileInfo.getFileUUID());
+    }
+
+    @Test
+    @Tag(TestTypes.INTEGRATION_TEST)
+    void streamedUploadWorks() throws Exception {
+        final String boundary = "streamed-upload-boundary";
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final String[][] parts = { { "data", PNG_PAYLOAD_FILE_NAME }, { "data", "no-extension" } };
+        for (final String[] part : parts) {
+            body.write(format("--%s\r\nContent-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n" +
+                                      "Content-Type: application/octet-stream\r\n\r\n", boundary, part[0], part[1])
+                               .getBytes(StandardCharsets.UTF_8));
+            body.write(pngPayloadFile.getBytes());
+            body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(format("--%s--\r\n", boundary).getBytes(StandardCharsets.UTF_8));
+
+        final MvcResult uploadResult = mockMvc.perform(post(format(UPLOAD_FILES_FORMAT + "/stream", TEST_USER_ID))
+                                                               .contentType("multipart/form-data; boundary=" + boundary)
+                                                               .content(body.toByteArray()))
+                .andExpect(status().is(200))
+                .andReturn();
+        final MultipleFilesResponse uploadResponse = gson.fromJson(uploadResult.getResponse().getContentAsString(), MultipleFilesResponse.class);
+
+        assertEquals(1, uploadResponse.getSuccessfulFiles().size());
+        final File uploaded = uploadResponse.getSuccessfulFiles().get(0);
+        assertTrue(fileIsValid(uploaded, PNG_PAYLOAD_FILE_NAME, TEST_USER_ID));
+        assertEquals(pngPayloadFile.getSize(), uploaded.getFileSize());
+        assertEquals(1, uploadResponse.getFailedFiles().size());
+        assertEquals(400, uploadResponse.getFailedFiles().get(0).getRight());
+
+        final File fileInfo = DynamoDBUtil.getFileFromDDB(TEST_USER_ID, PNG_PAYLOAD_FILE_NAME,
+                                                          configurationModule.getTableName(), dynamoDbClient);
+        assertEquals(uploaded.getChecksum(), fileInfo.getChecksum());
+    }
 }
@@ -0,0 +1,51 @@
+package com.walmart.service.images;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.FileType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class ImageDerivativesTests {
+
+    private final BufferedImage landscape = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage tiny = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void resizeKeepsAspectRatio() {
+        final BufferedImage resized = ImageDerivatives.resize(landscape, 128, FileType.JPEG);
+        assertEquals(128, resized.getWidth());
+        assertEquals(64, resized.getHeight());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void resizeNeverUpscales() {
+        final BufferedImage resized = ImageDerivatives.resize(tiny, 128, FileType.PNG);
+        assertEquals(4, resized.getWidth());
+        assertEquals(4, resized.getHeight());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void encodeProducesReadableImages() throws IOException {
+        final byte[] jpeg = ImageDerivatives.encode(ImageDerivatives.resize(landscape, 64, FileType.JPG), FileType.JPG);
+        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(decoded);
+        assertEquals(64, decoded.getWidth());
+        assertEquals(32, decoded.getHeight());
+    }
+}
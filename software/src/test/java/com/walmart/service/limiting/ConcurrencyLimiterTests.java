@@ -0,0 +1,145 @@
+package com.walmart.service.limiting;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.metrics.Metrics;
+import com.walmart.service.routing.RouteGroup;
+import com.walmart.service.routing.RouteGroups;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+@TestPropertySource(properties = { "limiting.enabled=true", "limiting.initialLimit=1", "limiting.minLimit=1" })
+public class ConcurrencyLimiterTests {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    ConcurrencyLimitFilter filter;
+
+    @Autowired
+    Metrics metrics;
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void theLimitFollowsTheLatency() {
+        final GradientLimit limit = new GradientLimit(20, 4, 200);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(20), 20, false);
+        }
+        final int steadyLimit = limit.getLimit();
+        assertTrue(steadyLimit > 20);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(100), steadyLimit, false);
+        }
+        assertTrue(limit.getLimit() < steadyLimit);
+
+        final int beforeDrop = limit.getLimit();
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(20), beforeDrop, true);
+        assertTrue(limit.getLimit() < beforeDrop);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void aLimitOnlyGrowsWhenItsUsed() {
+        final GradientLimit limit = new GradientLimit(20, 4, 200);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(20), 2, false);
+        }
+        assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void bulkRequestsLeaveRoomForCheapOnes() {
+        final Metrics limiterMetrics = new Metrics();
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(limiterMetrics, true, 10, 1, 100, 100, 0.5);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(limiter.tryAcquire(RouteGroup.GET, Priority.BULK));
+        }
+        assertNull(limiter.tryAcquire(RouteGroup.GET, Priority.BULK));
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(limiter.tryAcquire(RouteGroup.GET, Priority.CRITICAL));
+        }
+        assertNull(limiter.tryAcquire(RouteGroup.GET, Priority.CRITICAL));
+        // Every group has its own limit.
+        assertNotNull(limiter.tryAcquire(RouteGroup.LIST, Priority.CRITICAL));
+
+        assertEquals(1, limiterMetrics.get("limiting.rejected.get.bulk"));
+        assertEquals(1, limiterMetrics.get("limiting.rejected.get.critical"));
+        assertEquals(11, limiterMetrics.snapshot().get("limiting.inflight.total").intValue());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void allGroupsShareTheServersLimit() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(new Metrics(), true, 10, 1, 100, 4, 0.5);
+        assertNotNull(limiter.tryAcquire(RouteGroup.UPLOAD, Priority.BULK));
+        assertNotNull(limiter.tryAcquire(RouteGroup.DELETE, Priority.BULK));
+        assertNull(limiter.tryAcquire(RouteGroup.GET, Priority.BULK));
+        final ConcurrencyLimiter.Permit permit = limiter.tryAcquire(RouteGroup.LIST, Priority.CRITICAL);
+        assertNotNull(limiter.tryAcquire(RouteGroup.LIST, Priority.CRITICAL));
+        assertNull(limiter.tryAcquire(RouteGroup.GET, Priority.NORMAL));
+        permit.release(false);
+        assertNotNull(limiter.tryAcquire(RouteGroup.GET, Priority.NORMAL));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void excessRequestsAreShedWithRetryAfter() throws Exception {
+        final MockHttpServletResponse listing = new MockHttpServletResponse();
+        final MockHttpServletResponse shedListing = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/listFiles/123"), listing, (request, response) ->
+                filter.doFilter(new MockHttpServletRequest("POST", "/listFiles/456"), shedListing, (nested, nestedResponse) -> fail()));
+        assertEquals(200, listing.getStatus());
+        assertEquals(503, shedListing.getStatus());
+        assertEquals("1", shedListing.getHeader(HttpHeaders.RETRY_AFTER));
+
+        final MockHttpServletResponse shedUpload = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/uploadFile/123"), new MockHttpServletResponse(), (request, response) ->
+                filter.doFilter(new MockHttpServletRequest("POST", "/uploadFile/123"), shedUpload, (nested, nestedResponse) -> fail()));
+        assertEquals(429, shedUpload.getStatus());
+
+        // The warmer is never limited.
+        filter.doFilter(new MockHttpServletRequest("GET", "/getFile/123"), new MockHttpServletResponse(), (request, response) ->
+                filter.doFilter(new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse(), (nested, nestedResponse) -> { }));
+        assertTrue(metrics.snapshot().containsKey("limiting.limit.upload"));
+        assertEquals(1, metrics.get("limiting.rejected.list.critical"));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void everyRouteIsInItsControllersGroup() {
+        final RequestMappingHandlerMapping handlerMapping = context.getBean("requestMappingHandlerMapping",
+                                                                            RequestMappingHandlerMapping.class);
+        handlerMapping.getHandlerMethods().forEach((mapping, handlerMethod) -> {
+            final RouteGroups routeGroups = AnnotationUtils.findAnnotation(handlerMethod.getBeanType(), RouteGroups.class);
+            for (final String pattern : mapping.getPatternValues()) {
+                final RouteGroup routeGroup = RouteGroup.of(pattern);
+                if (routeGroups == null) {
+                    assertNull(routeGroup, pattern);
+                } else {
+                    assertTrue(Arrays.asList(routeGroups.value()).contains(routeGroup), pattern);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.walmart.service.manifest;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.ListFilesRequest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class ManifestTests {
+
+    private static final String ALL_AFTER = ListFilesRequest.DEFAULT_CREATED_AFTER;
+    private static final String ALL_BEFORE = ListFilesRequest.DEFAULT_CREATED_BEFORE;
+
+    /**
+     * Enough files for several blocks. File i is named file-<i, 4 digits>.png and was created on day i % 28 + 1.
+     */
+    private static List<ManifestEntry> createEntries(final int count) {
+        final List<ManifestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new ManifestEntry(String.format("id-%04d", i), String.format("file-%04d.png", i),
+                                          String.format("2022-05-%02dT00:00:00Z", i % 28 + 1), (long) i));
+        }
+        return entries;
+    }
+
+    private static Manifest createManifest(final long changeCount, final List<ManifestEntry> entries) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Manifest.write(outputStream, changeCount, entries);
+        return Manifest.read(ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+
+    private static List<String> fileIds(final List<ManifestEntry> entries) {
+        return entries.stream().map(ManifestEntry::getFileId).collect(Collectors.toList());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void manifestIsReadBack() throws IOException {
+        final List<ManifestEntry> entries = createEntries(1000);
+        final Manifest manifest = createManifest(1234, entries);
+
+        assertEquals(1234, manifest.getChangeCount());
+        assertEquals(1000, manifest.size());
+        assertEquals(entries.get(777), manifest.findById("id-0777"));
+        assertNull(manifest.findById("id-9999"));
+        final List<ManifestEntry> byName = new ArrayList<>();
+        manifest.scan(ManifestOrder.NAME, null, null).forEachRemaining(byName::add);
+        assertEquals(entries, byName);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void scanStartsAfterThePosition() throws IOException {
+        final Manifest manifest = createManifest(0, createEntries(1000));
+
+        final ManifestEntry first = manifest.scan(ManifestOrder.NAME, "file-0600.png", "id-0600").next();
+        assertEquals("id-0601", first.getFileId());
+        // Files 27, 55, ... were created on the 28th, ordered by ID.
+        final ManifestEntry lastDay = manifest.scan(ManifestOrder.DATE, "2022-05-28T00:00:00Z", "").next();
+        assertEquals("id-0027", lastDay.getFileId());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void viewListsByPrefixAndDateRange() throws IOException {
+        final ManifestView view = new ManifestView(createManifest(0, createEntries(1000)));
+
+        final List<ManifestEntry> byPrefix = view.list("file-05", ALL_AFTER, ALL_BEFORE, null, 1000);
+        assertEquals(100, byPrefix.size());
+        assertEquals("id-0500", byPrefix.get(0).getFileId());
+
+        final List<ManifestEntry> secondPage = view.list("file-05", ALL_AFTER, ALL_BEFORE, "id-0549", 10);
+        assertEquals("id-0550", secondPage.get(0).getFileId());
+
+        final List<ManifestEntry> byDate = view.list(null, "2022-05-02T00:00:00Z", "2022-05-02T00:00:00Z", null, 1000);
+        assertTrue(byDate.stream().allMatch(entry -> entry.getCreationDate().equals("2022-05-02T00:00:00Z")));
+        assertEquals(36, byDate.size());
+
+        final List<ManifestEntry> both = view.list("file-00", "2022-05-01T00:00:00Z", "2022-05-01T00:00:00Z", null, 1000);
+        assertEquals(Arrays.asList("id-0000", "id-0028", "id-0056", "id-0084"), fileIds(both));
+        assertNull(view.list("file-00", ALL_AFTER, ALL_BEFORE, "id-9999", 10));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void viewAppliesDeltasOnce() throws IOException {
+        final ManifestView view = new ManifestView(createManifest(1000, createEntries(1000)));
+        final ManifestEntry replaced = new ManifestEntry("id-0001", "file-0001.png", "2022-06-01T00:00:00Z", 7L);
+        final ManifestEntry added = new ManifestEntry("id-new", "file-0000a.png", "2022-06-02T00:00:00Z", 8L);
+        final ManifestDelta delta = new ManifestDelta(Arrays.asList(replaced, added), Collections.singletonList("id-0002"));
+
+        view.apply("delta-1", delta);
+        view.apply("delta-1", delta);
+
+        assertEquals(1003, view.getChangeCount());
+        assertEquals(1, view.deltaCount());
+        assertEquals(Arrays.asList("id-0000", "id-new", "id-0001", "id-0003"),
+                     fileIds(view.list("file-000", ALL_AFTER, ALL_BEFORE, null, 4)));
+        assertEquals(Arrays.asList("id-0001", "id-new"),
+                     fileIds(view.list(null, "2022-06-01T00:00:00Z", ALL_BEFORE, null, 10)));
+        assertNull(view.findById("id-0002"));
+        assertEquals(1000, view.entries().size());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void deltaIsReadBack() throws IOException {
+        final ManifestDelta delta = new ManifestDelta(createEntries(3), Collections.singletonList("id-old"));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        delta.writeTo(outputStream);
+
+        final ManifestDelta read = ManifestDelta.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(delta.getWritten(), read.getWritten());
+        assertEquals(delta.getRemoved(), read.getRemoved());
+        assertEquals(4, read.changeCount());
+    }
+}
@@ -0,0 +1,88 @@
+package com.walmart.service.planner;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.AccessPath;
+import com.walmart.service.models.QueryPlan;
+import com.walmart.service.stats.UserStats;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class QueryPlannerTests {
+
+    // 120,000 files spread evenly over 2021, almost all of them named "invoice_*".
+    private final UserStats stats = createStats();
+
+    private static UserStats createStats() {
+        final SortedMap<String, Long> monthHistogram = new TreeMap<>();
+        for (int month = 1; month <= 12; month++) {
+            monthHistogram.put(String.format("2021-%02d", month), 10_000L);
+        }
+        final Map<String, Long> namePrefixCounts = new HashMap<>();
+        namePrefixCounts.put("i", 119_000L);
+        namePrefixCounts.put("in", 119_000L);
+        namePrefixCounts.put("r", 1_000L);
+        namePrefixCounts.put("re", 1_000L);
+        return new UserStats(120_000, monthHistogram, namePrefixCounts);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void estimateTimeMatchesProratesPartialMonths() {
+        assertEquals(10_000, QueryPlanner.estimateTimeMatches(stats, "2021-03-01T00:00:00Z", "2021-04-01T00:00:00Z"), 1);
+        assertEquals(5_000, QueryPlanner.estimateTimeMatches(stats, "2021-04-01T00:00:00Z", "2021-04-16T00:00:00Z"), 1);
+        assertEquals(0, QueryPlanner.estimateTimeMatches(stats, "2022-01-01T00:00:00Z", "2022-06-01T00:00:00Z"), 0);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void estimateNameMatchesNarrowsLongPrefixes() {
+        assertEquals(119_000, QueryPlanner.estimateNameMatches(stats, "i"), 0);
+        assertEquals(119_000, QueryPlanner.estimateNameMatches(stats, "in"), 0);
+        assertEquals(119_000 * 0.25, QueryPlanner.estimateNameMatches(stats, "inv"), 0);
+        assertEquals(0, QueryPlanner.estimateNameMatches(stats, "x"), 0);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void broadPrefixWithATinyDateWindowUsesTheTimeIndex() {
+        final QueryPlan plan = QueryPlanner.plan(stats, "in", "2021-06-01T00:00:00Z", "2021-06-02T00:00:00Z", 25, 100);
+        assertEquals(AccessPath.TIME_INDEX, plan.getAccessPath());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void selectivePrefixWithABroadDateWindowUsesTheNameIndex() {
+        final QueryPlan plan = QueryPlanner.plan(stats, "re", "2021-01-01T00:00:00Z", "2021-12-01T00:00:00Z", 25, 100);
+        assertEquals(AccessPath.NAME_INDEX, plan.getAccessPath());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void rareCombinationsUseTheIntersection() {
+        // Few "re" files fall in a one week window, so both filtered queries would page through most of their range.
+        final QueryPlan plan = QueryPlanner.plan(stats, "re", "2021-06-01T00:00:00Z", "2021-06-08T00:00:00Z", 25, 100);
+        assertEquals(AccessPath.INTERSECTION, plan.getAccessPath());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void intersectionPaysForItsDateRangeOnEveryPage() {
+        // The month's 10,000 files are read again for every page, along with the ~300 names it takes to find 25 of
+        // them, in 3 full pages.
+        final QueryPlan plan = QueryPlanner.plan(stats, "in", "2021-06-01T00:00:00Z", "2021-07-01T00:00:00Z", 25, 100);
+        assertEquals(10_000 + 300 + 3 * 100, plan.getEstimatedCosts().get(AccessPath.INTERSECTION).doubleValue(), 10);
+        assertEquals(AccessPath.TIME_INDEX, plan.getAccessPath());
+    }
+}
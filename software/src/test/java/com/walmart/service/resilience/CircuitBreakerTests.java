@@ -0,0 +1,74 @@
+package com.walmart.service.resilience;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class CircuitBreakerTests {
+
+    private final AtomicLong millisClock = new AtomicLong();
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void breakerOpensAfterConsecutiveFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker(3, 1000, millisClock::get);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void breakerLetsOneTrialThroughAfterCoolDown() {
+        final CircuitBreaker breaker = new CircuitBreaker(1, 1000, millisClock::get);
+        breaker.recordFailure();
+        millisClock.addAndGet(1000);
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void failedTrialReopensBreaker() {
+        final CircuitBreaker breaker = new CircuitBreaker(5, 1000, millisClock::get);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure();
+        }
+        millisClock.addAndGet(1000);
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void breakerCanBeDisabled() {
+        final CircuitBreaker breaker = new CircuitBreaker(0, 1000, millisClock::get);
+        for (int i = 0; i < 100; i++) {
+            breaker.recordFailure();
+        }
+        assertTrue(breaker.allowRequest());
+    }
+}
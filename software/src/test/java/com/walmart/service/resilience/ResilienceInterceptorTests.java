@@ -0,0 +1,44 @@
+package com.walmart.service.resilience;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class ResilienceInterceptorTests {
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void limiterKeySeparatesTablesIndexesAndPrefixes() {
+        assertEquals("dynamodb:table", ResilienceInterceptor.limiterKey(
+                "DynamoDb", GetItemRequest.builder().tableName("table").build()));
+        assertEquals("dynamodb:table/FileNameIndex", ResilienceInterceptor.limiterKey(
+                "DynamoDb", QueryRequest.builder().tableName("table").indexName("FileNameIndex").build()));
+        assertEquals("s3:bucket/user", ResilienceInterceptor.limiterKey(
+                "S3", GetObjectRequest.builder().bucket("bucket").key("user/file.png").build()));
+        assertEquals("s3:bucket/", ResilienceInterceptor.limiterKey(
+                "S3", ListObjectsV2Request.builder().bucket("bucket").build()));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void parseOverridesReadsKeyRatePairs() {
+        final Map<String, Double> overrides = ResilienceInterceptor.parseOverrides(
+                "dynamodb:table/FileNameIndex=50, s3:bucket/user=12.5,");
+        assertEquals(2, overrides.size());
+        assertEquals(50.0, overrides.get("dynamodb:table/FileNameIndex"));
+        assertEquals(12.5, overrides.get("s3:bucket/user"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.walmart.service.resilience;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class TokenBucketTests {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void tryAcquireAllowsABurstThenRejects() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(10, 0.5, nanoClock::get);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(0));
+        }
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void tryAcquireRefillsOverTime() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(10, 0.1, nanoClock::get);
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void tryAcquireWaitsWhenAllowed() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(1000, 0.001, nanoClock::get);
+        assertTrue(bucket.tryAcquire(0));
+        // The next permit is 1ms away.
+        assertFalse(bucket.tryAcquire(TimeUnit.MICROSECONDS.toNanos(500)));
+        assertTrue(bucket.tryAcquire(TimeUnit.MILLISECONDS.toNanos(5)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.walmart.service.routing;
+
+import com.amazonaws.serverless.proxy.internal.testutils.AwsProxyRequestBuilder;
+import com.amazonaws.serverless.proxy.internal.testutils.MockLambdaContext;
+import com.amazonaws.serverless.proxy.model.AwsProxyResponse;
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class FunctionalRouterTests {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void patternsMatchTheirSegments() {
+        final RoutePattern pattern = RoutePattern.compile("/getFile/{userId}/{fileName}");
+        assertEquals(2, RoutePattern.segments("/getFile/123/").length);
+        assertNull(pattern.match(RoutePattern.segments("/getFile/123")));
+        assertNull(pattern.match(RoutePattern.segments("/listFiles/user/file.png")));
+
+        final Map<String, String> pathVariables = pattern.match(RoutePattern.segments("/getFile/user/my%20file.png"));
+        assertEquals("user", pathVariables.get("userId"));
+        assertEquals("my file.png", pathVariables.get("fileName"));
+        assertEquals(Collections.emptyMap(), RoutePattern.compile("/").match(RoutePattern.segments("/")));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void unroutedRequestsGetA404() throws IOException {
+        final FunctionalRouter router = new FunctionalRouter(context);
+        final MockLambdaContext lambdaContext = new MockLambdaContext();
+
+        final AwsProxyResponse unknownPath = router.handle(new AwsProxyRequestBuilder("/unknown/user", "GET").build(),
+                                                           lambdaContext);
+        assertEquals(404, unknownPath.getStatusCode());
+        // The route exists, but only for POST.
+        final AwsProxyResponse wrongMethod = router.handle(new AwsProxyRequestBuilder("/listFiles/user", "GET").build(),
+                                                           lambdaContext);
+        assertEquals(404, wrongMethod.getStatusCode());
+    }
+}
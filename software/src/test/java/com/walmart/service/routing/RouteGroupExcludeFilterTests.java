@@ -0,0 +1,60 @@
+package com.walmart.service.routing;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.function.GetFile;
+import com.walmart.service.function.ListFiles;
+import com.walmart.service.function.Warmer;
+import com.walmart.service.metrics.Metrics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class RouteGroupExcludeFilterTests {
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void onlyTheGroupsControllersStayEager() {
+        final RouteGroupExcludeFilter filter = new RouteGroupExcludeFilter(RouteGroup.GET, true);
+        assertTrue(filter.isExcluded("getFile", null, GetFile.class));
+        assertFalse(filter.isExcluded("listFiles", null, ListFiles.class));
+        // Controllers without route groups, and the MVC infrastructure, are needed by every function.
+        assertTrue(filter.isExcluded("warmer", null, Warmer.class));
+        assertTrue(filter.isExcluded("handlerMapping", null, RequestMappingHandlerMapping.class));
+        assertFalse(filter.isExcluded("metrics", null, Metrics.class));
+        assertFalse(filter.isExcluded("unknown", null, null));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void mvcStaysLazyForTheFunctionalRouter() {
+        final RouteGroupExcludeFilter filter = new RouteGroupExcludeFilter(RouteGroup.GET, false);
+        assertFalse(filter.isExcluded("handlerMapping", null, RequestMappingHandlerMapping.class));
+        assertTrue(filter.isExcluded("getFile", null, GetFile.class));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void everyControllerStaysEagerWithoutAGroup() {
+        final RouteGroupExcludeFilter filter = new RouteGroupExcludeFilter(null, true);
+        assertTrue(filter.isExcluded("getFile", null, GetFile.class));
+        assertTrue(filter.isExcluded("listFiles", null, ListFiles.class));
+        assertFalse(filter.isExcluded("metrics", null, Metrics.class));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void activeGroupComesFromTheProfiles() {
+        final MockEnvironment environment = new MockEnvironment();
+        assertNull(RouteGroup.active(environment));
+        environment.setActiveProfiles("other", RouteGroup.LIST.profile());
+        assertEquals(RouteGroup.LIST, RouteGroup.active(environment));
+    }
+}
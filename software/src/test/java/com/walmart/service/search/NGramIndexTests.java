@@ -0,0 +1,100 @@
+package com.walmart.service.search;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.SearchHit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class NGramIndexTests {
+
+    private static NGramIndex createIndex() {
+        final NGramIndex index = new NGramIndex();
+        index.add("1", "invoice_2021_march.pdf");
+        index.add("2", "Receipt_march.png");
+        index.add("3", "march.pdf");
+        index.add("4", "scan_0001.jpeg");
+        return index;
+    }
+
+    private static List<String> fileIds(final List<SearchHit> hits) {
+        return hits.stream().map(SearchHit::getFileUUID).collect(Collectors.toList());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void searchRanksExactThenPrefixThenSubstringMatches() {
+        final NGramIndex index = createIndex();
+        index.add("5", "march");
+
+        assertEquals(Arrays.asList("5", "3", "2", "1"), fileIds(index.search("MARCH", 10)));
+        assertEquals(Arrays.asList("5", "3"), fileIds(index.search("march", 2)));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void shortQueriesScanTheNames() {
+        assertEquals(Arrays.asList("4"), fileIds(createIndex().search("_0", 10)));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void searchFallsBackToSharedTrigramsWhenNothingContainsTheQuery() {
+        final List<SearchHit> hits = createIndex().search("invoise_2021", 10);
+
+        assertEquals(Arrays.asList("1"), fileIds(hits));
+        assertTrue(hits.get(0).getScore() < 1);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void removedAndRenamedFilesAreNotFound() {
+        final NGramIndex index = createIndex();
+        index.remove("3");
+        index.add("2", "receipt_april.png");
+
+        assertEquals(Arrays.asList("1"), fileIds(index.search("march", 10)));
+        assertEquals(Arrays.asList("2"), fileIds(index.search("april", 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void writeToAndReadFromKeepTheLiveFiles() throws IOException {
+        final NGramIndex index = createIndex();
+        index.remove("1");
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        index.writeTo(outputStream);
+
+        final NGramIndex copy = NGramIndex.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertEquals(3, copy.size());
+        assertEquals(Arrays.asList("3", "2"), fileIds(copy.search("march", 10)));
+        assertEquals(Arrays.asList("4"), fileIds(copy.search("scan", 10)));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void searchFindsSubstringsAmongManyFiles() {
+        final NGramIndex index = new NGramIndex();
+        for (int i = 0; i < 100_000; i++) {
+            index.add("id" + i, String.format("document_%06d.pdf", i));
+        }
+
+        assertEquals(Arrays.asList("id42424"), fileIds(index.search("042424", 10)));
+        assertEquals(10, index.search("document_0", 10).size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.walmart.service.sharding;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.File;
+import com.walmart.service.util.DynamoDBUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class UserShardsTests {
+
+    private final UserShards userShards = new UserShards("heavy=4, single=1");
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void unshardedUsersKeepTheirUserId() {
+        assertFalse(userShards.isSharded("single"));
+        assertEquals("light", userShards.indexKeyFor("light", "image.png"));
+        assertEquals(Collections.singletonList("light"), userShards.indexKeysOf("light"));
+        assertEquals(Collections.singletonList("light"), userShards.indexKeysOf("light", "image.png"));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void shardedUsersAreSpreadByFileName() {
+        final String indexKey = userShards.indexKeyFor("heavy", "image.png");
+        assertTrue(indexKey.matches("heavy#[0-3]"));
+        assertEquals(indexKey, userShards.indexKeyFor("heavy", "image.png"));
+        assertEquals(Arrays.asList("heavy", "heavy#0", "heavy#1", "heavy#2", "heavy#3"), userShards.indexKeysOf("heavy"));
+        assertEquals(Arrays.asList(indexKey, "heavy"), userShards.indexKeysOf("heavy", "image.png"));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void shardedItemsKeepTheirOwner() {
+        final File file = new File("image.png", "file-id", "heavy", "creation-date", 42L, "image/png", "checksum");
+        final String indexKey = userShards.indexKeyFor("heavy", "image.png");
+        assertEquals("heavy", DynamoDBUtil.itemToFile(DynamoDBUtil.createAttributeValueMap(file, indexKey)).getOwnerID());
+        assertEquals("heavy", DynamoDBUtil.itemToFile(DynamoDBUtil.createAttributeValueMap(file, "heavy")).getOwnerID());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void userIdsWithTheSeparatorAreNotParsed() {
+        // Allowed before users could be sharded, it isn't a shard of "heavy".
+        final File file = new File("image.png", "file-id", "heavy#3", "creation-date", 42L, "image/png", "checksum");
+        assertEquals("heavy#3", DynamoDBUtil.itemToFile(DynamoDBUtil.createAttributeValueMap(file, "heavy#3")).getOwnerID());
+    }
+}
@@ -0,0 +1,68 @@
+package com.walmart.service.startup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class ColdStartTests {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void nestedBeansAreExcludedFromTheirDependentsTime() throws Exception {
+        final BeanTimingStartup startup = new BeanTimingStartup();
+        final StartupStep outer = startup.start(BeanTimingStartup.BEAN_STEP).tag("beanName", "coldStartOuter");
+        final StartupStep inner = startup.start(BeanTimingStartup.BEAN_STEP).tag("beanName", "coldStartInner");
+        assertEquals(outer.getId(), inner.getParentId());
+        Thread.sleep(30);
+        inner.end();
+        Thread.sleep(5);
+        outer.end();
+
+        final JsonNode beans = record().get("beansMillis");
+        assertTrue(beans.get("coldStartInner").get("exclusive").asLong() >= 30);
+        assertTrue(beans.get("coldStartOuter").get("inclusive").asLong() >= 35);
+        assertTrue(beans.get("coldStartOuter").get("exclusive").asLong() < 30);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void theRecordIsInTheEmbeddedMetricFormat() throws IOException {
+        final JsonNode record = record();
+        assertTrue(record.get("firstInvocation").asBoolean());
+        assertEquals("GET /", record.get("Route").asText());
+        assertEquals(15, record.get("firstInvocationMillis").asLong());
+        final JsonNode directives = record.get("_aws").get("CloudWatchMetrics");
+        assertEquals(2, directives.size());
+        for (final JsonNode directive : directives) {
+            assertEquals(ColdStart.NAMESPACE, directive.get("Namespace").asText());
+            for (final JsonNode metric : directive.get("Metrics")) {
+                // Every metric the directives name is a top level number.
+                assertTrue(record.get(metric.get("Name").asText()).isNumber());
+            }
+            for (final JsonNode dimension : directive.get("Dimensions").get(0)) {
+                assertTrue(record.get(dimension.asText()).isTextual());
+            }
+        }
+        // The context this test runs in was started with the listener from spring.factories.
+        assertTrue(record.get("events").has("contextRefreshed"));
+    }
+
+    private static JsonNode record() throws IOException {
+        return mapper.readTree(ColdStart.containerRecord("GET /", TimeUnit.MILLISECONDS.toNanos(15)));
+    }
+}
@@ -0,0 +1,97 @@
+package com.walmart.service.stats;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.models.TableAttributes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class UserStatsStoreTests {
+
+    private static final String TABLE_NAME = "fake-table-name";
+    private static final String USER_ID = "fake-user-id";
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void recordCreateCountsTheFileAndItsBytes() {
+        final Update update = UserStatsStore.recordCreate(TABLE_NAME, USER_ID, "Invoice.PDF", "2022-05-01T00:00:00Z", 1024);
+
+        assertEquals("ADD #count :delta, #month :delta, #p1 :delta, #p2 :delta, #bytes :bytes, #typeBytes :bytes",
+                     update.updateExpression());
+        assertEquals(TableAttributes.TYPE_BYTES_PREFIX + "pdf", update.expressionAttributeNames().get("#typeBytes"));
+        assertEquals("1024", update.expressionAttributeValues().get(":bytes").n());
+        assertEquals(UserStatsStore.getStatsKey(USER_ID), update.key());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void recordDeleteOfAFileWithoutASizeOnlyUncountsIt() {
+        final Update update = UserStatsStore.recordDelete(TABLE_NAME, USER_ID, "a.png", "2022-05-01T00:00:00Z", null);
+
+        assertEquals("-1", update.expressionAttributeValues().get(":delta").n());
+        assertEquals("0", update.expressionAttributeValues().get(":bytes").n());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void recordReplaceOnlyUpdatesWhatChanged() {
+        assertNull(UserStatsStore.recordReplace(TABLE_NAME, USER_ID, "a.png", "2022-05-01T00:00:00Z", 10L,
+                                                "2022-05-20T00:00:00Z", 10));
+
+        final Update sizeChange = UserStatsStore.recordReplace(TABLE_NAME, USER_ID, "a.png", "2022-05-01T00:00:00Z", 10L,
+                                                               "2022-05-20T00:00:00Z", 25);
+        assertEquals("ADD #bytes :bytes, #typeBytes :bytes", sizeChange.updateExpression());
+        assertEquals("15", sizeChange.expressionAttributeValues().get(":bytes").n());
+
+        final Update monthChange = UserStatsStore.recordReplace(TABLE_NAME, USER_ID, "a.png", "2022-05-01T00:00:00Z", 10L,
+                                                                "2022-06-01T00:00:00Z", 10);
+        assertEquals("ADD #previousMonth :minusOne, #month :one", monthChange.updateExpression());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void countChangeIsAddedToTheStatsUpdate() {
+        final Update alone = UserStatsStore.countChange(TABLE_NAME, USER_ID, null);
+        assertEquals("ADD #changes :change", alone.updateExpression());
+
+        final Update withDelete = UserStatsStore.countChange(TABLE_NAME, USER_ID,
+                                                             UserStatsStore.recordDelete(TABLE_NAME, USER_ID, "a.png",
+                                                                                         "2022-05-01T00:00:00Z", 10L));
+        assertTrue(withDelete.updateExpression().startsWith("ADD #count :delta"));
+        assertTrue(withDelete.updateExpression().endsWith(", #changes :change"));
+        assertEquals(TableAttributes.CHANGE_COUNT_KEY, withDelete.expressionAttributeNames().get("#changes"));
+        assertEquals("-10", withDelete.expressionAttributeValues().get(":bytes").n());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void itemToStatsParsesEveryCounter() {
+        final Map<String, AttributeValue> item = new HashMap<>(UserStatsStore.getStatsKey(USER_ID));
+        item.put(TableAttributes.FILE_COUNT_KEY, AttributeValue.builder().n("3").build());
+        item.put(TableAttributes.TOTAL_BYTES_KEY, AttributeValue.builder().n("300").build());
+        item.put(TableAttributes.TYPE_BYTES_PREFIX + "pdf", AttributeValue.builder().n("100").build());
+        item.put(TableAttributes.TYPE_BYTES_PREFIX + "png", AttributeValue.builder().n("200").build());
+        item.put(TableAttributes.MONTH_HISTOGRAM_PREFIX + "2022-05", AttributeValue.builder().n("3").build());
+        item.put(TableAttributes.ONE_CHARACTER_PREFIX + "a", AttributeValue.builder().n("3").build());
+
+        final UserStats stats = UserStatsStore.itemToStats(item);
+
+        assertEquals(3, stats.getFileCount());
+        assertEquals(300, stats.getTotalBytes());
+        assertEquals(100L, stats.getBytesByType().get("pdf"));
+        assertEquals(200L, stats.getBytesByType().get("png"));
+        assertEquals(3L, stats.getMonthHistogram().get("2022-05"));
+        assertEquals(3L, stats.getNamePrefixCounts().get("a"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.walmart.service.tracing;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class TracingTests {
+
+    private static final String QUERY_RESPONSE = "{\"Count\":2,\"ScannedCount\":3,\"Items\":"
+            + "[{\"FileUUID\":{\"S\":\"a\"}},{\"FileUUID\":{\"S\":\"b\"}}]}";
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    /**
+     * Answers every call with the same query response, without going over the network.
+     */
+    private static final class StubHttpClient implements SdkHttpClient {
+        @Override
+        public ExecutableHttpRequest prepareRequest(final HttpExecuteRequest request) {
+            final byte[] body = QUERY_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            return new ExecutableHttpRequest() {
+                @Override
+                public HttpExecuteResponse call() {
+                    return HttpExecuteResponse.builder()
+                            .response(SdkHttpResponse.builder()
+                                              .statusCode(200)
+                                              .putHeader("Content-Length", Integer.toString(body.length))
+                                              .build())
+                            .responseBody(AbortableInputStream.create(new ByteArrayInputStream(body)))
+                            .build();
+                }
+
+                @Override
+                public void abort() {
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static DynamoDbClient tracedClient(final Tracing tracing) {
+        return DynamoDbClient.builder()
+                .httpClient(new StubHttpClient())
+                .region(Region.US_EAST_1)
+                .endpointOverride(URI.create("http://localhost:8000"))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .overrideConfiguration(configuration -> configuration.addExecutionInterceptor(new TracingInterceptor(tracing)))
+                .build();
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void awsCallsAreChildrenOfTheRequest() {
+        final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+        final Tracing tracing = new Tracing(exporter, 1.0, 1000);
+        final DynamoDbClient dynamoDbClient = tracedClient(tracing);
+
+        final Span request = tracing.startRequest("POST", name -> null);
+        try (Scope scope = request.makeCurrent()) {
+            Tracing.route("POST", "/listFiles/{userId}");
+            try (Scope page = Tracing.page(2)) {
+                dynamoDbClient.query(QueryRequest.builder().tableName("files").indexName("FileNameIndex").limit(10).build());
+            }
+        }
+        tracing.endRequest(request, 200);
+
+        final List<SpanData> spans = exporter.getFinishedSpanItems();
+        assertEquals(2, spans.size());
+        final SpanData query = spans.get(0);
+        final SpanData server = spans.get(1);
+        assertEquals("POST /listFiles/{userId}", server.getName());
+        assertEquals(SpanKind.SERVER, server.getKind());
+        assertEquals(200L, server.getAttributes().get(Tracing.HTTP_STATUS_CODE));
+        assertEquals("DynamoDb.Query", query.getName());
+        assertEquals(SpanKind.CLIENT, query.getKind());
+        assertEquals(server.getSpanId(), query.getParentSpanId());
+        assertEquals("files", query.getAttributes().get(TracingInterceptor.TABLE_NAME));
+        assertEquals("FileNameIndex", query.getAttributes().get(TracingInterceptor.INDEX_NAME));
+        assertEquals(10L, query.getAttributes().get(TracingInterceptor.LIMIT));
+        assertEquals(2L, query.getAttributes().get(TracingInterceptor.PAGE));
+        assertEquals(2L, query.getAttributes().get(TracingInterceptor.ITEM_COUNT));
+        assertEquals(3L, query.getAttributes().get(TracingInterceptor.SCANNED_COUNT));
+        assertEquals((long) QUERY_RESPONSE.length(), query.getAttributes().get(TracingInterceptor.RESPONSE_BYTES));
+        assertEquals(1L, query.getAttributes().get(TracingInterceptor.ATTEMPT_COUNT));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void aSampledParentIsContinued() {
+        final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+        // Nothing would be sampled without the parent.
+        final Tracing tracing = new Tracing(exporter, 0.0, 1000);
+        final String traceparent = "00-" + TRACE_ID + "-00f067aa0ba902b7-01";
+
+        tracing.endRequest(tracing.startRequest("GET", Collections.singletonMap("traceparent", traceparent)::get), 200);
+        tracing.endRequest(tracing.startRequest("GET", name -> null), 200);
+
+        final List<SpanData> spans = exporter.getFinishedSpanItems();
+        assertEquals(1, spans.size());
+        assertEquals(TRACE_ID, spans.get(0).getTraceId());
+        assertEquals("00f067aa0ba902b7", spans.get(0).getParentSpanId());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void nothingIsRecordedWithoutAnExporter() {
+        final Tracing tracing = new Tracing(null, 1.0, 1000);
+        final Span request = tracing.startRequest("GET", name -> null);
+        assertFalse(request.isRecording());
+        try (Scope scope = request.makeCurrent()) {
+            tracedClient(tracing).query(QueryRequest.builder().tableName("files").build());
+        }
+        tracing.endRequest(request, 200);
+    }
+}
@@ -0,0 +1,38 @@
+package com.walmart.service.util;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class CompositeCursorTests {
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void decodeReturnsTheEncodedPositions() {
+        final List<String> positions = Arrays.asList(null, CompositeCursor.DONE, "invoice.pdf\nfile-id", "a.b~c");
+        final String cursor = CompositeCursor.encode("1f", positions);
+
+        assertEquals(positions, CompositeCursor.decode(cursor, "1f", 4));
+        assertFalse(CompositeCursor.allDone(positions));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void decodeRejectsCursorsOfOtherRequests() {
+        final String cursor = CompositeCursor.encode("1f", Arrays.asList("a", "b"));
+
+        assertThrows(IllegalArgumentException.class, () -> CompositeCursor.decode(cursor, "2e", 2));
+        assertThrows(IllegalArgumentException.class, () -> CompositeCursor.decode(cursor, "1f", 3));
+        assertThrows(IllegalArgumentException.class, () -> CompositeCursor.decode("not a cursor!", "1f", 2));
+    }
+}
@@ -11,14 +11,14 @@ import org.springframework.test.context.ContextConfiguration;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 @SpringBootTest
 @ContextConfiguration(classes = LambdaApplication.class)
@@ -77,6 +77,7 @@ public class DynamoDBUtilTests {
         final QueryResponse queryResponse = QueryResponse.builder()
                 .items(Collections.singletonList(itemMap))
                 .build();
+        when(dbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
         when(dbClient.query(any(QueryRequest.class))).thenReturn(queryResponse);
 
         final File testFile = DynamoDBUtil.getFileFromDDB(userId, fileName, tableName, dbClient);
@@ -91,6 +92,7 @@ public class DynamoDBUtilTests {
     @Tag(TestTypes.UNIT_TEST)
     public void testGetFileFromDDBWithBadUserID() {
         final QueryResponse queryResponse = QueryResponse.builder().build();
+        when(dbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
         when(dbClient.query(any(QueryRequest.class))).thenReturn(queryResponse);
 
         final File testFile = DynamoDBUtil.getFileFromDDB(userId, fileName, tableName, dbClient);
@@ -101,6 +103,43 @@ public class DynamoDBUtilTests {
         assertNull(testFile.getCreationDate());
     }
 
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    public void testGetFileFromDDBByNameUsesTheNamePointer() {
+        final GetItemResponse getItemResponse = GetItemResponse.builder()
+                .item(DynamoDBUtil.createNamePointer(fileId, userId, fileName, creationDate))
+                .build();
+        when(dbClient.getItem(any(GetItemRequest.class))).thenReturn(getItemResponse);
+
+        final File testFile = DynamoDBUtil.getFileFromDDB(userId, fileName, tableName, dbClient);
+
+        assertEquals(testFile.getFileUUID(), fileId);
+        assertEquals(testFile.getFileName(), fileName);
+        assertEquals(testFile.getOwnerID(), userId);
+        assertEquals(testFile.getCreationDate(), creationDate);
+        verify(dbClient).getItem(argThat((GetItemRequest request) -> request.consistentRead()
+                && request.key().equals(DynamoDBUtil.getNamePointerKey(userId, fileName))));
+        verify(dbClient, never()).query(any(QueryRequest.class));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    public void namePointerKeepsTheContentAttributes() {
+        final File file = new File(fileName, fileId, userId, creationDate, 42L, "image/png", "fake-checksum");
+        when(dbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+                                                                             .item(DynamoDBUtil.createNamePointer(file))
+                                                                             .build());
+
+        final File testFile = DynamoDBUtil.getNamePointerFromDDB(userId, fileName, tableName, dbClient);
+
+        assertEquals(fileId, testFile.getFileUUID());
+        assertEquals(42L, testFile.getFileSize());
+        assertEquals("image/png", testFile.getContentType());
+        assertEquals("fake-checksum", testFile.getChecksum());
+        assertFalse(DynamoDBUtil.isFileItem(DynamoDBUtil.createNamePointer(file)));
+        assertEquals("fake-checksum", DynamoDBUtil.itemToFile(DynamoDBUtil.createAttributeValueMap(file, userId)).getChecksum());
+    }
+
     @Test
     @Tag(TestTypes.UNIT_TEST)
     public void removeUnwantedKeysWorks() {
@@ -117,4 +156,62 @@ public class DynamoDBUtilTests {
         assertFalse(filteredKeys.containsKey(creationDate));
         assertEquals(2, filteredKeys.size());
     }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    public void batchGetFilesFromDDBChunksKeys() {
+        final DynamoDbClient batchClient = mock(DynamoDbClient.class);
+        when(batchClient.batchGetItem(any(BatchGetItemRequest.class))).thenAnswer(invocation -> {
+            final BatchGetItemRequest request = invocation.getArgument(0);
+            final List<Map<String, AttributeValue>> items = request.requestItems().get(tableName).keys().stream()
+                    .map(key -> {
+                        final Map<String, AttributeValue> item = new HashMap<>(key);
+                        item.put(TableAttributes.FILE_NAME_KEY, AttributeValue.builder().s(fileName).build());
+                        item.put(TableAttributes.USER_ID_KEY, AttributeValue.builder().s(userId).build());
+                        item.put(TableAttributes.CREATION_DATE_KEY, AttributeValue.builder().s(creationDate).build());
+                        return item;
+                    })
+                    .collect(Collectors.toList());
+            return BatchGetItemResponse.builder()
+                    .responses(Collections.singletonMap(tableName, items))
+                    .build();
+        });
+        final List<String> fileIds = IntStream.range(0, 150).mapToObj(i -> fileId + i).collect(Collectors.toList());
+
+        final Map<String, File> files = DynamoDBUtil.batchGetFilesFromDDB(fileIds, tableName, batchClient, Runnable::run);
+
+        assertEquals(150, files.size());
+        assertEquals(userId, files.get(fileId + 149).getOwnerID());
+        verify(batchClient, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    public void batchGetFilesFromDDBRetriesUnprocessedKeys() {
+        final DynamoDbClient batchClient = mock(DynamoDbClient.class);
+        final Map<String, AttributeValue> item = new HashMap<>();
+        item.put(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build());
+        item.put(TableAttributes.FILE_NAME_KEY, AttributeValue.builder().s(fileName).build());
+        item.put(TableAttributes.USER_ID_KEY, AttributeValue.builder().s(userId).build());
+        item.put(TableAttributes.CREATION_DATE_KEY, AttributeValue.builder().s(creationDate).build());
+        final KeysAndAttributes unprocessedKeys = KeysAndAttributes.builder()
+                .keys(Collections.singletonMap(TableAttributes.FILE_ID_KEY, AttributeValue.builder().s(fileId).build()))
+                .build();
+        when(batchClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(BatchGetItemResponse.builder()
+                                    .responses(Collections.singletonMap(tableName, Collections.<Map<String, AttributeValue>>emptyList()))
+                                    .unprocessedKeys(Collections.singletonMap(tableName, unprocessedKeys))
+                                    .build())
+                .thenReturn(BatchGetItemResponse.builder()
+                                    .responses(Collections.singletonMap(tableName, Collections.singletonList(item)))
+                                    .unprocessedKeys(Collections.emptyMap())
+                                    .build());
+
+        final Map<String, File> files = DynamoDBUtil.batchGetFilesFromDDB(Collections.singletonList(fileId), tableName,
+                                                                          batchClient, Runnable::run);
+
+        assertEquals(1, files.size());
+        assertEquals(fileName, files.get(fileId).getFileName());
+        verify(batchClient, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+    }
 }
@@ -0,0 +1,78 @@
+package com.walmart.service.util;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import com.walmart.service.metrics.Metrics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class SingleFlightTests {
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void concurrentCallsShareOneLoad() throws Exception {
+        final Metrics metrics = new Metrics();
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>(metrics, "test");
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final SingleFlight.Load<String> load = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+            return "value";
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> calls = new ArrayList<>();
+            calls.add(executor.submit(() -> singleFlight.execute("key", load)));
+            loading.await();
+            for (int i = 0; i < 3; i++) {
+                calls.add(executor.submit(() -> singleFlight.execute("key", load)));
+            }
+            while (metrics.get("test.coalesced") < 3) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (final Future<String> call : calls) {
+                assertEquals("value", call.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlight());
+        // Nothing is cached once the load is done.
+        singleFlight.execute("key", () -> "again");
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void failuresAreRethrownAndNotKept() throws IOException {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<>(new Metrics(), "test");
+
+        assertThrows(IOException.class, () -> singleFlight.execute("key", () -> {
+            throw new IOException("failed");
+        }));
+        assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+}
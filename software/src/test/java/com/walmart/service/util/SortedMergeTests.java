@@ -0,0 +1,35 @@
+package com.walmart.service.util;
+
+import com.walmart.service.LambdaApplication;
+import com.walmart.service.TestTypes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@ContextConfiguration(classes = LambdaApplication.class)
+public class SortedMergeTests {
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void mergeInterleavesSortedSources() {
+        final List<Iterator<String>> sources = Arrays.asList(Arrays.asList("a", "d", "e").iterator(),
+                                                             Collections.<String>emptyIterator(),
+                                                             Arrays.asList("b", "c", "f").iterator());
+        final List<String> merged = new ArrayList<>();
+        SortedMerge.merge(sources, Comparator.<String>naturalOrder()).forEachRemaining(merged::add);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), merged);
+    }
+
+    @Test
+    @Tag(TestTypes.UNIT_TEST)
+    void mergeOfNoSourcesIsEmpty() {
+        assertFalse(SortedMerge.merge(Collections.<Iterator<String>>emptyList(), Comparator.<String>naturalOrder()).hasNext());
+    }
+}